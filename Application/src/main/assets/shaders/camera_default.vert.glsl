@@ -2,7 +2,9 @@
 attribute vec2 positionAttr;
 
 //camera transform and texture
+#ifndef FRAME_BLOCK
 uniform mat4 mvpMatrix4fv;
+#endif
 attribute vec4 textCoordAttr;
 
 //tex coords
@@ -1,19 +1,20 @@
-#extension GL_OES_EGL_image_external : require
-
 precision mediump float;
 
 uniform sampler2D texture1i;
+#ifndef FRAME_BLOCK
 uniform vec2 viewSize2f;
+#endif
 
 varying vec2 vTextCoordAttr;
 
 
-	#define HueLevCount 6
-	#define SatLevCount 7
-	#define ValLevCount 4
-	float HueLevels[HueLevCount];
-	float SatLevels[SatLevCount];
-	float ValLevels[ValLevCount];
+// Variant defines (GlProgram defines), edges from 8 neighbours or 4 (cross)
+#ifndef TOON_EDGE_SAMPLES
+#define TOON_EDGE_SAMPLES 8
+#endif
+#ifndef TOON_EDGE_THRESHOLD
+#define TOON_EDGE_THRESHOLD 0.3
+#endif
 
 vec3 RGBtoHSV( float r, float g, float b) {
    float minv, maxv, delta;
@@ -88,28 +89,26 @@ vec3 HSVtoRGB(float h, float s, float v ) {
 
    return res;
 }
-float nearestLevel(float col, int mode) {
-   if (mode==0) {
-   		for (int i =0; i<HueLevCount-1; i++ ) {
-		    if (col >= HueLevels[i] && col <= HueLevels[i+1]) {
-		      return HueLevels[i+1];
-		    }
-		}
-	 }
-	else if (mode==1) {
-		for (int i =0; i<SatLevCount-1; i++ ) {
-			if (col >= SatLevels[i] && col <= SatLevels[i+1]) {
-	          return SatLevels[i+1];
-	        }
-		}
-	}
-	else if (mode==2) {
-		for (int i =0; i<ValLevCount-1; i++ ) {
-			if (col >= ValLevels[i] && col <= ValLevels[i+1]) {
-	          return ValLevels[i+1];
-	        }
-		}
-	}
+// upper bound of the level containing col, levels are constants folded by the compiler
+float nearestHue(float col) {
+   if (col <= 80.0) return 80.0;
+   if (col <= 160.0) return 160.0;
+   if (col <= 240.0) return 240.0;
+   if (col <= 320.0) return 320.0;
+   return 360.0;
+}
+float nearestSat(float col) {
+   if (col <= 0.1) return 0.1;
+   if (col <= 0.3) return 0.3;
+   if (col <= 0.5) return 0.5;
+   if (col <= 0.6) return 0.6;
+   if (col <= 0.8) return 0.8;
+   return 1.0;
+}
+float nearestVal(float col) {
+   if (col <= 0.3) return 0.3;
+   if (col <= 0.6) return 0.6;
+   return 1.0;
 }
 // averaged pixel intensity from 3 color channels
 float avg_intensity(vec4 pix) {
@@ -123,19 +122,16 @@ float IsEdge(in vec2 coords){
   float dxtex = 1.0 / viewSize2f.x ;
   float dytex = 1.0 / viewSize2f.y ;
 
-  float pix[9];
-
-  int k = -1;
   float delta;
   // read neighboring pixel intensities
-float pix0 = avg_intensity(get_pixel(coords,-1.0*dxtex, -1.0*dytex));
 float pix1 = avg_intensity(get_pixel(coords,-1.0*dxtex, 0.0*dytex));
-float pix2 = avg_intensity(get_pixel(coords,-1.0*dxtex, 1.0*dytex));
 float pix3 = avg_intensity(get_pixel(coords,0.0*dxtex, -1.0*dytex));
-float pix4 = avg_intensity(get_pixel(coords,0.0*dxtex, 0.0*dytex));
 float pix5 = avg_intensity(get_pixel(coords,0.0*dxtex, 1.0*dytex));
-float pix6 = avg_intensity(get_pixel(coords,1.0*dxtex, -1.0*dytex));
 float pix7 = avg_intensity(get_pixel(coords,1.0*dxtex, 0.0*dytex));
+#if TOON_EDGE_SAMPLES == 8
+float pix0 = avg_intensity(get_pixel(coords,-1.0*dxtex, -1.0*dytex));
+float pix2 = avg_intensity(get_pixel(coords,-1.0*dxtex, 1.0*dytex));
+float pix6 = avg_intensity(get_pixel(coords,1.0*dxtex, -1.0*dytex));
 float pix8 = avg_intensity(get_pixel(coords,1.0*dxtex, 1.0*dytex));
   // average color differences around neighboring pixels
   delta = (abs(pix1-pix7)+
@@ -143,33 +139,21 @@ float pix8 = avg_intensity(get_pixel(coords,1.0*dxtex, 1.0*dytex));
           abs(pix0-pix8)+
           abs(pix2-pix6)
            )/4.;
+#else
+  delta = (abs(pix1-pix7)+
+          abs(pix5-pix3)
+           )/2.;
+#endif
   return clamp(5.5*delta,0.0,1.0);
 }
 void main(void)
 {
-	HueLevels[0] = 0.0;
-	HueLevels[1] = 80.0;
-	HueLevels[2] = 160.0;
-	HueLevels[3] = 240.0;
-	HueLevels[4] = 320.0;
-	HueLevels[5] = 360.0;
-	SatLevels[0] = 0.0;
-	SatLevels[1] = 0.1;
-	SatLevels[2] = 0.3;
-	SatLevels[3] = 0.5;
-	SatLevels[4] = 0.6;
-	SatLevels[5] = 0.8;
-	SatLevels[6] = 1.0;
-	ValLevels[0] = 0.0;
-	ValLevels[1] = 0.3;
-	ValLevels[2] = 0.6;
-	ValLevels[3] = 1.0;
     vec4 colorOrg = texture2D( texture1i, vTextCoordAttr );
     vec3 vHSV =  RGBtoHSV(colorOrg.r,colorOrg.g,colorOrg.b);
-    vHSV.x = nearestLevel(vHSV.x, 0);
-    vHSV.y = nearestLevel(vHSV.y, 1);
-    vHSV.z = nearestLevel(vHSV.z, 2);
+    vHSV.x = nearestHue(vHSV.x);
+    vHSV.y = nearestSat(vHSV.y);
+    vHSV.z = nearestVal(vHSV.z);
     float edg = IsEdge(vTextCoordAttr);
-    vec3 vRGB = (edg >= 0.3)? vec3(0.0,0.0,0.0):HSVtoRGB(vHSV.x,vHSV.y,vHSV.z);
+    vec3 vRGB = (edg >= TOON_EDGE_THRESHOLD)? vec3(0.0,0.0,0.0):HSVtoRGB(vHSV.x,vHSV.y,vHSV.z);
     gl_FragColor = vec4(vRGB.x,vRGB.y,vRGB.z,1.0);
 }
\ No newline at end of file
@@ -1,8 +1,18 @@
 attribute vec2 positionAttr;
-attribute vec2 textCoordAttr;
 attribute vec4 colorAttr;
 
+#ifdef UI_INSTANCED
+// Unit quad corner in positionAttr, sprite in instance attributes (GlSpriteStore instanced layout)
+attribute vec4 instancePositionAttr;
+attribute vec3 instanceSizeAttr;
+attribute vec4 instanceTextCoordAttr;
+#else
+attribute vec2 textCoordAttr;
+#endif
+
+#ifndef FRAME_BLOCK
 uniform vec2 screenRatio2f;
+#endif
 
 varying vec2 vTextCoordAttr;
 varying vec4 vColorAttr;
@@ -11,7 +21,16 @@ void main()
 {
     vColorAttr = colorAttr;
     vColorAttr.a = vColorAttr.a * (255.0/254.0);
+#ifdef UI_INSTANCED
+    vec2 local = vec2(positionAttr.x * instanceSizeAttr.x - instancePositionAttr.z, instancePositionAttr.w - positionAttr.y * instanceSizeAttr.y);
+    float angle = radians(instanceSizeAttr.z);
+    float cosAngle = cos(angle);
+    float sinAngle = sin(angle);
+    vec2 position = instancePositionAttr.xy + vec2(local.x * cosAngle - local.y * sinAngle, local.x * sinAngle + local.y * cosAngle);
+    vTextCoordAttr = mix(instanceTextCoordAttr.xy, instanceTextCoordAttr.zw, positionAttr);
+#else
+    vec2 position = positionAttr;
     vTextCoordAttr = textCoordAttr;
-    gl_Position =  vec4(positionAttr.x * screenRatio2f.x, positionAttr.y * screenRatio2f.y, 0.0, 1.0);
+#endif
+    gl_Position =  vec4(position.x * screenRatio2f.x, position.y * screenRatio2f.y, 0.0, 1.0);
 }
-
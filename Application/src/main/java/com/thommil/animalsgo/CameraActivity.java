@@ -17,6 +17,7 @@ import com.thommil.animalsgo.data.Messaging;
 import com.thommil.animalsgo.fragments.CameraFragment;
 import com.thommil.animalsgo.gl.CameraRenderer;
 import com.thommil.animalsgo.cv.CaptureValidator;
+import com.thommil.animalsgo.utils.ByteBufferPool;
 
 
 public class CameraActivity extends FragmentActivity implements CameraRenderer.OnRendererReadyListener, Handler.Callback {
@@ -47,6 +48,7 @@ public class CameraActivity extends FragmentActivity implements CameraRenderer.O
         //Log.d(TAG, "onCreate()");
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_camera);
+        ByteBufferPool.getInstance().setNativeBackingEnabled(Settings.POOL_NATIVE_BACKING);
 
         mSurfaceView = findViewById(R.id.surface_view);
         setupCameraFragment();
@@ -123,6 +125,13 @@ public class CameraActivity extends FragmentActivity implements CameraRenderer.O
         finish();
     }
 
+    @Override
+    public void onTrimMemory(final int level) {
+        //Log.d(TAG, "onTrimMemory("+level+")");
+        super.onTrimMemory(level);
+        ByteBufferPool.getInstance().trim(level);
+    }
+
     protected void setReady(final Surface surface, final int width, final int height) {
         //Log.d(TAG, "setReady("+width+", "+height+")");
         mRenderer = new CameraRenderer(this, surface, width, height);
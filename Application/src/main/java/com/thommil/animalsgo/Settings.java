@@ -35,6 +35,17 @@ public class Settings {
     // Landscape mode threshold on orientation
     public static final float[] LANSCAPE_MODE_VERTICAL_TRESHOLDS = new float[]{9f, 6f};
 
+    // Delay before releasing GPU resources of unused plugins (ms)
+    public static final long PLUGIN_IDLE_RELEASE_DELAY = 30000;
+
+    // Back pooled buffers by native memory freed on eviction/trim (GC releases buffers never returned).
+    // Off until capture buffers are returned by their last reader : CaptureBuilder returns them while
+    // CaptureValidator may still read them natively, freed memory would then crash instead of being stale.
+    public static final boolean POOL_NATIVE_BACKING = false;
+
+    // Draw UI sprites as instances on GLES3 (GlSpriteStore), batch path otherwise (not yet verified on devices)
+    public static final boolean UI_INSTANCED = false;
+
 
 
     // Shaders path in assets
@@ -29,7 +29,7 @@ public abstract class CameraPlugin extends Plugin{
                     0.0f,0.0f,
                     1.0f,1.0f,
                     1.0f,0.0f
-            },2);
+            },2, GlBuffer.FORMAT_NORMALIZED_SHORT);
 
     protected GlDrawableBuffer<float[]> mCameraPreviewBuffer;
 
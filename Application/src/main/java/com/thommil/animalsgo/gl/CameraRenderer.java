@@ -17,10 +17,12 @@ import com.thommil.animalsgo.fragments.CameraFragment;
 import com.thommil.animalsgo.gl.libgl.EglSurface;
 import com.thommil.animalsgo.cv.CaptureBuilder;
 import com.thommil.animalsgo.gl.libgl.EglCore;
+import com.thommil.animalsgo.gl.libgl.GlBuffer;
 import com.thommil.animalsgo.gl.libgl.GlFrameBufferObject;
 import com.thommil.animalsgo.gl.libgl.GlIntRect;
 import com.thommil.animalsgo.gl.libgl.GlOperation;
 import com.thommil.animalsgo.gl.libgl.GlTexture;
+import com.thommil.animalsgo.utils.FrameArena;
 
 
 public class CameraRenderer extends HandlerThread implements SurfaceTexture.OnFrameAvailableListener, Handler.Callback {
@@ -84,6 +86,11 @@ public class CameraRenderer extends HandlerThread implements SurfaceTexture.OnFr
     // Plugins manager
     private PluginManager mPluginManager;
 
+    private FrameUniforms mFrameUniforms;
+
+    // Start of rendering for FrameUniforms time (System.nanoTime())
+    private long mStartTime;
+
     // Current CAMERA plugin
     private CameraPlugin mCameraPlugin;
 
@@ -116,6 +123,7 @@ public class CameraRenderer extends HandlerThread implements SurfaceTexture.OnFr
         mSurfaceRatio = (float)width/height;
 
         mPluginManager = PluginManager.getInstance(context);
+        mFrameUniforms = FrameUniforms.getInstance();
 
         mOrientation = Orientation.ORIENTATION_0;
         mState = STATE_PREVIEW;
@@ -128,29 +136,40 @@ public class CameraRenderer extends HandlerThread implements SurfaceTexture.OnFr
         //allocate preview surface
         mWindowSurface = new EglSurface(mEglCore, mSurface, true);
         mWindowSurface.makeCurrent();
+        GlOperation.invalidate();
 
-        mPluginManager.allocate(Plugin.TYPE_CAMERA | Plugin.TYPE_PREVIEW | Plugin.TYPE_UI, mSurfaceRatio);
+        //Per-frame parameters, decides the programs sources (uniform block on GLES3)
+        mFrameUniforms.allocate();
+        mFrameUniforms.setScreenRatio(mSurfaceRatio);
+        mStartTime = System.nanoTime();
 
-        mCameraPlugin = (CameraPlugin) mPluginManager.getPlugin(Settings.getInstance().getString(Settings.PLUGIN_CAMERA));
+        //Active plugins first, others are warmed up in background
+        mCameraPlugin = (CameraPlugin) mPluginManager.acquirePlugin(Settings.getInstance().getString(Settings.PLUGIN_CAMERA), mSurfaceRatio);
         mCameraPlugin.setCameraTransformMatrix(mCameraTransformMatrix);
 
         mPreviewTexture = new SurfaceTexture(mCameraPlugin.getCameraTexture().handle);
+        //The SurfaceTexture is attached to this plugin texture until released
+        mPluginManager.pinPlugin(mCameraPlugin);
         mPreviewTexture.setOnFrameAvailableListener(this);
 
-        mPreviewPlugin = (PreviewPlugin) mPluginManager.getPlugin(Settings.getInstance().getString(Settings.PLUGIN_PREVIEW));
+        mPreviewPlugin = (PreviewPlugin) mPluginManager.acquirePlugin(Settings.getInstance().getString(Settings.PLUGIN_PREVIEW), mSurfaceRatio);
 
-        mUIPlugin = (UIPlugin) mPluginManager.getPlugin(Settings.getInstance().getString(Settings.PLUGIN_UI));
+        mUIPlugin = (UIPlugin) mPluginManager.acquirePlugin(Settings.getInstance().getString(Settings.PLUGIN_UI), mSurfaceRatio);
+        FrameArena.getInstance().reset();
 
         GlOperation.setColorBufferClearValue(0,0,0,1);
         GlOperation.setTestState(GlOperation.TEST_ALL, false);
 
         onSetupComplete();
+
+        mPluginManager.warmUp(mEglCore, mHandler);
     }
 
     public void deinitGL() {
         //Log.d(TAG, "deinitGL()");
         deleteFBOs();
         mPluginManager.free();
+        mFrameUniforms.free();
         mPreviewTexture.release();
         mPreviewTexture.setOnFrameAvailableListener(null);
         mWindowSurface.release();
@@ -314,6 +333,7 @@ public class CameraRenderer extends HandlerThread implements SurfaceTexture.OnFr
     @Override
     public synchronized void onFrameAvailable(SurfaceTexture surfaceTexture) {
         mPreviewTexture.updateTexImage();
+        GlOperation.invalidateTextures();
         mPreviewTexture.getTransformMatrix(mCameraTransformMatrix);
 
         draw();
@@ -332,6 +352,13 @@ public class CameraRenderer extends HandlerThread implements SurfaceTexture.OnFr
         GlOperation.setViewport(0, 0, mSurfaceWidth, mSurfaceHeight);
         GlOperation.clearBuffers(GlOperation.BUFFER_COLOR);
 
+        //Per-frame parameters, uploaded once for all plugins
+        mFrameUniforms.setTransformMatrix(mCameraTransformMatrix);
+        mFrameUniforms.setViewSize(mViewport.width(), mViewport.height());
+        mFrameUniforms.setOrientation(mOrientation);
+        mFrameUniforms.setTime((System.nanoTime() - mStartTime) / 1000000000f);
+        mFrameUniforms.commit();
+
         switch(mState){
             case STATE_PREVIEW :
             case STATE_CAPTURE_NEXT_FRAME:
@@ -373,17 +400,28 @@ public class CameraRenderer extends HandlerThread implements SurfaceTexture.OnFr
                 break;
         }
 
+        //Release transient buffers and unused plugins
+        FrameArena.getInstance().reset();
+        mPluginManager.releaseIdlePlugins();
+        GlBuffer.endFrame();
+        GlOperation.endFrame();
+        ////Log.d(TAG, "Uploaded : " + GlBuffer.getFrameUploadedBytes() + "B");
+        ////Log.d(TAG, "Redundant GL calls : " + GlOperation.getFrameRedundantCalls() + "/" + GlOperation.getFrameStateCalls());
 
         ////Log.d(TAG, "" + (System.currentTimeMillis() - time) + "ms");
     }
 
     private synchronized void setCameraPlugin(final String name){
-        mCameraPlugin = (CameraPlugin) mPluginManager.getPlugin(name);
+        final CameraPlugin previousPlugin = mCameraPlugin;
+        mCameraPlugin = (CameraPlugin) mPluginManager.acquirePlugin(name, mSurfaceRatio);
+        mPluginManager.releasePlugin(previousPlugin);
         mCameraPlugin.setCameraTransformMatrix(mCameraTransformMatrix);
     }
 
     private synchronized void setPreviewPlugin(final String name){
-        mPreviewPlugin = (PreviewPlugin) mPluginManager.getPlugin(name);
+        final PreviewPlugin previousPlugin = mPreviewPlugin;
+        mPreviewPlugin = (PreviewPlugin) mPluginManager.acquirePlugin(name, mSurfaceRatio);
+        mPluginManager.releasePlugin(previousPlugin);
         mPreviewPlugin.setSourceTexture(mCameraPreviewFBOTexture);
     }
 
@@ -0,0 +1,206 @@
+package com.thommil.animalsgo.gl;
+
+import com.thommil.animalsgo.gl.libgl.GlOperation;
+import com.thommil.animalsgo.gl.libgl.GlProgram;
+import com.thommil.animalsgo.gl.libgl.GlUniformBuffer;
+
+/**
+ * Per-frame parameters shared by all plugins programs, filled once per frame by CameraRenderer :
+ *	<ul>
+ * 	<li>GLES3 : one std140 uniform block (FrameBlock) bound to BINDING_POINT, uploaded once per frame</li>
+ * 	<li>GLES2 : plain uniforms set on each program by apply() (cached, unchanged values are skipped)</li>
+ *	</ul>
+ *
+ * Shaders use the members by their names (Plugin.UNIFORM_*) and declare them as plain uniforms
+ * under #ifndef FRAME_BLOCK, the block is declared by prepareSource() on GLES3.
+ *
+ * The block needs ESSL 3.00 sources, the camera sampler (samplerExternalOES) is then only available with
+ * GL_OES_EGL_image_external_essl3. GLES3 GPUs without this extension use the GLES2 path.
+ *
+ * Not thread safe, renderer thread only (except prepareSource()).
+ */
+public class FrameUniforms {
+
+    private static final String TAG = "A_GO/FrameUniforms";
+
+    public static final String BLOCK_NAME = "FrameBlock";
+
+    public static final int BINDING_POINT = 0;
+
+    // Needed by ESSL 3.00 shaders sampling the camera
+    public static final String EXTERNAL_IMAGE_ESSL3_EXTENSION = "GL_OES_EGL_image_external_essl3";
+
+    // Members offsets (floats, std140)
+    private static final int OFFSET_MVP_MATRIX = 0;
+    private static final int OFFSET_VIEW_SIZE = 16;
+    private static final int OFFSET_SCREEN_RATIO = 18;
+    private static final int OFFSET_ORIENTATION = 20;
+    private static final int OFFSET_TIME = 21;
+    private static final int BLOCK_SIZE = 22;
+
+    // Members names in OFFSET_* order
+    private static final String[] MEMBERS = new String[]{
+            Plugin.UNIFORM_MVP_MATRIX,
+            Plugin.UNIFORM_VIEW_SIZE,
+            Plugin.UNIFORM_SCREEN_RATIO,
+            Plugin.UNIFORM_ORIENTATION,
+            Plugin.UNIFORM_TIME
+    };
+
+    private static final String BLOCK_DECLARATION = "#define FRAME_BLOCK\n"
+            + "layout(std140) uniform " + BLOCK_NAME + " {\n"
+            + "    highp mat4 " + Plugin.UNIFORM_MVP_MATRIX + ";\n"
+            + "    highp vec2 " + Plugin.UNIFORM_VIEW_SIZE + ";\n"
+            + "    highp vec2 " + Plugin.UNIFORM_SCREEN_RATIO + ";\n"
+            + "    highp float " + Plugin.UNIFORM_ORIENTATION + ";\n"
+            + "    highp float " + Plugin.UNIFORM_TIME + ";\n"
+            + "};\n";
+
+    private static FrameUniforms sInstance;
+
+    // Current values, BLOCK_SIZE floats in std140 layout
+    private final float[] mValues = new float[BLOCK_SIZE];
+
+    // Uniform buffer, null on GLES2
+    private GlUniformBuffer mUniformBuffer;
+
+    // Block used by programs compiled from now, set by allocate()
+    private volatile boolean mBlockEnabled = false;
+
+    private FrameUniforms(){
+        mValues[OFFSET_SCREEN_RATIO] = mValues[OFFSET_SCREEN_RATIO + 1] = 1f;
+    }
+
+    public static FrameUniforms getInstance(){
+        if(sInstance == null){
+            sInstance = new FrameUniforms();
+        }
+        return sInstance;
+    }
+
+    /**
+     * Allocates the uniform buffer if supported, must be called before plugins programs creation
+     */
+    public void allocate(){
+        //Log.d(TAG, "allocate()");
+        if(mUniformBuffer == null && isBlockSupported()){
+            mUniformBuffer = new GlUniformBuffer(BLOCK_SIZE);
+            mUniformBuffer.set(0, mValues, 0, BLOCK_SIZE);
+            mUniformBuffer.commit();
+            mUniformBuffer.bind(BINDING_POINT);
+        }
+        mBlockEnabled = mUniformBuffer != null;
+    }
+
+    public void free(){
+        //Log.d(TAG, "free()");
+        if(mUniformBuffer != null){
+            mUniformBuffer.free();
+            mUniformBuffer = null;
+        }
+        mBlockEnabled = false;
+    }
+
+    public boolean isBlockEnabled(){
+        return mBlockEnabled;
+    }
+
+    /**
+     * Indicates if the current context supports the block and the ESSL 3.00 sources it needs
+     */
+    public static boolean isBlockSupported(){
+        return GlOperation.getVersion()[0] >= 3 && GlOperation.hasExtension(EXTERNAL_IMAGE_ESSL3_EXTENSION);
+    }
+
+    /**
+     * Prepares an asset shader source, adds the block declaration (ESSL 3.00) if enabled. Can be
+     * called on any thread.
+     *
+     * @param type The shader type GLES20.GL_VERTEX_SHADER | GLES20.GL_FRAGMENT_SHADER
+     * @param source The ESSL 1.00 source
+     */
+    public String prepareSource(final int type, final String source){
+        if(!mBlockEnabled){
+            return source;
+        }
+        return GlProgram.insertHeader(GlProgram.toEssl3(type, source), BLOCK_DECLARATION);
+    }
+
+    /**
+     * Binds the block of a program (GLES3), to call once the program is created or loaded
+     */
+    public void bind(final GlProgram program){
+        if(mBlockEnabled){
+            program.bindUniformBlock(BLOCK_NAME, BINDING_POINT);
+        }
+    }
+
+    /**
+     * Gets the plain uniforms handles of a program (GLES2), -1 for members not used
+     */
+    public int[] getHandles(final GlProgram program){
+        final int[] handles = new int[MEMBERS.length];
+        for(int index=0; index < MEMBERS.length; index++){
+            handles[index] = (!mBlockEnabled && program.hasUniform(MEMBERS[index])) ? program.getUniformHandle(MEMBERS[index]) : -1;
+        }
+        return handles;
+    }
+
+    /**
+     * Sets the frame values on a program in use (GLES2), nothing to do with the block
+     *
+     * @param program The program in use
+     * @param handles The handles from getHandles()
+     */
+    public void apply(final GlProgram program, final int[] handles){
+        if(mBlockEnabled){
+            return;
+        }
+        program.setUniformMatrix4fv(handles[0], mValues, OFFSET_MVP_MATRIX);
+        program.setUniform2f(handles[1], mValues[OFFSET_VIEW_SIZE], mValues[OFFSET_VIEW_SIZE + 1]);
+        program.setUniform2f(handles[2], mValues[OFFSET_SCREEN_RATIO], mValues[OFFSET_SCREEN_RATIO + 1]);
+        program.setUniform1f(handles[3], mValues[OFFSET_ORIENTATION]);
+        program.setUniform1f(handles[4], mValues[OFFSET_TIME]);
+    }
+
+    public void setTransformMatrix(final float[] matrix){
+        System.arraycopy(matrix, 0, mValues, OFFSET_MVP_MATRIX, 16);
+    }
+
+    public void setViewSize(final float width, final float height){
+        mValues[OFFSET_VIEW_SIZE] = width;
+        mValues[OFFSET_VIEW_SIZE + 1] = height;
+    }
+
+    /**
+     * Sets the screen ratio from the surface ratio (width/height), the longest side is scaled
+     */
+    public void setScreenRatio(final float surfaceRatio){
+        if(surfaceRatio < 1){
+            mValues[OFFSET_SCREEN_RATIO] = 1f;
+            mValues[OFFSET_SCREEN_RATIO + 1] = surfaceRatio;
+        }
+        else if(surfaceRatio > 1){
+            mValues[OFFSET_SCREEN_RATIO] = surfaceRatio;
+            mValues[OFFSET_SCREEN_RATIO + 1] = 1f;
+        }
+    }
+
+    public void setOrientation(final int orientation){
+        mValues[OFFSET_ORIENTATION] = orientation;
+    }
+
+    public void setTime(final float time){
+        mValues[OFFSET_TIME] = time;
+    }
+
+    /**
+     * Uploads the block (GLES3) once all values of the frame are set
+     */
+    public void commit(){
+        if(mUniformBuffer != null){
+            mUniformBuffer.set(0, mValues, 0, BLOCK_SIZE);
+            mUniformBuffer.commit();
+        }
+    }
+}
@@ -8,9 +8,13 @@ import com.thommil.animalsgo.Settings;
 import com.thommil.animalsgo.gl.libgl.GlBuffer;
 import com.thommil.animalsgo.gl.libgl.GlIntRect;
 import com.thommil.animalsgo.gl.libgl.GlProgram;
+import com.thommil.animalsgo.gl.libgl.GlProgramCache;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * Define a plugin used by CameraRenderer.
@@ -32,23 +36,70 @@ public abstract class Plugin {
     public static final String ATTRIBUTE_TEXTCOORD = "textCoordAttr";
     public static final String ATTRIBUTE_COLOR = "colorAttr";
 
+    // Per instance attributes of instanced sprites (GlSpriteStore), quad corners use ATTRIBUTE_POSITION
+    public static final String ATTRIBUTE_INSTANCE_POSITION = "instancePositionAttr";
+    public static final String ATTRIBUTE_INSTANCE_SIZE = "instanceSizeAttr";
+    public static final String ATTRIBUTE_INSTANCE_TEXTCOORD = "instanceTextCoordAttr";
+
+    // Attributes locations bound in all programs, vertex layouts (VAOs) can then be shared
+    public static final Map<String, Integer> ATTRIBUTE_LOCATIONS;
+    static {
+        final Map<String, Integer> attributeLocations = new HashMap<>();
+        attributeLocations.put(ATTRIBUTE_POSITION, 0);
+        attributeLocations.put(ATTRIBUTE_TEXTCOORD, 1);
+        attributeLocations.put(ATTRIBUTE_COLOR, 2);
+        attributeLocations.put(ATTRIBUTE_INSTANCE_POSITION, 3);
+        attributeLocations.put(ATTRIBUTE_INSTANCE_SIZE, 4);
+        attributeLocations.put(ATTRIBUTE_INSTANCE_TEXTCOORD, 5);
+        ATTRIBUTE_LOCATIONS = Collections.unmodifiableMap(attributeLocations);
+    }
+
     public static final String UNIFORM_TEXTURE = "texture1i";
     public static final String UNIFORM_MVP_MATRIX = "mvpMatrix4fv";
     public static final String UNIFORM_VIEW_SIZE = "viewSize2f";
     public static final String UNIFORM_SCREEN_RATIO = "screenRatio2f";
+    public static final String UNIFORM_ORIENTATION = "orientation1f";
+    public static final String UNIFORM_TIME = "time1f";
 
     protected Context mContext;
 
     protected GlProgram mProgram;
 
+    protected GlProgramCache mProgramCache;
+
+    // Handles of FrameUniforms members (GLES2), see applyFrameUniforms()
+    protected int[] mFrameUniformHandles;
+
     public void setContext(final Context context){
         this.mContext = context;
     }
 
+    public void setProgramCache(final GlProgramCache programCache){
+        this.mProgramCache = programCache;
+    }
+
     public abstract String getId();
 
     public abstract String getProgramId();
 
+    /**
+     * Preprocessor defines of the program variant used by this plugin, can be called on any thread.
+     * Plugins with defines should also declare them as "public static Map<String, String> programDefines()"
+     * so that their descriptor (warm-up) gets them without instantiating the plugin.
+     *
+     * @return The defines (name -> value) or null to use the shaders as is
+     */
+    public Map<String, String> getProgramDefines(){
+        return null;
+    }
+
+    /**
+     * Key of the program variant used by this plugin, plugins with the same key share the program
+     */
+    public String getProgramKey(){
+        return GlProgram.getVariantKey(this.getProgramId(), this.getProgramDefines());
+    }
+
     public abstract String getName();
 
     public abstract String getSummary();
@@ -59,33 +110,64 @@ public abstract class Plugin {
         //Log.d(TAG, "allocate()");
 
         if(mProgram == null) {
+            mProgram = createProgram();
+        }
+
+        FrameUniforms.getInstance().bind(mProgram);
+        mFrameUniformHandles = FrameUniforms.getInstance().getHandles(mProgram);
+    }
+
+    /**
+     * Sets the per-frame parameters on the program in use (no-op if shared by uniform block)
+     */
+    protected void applyFrameUniforms(){
+        FrameUniforms.getInstance().apply(mProgram, mFrameUniformHandles);
+    }
 
-            InputStream vertexInputStream = null, fragmentInputStream = null;
-            try {
-                vertexInputStream = mContext.getAssets().open(com.thommil.animalsgo.Settings.ASSETS_SHADERS_PATH + this.getProgramId() + ".vert.glsl");
-                fragmentInputStream = mContext.getAssets().open(com.thommil.animalsgo.Settings.ASSETS_SHADERS_PATH + this.getProgramId() + ".frag.glsl");
-
-                mProgram = new GlProgram(vertexInputStream, fragmentInputStream);
-            } catch (IOException ioe) {
-                throw new RuntimeException("Failed to find shaders source : " + ioe);
-            } finally {
-                if (vertexInputStream != null) {
-                    try {
-                        vertexInputStream.close();
-                    } catch (IOException ioe) {
-                        Log.e(TAG, "Failed to close vertex source : " + ioe);
-                    }
+    /**
+     * Compiles (or loads from cache) the plugin program, can be called on any thread owning a GL context
+     */
+    public GlProgram createProgram(){
+        return createProgram(mContext, this.getProgramId(), this.getProgramDefines(), mProgramCache);
+    }
+
+    /**
+     * Compiles (or loads from cache) a program from shaders assets, can be called on any thread owning a GL context
+     *
+     * @param context The context to get assets from
+     * @param programId The program id (shaders files prefix)
+     * @param defines The variant defines, null for none
+     * @param programCache The program binaries cache, null for none
+     */
+    public static GlProgram createProgram(final Context context, final String programId, final Map<String, String> defines, final GlProgramCache programCache){
+        //Log.d(TAG, "createProgram("+programId+")");
+        InputStream vertexInputStream = null, fragmentInputStream = null;
+        try {
+            vertexInputStream = context.getAssets().open(com.thommil.animalsgo.Settings.ASSETS_SHADERS_PATH + programId + ".vert.glsl");
+            fragmentInputStream = context.getAssets().open(com.thommil.animalsgo.Settings.ASSETS_SHADERS_PATH + programId + ".frag.glsl");
+
+            final FrameUniforms frameUniforms = FrameUniforms.getInstance();
+            return new GlProgram(frameUniforms.prepareSource(GLES20.GL_VERTEX_SHADER, GlProgram.readSource(GLES20.GL_VERTEX_SHADER, vertexInputStream)),
+                    frameUniforms.prepareSource(GLES20.GL_FRAGMENT_SHADER, GlProgram.readSource(GLES20.GL_FRAGMENT_SHADER, fragmentInputStream)),
+                    defines, ATTRIBUTE_LOCATIONS, programCache);
+        } catch (IOException ioe) {
+            throw new RuntimeException("Failed to find shaders source : " + ioe);
+        } finally {
+            if (vertexInputStream != null) {
+                try {
+                    vertexInputStream.close();
+                } catch (IOException ioe) {
+                    Log.e(TAG, "Failed to close vertex source : " + ioe);
                 }
-                if (fragmentInputStream != null) {
-                    try {
-                        fragmentInputStream.close();
-                    } catch (IOException ioe) {
-                        Log.e(TAG, "Failed to close fragment source : " + ioe);
-                    }
+            }
+            if (fragmentInputStream != null) {
+                try {
+                    fragmentInputStream.close();
+                } catch (IOException ioe) {
+                    Log.e(TAG, "Failed to close fragment source : " + ioe);
                 }
             }
         }
-
     }
 
     public void free(){
@@ -0,0 +1,47 @@
+package com.thommil.animalsgo.gl;
+
+import com.thommil.animalsgo.gl.libgl.GlProgram;
+
+import java.util.Map;
+
+/**
+ * Plugin metadata available without instantiating the plugin.
+ *
+ * Instances are generated in PluginRegistry from plugins_list by Application/build.gradle.
+ */
+public abstract class PluginDescriptor {
+
+    public final String id;
+
+    public final int type;
+
+    public final String programId;
+
+    public PluginDescriptor(final String id, final int type, final String programId){
+        this.id = id;
+        this.type = type;
+        this.programId = programId;
+    }
+
+    /**
+     * Preprocessor defines of the plugin program variant (same as Plugin.getProgramDefines()),
+     * generated for plugins declaring a static programDefines() method
+     *
+     * @return The defines (name -> value) or null to use the shaders as is
+     */
+    public Map<String, String> getProgramDefines(){
+        return null;
+    }
+
+    /**
+     * Key of the plugin program variant (same as Plugin.getProgramKey())
+     */
+    public String getProgramKey(){
+        return GlProgram.getVariantKey(programId, getProgramDefines());
+    }
+
+    /**
+     * Creates a new instance of the plugin
+     */
+    public abstract Plugin create();
+}
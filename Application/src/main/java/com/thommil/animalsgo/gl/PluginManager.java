@@ -1,29 +1,80 @@
 package com.thommil.animalsgo.gl;
 
 import android.content.Context;
+import android.opengl.EGL14;
+import android.opengl.EGLSurface;
+import android.os.Handler;
+import android.util.Log;
 
-import com.thommil.animalsgo.R;
+import com.thommil.animalsgo.Settings;
+import com.thommil.animalsgo.gl.libgl.EglCore;
+import com.thommil.animalsgo.gl.libgl.GlOperation;
 import com.thommil.animalsgo.gl.libgl.GlProgram;
+import com.thommil.animalsgo.gl.libgl.GlProgramCache;
 
+import java.io.File;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 public class PluginManager {
 
     private static final String TAG = "A_GO/PluginManager";
 
+    // Program binaries cache directory (in app cache dir)
+    private static final String PROGRAM_CACHE_DIR = "programs";
+
+    // Warm-up thread name
+    private static final String WARM_UP_THREAD_NAME = "PluginWarmUpThread";
+
     private static PluginManager sPluginManagerInstance;
 
+    private final Map<String, PluginDescriptor> mDescriptorsMap;
     private final Map<String, Plugin> mPluginsMap;
+
+    // Compiled programs by variant key (Plugin.getProgramKey())
     private final Map<String, GlProgram> mProgramsMap;
 
+    // Number of allocated plugins using each program of mProgramsMap
+    private final Map<String, Integer> mProgramsReferences;
+
+    // Number of users of allocated plugins (renderer thread)
+    private final Map<String, Integer> mPluginsUsers;
+
+    // Release time of allocated plugins without users (System.nanoTime())
+    private final Map<String, Long> mIdlePlugins;
+
+    // Plugins never released while idle (resources used outside of drawing)
+    private final Set<String> mPinnedPlugins;
+
+    // Delay before releasing unused plugins
+    private long mIdleReleaseDelay = Settings.PLUGIN_IDLE_RELEASE_DELAY * 1000000L;
+
+    // Current warm-up thread, null if none
+    private WarmUpThread mWarmUpThread;
+
+    private final GlProgramCache mProgramCache;
+
     private final Context mContext;
 
     private PluginManager(final Context context){
+        mDescriptorsMap = new HashMap<>();
         mPluginsMap = new HashMap<>();
         mProgramsMap = new HashMap<>();
+        mProgramsReferences = new HashMap<>();
+        mPluginsUsers = new HashMap<>();
+        mIdlePlugins = new HashMap<>();
+        mPinnedPlugins = new HashSet<>();
         mContext = context;
-        loadPlugins();
+        mProgramCache = new GlProgramCache(new File(context.getCacheDir(), PROGRAM_CACHE_DIR));
+        for(final PluginDescriptor descriptor : PluginRegistry.PLUGINS){
+            mDescriptorsMap.put(descriptor.id, descriptor);
+        }
     }
 
     public static final PluginManager getInstance(final Context context){
@@ -33,56 +84,351 @@ public class PluginManager {
         return sPluginManagerInstance;
     }
 
+    /**
+     * Gets a plugin instance, created on first call (GPU resources are not allocated)
+     *
+     * @param pluginId The plugin id
+     * @return The plugin or null if not registered
+     */
     public Plugin getPlugin(final String pluginId){
-        return mPluginsMap.get(pluginId);
-    }
-
-    private void loadPlugins(){
-        //Log.d(TAG, "allocate()");
-        try {
-            for (final String pluginClassname : mContext.getResources().getStringArray(R.array.plugins_list)) {
-                final Class pluginClass = this.getClass().getClassLoader().loadClass(pluginClassname);
-                final Plugin plugin = (Plugin) pluginClass.newInstance();
-                plugin.setContext(mContext);
-                //Log.d(TAG, "Plugin "+ plugin.getId()+" created");
-                mPluginsMap.put(plugin.getId(), plugin);
+        Plugin plugin = mPluginsMap.get(pluginId);
+        if(plugin == null){
+            final PluginDescriptor descriptor = mDescriptorsMap.get(pluginId);
+            if(descriptor == null){
+                return null;
             }
-        }catch(ClassNotFoundException cne){
-            throw new RuntimeException("Missing plugin class : "+cne);
-        }catch(InstantiationException ie){
-            throw new RuntimeException("Failed to instanciate plugin : "+ie);
-        }catch(IllegalAccessException iae){
-            throw new RuntimeException("Failed to instanciate plugin : "+iae);
+            plugin = descriptor.create();
+            plugin.setContext(mContext);
+            plugin.setProgramCache(mProgramCache);
+            //Log.d(TAG, "Plugin "+ plugin.getId()+" created");
+            mPluginsMap.put(pluginId, plugin);
         }
+        return plugin;
     }
 
-    public void allocate(final int filter, final float surfaceRatio){
-        //Log.d(TAG, "destroy()");
-        for(final Plugin plugin : mPluginsMap.values()){
-            if((plugin.getType() & filter) > 0){
-                if(mProgramsMap.containsKey(plugin.getProgramId())){
-                    plugin.setProgram(mProgramsMap.get(plugin.getProgramId()));
-                    plugin.allocate(surfaceRatio);
-                }
-                else{
-                    plugin.allocate(surfaceRatio);
-                    mProgramsMap.put(plugin.getProgramId(), plugin.getProgram());
-                }
+    /**
+     * Lists the registered plugins of the given types without instantiating them
+     *
+     * @param filter The types mask (Plugin.TYPE_*)
+     * @return The plugins descriptors in plugins_list order
+     */
+    public List<PluginDescriptor> getDescriptors(final int filter){
+        final List<PluginDescriptor> descriptors = new ArrayList<>();
+        for(final PluginDescriptor descriptor : PluginRegistry.PLUGINS){
+            if((descriptor.type & filter) > 0){
+                descriptors.add(descriptor);
+            }
+        }
+        return descriptors;
+    }
+
+    /**
+     * Gets a plugin for drawing, its GPU resources are allocated on first use. Must be balanced
+     * by a call to releasePlugin() once the plugin is not drawn anymore.
+     *
+     * @param pluginId The plugin id
+     * @param surfaceRatio The current surface ratio
+     * @return The allocated plugin
+     */
+    public Plugin acquirePlugin(final String pluginId, final float surfaceRatio){
+        //Log.d(TAG, "acquirePlugin("+pluginId+")");
+        final Plugin plugin = getPlugin(pluginId);
+        final Integer users = mPluginsUsers.get(pluginId);
+        if(users == null){
+            allocate(plugin, surfaceRatio);
+            mPluginsUsers.put(pluginId, 1);
+        }
+        else{
+            mPluginsUsers.put(pluginId, users + 1);
+        }
+        mIdlePlugins.remove(pluginId);
+        return plugin;
+    }
+
+    /**
+     * Releases a plugin acquired by acquirePlugin(), its GPU resources are freed by
+     * releaseIdlePlugins() once unused for the idle release delay.
+     *
+     * @param plugin The plugin to release
+     */
+    public void releasePlugin(final Plugin plugin){
+        //Log.d(TAG, "releasePlugin("+plugin.getId()+")");
+        final Integer users = mPluginsUsers.get(plugin.getId());
+        if(users == null || users == 0){
+            return;
+        }
+        mPluginsUsers.put(plugin.getId(), users - 1);
+        if(users == 1){
+            mIdlePlugins.put(plugin.getId(), System.nanoTime());
+        }
+    }
+
+    /**
+     * Frees plugins unused for more than the idle release delay, programs are freed
+     * with their last plugin. Called by the renderer (once per frame).
+     */
+    public void releaseIdlePlugins(){
+        if(mIdlePlugins.isEmpty()){
+            return;
+        }
+        final long now = System.nanoTime();
+        final Iterator<Map.Entry<String, Long>> idlePlugins = mIdlePlugins.entrySet().iterator();
+        while(idlePlugins.hasNext()){
+            final Map.Entry<String, Long> idlePlugin = idlePlugins.next();
+            if(mPinnedPlugins.contains(idlePlugin.getKey())){
+                continue;
+            }
+            if(now - idlePlugin.getValue() >= mIdleReleaseDelay){
+                idlePlugins.remove();
+                free(mPluginsMap.get(idlePlugin.getKey()));
+            }
+        }
+    }
+
+    /**
+     * Keeps a plugin allocated even once released, until unpinned or free(). Used for plugins
+     * owning resources bound outside of drawing (ie the camera texture of the SurfaceTexture).
+     *
+     * @param plugin The plugin to pin
+     */
+    public void pinPlugin(final Plugin plugin){
+        mPinnedPlugins.add(plugin.getId());
+    }
+
+    /**
+     * Allows a pinned plugin to be released, freed after the idle release delay if unused
+     *
+     * @param plugin The plugin to unpin
+     */
+    public void unpinPlugin(final Plugin plugin){
+        if(mPinnedPlugins.remove(plugin.getId()) && mIdlePlugins.containsKey(plugin.getId())){
+            mIdlePlugins.put(plugin.getId(), System.nanoTime());
+        }
+    }
+
+    /**
+     * Sets the delay before releasing unused plugins
+     *
+     * @param idleReleaseDelay The delay in ms (0 to release on next releaseIdlePlugins())
+     */
+    public void setIdleReleaseDelay(final long idleReleaseDelay){
+        mIdleReleaseDelay = idleReleaseDelay * 1000000L;
+    }
+
+    /**
+     * Indicates if a plugin has its GPU resources allocated
+     */
+    public boolean isAllocated(final String pluginId){
+        return mPluginsUsers.containsKey(pluginId);
+    }
+
+    /*
+     * Allocates a plugin, its program is compiled synchronously if not yet available (ie not yet warmed up)
+     */
+    private void allocate(final Plugin plugin, final float surfaceRatio){
+        //final long startTime = System.nanoTime();
+        final String programKey = plugin.getProgramKey();
+        if(mProgramsMap.containsKey(programKey)){
+            plugin.setProgram(mProgramsMap.get(programKey));
+            plugin.allocate(surfaceRatio);
+        }
+        else{
+            plugin.allocate(surfaceRatio);
+            mProgramsMap.put(programKey, plugin.getProgram());
+        }
+        final Integer references = mProgramsReferences.get(programKey);
+        mProgramsReferences.put(programKey, (references == null) ? 1 : references + 1);
+        //Log.d(TAG, "Plugin " + plugin.getId() + " allocated in " + (System.nanoTime() - startTime) / 1000000 + "ms, program cache hits/misses/rejects : "
+        //        + mProgramCache.getHits() + "/" + mProgramCache.getMisses() + "/" + mProgramCache.getRejects());
+    }
+
+    /*
+     * Frees an allocated plugin and its program if not used by another plugin
+     */
+    private void free(final Plugin plugin){
+        //Log.d(TAG, "Plugin " + plugin.getId() + " freed");
+        final String programKey = plugin.getProgramKey();
+        mPluginsUsers.remove(plugin.getId());
+        plugin.free();
+        final Integer references = mProgramsReferences.get(programKey);
+        if(references == null || references <= 1){
+            mProgramsReferences.remove(programKey);
+            final GlProgram program = mProgramsMap.remove(programKey);
+            if(program != null){
+                program.free();
+            }
+        }
+        else{
+            mProgramsReferences.put(programKey, references - 1);
+        }
+    }
 
+    /**
+     * Compiles the programs of plugins not yet allocated on a background thread owning a context
+     * shared with the renderer one. Each program is published to the renderer thread through its
+     * handler, plugins using it are allocated on their first acquirePlugin().
+     *
+     * @param eglCore The renderer EGL core (context to share)
+     * @param rendererHandler The renderer thread handler
+     */
+    public void warmUp(final EglCore eglCore, final Handler rendererHandler){
+        //Log.d(TAG, "warmUp()");
+        cancelWarmUp();
+        //Variants are known from descriptors, plugins are not instantiated, one per program variant
+        final Map<String, PluginDescriptor> variants = new LinkedHashMap<>();
+        for(final PluginDescriptor descriptor : PluginRegistry.PLUGINS){
+            if(!mPluginsUsers.containsKey(descriptor.id)){
+                final String programKey = descriptor.getProgramKey();
+                if(!mProgramsMap.containsKey(programKey) && !variants.containsKey(programKey)){
+                    variants.put(programKey, descriptor);
+                }
             }
         }
+        if(!variants.isEmpty()){
+            mWarmUpThread = new WarmUpThread(eglCore, rendererHandler, variants);
+            mWarmUpThread.start();
+        }
+    }
+
+    /**
+     * Stops the warm-up thread and waits for its end (before renderer context release)
+     */
+    public void cancelWarmUp(){
+        if(mWarmUpThread != null){
+            mWarmUpThread.cancel();
+            mWarmUpThread = null;
+        }
     }
 
+    /*
+     * Publishes a program compiled by the warm-up thread, called on renderer thread
+     */
+    private void publish(final WarmUpThread warmUpThread, final String programKey, final GlProgram program){
+        if(warmUpThread != mWarmUpThread || mProgramsMap.containsKey(programKey)){
+            //Cancelled or already compiled on demand, the renderer context shares the program
+            program.free();
+        }
+        else{
+            //Kept without references until a plugin using it is acquired
+            mProgramsMap.put(programKey, program);
+        }
+    }
 
     public void free(){
         //Log.d(TAG, "destroy()");
-        for(final Plugin plugin : mPluginsMap.values()){
-            plugin.free();
+        cancelWarmUp();
+        //Only allocated plugins own GPU resources
+        for(final String pluginId : mPluginsUsers.keySet()){
+            mPluginsMap.get(pluginId).free();
         }
         for(final GlProgram program : mProgramsMap.values()){
             program.free();
         }
         mProgramsMap.clear();
+        mProgramsReferences.clear();
+        mPluginsUsers.clear();
+        mIdlePlugins.clear();
+        mPinnedPlugins.clear();
+    }
+
+    /**
+     * Background thread compiling programs on a shared context
+     */
+    private class WarmUpThread extends Thread {
+
+        private final EglCore mRendererEglCore;
+        private final Handler mRendererHandler;
+        private final Map<String, PluginDescriptor> mVariants;
+        private volatile boolean mCancelled = false;
+
+        WarmUpThread(final EglCore rendererEglCore, final Handler rendererHandler, final Map<String, PluginDescriptor> variants){
+            super(WARM_UP_THREAD_NAME);
+            mRendererEglCore = rendererEglCore;
+            mRendererHandler = rendererHandler;
+            mVariants = variants;
+        }
+
+        void cancel(){
+            mCancelled = true;
+            try {
+                join();
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public void run() {
+            //final long startTime = System.nanoTime();
+            final EglCore eglCore;
+            try {
+                eglCore = new EglCore(mRendererEglCore.getContext(), null);
+            } catch (RuntimeException re) {
+                //Plugins will be allocated on demand by the renderer
+                Log.e(TAG, "Failed to create warm-up context : " + re);
+                return;
+            }
+            EGLSurface eglSurface = EGL14.EGL_NO_SURFACE;
+            try {
+                //Surfaceless if supported, 1x1 pbuffer otherwise
+                if (!eglCore.makeCurrentNoSurface()) {
+                    eglSurface = eglCore.createOffscreenSurface(1, 1);
+                    eglCore.makeCurrent(eglSurface);
+                }
+
+                for (final Map.Entry<String, PluginDescriptor> variant : mVariants.entrySet()) {
+                    if (mCancelled) {
+                        break;
+                    }
+                    final String programKey = variant.getKey();
+                    final GlProgram program;
+                    try {
+                        final PluginDescriptor descriptor = variant.getValue();
+                        program = Plugin.createProgram(mContext, descriptor.programId, descriptor.getProgramDefines(), mProgramCache);
+                    } catch (RuntimeException re) {
+                        //Compiled again (and reported) on demand by the renderer
+                        Log.e(TAG, "Failed to warm up " + programKey + " : " + re);
+                        continue;
+                    }
+                    if (mCancelled) {
+                        //Not published, deleted while the warm-up context exists
+                        delete(program);
+                        break;
+                    }
+                    //Shared objects must be complete before use in renderer context
+                    GlOperation.getBackend().glFinish();
+                    final WarmUpThread warmUpThread = this;
+                    mRendererHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            publish(warmUpThread, programKey, program);
+                        }
+                    });
+                }
+            } catch (RuntimeException re) {
+                Log.e(TAG, "Failed to make warm-up context current : " + re);
+            } finally {
+                if (eglSurface != EGL14.EGL_NO_SURFACE) {
+                    eglCore.releaseSurface(eglSurface);
+                }
+                eglCore.release();
+            }
+            //Log.d(TAG, "Plugins warmed up in " + (System.nanoTime() - startTime) / 1000000 + "ms");
+        }
+
+        /*
+         * Deletes a program through the backend only, GlProgram.free() updates the shadowed
+         * states of GlOperation which belong to the renderer thread
+         */
+        private void delete(final GlProgram program){
+            GlOperation.getBackend().glDeleteProgram(program.programHandle);
+            if (program.vertexShaderHandle != GlProgram.UNBIND_HANDLE) {
+                GlOperation.getBackend().glDeleteShader(program.vertexShaderHandle);
+            }
+            if (program.fragmentShaderHandle != GlProgram.UNBIND_HANDLE) {
+                GlOperation.getBackend().glDeleteShader(program.fragmentShaderHandle);
+            }
+        }
     }
 
 }
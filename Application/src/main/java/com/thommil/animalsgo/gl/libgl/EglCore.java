@@ -23,6 +23,7 @@ public final class EglCore {
     private EGLContext mEGLContext = EGL14.EGL_NO_CONTEXT;
     private EGLConfig mEGLConfig = null;
     private int mGlVersion = -1;
+    private boolean mShared = false;
 
 
     public EglCore() {
@@ -37,6 +38,7 @@ public final class EglCore {
         if (sharedContext == null) {
             sharedContext = EGL14.EGL_NO_CONTEXT;
         }
+        mShared = sharedContext != EGL14.EGL_NO_CONTEXT;
 
         mEGLDisplay = EGL14.eglGetDisplay(EGL14.EGL_DEFAULT_DISPLAY);
         if (mEGLDisplay == EGL14.EGL_NO_DISPLAY) {
@@ -98,7 +100,10 @@ public final class EglCore {
                     EGL14.EGL_NO_CONTEXT);
             EGL14.eglDestroyContext(mEGLDisplay, mEGLContext);
             EGL14.eglReleaseThread();
-            EGL14.eglTerminate(mEGLDisplay);
+            // The display is still used by the sharing context
+            if (!mShared) {
+                EGL14.eglTerminate(mEGLDisplay);
+            }
         }
 
         mEGLDisplay = EGL14.EGL_NO_DISPLAY;
@@ -117,6 +122,10 @@ public final class EglCore {
         }
     }
 
+    public EGLContext getContext() {
+        return mEGLContext;
+    }
+
     public void releaseSurface(EGLSurface eglSurface) {
         EGL14.eglDestroySurface(mEGLDisplay, eglSurface);
     }
@@ -172,6 +181,10 @@ public final class EglCore {
         }
     }
 
+    public boolean makeCurrentNoSurface() {
+        return EGL14.eglMakeCurrent(mEGLDisplay, EGL14.EGL_NO_SURFACE, EGL14.EGL_NO_SURFACE, mEGLContext);
+    }
+
     public void makeNothingCurrent() {
         if (!EGL14.eglMakeCurrent(mEGLDisplay, EGL14.EGL_NO_SURFACE, EGL14.EGL_NO_SURFACE,
                 EGL14.EGL_NO_CONTEXT)) {
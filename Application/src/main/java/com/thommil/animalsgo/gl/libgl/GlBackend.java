@@ -0,0 +1,128 @@
+package com.thommil.animalsgo.gl.libgl;
+
+import android.graphics.Bitmap;
+
+import java.nio.Buffer;
+
+/**
+ * GL entry points used by libgl and plugins :
+ *	<ul>
+ * 	<li>{@link GlesBackend} calls GLES20/GLES30 (production)</li>
+ * 	<li>RecordingGlBackend (unit tests) emulates objects and bindings in memory (headless runs, call counts)</li>
+ *	</ul>
+ *
+ * The current backend is set by GlOperation.setBackend(), methods follow GLES20/GLES30 signatures.
+ *
+ * 	@author Thomas MILLET
+ *
+ */
+public interface GlBackend {
+
+	//States
+	void glEnable(int cap);
+	void glDisable(int cap);
+	void glViewport(int x, int y, int width, int height);
+	void glScissor(int x, int y, int width, int height);
+	void glBlendColor(float red, float green, float blue, float alpha);
+	void glBlendFunc(int sfactor, int dfactor);
+	void glBlendEquation(int mode);
+	void glStencilFunc(int func, int ref, int mask);
+	void glStencilOp(int fail, int zfail, int zpass);
+	void glStencilMask(int mask);
+	void glDepthFunc(int func);
+	void glDepthMask(boolean flag);
+	void glColorMask(boolean red, boolean green, boolean blue, boolean alpha);
+	void glFrontFace(int mode);
+	void glCullFace(int mode);
+	void glClearColor(float red, float green, float blue, float alpha);
+	void glClearDepthf(float depth);
+	void glClearStencil(int s);
+	void glClear(int mask);
+	void glFinish();
+
+	//Queries
+	int glGetError();
+	String glGetString(int name);
+	void glGetIntegerv(int pname, int[] params, int offset);
+	void glGetFloatv(int pname, float[] params, int offset);
+
+	//Buffers & VAOs
+	void glGenBuffers(int n, int[] buffers, int offset);
+	void glDeleteBuffers(int n, int[] buffers, int offset);
+	void glBindBuffer(int target, int buffer);
+	void glBufferData(int target, int size, Buffer data, int usage);
+	void glBufferSubData(int target, int offset, int size, Buffer data);
+	void glBindBufferBase(int target, int index, int buffer);
+	Buffer glMapBufferRange(int target, int offset, int length, int access);
+	boolean glUnmapBuffer(int target);
+	void glGenVertexArrays(int n, int[] arrays, int offset);
+	void glDeleteVertexArrays(int n, int[] arrays, int offset);
+	void glBindVertexArray(int array);
+	long glFenceSync(int condition, int flags);
+	int glClientWaitSync(long sync, int flags, long timeout);
+	void glDeleteSync(long sync);
+
+	//Attributes & draws
+	void glEnableVertexAttribArray(int index);
+	void glDisableVertexAttribArray(int index);
+	void glVertexAttribPointer(int index, int size, int type, boolean normalized, int stride, int offset);
+	void glVertexAttribPointer(int index, int size, int type, boolean normalized, int stride, Buffer ptr);
+	void glVertexAttribDivisor(int index, int divisor);
+	void glDrawArrays(int mode, int first, int count);
+	void glDrawElements(int mode, int count, int type, int offset);
+	void glDrawElements(int mode, int count, int type, Buffer indices);
+	void glDrawArraysInstanced(int mode, int first, int count, int instanceCount);
+
+	//Textures
+	void glActiveTexture(int texture);
+	void glGenTextures(int n, int[] textures, int offset);
+	void glDeleteTextures(int n, int[] textures, int offset);
+	void glBindTexture(int target, int texture);
+	void glTexParameteri(int target, int pname, int param);
+	void glTexImage2D(int target, int level, int internalformat, int width, int height, int border, int format, int type, Buffer pixels);
+	void glTexImage2D(int target, int level, int internalformat, Bitmap bitmap);
+	void glGenerateMipmap(int target);
+
+	//Programs
+	int glCreateShader(int type);
+	void glShaderSource(int shader, String string);
+	void glCompileShader(int shader);
+	void glGetShaderiv(int shader, int pname, int[] params, int offset);
+	void glDeleteShader(int shader);
+	int glCreateProgram();
+	void glAttachShader(int program, int shader);
+	void glBindAttribLocation(int program, int index, String name);
+	void glLinkProgram(int program);
+	void glGetProgramiv(int program, int pname, int[] params, int offset);
+	String glGetProgramInfoLog(int program);
+	void glDeleteProgram(int program);
+	void glProgramParameteri(int program, int pname, int value);
+	void glGetProgramBinary(int program, int bufSize, int[] length, int lengthOffset, int[] binaryFormat, int binaryFormatOffset, Buffer binary);
+	void glProgramBinary(int program, int binaryFormat, Buffer binary, int length);
+	void glUseProgram(int program);
+	int glGetAttribLocation(int program, String name);
+	String glGetActiveAttrib(int program, int index, int[] size, int sizeOffset, int[] type, int typeOffset);
+	String glGetActiveUniform(int program, int index, int[] size, int sizeOffset, int[] type, int typeOffset);
+	int glGetUniformLocation(int program, String name);
+	int glGetUniformBlockIndex(int program, String uniformBlockName);
+	void glUniformBlockBinding(int program, int uniformBlockIndex, int uniformBlockBinding);
+	void glUniform1i(int location, int x);
+	void glUniform1f(int location, float x);
+	void glUniform2f(int location, float x, float y);
+	void glUniform3f(int location, float x, float y, float z);
+	void glUniform4f(int location, float x, float y, float z, float w);
+	void glUniformMatrix4fv(int location, int count, boolean transpose, float[] value, int offset);
+
+	//Framebuffers & renderbuffers
+	void glGenFramebuffers(int n, int[] framebuffers, int offset);
+	void glDeleteFramebuffers(int n, int[] framebuffers, int offset);
+	void glBindFramebuffer(int target, int framebuffer);
+	void glFramebufferTexture2D(int target, int attachment, int textarget, int texture, int level);
+	void glFramebufferRenderbuffer(int target, int attachment, int renderbuffertarget, int renderbuffer);
+	int glCheckFramebufferStatus(int target);
+	void glGenRenderbuffers(int n, int[] renderbuffers, int offset);
+	void glDeleteRenderbuffers(int n, int[] renderbuffers, int offset);
+	void glBindRenderbuffer(int target, int renderbuffer);
+	void glRenderbufferStorage(int target, int internalformat, int width, int height);
+	void glReadPixels(int x, int y, int width, int height, int format, int type, Buffer pixels);
+}
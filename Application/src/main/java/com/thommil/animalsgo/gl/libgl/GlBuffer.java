@@ -2,6 +2,7 @@ package com.thommil.animalsgo.gl.libgl;
 
 import java.nio.Buffer;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.FloatBuffer;
 import java.nio.IntBuffer;
 import java.nio.ShortBuffer;
@@ -13,13 +14,17 @@ import android.opengl.GLES30;
 import android.util.Log;
 
 import com.thommil.animalsgo.utils.ByteBufferPool;
+import com.thommil.animalsgo.utils.FrameArena;
 
 /**
  * Buffer abstraction class :
  * 		<ul>
  * 			<li>build underlying buffer based on array of Chunks</li>
- * 			<li>fill the buffer using interleaves and stride</li>
+ * 			<li>fill the buffer using interleaves and stride (bulk copies through an interleave plan)</li>
+ * 			<li>compact chunk formats (half float, normalized short/byte) converted at commit</li>
  *  		<li>allows to upload buffer content to VBOs & VAOs</li>
+ *  		<li>streaming mode for data rewritten every frame (ring of VBO segments)</li>
+ *  		<li>only dirty ranges are uploaded on commit</li>
  *  		<li>underlined pools for preformances</li>
  *  		<li>not thread safe !</li>
  *  	</ul>
@@ -54,6 +59,11 @@ public class GlBuffer<E>{
 	 */
 	public static final int MODE_VAO = 0x02;
 
+	/**
+	 * Mode streaming VBO (ring of segments rewritten at each push)
+	 */
+	public static final int MODE_STREAM = 0x03;
+
 	/**
 	 * Alias for BYTE in OpenGL for inner data type
 	 */
@@ -73,6 +83,36 @@ public class GlBuffer<E>{
 	 * Alias for FLOAT in OpenGL for inner data type
 	 */
 	public static final int TYPE_FLOAT = GLES20.GL_FLOAT;
+
+	/**
+	 * Alias for HALF FLOAT in OpenGL for inner data type (GLES 3.0)
+	 */
+	public static final int TYPE_HALF_FLOAT = GLES30.GL_HALF_FLOAT;
+
+	/**
+	 * Chunk format : data stored as is
+	 */
+	public static final int FORMAT_NATIVE = 0x00;
+
+	/**
+	 * Chunk format : float[] data stored as 16 bits floats (GLES 3.0)
+	 */
+	public static final int FORMAT_HALF_FLOAT = 0x01;
+
+	/**
+	 * Chunk format : float[] data in [0,1] stored as normalized unsigned shorts
+	 */
+	public static final int FORMAT_NORMALIZED_SHORT = 0x02;
+
+	/**
+	 * Chunk format : float[] data in [0,1] stored as normalized unsigned bytes
+	 */
+	public static final int FORMAT_NORMALIZED_BYTE = 0x03;
+
+	/**
+	 * Alignment in bytes of attributes in a packed layout
+	 */
+	public static final int PACKED_ALIGNMENT = 4;
 	
 	/**
 	 * Handle to use to unbind current buffer
@@ -104,6 +144,36 @@ public class GlBuffer<E>{
 	 */
 	public static final int TARGET_ELEMENT_ARRAY_BUFFER = GLES20.GL_ELEMENT_ARRAY_BUFFER;
 
+	/**
+	 * Maximum number of dirty ranges uploaded separately, the whole buffer is uploaded above
+	 */
+	public static final int MAX_DIRTY_RANGES = 4;
+
+	/**
+	 * Dirty ranges separated by less bytes are merged (an upload call costs more than a few bytes)
+	 */
+	public static final int DIRTY_MERGE_GAP = 256;
+
+	/**
+	 * Above this ratio of dirty bytes, the whole buffer is uploaded in one call
+	 */
+	public static final float FULL_UPLOAD_RATIO = 0.75f;
+
+	/**
+	 * Number of segments in a streaming VBO (frame being written, frames queued on GPU)
+	 */
+	public static final int STREAM_SEGMENTS = 3;
+
+	/**
+	 * Alignment in bytes of streaming segments
+	 */
+	public static final int STREAM_ALIGNMENT = 64;
+
+	/**
+	 * Maximum wait on a segment fence in ns, the segment is then mapped synchronized
+	 */
+	public static final long STREAM_FENCE_TIMEOUT = 16000000L;
+
 	/**
 	 * Contains all the Buffer chunks
 	 */
@@ -174,6 +244,63 @@ public class GlBuffer<E>{
      */
     public int[] vertexAttribHandles;
 
+    /**
+     * Offset in bytes of data to draw in VBO (current segment in MODE_STREAM)
+     */
+    protected int mDrawOffset = 0;
+
+    /**
+     * Size in bytes of a streaming segment
+     */
+    protected int mStreamSegmentSize = 0;
+
+    /**
+     * Current streaming segment, -1 before first push
+     */
+    protected int mStreamSegment = -1;
+
+    /**
+     * Fences on streaming segments (GLES3 only, null on GLES2)
+     */
+    protected long[] mStreamFences;
+
+    /**
+     * Sorted dirty ranges in bytes (start inclusive, end exclusive)
+     */
+    protected final int[] mDirtyStarts = new int[MAX_DIRTY_RANGES];
+    protected final int[] mDirtyEnds = new int[MAX_DIRTY_RANGES];
+
+    /**
+     * Number of dirty ranges
+     */
+    protected int mDirtyCount = 0;
+
+    /**
+     * Whole buffer is dirty
+     */
+    protected boolean mDirtyAll = false;
+
+    /**
+     * Bytes uploaded to VBOs in current frame (GL thread only)
+     */
+    protected static long sUploadedBytes = 0;
+
+    /**
+     * Bytes uploaded to VBOs during last frame
+     */
+    private static long sFrameUploadedBytes = 0;
+
+    /**
+     * Interleave plan of current layout, built on first commit
+     */
+    private InterleavePlan mInterleavePlan;
+
+    /**
+     * Reusable array for single chunk commits
+     */
+    @SuppressWarnings("unchecked")
+    private final Chunk<E>[] mSingleChunk = new Chunk[1];
+
 	/**
 	 * Constructor
 	 */
@@ -191,19 +318,34 @@ public class GlBuffer<E>{
 			//Datasize
 			this.datasize = this.chunks[0].datasize;
 
+			//Mixed types or formats -> packed byte layout
+			boolean packed = false;
+			for(Chunk<E> chunk : this.chunks){
+				packed |= (chunk.format != FORMAT_NATIVE || chunk.datatype != this.datatype);
+			}
+			if(packed){
+				this.datatype = TYPE_BYTE;
+				this.datasize = Byte.BYTES;
+			}
+
             int currentPosition = 0;
-            int index=0;
             //First pass -> size & position
             for(Chunk<E> chunk : this.chunks){
                 //BufferSize
                 this.size += chunk.size;
                 //Position
                 chunk.offset = currentPosition;
-                chunk.position = currentPosition / chunk.datasize;
+                chunk.position = currentPosition / this.datasize;
                 currentPosition += chunk.datasize * chunk.components;
+                if(packed){
+                    currentPosition = (currentPosition + PACKED_ALIGNMENT - 1) & ~(PACKED_ALIGNMENT - 1);
+                }
             }
             //Stride
             this.stride = currentPosition;
+            if(packed){
+                this.size = this.count * this.stride;
+            }
 		}
 	}
 	
@@ -213,9 +355,9 @@ public class GlBuffer<E>{
 	public GlBuffer bind(){
 		//Log.d(TAG,"bind()");
         if(mVaoHandle != UNBIND_HANDLE){
-            GLES30.glBindVertexArray(mVaoHandle);
+            GlOperation.bindVertexArray(mVaoHandle);
         }
-        GLES20.glBindBuffer(this.target, this.handle);
+        GlOperation.bindBuffer(this.target, this.handle);
 		return this;
 	}
 
@@ -235,9 +377,9 @@ public class GlBuffer<E>{
 	 */
 	public GlBuffer unbind(){
 		//Log.d(TAG,"unbind()");
-		GLES20.glBindBuffer(this.target, this.UNBIND_HANDLE);
+		GlOperation.bindBuffer(this.target, this.UNBIND_HANDLE);
 		if(mVaoHandle != UNBIND_HANDLE){
-            GLES30.glBindVertexArray(UNBIND_HANDLE);
+            GlOperation.bindVertexArray(UNBIND_HANDLE);
         }
 		return this;
 	}
@@ -280,84 +422,10 @@ public class GlBuffer<E>{
 	 */
 	public GlBuffer commit(final Chunk<E>[] chunks, boolean push){
 		//android.util.//Log.d(TAG,"update("+chunks+", "+commit+")");
-		int startPosition = 0;
-		int offset = this.stride;
-		switch(this.datatype){
-			case TYPE_FLOAT :
-				if(this.buffer == null){
-					this.buffer = ByteBufferPool.getInstance().getDirectFloatBuffer(this.size >> 2);
-					mManagedBuffer = true;
-				}
-				else if(mManagedBuffer){
-					this.buffer.position(0);
-				}
-				else{
-					startPosition = this.buffer.position();
-				}
-                offset = this.stride >> 2;
-                for(final Chunk<E> chunk : chunks){
-                    for(int elementIndex=0, compIndex=0; elementIndex < this.count ; elementIndex++, compIndex+=chunk.components){
-                        this.buffer.position(startPosition + chunk.position + (elementIndex * offset));
-                        ((FloatBuffer)this.buffer).put(((float[])chunk.data),compIndex,chunk.components);
-                    }
-                }
-				break;
-            case TYPE_INT :
-                if(this.buffer == null){
-                    this.buffer = ByteBufferPool.getInstance().getDirectIntBuffer(this.size >> 2);
-					mManagedBuffer = true;
-				}
-				else if(mManagedBuffer){
-					this.buffer.position(0);
-				}
-				else{
-					startPosition = this.buffer.position();
-				}
-                offset = this.stride >> 2;
-                for(final Chunk<E> chunk : chunks){
-                    for(int elementIndex=0, compIndex=0; elementIndex < this.count ; elementIndex++, compIndex+=chunk.components){
-                        this.buffer.position(startPosition + chunk.position + (elementIndex * offset));
-                        ((IntBuffer)this.buffer).put(((int[])chunk.data),compIndex,chunk.components);
-                    }
-                }
-                break;
-			case TYPE_SHORT :
-				if(this.buffer == null){
-					this.buffer = ByteBufferPool.getInstance().getDirectShortBuffer(this.size >> 1);
-					mManagedBuffer = true;
-				}
-				else if(mManagedBuffer){
-					this.buffer.position(0);
-				}
-				else{
-					startPosition = this.buffer.position();
-				}
-                offset = this.stride >> 1;
-                for(final Chunk<E> chunk : chunks){
-                    for(int elementIndex=0, compIndex=0; elementIndex < this.count ; elementIndex++, compIndex+=chunk.components){
-                        this.buffer.position(startPosition + chunk.position + (elementIndex * offset));
-                        ((ShortBuffer)this.buffer).put(((short[])chunk.data),compIndex,chunk.components);
-                    }
-                }
-				break;
-            default :
-                if(this.buffer == null){
-                    this.buffer = ByteBufferPool.getInstance().getDirectByteBuffer(this.size);
-					mManagedBuffer = true;
-				}
-				else if(mManagedBuffer){
-					this.buffer.position(0);
-				}
-				else{
-					startPosition = this.buffer.position();
-				}
-                for(final Chunk<E> chunk : chunks){
-                    for(int elementIndex=0, compIndex=0; elementIndex < this.count ; elementIndex++, compIndex+=chunk.components){
-                        this.buffer.position(startPosition + chunk.position + (elementIndex * offset));
-                        ((ByteBuffer)this.buffer).put(((byte[])chunk.data),compIndex,chunk.components);
-                    }
-                }
-                break;
+		final int startPosition = prepareBuffer();
+		getInterleavePlan().write(this.buffer, startPosition, chunks, chunks.length);
+		for(final Chunk<E> chunk : chunks){
+			markDirty(startPosition, chunk);
 		}
 
         //Update server if needed
@@ -387,97 +455,276 @@ public class GlBuffer<E>{
      */
     public GlBuffer commit(final Chunk<E> chunk, boolean push){
         //Log.d(TAG,"update("+chunk+", "+commit+")");
-		int startPosition = 0;
-		int offset = this.stride;
-        switch(this.datatype){
-            case TYPE_FLOAT : {
-                if (this.buffer == null) {
+        final int startPosition = prepareBuffer();
+        mSingleChunk[0] = chunk;
+        getInterleavePlan().write(this.buffer, startPosition, mSingleChunk, 1);
+        mSingleChunk[0] = null;
+        markDirty(startPosition, chunk);
+
+        //Update server if needed
+        if(push){
+            push();
+        }
+
+        return this;
+    }
+
+    /**
+     * Force next commit to rewrite all chunks, needed when the local buffer has been
+     * replaced (ie by a batch). GlBuffer always rewrites chunks, subclasses caching
+     * their state must override.
+     */
+    public GlBuffer invalidate(){
+        return this;
+    }
+
+    /**
+     * Indicates if next commit will rewrite chunks, used by batches to skip unchanged elements.
+     * GlBuffer always rewrites chunks.
+     */
+    public boolean mustCommit(){
+        return true;
+    }
+
+    /**
+     * Get the local buffer ready for a commit, a managed one is taken from the pool if needed.
+     *
+     * @return The start position of this buffer data in local buffer
+     */
+    private int prepareBuffer(){
+        if(this.buffer == null){
+            switch(this.datatype){
+                case TYPE_FLOAT :
                     this.buffer = ByteBufferPool.getInstance().getDirectFloatBuffer(this.size >> 2);
-					mManagedBuffer = true;
-                }
-				else if(mManagedBuffer){
-					this.buffer.position(0);
-				}
-				else{
-					startPosition = this.buffer.position();
-				}
-                offset = this.stride >> 2;
-                for (int elementIndex = 0, compIndex = 0; elementIndex < this.count; elementIndex++, compIndex += chunk.components) {
-                    this.buffer.position(startPosition + chunk.position + (elementIndex * offset));
-                    ((FloatBuffer) this.buffer).put(((float[]) chunk.data), compIndex, chunk.components);
-                }
-                break;
-            }
-            case TYPE_INT : {
-                if (this.buffer == null) {
+                    break;
+                case TYPE_INT :
                     this.buffer = ByteBufferPool.getInstance().getDirectIntBuffer(this.size >> 2);
-					mManagedBuffer = true;
-				}
-				else if(mManagedBuffer){
-					this.buffer.position(0);
-				}
-				else{
-					startPosition = this.buffer.position();
-				}
-                offset = this.stride >> 2;
-                for (int elementIndex = 0, compIndex = 0; elementIndex < this.count; elementIndex++, compIndex += chunk.components) {
-                    this.buffer.position(startPosition + chunk.position + (elementIndex * offset));
-                    ((IntBuffer) this.buffer).put(((int[]) chunk.data), compIndex, chunk.components);
-                }
-                break;
-            }
-            case TYPE_SHORT : {
-                if (this.buffer == null) {
+                    break;
+                case TYPE_SHORT :
                     this.buffer = ByteBufferPool.getInstance().getDirectShortBuffer(this.size >> 1);
-					mManagedBuffer = true;
-				}
-				else if(mManagedBuffer){
-					this.buffer.position(0);
-				}
-				else{
-					startPosition = this.buffer.position();
-				}
-                offset = this.stride >> 1;
-                for (int elementIndex = 0, compIndex = 0; elementIndex < this.count; elementIndex++, compIndex += chunk.components) {
-                    this.buffer.position(startPosition + chunk.position + (elementIndex * offset));
-                    ((ShortBuffer) this.buffer).put(((short[]) chunk.data), compIndex, chunk.components);
-                }
-                break;
-            }
-            default :
-                if(this.buffer == null){
+                    break;
+                default :
                     this.buffer = ByteBufferPool.getInstance().getDirectByteBuffer(this.size);
-					mManagedBuffer = true;
-				}
-				else if(mManagedBuffer){
-					this.buffer.position(0);
-				}
-				else{
-					startPosition = this.buffer.position();
-				}
-                for (int elementIndex = 0, compIndex = 0; elementIndex < this.count; elementIndex++, compIndex += chunk.components) {
-                    this.buffer.position(startPosition + chunk.position + (elementIndex * offset));
-                    ((ByteBuffer) this.buffer).put(((byte[]) chunk.data), compIndex, chunk.components);
-                }
-                break;
+            }
+            mManagedBuffer = true;
+            return 0;
         }
+        else if(mManagedBuffer){
+            this.buffer.position(0);
+            return 0;
+        }
+        return this.buffer.position();
+    }
 
-        //Update server if needed
-        if(push){
-            push();
+    /**
+     * Get the interleave plan of current layout, built on first commit
+     *
+     * @return The {@link InterleavePlan} of this buffer
+     */
+    private InterleavePlan getInterleavePlan(){
+        if(mInterleavePlan == null || !mInterleavePlan.matches(this.datatype, this.count, this.stride / this.datasize)){
+            mInterleavePlan = new InterleavePlan(this.datatype, this.count, this.stride / this.datasize);
         }
+        return mInterleavePlan;
+    }
 
-        return this;
+    /**
+     * Mark the bytes of a chunk as dirty
+     *
+     * @param startPosition The start position of this buffer data in local buffer
+     * @param chunk The chunk written
+     */
+    private void markDirty(final int startPosition, final Chunk<E> chunk){
+        final int start = startPosition * this.datasize + chunk.offset;
+        final int chunkSize = chunk.components * chunk.datasize;
+        if(this.stride - chunkSize <= DIRTY_MERGE_GAP){
+            markDirty(start, start + (this.count - 1) * this.stride + chunkSize);
+        }
+        else{
+            for(int elementIndex=0, elementStart=start; elementIndex < this.count && !mDirtyAll; elementIndex++, elementStart+=this.stride){
+                markDirty(elementStart, elementStart + chunkSize);
+            }
+        }
+    }
+
+    /**
+     * Mark a range of bytes as dirty, ranges closer than DIRTY_MERGE_GAP are merged.
+     * Above MAX_DIRTY_RANGES ranges, the whole buffer is marked as dirty.
+     *
+     * @param start The first dirty byte
+     * @param end The byte following the last dirty byte
+     */
+    protected void markDirty(final int start, final int end){
+        if(mDirtyAll){
+            return;
+        }
+        //First range ending near or after start
+        int index = 0;
+        while(index < mDirtyCount && mDirtyEnds[index] + DIRTY_MERGE_GAP < start){
+            index++;
+        }
+        if(index < mDirtyCount && mDirtyStarts[index] <= end + DIRTY_MERGE_GAP){
+            //Merge with this range and the following ones
+            mDirtyStarts[index] = Math.min(mDirtyStarts[index], start);
+            mDirtyEnds[index] = Math.max(mDirtyEnds[index], end);
+            int next = index + 1;
+            while(next < mDirtyCount && mDirtyStarts[next] <= mDirtyEnds[index] + DIRTY_MERGE_GAP){
+                mDirtyEnds[index] = Math.max(mDirtyEnds[index], mDirtyEnds[next]);
+                next++;
+            }
+            System.arraycopy(mDirtyStarts, next, mDirtyStarts, index + 1, mDirtyCount - next);
+            System.arraycopy(mDirtyEnds, next, mDirtyEnds, index + 1, mDirtyCount - next);
+            mDirtyCount -= next - index - 1;
+        }
+        else if(mDirtyCount == MAX_DIRTY_RANGES){
+            mDirtyAll = true;
+        }
+        else{
+            //Insert new range
+            System.arraycopy(mDirtyStarts, index, mDirtyStarts, index + 1, mDirtyCount - index);
+            System.arraycopy(mDirtyEnds, index, mDirtyEnds, index + 1, mDirtyCount - index);
+            mDirtyStarts[index] = start;
+            mDirtyEnds[index] = end;
+            mDirtyCount++;
+        }
+    }
+
+    /**
+     * Mark the whole buffer as dirty
+     */
+    protected void markDirty(){
+        mDirtyAll = true;
     }
 
+    /**
+     * Forget dirty ranges (after upload)
+     */
+    protected void clearDirty(){
+        mDirtyAll = false;
+        mDirtyCount = 0;
+    }
+
+    /**
+     * Upload dirty ranges of local buffer to VBO. The whole buffer is uploaded if
+     * dirty ranges are unknown (direct writes in buffer) or if they cover more
+     * than FULL_UPLOAD_RATIO of it.
+     */
     protected void push(){
         //Log.d(TAG,"push()");
-        if(this.handle != UNBIND_HANDLE) {
+        if(this.mode == MODE_STREAM){
+            pushStream();
+        }
+        else if(this.handle != UNBIND_HANDLE) {
+            int dirtyBytes = 0;
+            for(int index=0; index < mDirtyCount; index++){
+                dirtyBytes += Math.min(mDirtyEnds[index], this.size) - mDirtyStarts[index];
+            }
             bind();
-            this.buffer.position(0);
-            GLES20.glBufferSubData(this.target, 0, this.size, this.buffer);
+            if(mDirtyAll || mDirtyCount == 0 || dirtyBytes > this.size * FULL_UPLOAD_RATIO){
+                this.buffer.position(0);
+                GlOperation.getBackend().glBufferSubData(this.target, 0, this.size, this.buffer);
+                sUploadedBytes += this.size;
+            }
+            else{
+                for(int index=0; index < mDirtyCount; index++){
+                    final int start = mDirtyStarts[index];
+                    final int length = Math.min(mDirtyEnds[index], this.size) - start;
+                    if(length > 0) {
+                        this.buffer.position(start / this.datasize);
+                        GlOperation.getBackend().glBufferSubData(this.target, start, length, this.buffer);
+                        sUploadedBytes += length;
+                    }
+                }
+            }
             unbind();
         }
+        clearDirty();
+    }
+
+    /**
+     * Write the whole local buffer in the next segment of a streaming VBO, segments
+     * still used by the GPU are never written :
+     * 		<ul>
+     * 			<li>GLES3 : the segment is mapped unsynchronized once its fence is signaled</li>
+     * 			<li>GLES2 : the VBO is orphaned when the ring wraps, then the segment is updated</li>
+     * 		</ul>
+     */
+    private void pushStream(){
+        //Log.d(TAG,"pushStream()");
+        bind();
+        final int previousSegment = mStreamSegment;
+        //Fence draws of previous segment
+        if(mStreamFences != null && previousSegment >= 0){
+            mStreamFences[previousSegment] = GlOperation.getBackend().glFenceSync(GLES30.GL_SYNC_GPU_COMMANDS_COMPLETE, 0);
+        }
+        mStreamSegment = (previousSegment + 1) % STREAM_SEGMENTS;
+        mDrawOffset = mStreamSegment * mStreamSegmentSize;
+
+        final int limit = this.buffer.limit();
+        this.buffer.position(0);
+        this.buffer.limit(this.size / this.datasize);
+        boolean mapped = false;
+        if(mStreamFences != null){
+            int access = GLES30.GL_MAP_WRITE_BIT | GLES30.GL_MAP_INVALIDATE_RANGE_BIT | GLES30.GL_MAP_UNSYNCHRONIZED_BIT;
+            final long fence = mStreamFences[mStreamSegment];
+            if(fence != 0){
+                final int status = GlOperation.getBackend().glClientWaitSync(fence, GLES30.GL_SYNC_FLUSH_COMMANDS_BIT, STREAM_FENCE_TIMEOUT);
+                if(status != GLES30.GL_ALREADY_SIGNALED && status != GLES30.GL_CONDITION_SATISFIED){
+                    //GPU late -> let the driver synchronize
+                    access &= ~GLES30.GL_MAP_UNSYNCHRONIZED_BIT;
+                }
+                GlOperation.getBackend().glDeleteSync(fence);
+                mStreamFences[mStreamSegment] = 0;
+            }
+            final ByteBuffer segment = (ByteBuffer) GlOperation.getBackend().glMapBufferRange(this.target, mDrawOffset, this.size, access);
+            if(segment != null){
+                segment.order(ByteOrder.nativeOrder());
+                switch(this.datatype){
+                    case TYPE_FLOAT :
+                        segment.asFloatBuffer().put((FloatBuffer) this.buffer);
+                        break;
+                    case TYPE_INT :
+                        segment.asIntBuffer().put((IntBuffer) this.buffer);
+                        break;
+                    case TYPE_SHORT :
+                        segment.asShortBuffer().put((ShortBuffer) this.buffer);
+                        break;
+                    default :
+                        segment.put((ByteBuffer) this.buffer);
+                }
+                mapped = GlOperation.getBackend().glUnmapBuffer(this.target);
+            }
+        }
+        if(!mapped){
+            if(mStreamSegment == 0 && previousSegment >= 0){
+                //Orphan -> the driver allocates a new store, the GPU keeps the old one
+                GlOperation.getBackend().glBufferData(this.target, mStreamSegmentSize * STREAM_SEGMENTS, null, USAGE_STREAM_DRAW);
+            }
+            this.buffer.position(0);
+            GlOperation.getBackend().glBufferSubData(this.target, mDrawOffset, this.size, this.buffer);
+        }
+        this.buffer.limit(limit);
+        this.buffer.position(0);
+        sUploadedBytes += this.size;
+        unbind();
+    }
+
+    /**
+     * Get the number of bytes uploaded to VBOs during last frame
+     *
+     * @return The number of bytes uploaded by glBufferData/glBufferSubData
+     */
+    public static long getFrameUploadedBytes(){
+        return sFrameUploadedBytes;
+    }
+
+    /**
+     * Close the uploaded bytes counter of current frame, should be called once per frame
+     * by the renderer (GL thread).
+     */
+    public static void endFrame(){
+        sFrameUploadedBytes = sUploadedBytes;
+        sUploadedBytes = 0;
     }
 
 	/**
@@ -495,28 +742,38 @@ public class GlBuffer<E>{
 			final int[] handles = new int[1];
 
 			//Create buffer on server
-			GLES20.glGenBuffers(1, handles, 0);
+			GlOperation.getBackend().glGenBuffers(1, handles, 0);
 			this.handle = handles[0];
 			this.target = target;
 
 			GlOperation.checkGlError(TAG, "glGenBuffers");
 
 			//Bind it
-			GLES20.glBindBuffer(target, this.handle);
+			GlOperation.bindBuffer(target, this.handle);
+			//Local data only needed for upload -> frame scratch
+			final boolean frameBuffer = (this.buffer == null && freeLocal);
 			if(this.buffer == null){
+				if(frameBuffer){
+					this.buffer = getFrameBuffer();
+				}
 				this.commit(false);
 			}
 			//Push data into it
 			this.buffer.position(0);
-			GLES20.glBufferData(target, this.size, this.buffer, usage);
+			GlOperation.getBackend().glBufferData(target, this.size, this.buffer, usage);
+			sUploadedBytes += this.size;
+			clearDirty();
 			//Unbind it
-			GLES20.glBindBuffer(target, UNBIND_HANDLE);
+			GlOperation.bindBuffer(target, UNBIND_HANDLE);
 
 			//Check error on bind only
 			GlOperation.checkGlError(TAG, "glBufferData");
 
 			//Free local buffer is queried
-			if(mManagedBuffer && freeLocal){
+			if(frameBuffer){
+				this.buffer = null;
+			}
+			else if(mManagedBuffer && freeLocal){
 				switch(this.datatype){
 					case TYPE_BYTE :
 						ByteBufferPool.getInstance().returnDirectBuffer((ByteBuffer)this.buffer);
@@ -541,22 +798,22 @@ public class GlBuffer<E>{
 
             if(GlOperation.getVersion()[0] >= 3 && this.vertexAttribHandles != null
                     && this.vertexAttribHandles.length > 0){
-                GLES30.glGenVertexArrays(1, handles, 0);
+                GlOperation.getBackend().glGenVertexArrays(1, handles, 0);
                 mVaoHandle = handles[0];
                 GlOperation.checkGlError(TAG, "glGenVertexArrays");
 
-                GLES30.glBindVertexArray(mVaoHandle);
-                GLES20.glBindBuffer(target, this.handle);
+                GlOperation.bindVertexArray(mVaoHandle);
+                GlOperation.bindBuffer(target, this.handle);
 
                 for(int index=0; index < this.vertexAttribHandles.length; index++){
-                    GLES20.glEnableVertexAttribArray(this.vertexAttribHandles[index]);
-                    GLES20.glVertexAttribPointer(this.vertexAttribHandles[index], this.chunks[index].components,
+                    GlOperation.getBackend().glEnableVertexAttribArray(this.vertexAttribHandles[index]);
+                    GlOperation.getBackend().glVertexAttribPointer(this.vertexAttribHandles[index], this.chunks[index].components,
                             this.chunks[index].datatype, this.chunks[index].normalized, stride, this.chunks[index].offset);
                 }
                 GlOperation.checkGlError(TAG, "glVertexAttribPointer");
 
-                GLES20.glBindBuffer(target, UNBIND_HANDLE);
-                GLES30.glBindVertexArray(UNBIND_HANDLE);
+                GlOperation.bindBuffer(target, UNBIND_HANDLE);
+                GlOperation.bindVertexArray(UNBIND_HANDLE);
 
                 mode = MODE_VAO;
             }
@@ -568,6 +825,74 @@ public class GlBuffer<E>{
 		return this;
 	}
 
+	/**
+	 * Create a streaming VBO on GPU for data rewritten every frame (MODE_STREAM).
+	 *
+	 * The VBO holds STREAM_SEGMENTS copies of the buffer, each push() writes the next
+	 * one and draws use the offset of the last written segment. Local buffer is kept.
+	 *
+	 * @param target Should be GLES20.GL_ARRAY_BUFFER or GLES20.GL_ELEMENT_ARRAY_BUFFER
+	 *
+	 * @return The buffer handle on server (available in handle attribute too)
+	 */
+	public GlBuffer allocateStream(final int target){
+		//android.util.//Log.d(TAG,"allocateStream("+target+")");
+		if(this.handle == UNBIND_HANDLE){
+			final int[] handles = new int[1];
+
+			//Create buffer on server
+			GlOperation.getBackend().glGenBuffers(1, handles, 0);
+			this.handle = handles[0];
+			this.target = target;
+			this.usage = USAGE_STREAM_DRAW;
+
+			GlOperation.checkGlError(TAG, "glGenBuffers");
+
+			if(this.buffer == null){
+				this.commit(false);
+			}
+
+			//Reserve the ring
+			mStreamSegmentSize = (this.size + STREAM_ALIGNMENT - 1) & ~(STREAM_ALIGNMENT - 1);
+			mStreamSegment = -1;
+			mStreamFences = (GlOperation.getVersion()[0] >= 3) ? new long[STREAM_SEGMENTS] : null;
+			GlOperation.bindBuffer(target, this.handle);
+			GlOperation.getBackend().glBufferData(target, mStreamSegmentSize * STREAM_SEGMENTS, null, USAGE_STREAM_DRAW);
+			GlOperation.bindBuffer(target, UNBIND_HANDLE);
+
+			GlOperation.checkGlError(TAG, "glBufferData");
+
+			mode = MODE_STREAM;
+
+			//First segment
+			push();
+		}
+		else{
+			Log.w(TAG, "multiple allocation detected !");
+		}
+
+		return this;
+	}
+
+	/**
+	 * Get a transient local buffer from the FrameArena, only valid
+	 * until the end of current frame (used for upload only).
+	 *
+	 * @return A direct buffer of this.size bytes matching datatype
+	 */
+	protected Buffer getFrameBuffer(){
+		switch(this.datatype){
+			case TYPE_FLOAT :
+				return FrameArena.getInstance().getFloatBuffer(this.size >> 2);
+			case TYPE_INT :
+				return FrameArena.getInstance().getIntBuffer(this.size >> 2);
+			case TYPE_SHORT :
+				return FrameArena.getInstance().getShortBuffer(this.size >> 1);
+			default :
+				return FrameArena.getInstance().getByteBuffer(this.size);
+		}
+	}
+
 	/**
 	 * Free local and server buffers
 	 */
@@ -577,17 +902,31 @@ public class GlBuffer<E>{
         if(this.handle != UNBIND_HANDLE){
             handles[0] = this.handle;
             this.handle = UNBIND_HANDLE;
-            GLES20.glDeleteBuffers(1, handles, 0);
+            GlOperation.getBackend().glDeleteBuffers(1, handles, 0);
+            GlOperation.onBufferDeleted(handles[0]);
             GlOperation.checkGlError(TAG, "glDeleteBuffers");
         }
 
         if(mVaoHandle != UNBIND_HANDLE){
             handles[0] = mVaoHandle;
             mVaoHandle = UNBIND_HANDLE;
-            GLES30.glDeleteVertexArrays(1, handles, 0);
+            GlOperation.getBackend().glDeleteVertexArrays(1, handles, 0);
+            GlOperation.onVertexArrayDeleted(handles[0]);
             GlOperation.checkGlError(TAG, "glDeleteVertexArrays");
         }
 
+        if(mStreamFences != null){
+            for(int index=0; index < STREAM_SEGMENTS; index++){
+                if(mStreamFences[index] != 0){
+                    GlOperation.getBackend().glDeleteSync(mStreamFences[index]);
+                    mStreamFences[index] = 0;
+                }
+            }
+            mStreamFences = null;
+        }
+        mStreamSegment = -1;
+        mDrawOffset = 0;
+
 		if(mManagedBuffer && this.buffer != null){
 			switch(this.datatype){
 				case TYPE_BYTE :
@@ -612,6 +951,365 @@ public class GlBuffer<E>{
 		return this;
 	}
 
+	/**
+	 * Convert a float to a 16 bits float (IEEE 754 half precision, rounded to nearest, ties to even)
+	 *
+	 * @param value The float value
+	 *
+	 * @return The half float bits
+	 */
+	public static short toHalfFloat(final float value){
+		final int bits = Float.floatToRawIntBits(value);
+		final int sign = (bits >>> 16) & 0x8000;
+		final int exponent = ((bits >>> 23) & 0xff) - 127 + 15;
+		int mantissa = bits & 0x7fffff;
+		//NaN & Infinity
+		if(exponent == 0xff - 127 + 15){
+			return (short)(sign | 0x7c00 | ((mantissa != 0) ? 0x200 : 0));
+		}
+		//Overflow
+		if(exponent >= 0x1f){
+			return (short)(sign | 0x7c00);
+		}
+		//Subnormal or zero
+		if(exponent <= 0){
+			if(exponent < -10){
+				return (short) sign;
+			}
+			mantissa |= 0x800000;
+			final int shift = 14 - exponent;
+			return (short)(sign | roundToEven(mantissa >> shift, mantissa & ((1 << shift) - 1), 1 << (shift - 1)));
+		}
+		//Normal (rounding may carry into exponent, up to Infinity)
+		return (short)(sign | roundToEven((exponent << 10) | (mantissa >> 13), mantissa & 0x1fff, 0x1000));
+	}
+
+	/**
+	 * Round a truncated value to nearest, ties to even
+	 *
+	 * @param truncated The truncated value
+	 * @param remainder The dropped bits
+	 * @param halfway The dropped bits value of a tie
+	 *
+	 * @return The rounded value
+	 */
+	private static int roundToEven(final int truncated, final int remainder, final int halfway){
+		if(remainder > halfway || (remainder == halfway && (truncated & 1) != 0)){
+			return truncated + 1;
+		}
+		return truncated;
+	}
+
+	/**
+	 * Interleave plan of a buffer layout, replaces per element position()/put() calls :
+	 * 		<ul>
+	 * 			<li>a single chunk filling the stride is written with one bulk put</li>
+	 * 			<li>interleaved chunks are scattered in a reusable heap staging array, then copied with one bulk put</li>
+	 * 			<li>if only some chunks are written, the staging array is first loaded with one bulk get</li>
+	 * 			<li>packed layouts (mixed types, compact formats) are converted into a byte staging array</li>
+	 * 		</ul>
+	 */
+	private static final class InterleavePlan {
+
+		/**
+		 * Byte order of packed layouts (GL reads native order)
+		 */
+		private static final boolean BIG_ENDIAN = ByteOrder.nativeOrder() == ByteOrder.BIG_ENDIAN;
+
+		/**
+		 * Type of data TYPE_*
+		 */
+		final int datatype;
+
+		/**
+		 * Number of elements
+		 */
+		final int count;
+
+		/**
+		 * Stride in components (not bytes)
+		 */
+		final int stride;
+
+		/**
+		 * Number of components in the layout
+		 */
+		final int length;
+
+		/**
+		 * Stride in bytes
+		 */
+		final int strideBytes;
+
+		/**
+		 * Staging array (byte[], short[], int[], float[]) allocated on first interleaved write
+		 */
+		private Object mStaging;
+
+		InterleavePlan(final int datatype, final int count, final int stride){
+			this.datatype = datatype;
+			this.count = count;
+			this.stride = stride;
+			this.length = count * stride;
+			switch(datatype){
+				case TYPE_FLOAT :
+				case TYPE_INT :
+					this.strideBytes = stride << 2;
+					break;
+				case TYPE_SHORT :
+					this.strideBytes = stride << 1;
+					break;
+				default :
+					this.strideBytes = stride;
+			}
+		}
+
+		boolean matches(final int datatype, final int count, final int stride){
+			return this.datatype == datatype && this.count == count && this.stride == stride;
+		}
+
+		/**
+		 * Write chunks into buffer
+		 *
+		 * @param buffer The local buffer
+		 * @param startPosition The start position of the layout in buffer
+		 * @param chunks The chunks to write
+		 * @param chunksCount The number of chunks to write in chunks
+		 */
+		void write(final Buffer buffer, final int startPosition, final Chunk<?>[] chunks, final int chunksCount){
+			//Contiguous -> direct bulk copy
+			if(chunksCount == 1 && chunks[0].components == this.stride && chunks[0].format == FORMAT_NATIVE){
+				buffer.position(startPosition);
+				put(buffer, chunks[0].data, this.length);
+				return;
+			}
+
+			if(mStaging == null){
+				mStaging = newStaging();
+			}
+
+			//Partial write -> keep other chunks
+			int bytes = 0;
+			for(int index=0; index < chunksCount; index++){
+				bytes += chunks[index].components * chunks[index].datasize;
+			}
+			if(bytes < this.strideBytes){
+				buffer.position(startPosition);
+				get(buffer);
+			}
+
+			for(int index=0; index < chunksCount; index++){
+				scatter(chunks[index]);
+			}
+
+			buffer.position(startPosition);
+			put(buffer, mStaging, this.length);
+		}
+
+		private Object newStaging(){
+			switch(this.datatype){
+				case TYPE_FLOAT :
+					return new float[this.length];
+				case TYPE_INT :
+					return new int[this.length];
+				case TYPE_SHORT :
+					return new short[this.length];
+				default :
+					return new byte[this.length];
+			}
+		}
+
+		private void scatter(final Chunk<?> chunk){
+			if(chunk.format != FORMAT_NATIVE || (this.datatype == TYPE_BYTE && !(chunk.data instanceof byte[]))){
+				scatterPacked(chunk);
+				return;
+			}
+			final int components = chunk.components;
+			final int last = this.count * components;
+			switch(this.datatype){
+				case TYPE_FLOAT : {
+					final float[] src = (float[]) chunk.data;
+					final float[] dst = (float[]) mStaging;
+					for (int srcIndex = 0, dstIndex = chunk.position; srcIndex < last; srcIndex += components, dstIndex += this.stride) {
+						for (int compIndex = 0; compIndex < components; compIndex++) {
+							dst[dstIndex + compIndex] = src[srcIndex + compIndex];
+						}
+					}
+					break;
+				}
+				case TYPE_INT : {
+					final int[] src = (int[]) chunk.data;
+					final int[] dst = (int[]) mStaging;
+					for (int srcIndex = 0, dstIndex = chunk.position; srcIndex < last; srcIndex += components, dstIndex += this.stride) {
+						for (int compIndex = 0; compIndex < components; compIndex++) {
+							dst[dstIndex + compIndex] = src[srcIndex + compIndex];
+						}
+					}
+					break;
+				}
+				case TYPE_SHORT : {
+					final short[] src = (short[]) chunk.data;
+					final short[] dst = (short[]) mStaging;
+					for (int srcIndex = 0, dstIndex = chunk.position; srcIndex < last; srcIndex += components, dstIndex += this.stride) {
+						for (int compIndex = 0; compIndex < components; compIndex++) {
+							dst[dstIndex + compIndex] = src[srcIndex + compIndex];
+						}
+					}
+					break;
+				}
+				default : {
+					final byte[] src = (byte[]) chunk.data;
+					final byte[] dst = (byte[]) mStaging;
+					for (int srcIndex = 0, dstIndex = chunk.position; srcIndex < last; srcIndex += components, dstIndex += this.stride) {
+						for (int compIndex = 0; compIndex < components; compIndex++) {
+							dst[dstIndex + compIndex] = src[srcIndex + compIndex];
+						}
+					}
+				}
+			}
+		}
+
+		/**
+		 * Scatter a chunk in a byte staging array, converting it to its format
+		 */
+		private void scatterPacked(final Chunk<?> chunk){
+			final int components = chunk.components;
+			final int last = this.count * components;
+			final int datasize = chunk.datasize;
+			final int jump = this.stride - components * datasize;
+			final byte[] dst = (byte[]) mStaging;
+			int dstIndex = chunk.offset;
+			switch(chunk.format){
+				case FORMAT_HALF_FLOAT : {
+					final float[] src = (float[]) chunk.data;
+					for (int srcIndex = 0; srcIndex < last; dstIndex += jump) {
+						for (int compIndex = 0; compIndex < components; compIndex++, srcIndex++, dstIndex += 2) {
+							writeShort(dst, dstIndex, toHalfFloat(src[srcIndex]));
+						}
+					}
+					break;
+				}
+				case FORMAT_NORMALIZED_SHORT : {
+					final float[] src = (float[]) chunk.data;
+					for (int srcIndex = 0; srcIndex < last; dstIndex += jump) {
+						for (int compIndex = 0; compIndex < components; compIndex++, srcIndex++, dstIndex += 2) {
+							final float value = src[srcIndex];
+							writeShort(dst, dstIndex, (value <= 0f) ? 0 : (value >= 1f) ? 0xffff : (int)(value * 65535f + 0.5f));
+						}
+					}
+					break;
+				}
+				case FORMAT_NORMALIZED_BYTE : {
+					final float[] src = (float[]) chunk.data;
+					for (int srcIndex = 0; srcIndex < last; dstIndex += jump) {
+						for (int compIndex = 0; compIndex < components; compIndex++, srcIndex++, dstIndex++) {
+							final float value = src[srcIndex];
+							dst[dstIndex] = (byte)((value <= 0f) ? 0 : (value >= 1f) ? 0xff : (int)(value * 255f + 0.5f));
+						}
+					}
+					break;
+				}
+				default :
+					//Native data in a packed layout
+					switch(chunk.datatype){
+						case TYPE_FLOAT : {
+							final float[] src = (float[]) chunk.data;
+							for (int srcIndex = 0; srcIndex < last; dstIndex += jump) {
+								for (int compIndex = 0; compIndex < components; compIndex++, srcIndex++, dstIndex += 4) {
+									writeInt(dst, dstIndex, Float.floatToRawIntBits(src[srcIndex]));
+								}
+							}
+							break;
+						}
+						case TYPE_INT : {
+							final int[] src = (int[]) chunk.data;
+							for (int srcIndex = 0; srcIndex < last; dstIndex += jump) {
+								for (int compIndex = 0; compIndex < components; compIndex++, srcIndex++, dstIndex += 4) {
+									writeInt(dst, dstIndex, src[srcIndex]);
+								}
+							}
+							break;
+						}
+						case TYPE_SHORT : {
+							final short[] src = (short[]) chunk.data;
+							for (int srcIndex = 0; srcIndex < last; dstIndex += jump) {
+								for (int compIndex = 0; compIndex < components; compIndex++, srcIndex++, dstIndex += 2) {
+									writeShort(dst, dstIndex, src[srcIndex]);
+								}
+							}
+							break;
+						}
+						default : {
+							final byte[] src = (byte[]) chunk.data;
+							for (int srcIndex = 0; srcIndex < last; dstIndex += jump) {
+								for (int compIndex = 0; compIndex < components; compIndex++, srcIndex++, dstIndex++) {
+									dst[dstIndex] = src[srcIndex];
+								}
+							}
+						}
+					}
+			}
+		}
+
+		private static void writeShort(final byte[] dst, final int index, final int value){
+			if(BIG_ENDIAN){
+				dst[index] = (byte)(value >> 8);
+				dst[index + 1] = (byte) value;
+			}
+			else{
+				dst[index] = (byte) value;
+				dst[index + 1] = (byte)(value >> 8);
+			}
+		}
+
+		private static void writeInt(final byte[] dst, final int index, final int value){
+			if(BIG_ENDIAN){
+				dst[index] = (byte)(value >> 24);
+				dst[index + 1] = (byte)(value >> 16);
+				dst[index + 2] = (byte)(value >> 8);
+				dst[index + 3] = (byte) value;
+			}
+			else{
+				dst[index] = (byte) value;
+				dst[index + 1] = (byte)(value >> 8);
+				dst[index + 2] = (byte)(value >> 16);
+				dst[index + 3] = (byte)(value >> 24);
+			}
+		}
+
+		private void get(final Buffer buffer){
+			switch(this.datatype){
+				case TYPE_FLOAT :
+					((FloatBuffer) buffer).get((float[]) mStaging, 0, this.length);
+					break;
+				case TYPE_INT :
+					((IntBuffer) buffer).get((int[]) mStaging, 0, this.length);
+					break;
+				case TYPE_SHORT :
+					((ShortBuffer) buffer).get((short[]) mStaging, 0, this.length);
+					break;
+				default :
+					((ByteBuffer) buffer).get((byte[]) mStaging, 0, this.length);
+			}
+		}
+
+		private void put(final Buffer buffer, final Object data, final int length){
+			switch(this.datatype){
+				case TYPE_FLOAT :
+					((FloatBuffer) buffer).put((float[]) data, 0, length);
+					break;
+				case TYPE_INT :
+					((IntBuffer) buffer).put((int[]) data, 0, length);
+					break;
+				case TYPE_SHORT :
+					((ShortBuffer) buffer).put((short[]) data, 0, length);
+					break;
+				default :
+					((ByteBuffer) buffer).put((byte[]) data, 0, length);
+			}
+		}
+	}
+
 
 	/**
 	 *
@@ -664,6 +1362,11 @@ public class GlBuffer<E>{
 		 */
 		public boolean normalized = false;
 
+		/**
+		 * The storage format in buffer FORMAT_* (set by Application)
+		 */
+		public final int format;
+
 		/**
 		 * Default constructor
 		 *
@@ -671,10 +1374,49 @@ public class GlBuffer<E>{
 		 * @param components The number of components per data entry (1, 2, 3 or 4)
 		 */
 		public Chunk(final T data, final int components) {
+			this(data, components, FORMAT_NATIVE);
+		}
+
+		/**
+		 * Constructor with storage format, float[] data is converted at commit
+		 *
+		 * @param data       The data elements in byte[], short[], int[], float[]
+		 * @param components The number of components per data entry (1, 2, 3 or 4)
+		 * @param format     The storage format FORMAT_*, compact formats need float[] data
+		 */
+		public Chunk(final T data, final int components, final int format) {
 			this.data = data;
 			this.components = components;
 			this.offset = 0;
 			this.normalized = false;
+			this.format = format;
+
+			//Compact formats
+			if (format != FORMAT_NATIVE) {
+				if (!(data instanceof float[])) {
+					throw new IllegalArgumentException("Compact chunk formats need float[] data");
+				}
+				switch (format) {
+					case FORMAT_HALF_FLOAT:
+						this.datatype = GlBuffer.TYPE_HALF_FLOAT;
+						this.datasize = Short.BYTES;
+						break;
+					case FORMAT_NORMALIZED_SHORT:
+						this.datatype = GlBuffer.TYPE_SHORT;
+						this.datasize = Short.BYTES;
+						this.normalized = true;
+						break;
+					case FORMAT_NORMALIZED_BYTE:
+						this.datatype = GlBuffer.TYPE_BYTE;
+						this.datasize = Byte.BYTES;
+						this.normalized = true;
+						break;
+					default:
+						throw new IllegalArgumentException("Unknown chunk format : " + format);
+				}
+				this.size = this.datasize * ((float[]) this.data).length;
+				return;
+			}
 
 			//Byte data
 			if (data instanceof byte[]) {
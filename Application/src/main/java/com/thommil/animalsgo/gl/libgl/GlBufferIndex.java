@@ -1,6 +1,5 @@
 package com.thommil.animalsgo.gl.libgl;
 
-import android.opengl.GLES20;
 import android.util.Log;
 
 import com.thommil.animalsgo.utils.ByteBufferPool;
@@ -60,28 +59,34 @@ public class GlBufferIndex extends GlBuffer<short[]> {
             final int[] handles = new int[1];
 
             //Create buffer on server
-            GLES20.glGenBuffers(1, handles, 0);
+            GlOperation.getBackend().glGenBuffers(1, handles, 0);
             this.handle = handles[0];
             this.target = TARGET_ELEMENT_ARRAY_BUFFER;
 
             GlOperation.checkGlError(TAG, "glGenBuffers");
 
             //Bind it
-            GLES20.glBindBuffer(TARGET_ELEMENT_ARRAY_BUFFER, this.handle);
-            if(this.buffer == null){
+            GlOperation.bindBuffer(TARGET_ELEMENT_ARRAY_BUFFER, this.handle);
+            //Indices only needed for upload -> frame scratch
+            final boolean frameBuffer = (this.buffer == null);
+            if(frameBuffer){
+                this.buffer = getFrameBuffer();
                 this.commit(false);
             }
             //Push data into it
             this.buffer.position(0);
-            GLES20.glBufferData(this.target, this.size, this.buffer, usage);
+            GlOperation.getBackend().glBufferData(this.target, this.size, this.buffer, usage);
+            sUploadedBytes += this.size;
             //Unbind it
-            GLES20.glBindBuffer(this.target, UNBIND_HANDLE);
+            GlOperation.bindBuffer(this.target, UNBIND_HANDLE);
 
             //Check error on bind only
             GlOperation.checkGlError(TAG, "glBufferData");
 
             //Free local buffer is queried
-            ByteBufferPool.getInstance().returnDirectBuffer((ShortBuffer)this.buffer);
+            if(!frameBuffer) {
+                ByteBufferPool.getInstance().returnDirectBuffer((ShortBuffer) this.buffer);
+            }
             this.buffer = null;
 
             mode = MODE_VBO;
@@ -144,23 +144,24 @@ public class GlColoredSprite extends GlSprite {
             case GlBuffer.MODE_VAO: {
                 bind();
 
-                GLES20.glDrawArrays(GLES20.GL_TRIANGLE_STRIP, 0, 4);
+                GlOperation.getBackend().glDrawArrays(GLES20.GL_TRIANGLE_STRIP, 0, 4);
 
                 unbind();
                 break;
             }
+            case GlBuffer.MODE_STREAM:
             case GlBuffer.MODE_VBO: {
                 program.enableAttributes();
 
                 this.bind();
 
                 if(this.vertexAttribHandles != null) {
-                    GLES20.glVertexAttribPointer(this.vertexAttribHandles[CHUNK_VERTEX_INDEX], 2, GlBuffer.TYPE_FLOAT, false, 20, 0);
-                    GLES20.glVertexAttribPointer(this.vertexAttribHandles[CHUNK_TEXTURE_INDEX], 2, GlBuffer.TYPE_FLOAT, false, 20, 8);
-                    GLES20.glVertexAttribPointer(this.vertexAttribHandles[CHUNK_COLOR_INDEX], 4, GlBuffer.TYPE_BYTE, true, 20, 9);
+                    GlOperation.getBackend().glVertexAttribPointer(this.vertexAttribHandles[CHUNK_VERTEX_INDEX], 2, GlBuffer.TYPE_FLOAT, false, 20, mDrawOffset);
+                    GlOperation.getBackend().glVertexAttribPointer(this.vertexAttribHandles[CHUNK_TEXTURE_INDEX], 2, GlBuffer.TYPE_FLOAT, false, 20, mDrawOffset + 8);
+                    GlOperation.getBackend().glVertexAttribPointer(this.vertexAttribHandles[CHUNK_COLOR_INDEX], 4, GlBuffer.TYPE_BYTE, true, 20, mDrawOffset + 9);
                 }
 
-                GLES20.glDrawArrays(GLES20.GL_TRIANGLE_STRIP, 0, 4);
+                GlOperation.getBackend().glDrawArrays(GLES20.GL_TRIANGLE_STRIP, 0, 4);
 
                 unbind();
                 program.disableAttributes();
@@ -171,15 +172,15 @@ public class GlColoredSprite extends GlSprite {
 
                 if(this.vertexAttribHandles != null) {
                     this.buffer.position(0);
-                    GLES20.glVertexAttribPointer(this.vertexAttribHandles[CHUNK_VERTEX_INDEX], 2, GlBuffer.TYPE_FLOAT, false, 20, this.buffer);
+                    GlOperation.getBackend().glVertexAttribPointer(this.vertexAttribHandles[CHUNK_VERTEX_INDEX], 2, GlBuffer.TYPE_FLOAT, false, 20, this.buffer);
                     this.buffer.position(2);
-                    GLES20.glVertexAttribPointer(this.vertexAttribHandles[CHUNK_TEXTURE_INDEX], 2, GlBuffer.TYPE_FLOAT, false, 20, this.buffer);
+                    GlOperation.getBackend().glVertexAttribPointer(this.vertexAttribHandles[CHUNK_TEXTURE_INDEX], 2, GlBuffer.TYPE_FLOAT, false, 20, this.buffer);
                     this.buffer.position(4);
-                    GLES20.glVertexAttribPointer(this.vertexAttribHandles[CHUNK_COLOR_INDEX], 4, GlBuffer.TYPE_BYTE, true, 20, this.buffer);
+                    GlOperation.getBackend().glVertexAttribPointer(this.vertexAttribHandles[CHUNK_COLOR_INDEX], 4, GlBuffer.TYPE_BYTE, true, 20, this.buffer);
                 }
 
                 this.buffer.position(0);
-                GLES20.glDrawArrays(GLES20.GL_TRIANGLE_STRIP, 0, 4);
+                GlOperation.getBackend().glDrawArrays(GLES20.GL_TRIANGLE_STRIP, 0, 4);
 
                 program.disableAttributes();
             }
@@ -13,11 +13,12 @@ public class GlDrawableBuffer<T> extends GlBuffer<T>{
             case GlBuffer.MODE_VAO: {
                 bind();
 
-                GLES20.glDrawArrays(GLES20.GL_TRIANGLE_STRIP, 0, this.count);
+                GlOperation.getBackend().glDrawArrays(GLES20.GL_TRIANGLE_STRIP, 0, this.count);
 
                 unbind();
                 break;
             }
+            case GlBuffer.MODE_STREAM:
             case GlBuffer.MODE_VBO: {
                 program.enableAttributes();
 
@@ -25,12 +26,12 @@ public class GlDrawableBuffer<T> extends GlBuffer<T>{
 
                 if(this.vertexAttribHandles != null) {
                     for (int index = 0; index < this.vertexAttribHandles.length; index++) {
-                        GLES20.glVertexAttribPointer(this.vertexAttribHandles[index], this.chunks[index].components,
-                                this.chunks[index].datatype, this.chunks[index].normalized, this.stride, this.chunks[index].offset);
+                        GlOperation.getBackend().glVertexAttribPointer(this.vertexAttribHandles[index], this.chunks[index].components,
+                                this.chunks[index].datatype, this.chunks[index].normalized, this.stride, mDrawOffset + this.chunks[index].offset);
                     }
                 }
 
-                GLES20.glDrawArrays(GLES20.GL_TRIANGLE_STRIP, 0, this.count);
+                GlOperation.getBackend().glDrawArrays(GLES20.GL_TRIANGLE_STRIP, 0, this.count);
 
                 unbind();
                 program.disableAttributes();
@@ -42,12 +43,12 @@ public class GlDrawableBuffer<T> extends GlBuffer<T>{
                 if(this.vertexAttribHandles != null) {
                     for (int index = 0; index < this.vertexAttribHandles.length; index++) {
                         this.buffer.position(this.chunks[index].position);
-                        GLES20.glVertexAttribPointer(this.vertexAttribHandles[index], this.chunks[index].components,
+                        GlOperation.getBackend().glVertexAttribPointer(this.vertexAttribHandles[index], this.chunks[index].components,
                                 this.chunks[index].datatype, this.chunks[index].normalized, this.stride, this.buffer);
                     }
                 }
 
-                GLES20.glDrawArrays(GLES20.GL_TRIANGLE_STRIP, 0, this.count);
+                GlOperation.getBackend().glDrawArrays(GLES20.GL_TRIANGLE_STRIP, 0, this.count);
 
                 program.disableAttributes();
             }
@@ -1,23 +1,45 @@
 package com.thommil.animalsgo.gl.libgl;
 
 import android.opengl.GLES20;
-import android.opengl.GLES30;
 import android.util.Log;
 
 import com.thommil.animalsgo.utils.ByteBufferPool;
 
+import java.nio.Buffer;
 import java.nio.ByteBuffer;
 import java.nio.FloatBuffer;
 import java.nio.IntBuffer;
 import java.nio.ShortBuffer;
-import java.util.ArrayList;
-import java.util.List;
-
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Batch of drawable buffers sharing the same layout (ie sprites), drawn in one call :
+ *  <ul>
+ *      <li>elements are stored in slots of a buffer with reserved capacity, even after allocate()</li>
+ *      <li>removed elements become degenerate in place, their slots are reused by next additions</li>
+ *      <li>capacity is doubled when full (one reallocation of local buffer, VBO and indices)</li>
+ *      <li>adding/removing an element only marks its slot dirty, slots are uploaded once by next commit() or draw()</li>
+ *      <li>commit() only rewrites modified elements and uploads their merged slots</li>
+ *  </ul>
+ *
+ * Elements must not be committed on their own while in the batch, calls modifying an allocated
+ * batch must be done on the GL thread.
+ */
 public class GlDrawableBufferBatch<T> extends GlDrawableBuffer<T>{
 
     private static final String TAG = "A_GO/GlDraw...fferBatch";
 
-    private final List<GlDrawableBuffer<T>> mBuffers;
+    /**
+     * Default number of reserved slots
+     */
+    public static final int DEFAULT_CAPACITY = 8;
+
+    /**
+     * Maximum number of vertices addressed by short indices
+     */
+    private static final int MAX_VERTICES = 1 << 16;
 
     private GlBufferIndex mIndicesBuffer = null;
 
@@ -27,171 +49,411 @@ public class GlDrawableBufferBatch<T> extends GlDrawableBuffer<T>{
     private boolean mNormalized[];
     private int mOffset[];
 
-    private int mCountPerBuffer;
+    // Slots, null for free ones (up to mSlotsCount)
+    private GlDrawableBuffer<T>[] mSlots;
+
+    // Slots of elements
+    private final Map<GlDrawableBuffer<T>, Integer> mSlotsMap = new HashMap<>();
+
+    // Stack of free slots below mSlotsCount
+    private int[] mFreeSlots;
+    private int mFreeCount;
+
+    // Number of slots used once (drawn)
+    private int mSlotsCount;
+
+    // Layout of an element
+    private int mVerticesPerElement;
+    private int mElementSize;
+
+    private int mCapacity;
 
     public GlDrawableBufferBatch(final GlDrawableBuffer<T> ...buffers){
+        this(DEFAULT_CAPACITY, buffers);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param capacity The number of reserved slots (grows if needed)
+     * @param buffers The initial elements
+     */
+    public GlDrawableBufferBatch(final int capacity, final GlDrawableBuffer<T> ...buffers){
         super();
-        mBuffers = new ArrayList<>();
         mManagedBuffer = true;
-        for(GlDrawableBuffer buffer : buffers){
+        mCapacity = Math.max(capacity, buffers.length);
+        for(GlDrawableBuffer<T> buffer : buffers){
             addElement(buffer);
         }
     }
 
+    /**
+     * Adds an element in a free slot, the batch grows if full.
+     */
     public synchronized GlDrawableBufferBatch addElement(final GlDrawableBuffer<T> element){
         //Log.d(TAG, "addElement("+buffer+")");
-        if(this.handle != UNBIND_HANDLE){
-            throw new IllegalStateException("Cannot remove element in batch after allocate(), keep a fix amount of data using VBO/VAO");
-        }
-
-        if(mBuffers.isEmpty()){
-            this.datatype = element.chunks[0].datatype;
-            this.datasize = element.chunks[0].datasize;
-            this.stride = element.stride;
-            mPosition = new int[element.chunks.length];
-            mComponents = new int[element.chunks.length];
-            mDatatype = new int[element.chunks.length];
-            mNormalized = new boolean[element.chunks.length];
-            mOffset = new int[element.chunks.length];
-
-            for(int index=0; index < element.chunks.length; index++){
-                mPosition[index] = element.chunks[index].position;
-                mComponents[index] = element.chunks[index].components;
-                mDatatype[index] = element.chunks[index].datatype;
-                mNormalized[index] = element.chunks[index].normalized;
-                mOffset[index] = element.chunks[index].offset;
-            }
+        if(mSlotsMap.containsKey(element)){
+            return this;
         }
 
-        if(mBuffers.add(element)) {
-            this.size += element.size;
-            this.count += element.count;
-            mCountPerBuffer = this.count / mBuffers.size();
+        if(mSlots == null){
+            initLayout(element);
+        }
+        else if(element.stride != this.stride || element.count != mVerticesPerElement || element.size != mElementSize){
+            throw new IllegalArgumentException("Element layout differs from batch layout");
         }
 
-        if(this.buffer != null){
-            switch(this.datatype){
-                case TYPE_BYTE :
-                    ByteBufferPool.getInstance().returnDirectBuffer((ByteBuffer)this.buffer);
-                    break;
-                case TYPE_SHORT :
-                    ByteBufferPool.getInstance().returnDirectBuffer((ShortBuffer)this.buffer);
-                    break;
-                case TYPE_INT :
-                    ByteBufferPool.getInstance().returnDirectBuffer((IntBuffer)this.buffer);
-                    break;
-                default :
-                    ByteBufferPool.getInstance().returnDirectBuffer((FloatBuffer)this.buffer);
+        final int slot;
+        if(mFreeCount > 0){
+            slot = mFreeSlots[--mFreeCount];
+        }
+        else{
+            if(mSlotsCount == mCapacity){
+                grow(mCapacity << 1);
             }
-            this.buffer = null;
+            slot = mSlotsCount++;
+        }
+
+        //Element data is now written in batch buffer
+        releaseBuffer(element);
+        element.buffer = this.buffer;
+        mSlots[slot] = element;
+        mSlotsMap.put(element, slot);
+
+        //Local buffer rebuilt if released after allocate(), the slot must reach the VBO
+        if(this.buffer != null || this.handle != UNBIND_HANDLE){
+            prepareBuffer();
+            writeSlot(slot);
+            markSlot(slot);
         }
 
         return this;
     }
 
-    public synchronized GlDrawableBufferBatch removeElement(final GlDrawableBuffer<T> buffer){
+    /**
+     * Removes an element, its slot becomes degenerate until reused
+     */
+    public synchronized GlDrawableBufferBatch removeElement(final GlDrawableBuffer<T> element){
         //Log.d(TAG, "removeElement("+buffer+")");
-        if(this.handle != UNBIND_HANDLE){
-            throw new IllegalStateException("Cannot remove element in batch after allocate(), keep a fix amount of data using VBO/VAO");
+        final Integer slot = mSlotsMap.remove(element);
+        if(slot == null){
+            return this;
         }
-        if(mBuffers.remove(buffer)){
-            this.size -= buffer.size;
-            this.count -= buffer.count;
+
+        mSlots[slot] = null;
+        mFreeSlots[mFreeCount++] = slot;
+        element.buffer = null;
+        element.invalidate();
+
+        if(this.buffer != null || this.handle != UNBIND_HANDLE){
+            prepareBuffer();
+            clearSlot(slot);
+            markSlot(slot);
+        }
+
+        return this;
+    }
+
+    /**
+     * @return The number of elements in batch
+     */
+    public synchronized int getElementsCount(){
+        return mSlotsMap.size();
+    }
+
+    /**
+     * @return The number of reserved slots
+     */
+    public synchronized int getCapacity(){
+        return mCapacity;
+    }
+
+    /*
+     * Sets the batch layout from its first element
+     */
+    @SuppressWarnings("unchecked")
+    private void initLayout(final GlDrawableBuffer<T> element){
+        this.datatype = element.datatype;
+        this.datasize = element.datasize;
+        this.stride = element.stride;
+        mVerticesPerElement = element.count;
+        mElementSize = element.size;
+        mPosition = new int[element.chunks.length];
+        mComponents = new int[element.chunks.length];
+        mDatatype = new int[element.chunks.length];
+        mNormalized = new boolean[element.chunks.length];
+        mOffset = new int[element.chunks.length];
+
+        for(int index=0; index < element.chunks.length; index++){
+            mPosition[index] = element.chunks[index].position;
+            mComponents[index] = element.chunks[index].components;
+            mDatatype[index] = element.chunks[index].datatype;
+            mNormalized[index] = element.chunks[index].normalized;
+            mOffset[index] = element.chunks[index].offset;
         }
 
-        if(mBuffers.isEmpty()){
-            mPosition = null;
-            mComponents = null;
-            mDatatype = null;
-            mNormalized = null;
-            mOffset = null;
+        mCapacity = Math.max(1, Math.min(mCapacity, MAX_VERTICES / mVerticesPerElement));
+        mSlots = new GlDrawableBuffer[mCapacity];
+        mFreeSlots = new int[mCapacity];
+        mFreeCount = 0;
+        mSlotsCount = 0;
+        this.size = mCapacity * mElementSize;
+        this.count = mCapacity * mVerticesPerElement;
+    }
+
+    /*
+     * Reallocates local buffer, VBO and indices with a new capacity
+     */
+    private void grow(final int capacity){
+        //Log.d(TAG, "grow("+capacity+")");
+        if(capacity * mVerticesPerElement > MAX_VERTICES){
+            throw new IllegalStateException("Batch capacity exceeds "+(MAX_VERTICES / mVerticesPerElement)+" elements");
         }
+        mCapacity = capacity;
+        mSlots = Arrays.copyOf(mSlots, capacity);
+        mFreeSlots = Arrays.copyOf(mFreeSlots, capacity);
+        this.size = capacity * mElementSize;
+        this.count = capacity * mVerticesPerElement;
 
         if(this.buffer != null){
+            final Buffer previous = this.buffer;
+            this.buffer = newBuffer();
+            previous.position(0);
             switch(this.datatype){
-                case TYPE_BYTE :
-                    ByteBufferPool.getInstance().returnDirectBuffer((ByteBuffer)this.buffer);
-                    break;
-                case TYPE_SHORT :
-                    ByteBufferPool.getInstance().returnDirectBuffer((ShortBuffer)this.buffer);
+                case TYPE_FLOAT :
+                    ((FloatBuffer)this.buffer).put((FloatBuffer)previous);
                     break;
                 case TYPE_INT :
-                    ByteBufferPool.getInstance().returnDirectBuffer((IntBuffer)this.buffer);
+                    ((IntBuffer)this.buffer).put((IntBuffer)previous);
+                    break;
+                case TYPE_SHORT :
+                    ((ShortBuffer)this.buffer).put((ShortBuffer)previous);
                     break;
                 default :
-                    ByteBufferPool.getInstance().returnDirectBuffer((FloatBuffer)this.buffer);
+                    ((ByteBuffer)this.buffer).put((ByteBuffer)previous);
+            }
+            returnBuffer(previous, this.datatype);
+            for(int slot=0; slot < mSlotsCount; slot++){
+                if(mSlots[slot] != null){
+                    mSlots[slot].buffer = this.buffer;
+                }
             }
-            this.buffer = null;
         }
 
-        return this;
+        if(mIndicesBuffer != null){
+            mIndicesBuffer.free();
+            mIndicesBuffer = null;
+            prepareIndices();
+        }
+
+        //Single reallocation of the server buffer, same handle (VAO still valid)
+        if(this.handle != UNBIND_HANDLE){
+            prepareBuffer();
+            if(this.mode == MODE_STREAM){
+                mStreamSegmentSize = (this.size + STREAM_ALIGNMENT - 1) & ~(STREAM_ALIGNMENT - 1);
+                mStreamSegment = -1;
+                GlOperation.bindBuffer(this.target, this.handle);
+                GlOperation.getBackend().glBufferData(this.target, mStreamSegmentSize * STREAM_SEGMENTS, null, USAGE_STREAM_DRAW);
+                GlOperation.bindBuffer(this.target, UNBIND_HANDLE);
+                markDirty();
+            }
+            else{
+                this.buffer.position(0);
+                GlOperation.bindBuffer(this.target, this.handle);
+                GlOperation.getBackend().glBufferData(this.target, this.size, this.buffer, this.usage);
+                GlOperation.bindBuffer(this.target, UNBIND_HANDLE);
+                sUploadedBytes += this.size;
+                clearDirty();
+            }
+            GlOperation.checkGlError(TAG, "glBufferData");
+        }
+    }
+
+    /*
+     * Gets the local buffer, rebuilt from elements if it has been released
+     */
+    private void prepareBuffer(){
+        if(this.buffer == null) {
+            this.buffer = newBuffer();
+            for(int slot=0; slot < mSlotsCount; slot++){
+                if(mSlots[slot] != null){
+                    writeSlot(slot);
+                }
+                else{
+                    clearSlot(slot);
+                }
+            }
+        }
+    }
+
+    private Buffer newBuffer(){
+        switch (this.datatype) {
+            case TYPE_FLOAT:
+                return ByteBufferPool.getInstance().getDirectFloatBuffer(this.size >> 2);
+            case TYPE_INT:
+                return ByteBufferPool.getInstance().getDirectIntBuffer(this.size >> 2);
+            case TYPE_SHORT:
+                return ByteBufferPool.getInstance().getDirectShortBuffer(this.size >> 1);
+            default:
+                return ByteBufferPool.getInstance().getDirectByteBuffer(this.size);
+        }
+    }
+
+    private void prepareIndices(){
+        if (mIndicesBuffer == null) {
+            mIndicesBuffer = new GlBufferIndex(mCapacity, mVerticesPerElement);
+            mIndicesBuffer.allocate(this.usage);
+        }
+    }
+
+    /*
+     * Writes an element in its slot of local buffer
+     */
+    private void writeSlot(final int slot){
+        mSlots[slot].invalidate();
+        commitSlot(slot);
+    }
+
+    /*
+     * Commits an element in its slot of local buffer (written only if modified)
+     */
+    private void commitSlot(final int slot){
+        final GlDrawableBuffer<T> element = mSlots[slot];
+        element.buffer = this.buffer;
+        this.buffer.position(slot * mElementSize / this.datasize);
+        element.commit(false);
+    }
+
+    /*
+     * Fills a slot with zeros (degenerate triangles)
+     */
+    private void clearSlot(final int slot){
+        final int start = slot * mElementSize / this.datasize;
+        final int end = start + mElementSize / this.datasize;
+        switch(this.datatype){
+            case TYPE_FLOAT :
+                for(int index=start; index < end; index++){
+                    ((FloatBuffer)this.buffer).put(index, 0f);
+                }
+                break;
+            case TYPE_INT :
+                for(int index=start; index < end; index++){
+                    ((IntBuffer)this.buffer).put(index, 0);
+                }
+                break;
+            case TYPE_SHORT :
+                for(int index=start; index < end; index++){
+                    ((ShortBuffer)this.buffer).put(index, (short)0);
+                }
+                break;
+            default :
+                for(int index=start; index < end; index++){
+                    ((ByteBuffer)this.buffer).put(index, (byte)0);
+                }
+        }
+    }
+
+    /*
+     * Marks a slot to upload if the batch is allocated, uploads are coalesced in next commit() or draw()
+     * (one per frame, a MODE_STREAM batch would otherwise use a ring segment per modification)
+     */
+    private void markSlot(final int slot){
+        if(this.handle != UNBIND_HANDLE){
+            markDirty(slot * mElementSize, (slot + 1) * mElementSize);
+        }
+    }
+
+    /*
+     * Returns the managed local buffer of an element to the pool
+     */
+    private static void releaseBuffer(final GlBuffer<?> element){
+        if(element.mManagedBuffer && element.buffer != null){
+            returnBuffer(element.buffer, element.datatype);
+            element.buffer = null;
+        }
+        element.mManagedBuffer = false;
+    }
+
+    private static void returnBuffer(final Buffer buffer, final int datatype){
+        switch(datatype){
+            case TYPE_BYTE :
+                ByteBufferPool.getInstance().returnDirectBuffer((ByteBuffer)buffer);
+                break;
+            case TYPE_SHORT :
+                ByteBufferPool.getInstance().returnDirectBuffer((ShortBuffer)buffer);
+                break;
+            case TYPE_INT :
+                ByteBufferPool.getInstance().returnDirectBuffer((IntBuffer)buffer);
+                break;
+            default :
+                ByteBufferPool.getInstance().returnDirectBuffer((FloatBuffer)buffer);
+        }
     }
 
     @Override
     public GlBuffer allocate(final int usage, final int target, final boolean freeLocal){
         //android.util.//Log.d(TAG,"createVBO("+usage+","+target+","+freeLocal+")");
+        if(mSlots == null){
+            throw new IllegalStateException("Cannot allocate an empty batch, layout is set by first element");
+        }
         if(this.handle == UNBIND_HANDLE){
             final int[] handles = new int[1];
 
             //Create buffer on server
-            GLES20.glGenBuffers(1, handles, 0);
+            GlOperation.getBackend().glGenBuffers(1, handles, 0);
             this.handle = handles[0];
             this.target = target;
+            this.usage = usage;
 
             GlOperation.checkGlError(TAG, "glGenBuffers");
 
             //Bind it
-            GLES20.glBindBuffer(target, this.handle);
+            GlOperation.bindBuffer(target, this.handle);
             if(this.buffer == null){
                 this.commit(false);
             }
-            //Push data into it
+            //Push data into it (whole capacity)
             this.buffer.position(0);
-            GLES20.glBufferData(target, this.size, this.buffer, usage);
+            GlOperation.getBackend().glBufferData(target, this.size, this.buffer, usage);
+            sUploadedBytes += this.size;
+            clearDirty();
             //Unbind it
-            GLES20.glBindBuffer(target, UNBIND_HANDLE);
+            GlOperation.bindBuffer(target, UNBIND_HANDLE);
 
             //Check error on bind only
             GlOperation.checkGlError(TAG, "glBufferData");
 
-            //Free local buffer is queried
+            //Free local buffer is queried, rebuilt on next modification
             if(mManagedBuffer && freeLocal){
-                switch(this.datatype){
-                    case TYPE_BYTE :
-                        ByteBufferPool.getInstance().returnDirectBuffer((ByteBuffer)this.buffer);
-                        break;
-                    case TYPE_SHORT :
-                        ByteBufferPool.getInstance().returnDirectBuffer((ShortBuffer)this.buffer);
-                        break;
-                    case TYPE_INT :
-                        ByteBufferPool.getInstance().returnDirectBuffer((IntBuffer)this.buffer);
-                        break;
-                    default :
-                        ByteBufferPool.getInstance().returnDirectBuffer((FloatBuffer)this.buffer);
-                }
+                returnBuffer(this.buffer, this.datatype);
                 this.buffer = null;
+                for(int slot=0; slot < mSlotsCount; slot++){
+                    if(mSlots[slot] != null){
+                        mSlots[slot].buffer = null;
+                    }
+                }
             }
 
             mode = MODE_VBO;
 
             if(GlOperation.getVersion()[0] >= 3 && this.vertexAttribHandles != null
                     && this.vertexAttribHandles.length > 0){
-                GLES30.glGenVertexArrays(1, handles, 0);
+                GlOperation.getBackend().glGenVertexArrays(1, handles, 0);
                 mVaoHandle = handles[0];
                 GlOperation.checkGlError(TAG, "glGenVertexArrays");
 
-                GLES30.glBindVertexArray(mVaoHandle);
-                GLES20.glBindBuffer(target, this.handle);
+                GlOperation.bindVertexArray(mVaoHandle);
+                GlOperation.bindBuffer(target, this.handle);
 
                 for(int index=0; index < this.vertexAttribHandles.length; index++){
-                    GLES20.glEnableVertexAttribArray(this.vertexAttribHandles[index]);
-                    GLES20.glVertexAttribPointer(this.vertexAttribHandles[index], mComponents[index],
+                    GlOperation.getBackend().glEnableVertexAttribArray(this.vertexAttribHandles[index]);
+                    GlOperation.getBackend().glVertexAttribPointer(this.vertexAttribHandles[index], mComponents[index],
                             mDatatype[index], mNormalized[index], stride, mOffset[index]);
                 }
                 GlOperation.checkGlError(TAG, "glVertexAttribPointer");
 
-                GLES20.glBindBuffer(target, UNBIND_HANDLE);
-                GLES30.glBindVertexArray(UNBIND_HANDLE);
+                GlOperation.bindBuffer(target, UNBIND_HANDLE);
+                GlOperation.bindVertexArray(UNBIND_HANDLE);
 
                 mode = MODE_VAO;
             }
@@ -204,60 +466,31 @@ public class GlDrawableBufferBatch<T> extends GlDrawableBuffer<T>{
     }
 
 
+    /**
+     * Rewrites the modified elements in their slots, only their (merged) slots are uploaded
+     */
     @Override
-    public GlBuffer commit(boolean push) {
-        if(this.buffer == null) {
-            switch (this.datatype) {
-                case TYPE_FLOAT:
-                    this.buffer = ByteBufferPool.getInstance().getDirectFloatBuffer(this.size >> 2);
-                    for (final GlBuffer<T> element : mBuffers) {
-                        element.buffer = this.buffer;
-                    }
-                    break;
-                case TYPE_INT:
-                    this.buffer = ByteBufferPool.getInstance().getDirectIntBuffer(this.size >> 2);
-                    for (final GlBuffer<T> element : mBuffers) {
-                        element.buffer = this.buffer;
-                    }
-                    break;
-                case TYPE_SHORT:
-                    this.buffer = ByteBufferPool.getInstance().getDirectShortBuffer(this.size >> 1);
-                    for (final GlBuffer<T> element : mBuffers) {
-                        element.buffer = this.buffer;
-                    }
-                    break;
-                default:
-                    this.buffer = ByteBufferPool.getInstance().getDirectByteBuffer(this.size);
-                    for (final GlBuffer<T> element : mBuffers) {
-                        element.buffer = this.buffer;
-                    }
-                    break;
-            }
+    public synchronized GlBuffer commit(boolean push) {
+        if(mSlots == null){
+            return this;
         }
 
-        final int elementsCount = mBuffers.size();
-        if(elementsCount > 0) {
-            if (mIndicesBuffer == null) {
-                mIndicesBuffer = new GlBufferIndex(elementsCount, mBuffers.get(0).count);
-                mIndicesBuffer.allocate(this.usage);
-            } else {
-                if (elementsCount != mIndicesBuffer.getElementsCount()) {
-                    mIndicesBuffer.free();
-                    mIndicesBuffer = new GlBufferIndex(elementsCount, mBuffers.get(0).count);
-                    mIndicesBuffer.allocate(this.usage);
+        if(this.buffer == null){
+            prepareBuffer();
+            markDirty();
+        }
+        else{
+            for(int slot=0; slot < mSlotsCount; slot++){
+                if(mSlots[slot] != null && mSlots[slot].mustCommit()){
+                    commitSlot(slot);
+                    markDirty(slot * mElementSize, (slot + 1) * mElementSize);
                 }
             }
         }
+        prepareIndices();
 
-        int bufferIndex = 0;
-        for(final GlBuffer<T> element : mBuffers){
-            this.buffer.position(bufferIndex * element.stride);
-            element.commit(false);
-            bufferIndex++;
-        }
-
-        //Update server if needed
-        if(push){
+        //Update server if needed (nothing dirty -> no upload)
+        if(push && (mDirtyAll || mDirtyCount > 0)){
             push();
         }
 
@@ -286,17 +519,29 @@ public class GlDrawableBufferBatch<T> extends GlDrawableBuffer<T>{
 
     @Override
     public void draw(GlProgram program) {
+        if(mSlotsCount == 0){
+            return;
+        }
+        prepareIndices();
+        //Pending additions/removals
+        if(this.handle != UNBIND_HANDLE && (mDirtyAll || mDirtyCount > 0)){
+            prepareBuffer();
+            push();
+        }
+        //Indices of used slots only (prefix of the strip)
+        final int indicesCount = (mVerticesPerElement + 2) * mSlotsCount - 2;
         switch (this.mode){
             case GlBuffer.MODE_VAO: {
                 bind();
 
                 mIndicesBuffer.bind();
-                GLES20.glDrawElements(GLES20.GL_TRIANGLE_STRIP, mIndicesBuffer.count, GLES20.GL_UNSIGNED_SHORT, 0);
+                GlOperation.getBackend().glDrawElements(GLES20.GL_TRIANGLE_STRIP, indicesCount, GLES20.GL_UNSIGNED_SHORT, 0);
                 mIndicesBuffer.unbind();
 
                 unbind();
                 break;
             }
+            case GlBuffer.MODE_STREAM:
             case GlBuffer.MODE_VBO: {
                 program.enableAttributes();
 
@@ -304,13 +549,13 @@ public class GlDrawableBufferBatch<T> extends GlDrawableBuffer<T>{
 
                 if(this.vertexAttribHandles != null) {
                     for (int index = 0; index < this.vertexAttribHandles.length; index++) {
-                        GLES20.glVertexAttribPointer(this.vertexAttribHandles[index], mComponents[index],
-                                mDatatype[index], mNormalized[index], this.stride, mOffset[index]);
+                        GlOperation.getBackend().glVertexAttribPointer(this.vertexAttribHandles[index], mComponents[index],
+                                mDatatype[index], mNormalized[index], this.stride, mDrawOffset + mOffset[index]);
                     }
                 }
 
                 mIndicesBuffer.bind();
-                GLES20.glDrawElements(GLES20.GL_TRIANGLE_STRIP, mIndicesBuffer.count, GLES20.GL_UNSIGNED_SHORT, 0);
+                GlOperation.getBackend().glDrawElements(GLES20.GL_TRIANGLE_STRIP, indicesCount, GLES20.GL_UNSIGNED_SHORT, 0);
                 mIndicesBuffer.unbind();
 
                 unbind();
@@ -323,14 +568,14 @@ public class GlDrawableBufferBatch<T> extends GlDrawableBuffer<T>{
                 if(this.vertexAttribHandles != null) {
                     for (int index = 0; index < this.vertexAttribHandles.length; index++) {
                         this.buffer.position(mPosition[index]);
-                        GLES20.glVertexAttribPointer(this.vertexAttribHandles[index], mComponents[index],
+                        GlOperation.getBackend().glVertexAttribPointer(this.vertexAttribHandles[index], mComponents[index],
                                 mDatatype[index], mNormalized[index], this.stride, this.buffer);
                     }
                 }
 
                 mIndicesBuffer.bind();
                 this.buffer.position(0);
-                GLES20.glDrawElements(GLES20.GL_TRIANGLE_STRIP, mIndicesBuffer.count, GLES20.GL_UNSIGNED_SHORT, 0);
+                GlOperation.getBackend().glDrawElements(GLES20.GL_TRIANGLE_STRIP, indicesCount, GLES20.GL_UNSIGNED_SHORT, 0);
                 mIndicesBuffer.unbind();
 
                 program.disableAttributes();
@@ -340,13 +585,23 @@ public class GlDrawableBufferBatch<T> extends GlDrawableBuffer<T>{
 
 
     @Override
-    public GlBuffer free() {
+    public synchronized GlBuffer free() {
+        //Elements must not keep the released buffer
+        for(GlDrawableBuffer<T> element : mSlotsMap.keySet()){
+            element.buffer = null;
+            element.invalidate();
+        }
         super.free();
+        mManagedBuffer = true;
         if(mIndicesBuffer != null){
             mIndicesBuffer.free();
             mIndicesBuffer = null;
         }
-        mBuffers.clear();
+        mSlotsMap.clear();
+        mSlots = null;
+        mFreeSlots = null;
+        mFreeCount = 0;
+        mSlotsCount = 0;
         return this;
     }
 }
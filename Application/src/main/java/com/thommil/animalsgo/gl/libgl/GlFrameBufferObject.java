@@ -81,7 +81,7 @@ public class GlFrameBufferObject {
 	 */
 	public GlFrameBufferObject(){
 		final int[]handles = new int[1];
-		GLES20.glGenFramebuffers(1, handles, 0);
+		GlOperation.getBackend().glGenFramebuffers(1, handles, 0);
 		this.handle = handles[0];
 	}
 	
@@ -95,15 +95,15 @@ public class GlFrameBufferObject {
 		////Log.d(TAG,"attach("+type+")");
 		switch(attachment.getTarget()){
 			case GLES20.GL_RENDERBUFFER:
-				GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, this.handle);
-				GLES20.glFramebufferRenderbuffer(GLES20.GL_FRAMEBUFFER, type, GLES20.GL_RENDERBUFFER, attachment.getHandle());
-				GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, UNBIND_HANDLE);
+				GlOperation.getBackend().glBindFramebuffer(GLES20.GL_FRAMEBUFFER, this.handle);
+				GlOperation.getBackend().glFramebufferRenderbuffer(GLES20.GL_FRAMEBUFFER, type, GLES20.GL_RENDERBUFFER, attachment.getHandle());
+				GlOperation.getBackend().glBindFramebuffer(GLES20.GL_FRAMEBUFFER, UNBIND_HANDLE);
                 GlOperation.checkGlError(TAG, "glFramebufferRenderbuffer");
 				break;
 			case GLES20.GL_TEXTURE_2D:
-				GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, this.handle);
-				GLES20.glFramebufferTexture2D(GLES20.GL_FRAMEBUFFER, type, attachment.getTarget(), attachment.getHandle(), attachment.getLevel());
-				GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, UNBIND_HANDLE);
+				GlOperation.getBackend().glBindFramebuffer(GLES20.GL_FRAMEBUFFER, this.handle);
+				GlOperation.getBackend().glFramebufferTexture2D(GLES20.GL_FRAMEBUFFER, type, attachment.getTarget(), attachment.getHandle(), attachment.getLevel());
+				GlOperation.getBackend().glBindFramebuffer(GLES20.GL_FRAMEBUFFER, UNBIND_HANDLE);
                 GlOperation.checkGlError(TAG, "glFramebufferTexture2D");
 				break;
 			default:
@@ -147,9 +147,9 @@ public class GlFrameBufferObject {
 				break;
 		}
 		
-		GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, this.handle);
-		GLES20.glFramebufferRenderbuffer(GLES20.GL_FRAMEBUFFER, type, GLES20.GL_RENDERBUFFER, UNBIND_HANDLE);
-		GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, UNBIND_HANDLE);
+		GlOperation.getBackend().glBindFramebuffer(GLES20.GL_FRAMEBUFFER, this.handle);
+		GlOperation.getBackend().glFramebufferRenderbuffer(GLES20.GL_FRAMEBUFFER, type, GLES20.GL_RENDERBUFFER, UNBIND_HANDLE);
+		GlOperation.getBackend().glBindFramebuffer(GLES20.GL_FRAMEBUFFER, UNBIND_HANDLE);
         GlOperation.checkGlError(TAG, "glFramebufferRenderbuffer");
 		mReadSettings = null;
 		return this;
@@ -160,7 +160,7 @@ public class GlFrameBufferObject {
 	 */
 	public GlFrameBufferObject bind(){
 		////Log.d(TAG,"bind()");
-		GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, this.handle);
+		GlOperation.getBackend().glBindFramebuffer(GLES20.GL_FRAMEBUFFER, this.handle);
 		return this;
 	}
 	
@@ -169,7 +169,7 @@ public class GlFrameBufferObject {
 	 */
 	public GlFrameBufferObject unbind(){
 		////Log.d(TAG,"unbind()");
-		GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, UNBIND_HANDLE);
+		GlOperation.getBackend().glBindFramebuffer(GLES20.GL_FRAMEBUFFER, UNBIND_HANDLE);
 		return this;
 	}
 	
@@ -187,12 +187,12 @@ public class GlFrameBufferObject {
 		////Log.d(TAG,"read()");
 		ByteBuffer pixels;
 
-		GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, this.handle);
+		GlOperation.getBackend().glBindFramebuffer(GLES20.GL_FRAMEBUFFER, this.handle);
 		
 		if(mReadSettings == null){
 			mReadSettings = new int[3];
-			GLES20.glGetIntegerv(GLES20.GL_IMPLEMENTATION_COLOR_READ_TYPE, mReadSettings, 0);
-			GLES20.glGetIntegerv(GLES20.GL_IMPLEMENTATION_COLOR_READ_FORMAT, mReadSettings, 1);
+			GlOperation.getBackend().glGetIntegerv(GLES20.GL_IMPLEMENTATION_COLOR_READ_TYPE, mReadSettings, 0);
+			GlOperation.getBackend().glGetIntegerv(GLES20.GL_IMPLEMENTATION_COLOR_READ_FORMAT, mReadSettings, 1);
 			mReadSettings[2] = 0;
 			
 			switch(mReadSettings[0]){
@@ -232,9 +232,9 @@ public class GlFrameBufferObject {
 			default:
 				pixels.order(ByteOrder.nativeOrder());
 		}
-		GLES20.glReadPixels(x, y, width, height, mReadSettings[1], mReadSettings[0], pixels);
+		GlOperation.getBackend().glReadPixels(x, y, width, height, mReadSettings[1], mReadSettings[0], pixels);
 
-		GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, UNBIND_HANDLE);
+		GlOperation.getBackend().glBindFramebuffer(GLES20.GL_FRAMEBUFFER, UNBIND_HANDLE);
 
 		return pixels;
 	}
@@ -246,9 +246,9 @@ public class GlFrameBufferObject {
 	 */
 	public int getStatus(){
 		////Log.d(TAG,"getStatus()");
-		GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, this.handle);
-		final int status = GLES20.glCheckFramebufferStatus(GLES20.GL_FRAMEBUFFER);
-		GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, UNBIND_HANDLE);
+		GlOperation.getBackend().glBindFramebuffer(GLES20.GL_FRAMEBUFFER, this.handle);
+		final int status = GlOperation.getBackend().glCheckFramebufferStatus(GLES20.GL_FRAMEBUFFER);
+		GlOperation.getBackend().glBindFramebuffer(GLES20.GL_FRAMEBUFFER, UNBIND_HANDLE);
 		return status;
 	}
 	
@@ -257,7 +257,7 @@ public class GlFrameBufferObject {
 	 */
 	public GlFrameBufferObject free(){
 		////Log.d(TAG,"free()");
-		GLES20.glDeleteFramebuffers(1, new int[]{this.handle}, 0);
+		GlOperation.getBackend().glDeleteFramebuffers(1, new int[]{this.handle}, 0);
         GlOperation.checkGlError(TAG, "glDeleteTextures");
 		return this;
 	}
@@ -1,5 +1,6 @@
 package com.thommil.animalsgo.gl.libgl;
 
+import android.opengl.GLES11Ext;
 import android.opengl.GLES20;
 import android.opengl.GLException;
 import android.opengl.GLUtils;
@@ -20,6 +21,10 @@ import java.util.regex.Pattern;
  *  <li>Culling</li>
  * </ul>
  * <br/>
+ * Pipeline states (tests, blend, viewport, texture units and bindings, program, buffers, VAO)
+ * are shadowed to skip redundant GL calls, calls must be done from the GL thread through this
+ * class and invalidate() must be called when foreign code touches GL states.
+ * <br/>
  * This class is mainly here to help as a reminder to use vertex and fragment operations and should be ommitted
  * for better portability. Direct calls should be used instead.
  * 
@@ -296,6 +301,94 @@ public final class GlOperation {
      */
     private static final Pattern VERSION_PATTERN = Pattern.compile("[^\\d]*(\\d){1,2}\\.(\\d){1,2}.*");
 
+	/**
+	 * Unknown value in shadow states
+	 */
+	private static final int UNKNOWN = -1;
+
+	/**
+	 * Number of texture units shadowed
+	 */
+	private static final int TEXTURE_UNITS = 32;
+
+	/**
+	 * Shadowed tests (index in sTestStates)
+	 */
+	private static final int[] SHADOWED_TESTS = {TEST_DEPTH, TEST_STENCIL, TEST_BLEND, TEST_DITHER,
+			TEST_SCISSOR, TEST_CULLING, TEST_SAMPLE_COVERAGE, TEST_SAMPLE_ALPHA_TO_COVERAGE};
+
+	/**
+	 * Shadow states : tests (UNKNOWN, 0 or 1)
+	 */
+	private static final int[] sTestStates = new int[SHADOWED_TESTS.length];
+
+	/**
+	 * Shadow states : blend function, equation and color
+	 */
+	private static int sBlendSrcFactor, sBlendDstFactor, sBlendOperation;
+	private static final float[] sBlendColor = new float[4];
+	private static boolean sBlendColorKnown;
+
+	/**
+	 * Shadow states : viewport
+	 */
+	private static final int[] sViewport = new int[4];
+
+	/**
+	 * Shadow states : active texture unit
+	 */
+	private static int sActiveTexture;
+
+	/**
+	 * Shadow states : bound textures per unit (TEXTURE_2D, TEXTURE_EXTERNAL_OES)
+	 */
+	private static final int[][] sBoundTextures = new int[TEXTURE_UNITS][2];
+
+	/**
+	 * Shadow states : program, array buffer, element buffer and VAO
+	 */
+	private static int sProgram, sArrayBuffer, sElementBuffer, sVertexArray;
+
+	/**
+	 * Number of state calls and skipped (redundant) state calls in current frame
+	 */
+	private static int sStateCalls, sRedundantCalls;
+
+	/**
+	 * Number of state calls and skipped (redundant) state calls during last frame
+	 */
+	private static int sFrameStateCalls, sFrameRedundantCalls;
+
+	/**
+	 * Current GL backend
+	 */
+	private static GlBackend sBackend = GlesBackend.getInstance();
+
+	static{
+		invalidate();
+	}
+
+	/**
+	 * Set the backend receiving all GL calls of libgl (GlesBackend by default), shadowed states
+	 * are invalidated. Must be called from the GL thread before any GL object is created.
+	 *
+	 * @param backend The new backend
+	 */
+	public static void setBackend(final GlBackend backend){
+		//android.util.//Log.d(TAG,"setBackend("+backend+")");
+		sBackend = backend;
+		invalidate();
+	}
+
+	/**
+	 * Get the backend receiving GL calls
+	 *
+	 * @return The current {@link GlBackend}
+	 */
+	public static GlBackend getBackend(){
+		return sBackend;
+	}
+
 	/**
 	 * Enable or disable several preset OpenGLES tests
 	 * 
@@ -304,11 +397,21 @@ public final class GlOperation {
 	 */
 	public static final void setTestState(final int testFlag, final boolean enabled){
 		//android.util.//Log.d(TAG,"NEW");
+		sStateCalls++;
+		final int test = getTestIndex(testFlag);
+		final int state = enabled ? 1 : 0;
+		if(test != UNKNOWN){
+			if(sTestStates[test] == state){
+				sRedundantCalls++;
+				return;
+			}
+			sTestStates[test] = state;
+		}
 		if(enabled){
-			GLES20.glEnable(testFlag);
+			sBackend.glEnable(testFlag);
 		}
 		else{
-			GLES20.glDisable(testFlag);
+			sBackend.glDisable(testFlag);
 		}
 	}
 	
@@ -322,7 +425,7 @@ public final class GlOperation {
 	 */
 	public static final void configureScissorBox(final int x, final int y, final int width, final int height){
 		//android.util.//Log.d(TAG,"configureScissorBox("+x+","+y+","+width+","+height+")");
-		GLES20.glScissor(x, y, width, height);
+		sBackend.glScissor(x, y, width, height);
 	}
 	
 	/**
@@ -337,8 +440,8 @@ public final class GlOperation {
 	 */
 	public static final void configureStencilTest(final int function, final int reference, final int mask, final int sFail, final int zFail, final int zPass){
 		//android.util.//Log.d(TAG,"configureStencilTest("+function+","+reference+","+mask+","+sFail+","+zFail+","+zPass+")");
-		GLES20.glStencilFunc(function, reference, mask);
-		GLES20.glStencilOp(sFail, zFail, zPass);
+		sBackend.glStencilFunc(function, reference, mask);
+		sBackend.glStencilOp(sFail, zFail, zPass);
 	}
 	
 	/**
@@ -348,7 +451,7 @@ public final class GlOperation {
 	 */
 	public static final void configureDepthTest(final int function){
 		//android.util.//Log.d(TAG,"configureDepthTest("+function+")");
-		GLES20.glDepthFunc(function);
+		sBackend.glDepthFunc(function);
 	}
 	
 	/**
@@ -364,11 +467,29 @@ public final class GlOperation {
 	 */
 	public static final void configureBlendTest(final int srcFactor, final int dstFactor, final int blendOperation, final float[] constantColor){
 		//android.util.//Log.d(TAG,"configureBlendTest("+srcFactor+","+dstFactor+","+blendOperation+","+constantColor+")");
-		if(constantColor != null) {
-			GLES20.glBlendColor(constantColor[0], constantColor[1], constantColor[2], constantColor[3]);
+		sStateCalls++;
+		boolean redundant = true;
+		if(constantColor != null && (!sBlendColorKnown || sBlendColor[0] != constantColor[0] || sBlendColor[1] != constantColor[1]
+				|| sBlendColor[2] != constantColor[2] || sBlendColor[3] != constantColor[3])) {
+			sBackend.glBlendColor(constantColor[0], constantColor[1], constantColor[2], constantColor[3]);
+			System.arraycopy(constantColor, 0, sBlendColor, 0, 4);
+			sBlendColorKnown = true;
+			redundant = false;
+		}
+		if(srcFactor != sBlendSrcFactor || dstFactor != sBlendDstFactor) {
+			sBackend.glBlendFunc(srcFactor, dstFactor);
+			sBlendSrcFactor = srcFactor;
+			sBlendDstFactor = dstFactor;
+			redundant = false;
+		}
+		if(blendOperation != sBlendOperation) {
+			sBackend.glBlendEquation(blendOperation);
+			sBlendOperation = blendOperation;
+			redundant = false;
+		}
+		if(redundant){
+			sRedundantCalls++;
 		}
-		GLES20.glBlendFunc(srcFactor, dstFactor);
-		GLES20.glBlendEquation(blendOperation);
 	}
 	
 	/**
@@ -379,8 +500,8 @@ public final class GlOperation {
 	 */
 	public static final void configureCullingTest(final int frontFace, final int cullFace){
 		//android.util.//Log.d(TAG,"configureCullingTest("+frontFace+","+cullFace+")");
-		GLES20.glFrontFace(frontFace);
-		GLES20.glCullFace(cullFace);
+		sBackend.glFrontFace(frontFace);
+		sBackend.glCullFace(cullFace);
 	}
 	
 	/**
@@ -393,7 +514,7 @@ public final class GlOperation {
 	 */
 	public static final void setColorBufferClearValue(final float red, final float green, final float blue, final float alpha){
 		//android.util.//Log.d(TAG,"setColorBufferClearValue("+red+","+green+","+blue+","+alpha+")");
-		GLES20.glClearColor(red, green, blue, alpha);
+		sBackend.glClearColor(red, green, blue, alpha);
 	}
 	
 	/**
@@ -403,7 +524,7 @@ public final class GlOperation {
 	 */
 	public static final void setDepthBufferClearValue(final float depth){
 		//android.util.//Log.d(TAG,"setDepthBufferClearValue("+depth+")");
-		GLES20.glClearDepthf(depth);
+		sBackend.glClearDepthf(depth);
 	}
 	
 	/**
@@ -413,7 +534,7 @@ public final class GlOperation {
 	 */
 	public static final void setStencilBufferClearValue(final int stencilMask){
 		//android.util.//Log.d(TAG,"setStencilBufferClearValue("+stencilMask+")");
-		GLES20.glClearStencil(stencilMask);
+		sBackend.glClearStencil(stencilMask);
 	}
 	
 	/**
@@ -423,7 +544,7 @@ public final class GlOperation {
 	 */
 	public static final void clearBuffers(final int buffersMask){
 		//android.util.//Log.d(TAG,"clearBuffers("+buffersMask+")");
-		GLES20.glClear(buffersMask);
+		sBackend.glClear(buffersMask);
 	}
 
 	/**
@@ -436,7 +557,7 @@ public final class GlOperation {
 	 */
 	public static final void setColorBufferMask(final boolean red, final boolean green, final boolean blue, final boolean alpha){
 		//android.util.//Log.d(TAG,"setColorBufferMask("+red+","+green+","+blue+","+alpha+")");
-		GLES20.glColorMask(red, green, blue, alpha);
+		sBackend.glColorMask(red, green, blue, alpha);
 	}
 	
 	/**
@@ -446,7 +567,7 @@ public final class GlOperation {
 	 */
 	public static final void setDepthBufferMask(final boolean depth){
 		//android.util.//Log.d(TAG,"setDepthBufferMask("+depth+")");
-		GLES20.glDepthMask(depth);
+		sBackend.glDepthMask(depth);
 	}
 	
 	/**
@@ -456,7 +577,7 @@ public final class GlOperation {
 	 */
 	public static final void setStencilBufferMask(final int stencilMask){
 		//android.util.//Log.d(TAG,"setStencilBufferMask("+stencilMask+")");
-		GLES20.glStencilMask(stencilMask);
+		sBackend.glStencilMask(stencilMask);
 	}
 
 	/**
@@ -466,7 +587,7 @@ public final class GlOperation {
 	 */
 	public static int checkGlError(String tag, String op) {
 		int error = GLES20.GL_NO_ERROR;
-		while ((error = GLES20.glGetError()) != GLES20.GL_NO_ERROR) {
+		while ((error = sBackend.glGetError()) != GLES20.GL_NO_ERROR) {
 			Log.e(tag, op + ": glError " + GLUtils.getEGLErrorString(error));
 		}
 		return error;
@@ -500,25 +621,25 @@ public final class GlOperation {
             //Dynamic
             case GLES20.GL_COMPRESSED_TEXTURE_FORMATS :
                 final int[]tmp1 = new int[1];
-                GLES20.glGetIntegerv(GLES20.GL_NUM_COMPRESSED_TEXTURE_FORMATS, tmp1, 0);
+                sBackend.glGetIntegerv(GLES20.GL_NUM_COMPRESSED_TEXTURE_FORMATS, tmp1, 0);
                 result = new float[tmp1[0]];
                 break;
             case GLES20.GL_SHADER_BINARY_FORMATS :
                 final int[]tmp2 = new int[1];
-                GLES20.glGetIntegerv(GLES20.GL_NUM_SHADER_BINARY_FORMATS, tmp2, 0);
+                sBackend.glGetIntegerv(GLES20.GL_NUM_SHADER_BINARY_FORMATS, tmp2, 0);
                 result = new float[tmp2[0]];
                 break;
             //1
             default :
                 result = new float[1];
         }
-        GLES20.glGetFloatv(key, result, 0);
+        sBackend.glGetFloatv(key, result, 0);
         return result;
     }
 
     public static int[] getVersion(){
         final int[]version = new int[2];
-        final String strVersion = GLES20.glGetString(GLES20.GL_SHADING_LANGUAGE_VERSION);
+        final String strVersion = sBackend.glGetString(GLES20.GL_SHADING_LANGUAGE_VERSION);
         final Matcher versionMatcher = VERSION_PATTERN.matcher(strVersion);
         try {
             if(versionMatcher.matches()) {
@@ -537,19 +658,268 @@ public final class GlOperation {
 	}
 
 	public static String getExtensions(){
-		return GLES20.glGetString(GLES20.GL_EXTENSIONS);
+		return sBackend.glGetString(GLES20.GL_EXTENSIONS);
+	}
+
+	/**
+	 * Indicates if an extension is supported by the current context
+	 *
+	 * @param extension The extension name (whole name, not a prefix)
+	 */
+	public static boolean hasExtension(final String extension){
+		final String extensions = getExtensions();
+		if(extensions == null){
+			return false;
+		}
+		for(final String supported : extensions.split(" ")){
+			if(supported.equals(extension)){
+				return true;
+			}
+		}
+		return false;
 	}
 
 	public static String getRenderer(){
-		return GLES20.glGetString(GLES20.GL_RENDERER);
+		return sBackend.glGetString(GLES20.GL_RENDERER);
 	}
 
     public static void setViewport(final int left, final int bottom, final int width, final int height){
-    	GLES20.glViewport(left, bottom, width, height);
+		sStateCalls++;
+		if(sViewport[0] == left && sViewport[1] == bottom && sViewport[2] == width && sViewport[3] == height){
+			sRedundantCalls++;
+			return;
+		}
+		sViewport[0] = left;
+		sViewport[1] = bottom;
+		sViewport[2] = width;
+		sViewport[3] = height;
+    	sBackend.glViewport(left, bottom, width, height);
 	}
 
     public static void setActiveTexture(final int textureIndex){
-        GLES20.glActiveTexture(GLES20.GL_TEXTURE0 + textureIndex);
+		sStateCalls++;
+		if(sActiveTexture == textureIndex){
+			sRedundantCalls++;
+			return;
+		}
+		sActiveTexture = textureIndex;
+        sBackend.glActiveTexture(GLES20.GL_TEXTURE0 + textureIndex);
     }
+
+	/**
+	 * Bind a texture on the active texture unit
+	 *
+	 * @param target The texture target (GL_TEXTURE_2D, GL_TEXTURE_EXTERNAL_OES ...)
+	 * @param handle The texture handle, 0 to unbind
+	 */
+	public static void bindTexture(final int target, final int handle){
+		sStateCalls++;
+		final int targetIndex = getTextureTargetIndex(target);
+		if(targetIndex != UNKNOWN && sActiveTexture >= 0 && sActiveTexture < TEXTURE_UNITS){
+			if(sBoundTextures[sActiveTexture][targetIndex] == handle){
+				sRedundantCalls++;
+				return;
+			}
+			sBoundTextures[sActiveTexture][targetIndex] = handle;
+		}
+		sBackend.glBindTexture(target, handle);
+	}
+
+	/**
+	 * Use a program on pipeline
+	 *
+	 * @param handle The program handle, 0 for none
+	 */
+	public static void useProgram(final int handle){
+		sStateCalls++;
+		if(sProgram == handle){
+			sRedundantCalls++;
+			return;
+		}
+		sProgram = handle;
+		sBackend.glUseProgram(handle);
+	}
+
+	/**
+	 * Bind a buffer on its target
+	 *
+	 * @param target GL_ARRAY_BUFFER or GL_ELEMENT_ARRAY_BUFFER (others are not shadowed)
+	 * @param handle The buffer handle, 0 to unbind
+	 */
+	public static void bindBuffer(final int target, final int handle){
+		sStateCalls++;
+		switch(target){
+			case GLES20.GL_ARRAY_BUFFER :
+				if(sArrayBuffer == handle){
+					sRedundantCalls++;
+					return;
+				}
+				sArrayBuffer = handle;
+				break;
+			case GLES20.GL_ELEMENT_ARRAY_BUFFER :
+				if(sElementBuffer == handle){
+					sRedundantCalls++;
+					return;
+				}
+				sElementBuffer = handle;
+				break;
+		}
+		sBackend.glBindBuffer(target, handle);
+	}
+
+	/**
+	 * Bind a VAO (GLES 3.0), the element buffer binding is part of VAO state
+	 *
+	 * @param handle The VAO handle, 0 to unbind
+	 */
+	public static void bindVertexArray(final int handle){
+		sStateCalls++;
+		if(sVertexArray == handle){
+			sRedundantCalls++;
+			return;
+		}
+		sVertexArray = handle;
+		sElementBuffer = UNKNOWN;
+		sBackend.glBindVertexArray(handle);
+	}
+
+	/**
+	 * Forget shadowed bindings of a deleted buffer (GL unbinds it)
+	 *
+	 * @param handle The deleted buffer handle
+	 */
+	public static void onBufferDeleted(final int handle){
+		if(sArrayBuffer == handle){
+			sArrayBuffer = GLES20.GL_NONE;
+		}
+		if(sElementBuffer == handle){
+			sElementBuffer = UNKNOWN;
+		}
+	}
+
+	/**
+	 * Forget shadowed binding of a deleted VAO (GL unbinds it)
+	 *
+	 * @param handle The deleted VAO handle
+	 */
+	public static void onVertexArrayDeleted(final int handle){
+		if(sVertexArray == handle){
+			sVertexArray = GLES20.GL_NONE;
+			sElementBuffer = UNKNOWN;
+		}
+	}
+
+	/**
+	 * Forget shadowed bindings of a deleted texture (GL unbinds it)
+	 *
+	 * @param handle The deleted texture handle
+	 */
+	public static void onTextureDeleted(final int handle){
+		for(int unit=0; unit < TEXTURE_UNITS; unit++){
+			for(int targetIndex=0; targetIndex < 2; targetIndex++){
+				if(sBoundTextures[unit][targetIndex] == handle){
+					sBoundTextures[unit][targetIndex] = GLES20.GL_NONE;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Forget shadowed state of a deleted program (GL keeps a used program until next use)
+	 *
+	 * @param handle The deleted program handle
+	 */
+	public static void onProgramDeleted(final int handle){
+		if(sProgram == handle){
+			sProgram = UNKNOWN;
+		}
+	}
+
+	/**
+	 * Forget all shadowed states, must be called after a context creation or when foreign
+	 * code has modified GL states.
+	 */
+	public static void invalidate(){
+		//android.util.//Log.d(TAG,"invalidate()");
+		for(int test=0; test < sTestStates.length; test++){
+			sTestStates[test] = UNKNOWN;
+		}
+		sBlendSrcFactor = sBlendDstFactor = sBlendOperation = UNKNOWN;
+		sBlendColorKnown = false;
+		sViewport[0] = sViewport[1] = sViewport[2] = sViewport[3] = UNKNOWN;
+		sActiveTexture = UNKNOWN;
+		invalidateTextures();
+		sProgram = sArrayBuffer = sElementBuffer = sVertexArray = UNKNOWN;
+	}
+
+	/**
+	 * Forget shadowed texture bindings only (ie after SurfaceTexture.updateTexImage())
+	 */
+	public static void invalidateTextures(){
+		for(int unit=0; unit < TEXTURE_UNITS; unit++){
+			sBoundTextures[unit][0] = sBoundTextures[unit][1] = UNKNOWN;
+		}
+	}
+
+	/**
+	 * Get the number of state calls during last frame
+	 *
+	 * @return The number of calls to shadowed states setters
+	 */
+	public static int getFrameStateCalls(){
+		return sFrameStateCalls;
+	}
+
+	/**
+	 * Get the number of redundant state calls skipped during last frame
+	 *
+	 * @return The number of calls which did not reach GL
+	 */
+	public static int getFrameRedundantCalls(){
+		return sFrameRedundantCalls;
+	}
+
+	/**
+	 * Close the state calls counters of current frame, should be called once per frame
+	 * by the renderer (GL thread).
+	 */
+	public static void endFrame(){
+		sFrameStateCalls = sStateCalls;
+		sFrameRedundantCalls = sRedundantCalls;
+		sStateCalls = 0;
+		sRedundantCalls = 0;
+	}
+
+	/**
+	 * Count a state call shadowed outside GlOperation (ie GlProgram uniforms)
+	 *
+	 * @param redundant True if the call has been skipped
+	 */
+	static void countStateCall(final boolean redundant){
+		sStateCalls++;
+		if(redundant){
+			sRedundantCalls++;
+		}
+	}
+
+	private static int getTestIndex(final int testFlag){
+		for(int test=0; test < SHADOWED_TESTS.length; test++){
+			if(SHADOWED_TESTS[test] == testFlag){
+				return test;
+			}
+		}
+		return UNKNOWN;
+	}
+
+	private static int getTextureTargetIndex(final int target){
+		switch(target){
+			case GLES20.GL_TEXTURE_2D :
+				return 0;
+			case GLES11Ext.GL_TEXTURE_EXTERNAL_OES :
+				return 1;
+			default :
+				return UNKNOWN;
+		}
+	}
 }
 
@@ -4,19 +4,22 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.Map;
+import java.util.TreeMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import android.opengl.GLES20;
+import android.opengl.GLES30;
 import android.opengl.GLException;
 
 /**
  * Helper class to get shaders source code and link program
  * <br/><br/>
  *
- *  This approach allows automatic linking based on parsing. 
+ *  Attributes and uniforms are reflected from the linked program (glGetActiveAttrib/glGetActiveUniform)
+ *  into int-indexed tables, attributes locations can be bound before link to share vertex layouts.
  *  
  * @author Thomas MILLET
  *
@@ -35,14 +38,43 @@ public class GlProgram {
 	public static final int UNBIND_HANDLE = GLES20.GL_NONE;
 	
 	/**
-	 * Attribute pattern for parsing
+	 * Unknown attribute/uniform handle
 	 */
-	private static final Pattern ATTRIBUTE_PATTERN = Pattern.compile("attribute\\s*[^\\s]*\\s*([^\\s;]*)\\s*;",Pattern.MULTILINE|Pattern.DOTALL);
-	
+	public static final int INVALID_HANDLE = -1;
+
+	/**
+	 * Prefix of built-in variables (not reflected)
+	 */
+	private static final String BUILT_IN_PREFIX = "gl_";
+
+	/**
+	 * Suffix of arrays names returned by reflection
+	 */
+	private static final String ARRAY_SUFFIX = "[0]";
+
 	/**
-	 * Uniform pattern for parsing
+	 * Directives which must precede the injected defines (leading lines only)
 	 */
-	private static final Pattern UNIFORM_PATTERN = Pattern.compile("uniform\\s*[^\\s]*\\s*([^\\s;]*)\\s*;",Pattern.MULTILINE|Pattern.DOTALL);
+	private static final Pattern HEADER_DIRECTIVE_PATTERN = Pattern.compile("\\A(?:\\s*#\\s*(?:version|extension)[^\\n]*\\n)*");
+
+	/**
+	 * ESSL 1.00 keywords and built-ins replaced when upgrading to ESSL 3.00
+	 */
+	private static final Pattern ATTRIBUTE_KEYWORD_PATTERN = Pattern.compile("\\battribute\\b");
+	private static final Pattern VARYING_KEYWORD_PATTERN = Pattern.compile("\\bvarying\\b");
+	private static final Pattern TEXTURE_FUNCTION_PATTERN = Pattern.compile("\\btexture(?:2D|Cube)\\s*\\(");
+	private static final Pattern FRAG_COLOR_PATTERN = Pattern.compile("\\bgl_FragColor\\b");
+	private static final Pattern EXTERNAL_IMAGE_EXTENSION_PATTERN = Pattern.compile("\\bGL_OES_EGL_image_external\\b");
+
+	/**
+	 * Fragment output replacing gl_FragColor in ESSL 3.00
+	 */
+	private static final String FRAG_COLOR_OUTPUT = "fragColorOut";
+
+	/**
+	 * Separator of program id and defines in variant keys
+	 */
+	private static final char VARIANT_SEPARATOR = '#';
 
 	/**
 	 * Handle on current program
@@ -60,19 +92,40 @@ public class GlProgram {
 	public final int fragmentShaderHandle;
 	
 	/**
-	 *  Handles on GSGL attributes
+	 *  Active attributes names, handles, types (GL_FLOAT_VEC4...) and sizes, same index
 	 */
-	private final Map<String,Integer> mAttributeHandles;
-	
+	private String[] mAttributeNames;
+	private int[] mAttributeHandlesArray;
+	private int[] mAttributeTypes;
+	private int[] mAttributeSizes;
+
 	/**
-	 *  Store the attributes handles for direct access
+	 *  Active uniforms (outside blocks) names, handles, types (GL_FLOAT_MAT4...) and sizes, same index
 	 */
-	private int[] mAttributeHandlesArray;
-	
+	private String[] mUniformNames;
+	private int[] mUniformHandlesArray;
+	private int[] mUniformTypes;
+	private int[] mUniformSizes;
+
+	/**
+	 * Number of floats in a mat4 uniform
+	 */
+	private static final int MAT4_SIZE = 16;
+
+	/**
+	 * Unset value of int uniforms cache
+	 */
+	private static final long UNSET_INT = Long.MIN_VALUE;
+
 	/**
-	 *  Handles on GSGL uniforms
+	 *  Current values of float uniforms indexed by handle (NaN until first set)
 	 */
-	private final Map<String,Integer> mUniformHandles;
+	private float[][] mUniformFloats = new float[0][];
+
+	/**
+	 *  Current values of int uniforms indexed by handle (UNSET_INT until first set)
+	 */
+	private long[] mUniformInts = new long[0];
 	
 	/**
 	 * Constructor, creates and link program based on specified shaders
@@ -82,11 +135,80 @@ public class GlProgram {
 	 * @throws GLException
 	 */
 	public GlProgram(final InputStream vertexShaderInputStream, final InputStream fragmentShaderInputStream){
-		this.mAttributeHandles = new HashMap<>();
-		this.mUniformHandles = new HashMap<>();
-		this.vertexShaderHandle = this.loadShader(GLES20.GL_VERTEX_SHADER, vertexShaderInputStream);
-		this.fragmentShaderHandle = this.loadShader(GLES20.GL_FRAGMENT_SHADER, fragmentShaderInputStream);
-		this.programHandle = this.createAndLinkProgram(vertexShaderHandle, fragmentShaderHandle);
+		this(vertexShaderInputStream, fragmentShaderInputStream, null);
+	}
+
+	/**
+	 * Constructor, loads program from cache or creates and link program based on specified shaders
+	 *
+	 * @param vertexShaderInputStream The vertex mProgram inputstream
+	 * @param fragmentShaderInputStream The fragment mProgram inputstream
+	 * @param cache The program binaries cache, null to always compile
+	 * @throws GLException
+	 */
+	public GlProgram(final InputStream vertexShaderInputStream, final InputStream fragmentShaderInputStream, final GlProgramCache cache){
+		this(vertexShaderInputStream, fragmentShaderInputStream, null, cache);
+	}
+
+	/**
+	 * Constructor, creates a variant of a program by injecting preprocessor defines in both shaders.
+	 * Each defines set gives a distinct source, the variants are then cached separately.
+	 *
+	 * @param vertexShaderInputStream The vertex mProgram inputstream
+	 * @param fragmentShaderInputStream The fragment mProgram inputstream
+	 * @param defines The defines (name -> value, empty value allowed), null for none
+	 * @param cache The program binaries cache, null to always compile
+	 * @throws GLException
+	 */
+	public GlProgram(final InputStream vertexShaderInputStream, final InputStream fragmentShaderInputStream, final Map<String, String> defines, final GlProgramCache cache){
+		this(readSource(GLES20.GL_VERTEX_SHADER, vertexShaderInputStream), readSource(GLES20.GL_FRAGMENT_SHADER, fragmentShaderInputStream), defines, cache);
+	}
+
+	/**
+	 * Constructor, creates a variant of a program from shaders sources (see readSource())
+	 *
+	 * @param vertexShaderSource The vertex mProgram source
+	 * @param fragmentShaderSource The fragment mProgram source
+	 * @param defines The defines (name -> value, empty value allowed), null for none
+	 * @param cache The program binaries cache, null to always compile
+	 * @throws GLException
+	 */
+	public GlProgram(final String vertexShaderSource, final String fragmentShaderSource, final Map<String, String> defines, final GlProgramCache cache){
+		this(vertexShaderSource, fragmentShaderSource, defines, null, cache);
+	}
+
+	/**
+	 * Constructor, creates a variant of a program from shaders sources with fixed attributes locations.
+	 * Programs sharing the same locations can share vertex layouts (VAOs).
+	 *
+	 * @param vertexShaderSource The vertex mProgram source
+	 * @param fragmentShaderSource The fragment mProgram source
+	 * @param defines The defines (name -> value, empty value allowed), null for none
+	 * @param attributeLocations The attributes locations (name -> location) bound before link, null to let GL choose
+	 * @param cache The program binaries cache, null to always compile
+	 * @throws GLException
+	 */
+	public GlProgram(final String vertexShaderSource, final String fragmentShaderSource, final Map<String, String> defines,
+					 final Map<String, Integer> attributeLocations, final GlProgramCache cache){
+		final String vertexSource = applyDefines(vertexShaderSource, defines);
+		final String fragmentSource = applyDefines(fragmentShaderSource, defines);
+		final String key = (cache != null && cache.isSupported()) ? cache.getKey(vertexSource, fragmentSource, attributeLocations) : null;
+		final int cachedProgramHandle = (key != null) ? cache.loadProgram(key) : UNBIND_HANDLE;
+		if(cachedProgramHandle != UNBIND_HANDLE){
+			//Shaders are not needed, locations are kept in binary
+			this.vertexShaderHandle = UNBIND_HANDLE;
+			this.fragmentShaderHandle = UNBIND_HANDLE;
+			this.programHandle = cachedProgramHandle;
+		}
+		else {
+			this.vertexShaderHandle = this.loadShader(GLES20.GL_VERTEX_SHADER, vertexSource);
+			this.fragmentShaderHandle = this.loadShader(GLES20.GL_FRAGMENT_SHADER, fragmentSource);
+			this.programHandle = this.createAndLinkProgram(vertexShaderHandle, fragmentShaderHandle, attributeLocations, (key != null) ? cache : null);
+			if(key != null){
+				cache.storeProgram(key, this.programHandle);
+			}
+		}
+		this.reflect();
 	}
 	
 	/**
@@ -106,7 +228,7 @@ public class GlProgram {
 	 */
 	public GlProgram enableAttribute(final String attributeName){
 		////Log.d(TAG,"enableAttribute("+attributeName+")");
-		GLES20.glEnableVertexAttribArray(this.getAttributeHandle(attributeName));
+		GlOperation.getBackend().glEnableVertexAttribArray(this.getAttributeHandle(attributeName));
 		return this;
 	}
 	
@@ -117,7 +239,9 @@ public class GlProgram {
 	 */
 	public GlProgram enableAttribute(final int attributeId){
 		////Log.d(TAG,"enableAttribute("+attributeId+")");
-		GLES20.glEnableVertexAttribArray(attributeId);
+		if(attributeId != INVALID_HANDLE){
+			GlOperation.getBackend().glEnableVertexAttribArray(attributeId);
+		}
 		return this;
 	}
 	
@@ -138,7 +262,7 @@ public class GlProgram {
 	 */
 	public GlProgram disableAttribute(final String attributeName){
 		////Log.d(TAG,"enableAttribute("+attributeName+")");
-		GLES20.glDisableVertexAttribArray(this.getAttributeHandle(attributeName));
+		GlOperation.getBackend().glDisableVertexAttribArray(this.getAttributeHandle(attributeName));
 		return this;
 	}
 	
@@ -149,7 +273,9 @@ public class GlProgram {
 	 */
 	public GlProgram disableAttribute(final int attributeId){
 		////Log.d(TAG,"enableAttribute("+attributeId+")");
-		GLES20.glDisableVertexAttribArray(attributeId);
+		if(attributeId != INVALID_HANDLE){
+			GlOperation.getBackend().glDisableVertexAttribArray(attributeId);
+		}
 		return this;
 	}
 	
@@ -161,66 +287,145 @@ public class GlProgram {
 	 */
 	public GlProgram use(){
 		////Log.d(TAG,"start()");
-        GLES20.glUseProgram(this.programHandle);
+        GlOperation.useProgram(this.programHandle);
         return this;
 	}
 	
+	/**
+	 * Reads a shader source
+	 *
+	 * @param type The vertex mProgram type GLES20.GL_VERTEX_SHADER | GLES20.GL_FRAGMENT_SHADER
+	 * @param inputStream The mProgram code InputStream
+	 * @return The source code
+	 */
+	public static String readSource(final int type, final InputStream inputStream){
+		try{
+			final BufferedReader bufIn = new BufferedReader(new InputStreamReader(inputStream), 8192);
+			final StringBuilder shaderCode = new StringBuilder();
+			String line = null;
+			while((line = bufIn.readLine()) != null){
+				shaderCode.append(line).append("\n");
+			}
+			return shaderCode.toString();
+		}catch(IOException ioe){
+			throw new GLException(GLES20.GL_INVALID_OPERATION, "Failed to read "+((type == GLES20.GL_VERTEX_SHADER)? "vertex":"fragment")+" mProgram");
+		}
+	}
+
+	/*
+	 * Injects defines in a shader source, after #version and #extension directives.
+	 * Defines are sorted by name so that a set always gives the same source (and cache key).
+	 *
+	 * @param source The shader source
+	 * @param defines The defines (name -> value), null for none
+	 * @return The source with the defines
+	 */
+	protected static String applyDefines(final String source, final Map<String, String> defines){
+		if(defines == null || defines.isEmpty()){
+			return source;
+		}
+		final StringBuilder definesSource = new StringBuilder(defines.size() * 32);
+		for(Map.Entry<String, String> define : new TreeMap<>(defines).entrySet()){
+			definesSource.append("#define ").append(define.getKey());
+			if(define.getValue() != null && !define.getValue().isEmpty()){
+				definesSource.append(' ').append(define.getValue());
+			}
+			definesSource.append('\n');
+		}
+		return insertHeader(source, definesSource.toString());
+	}
+
+	/**
+	 * Inserts code in a shader source, after #version and #extension directives
+	 *
+	 * @param source The shader source
+	 * @param code The code to insert (lines)
+	 * @return The source with the code
+	 */
+	public static String insertHeader(final String source, final String code){
+		final Matcher headerMatcher = HEADER_DIRECTIVE_PATTERN.matcher(source);
+		final int headerEnd = headerMatcher.lookingAt() ? headerMatcher.end() : 0;
+		return new StringBuilder(source.length() + code.length())
+				.append(source, 0, headerEnd)
+				.append(code)
+				.append(source, headerEnd, source.length()).toString();
+	}
+
+	/**
+	 * Upgrades an ESSL 1.00 shader source to ESSL 3.00 (GLES3 only features such as uniform blocks) :
+	 * 	<ul>
+	 * 	<li>attribute/varying become in/out</li>
+	 * 	<li>texture2D/textureCube become texture</li>
+	 * 	<li>gl_FragColor becomes a declared output</li>
+	 * 	<li>GL_OES_EGL_image_external becomes GL_OES_EGL_image_external_essl3</li>
+	 * 	</ul>
+	 *
+	 * Sources using external images need GL_OES_EGL_image_external_essl3 (see GlOperation.hasExtension()).
+	 *
+	 * @param type The mProgram type GLES20.GL_VERTEX_SHADER | GLES20.GL_FRAGMENT_SHADER
+	 * @param source The ESSL 1.00 source (without #version)
+	 * @return The ESSL 3.00 source
+	 */
+	public static String toEssl3(final int type, final String source){
+		String essl3Source = EXTERNAL_IMAGE_EXTENSION_PATTERN.matcher(source).replaceAll("GL_OES_EGL_image_external_essl3");
+		if(type == GLES20.GL_VERTEX_SHADER){
+			essl3Source = ATTRIBUTE_KEYWORD_PATTERN.matcher(essl3Source).replaceAll("in");
+			essl3Source = VARYING_KEYWORD_PATTERN.matcher(essl3Source).replaceAll("out");
+		}
+		else{
+			essl3Source = VARYING_KEYWORD_PATTERN.matcher(essl3Source).replaceAll("in");
+			essl3Source = TEXTURE_FUNCTION_PATTERN.matcher(essl3Source).replaceAll("texture(");
+			final Matcher fragColorMatcher = FRAG_COLOR_PATTERN.matcher(essl3Source);
+			if(fragColorMatcher.find()){
+				essl3Source = insertHeader(fragColorMatcher.replaceAll(FRAG_COLOR_OUTPUT), "out mediump vec4 " + FRAG_COLOR_OUTPUT + ";\n");
+			}
+		}
+		return "#version 300 es\n" + essl3Source;
+	}
+
+	/**
+	 * Gets the key of a program variant, "programId#NAME=value;NAME=value" with sorted names
+	 *
+	 * @param programId The program id
+	 * @param defines The variant defines, null for none
+	 * @return The variant key, programId if no defines
+	 */
+	public static String getVariantKey(final String programId, final Map<String, String> defines){
+		if(defines == null || defines.isEmpty()){
+			return programId;
+		}
+		final StringBuilder key = new StringBuilder(programId).append(VARIANT_SEPARATOR);
+		for(Map.Entry<String, String> define : new TreeMap<>(defines).entrySet()){
+			key.append(define.getKey()).append('=').append(define.getValue()).append(';');
+		}
+		return key.toString();
+	}
+
 	/*
-     * Simple loader used to get shaders from specified location
+     * Simple loader used to compile shaders
      * 
      * @param type The vertex mProgram type GLES20.GL_VERTEX_SHADER | GLES20.GL_FRAGMENT_SHADER
-     * @param inputStream The mProgram code InputStream
+     * @param shaderCode The mProgram source code
      * @return return a compiled mProgram OpenGL ID
      */
-	protected int loadShader(final int type, final InputStream inputStream){
+	protected int loadShader(final int type, final String shaderCode){
 		////Log.d(TAG,"loadShader("+type+")");
 		
-		final int shader = GLES20.glCreateShader(type);
-		
-		BufferedReader bufIn = null;
-	    
-	    try{
-	    	bufIn = new BufferedReader(new InputStreamReader(inputStream), 8192);
-
-	    	final StringBuilder shaderCode = new StringBuilder();
-	    	String line = null;
-	    	while((line = bufIn.readLine()) != null){
-	    		shaderCode.append(line).append("\n");
-	    	}
-
-	    	// add the source code to the mProgram and compile it
-	    	GLES20.glShaderSource(shader, shaderCode.toString());
-	    	GLES20.glCompileShader(shader);
-	    	
-	    	// Get the compilation status.
-	        final int[] compileStatus = new int[1];
-	        GLES20.glGetShaderiv(shader, GLES20.GL_COMPILE_STATUS, compileStatus, 0);
-	     
-	        // If the compilation failed, delete the mProgram.
-	        if (compileStatus[0] == GLES20.GL_FALSE) {
-	            GLES20.glDeleteShader(shader);
-	            throw new GLException(GLES20.GL_INVALID_OPERATION, "Failed to compile "+((type == GLES20.GL_VERTEX_SHADER)? "vertex":"fragment")+" mProgram");
-	        }
-	        
-	        //Parse mProgram to store attributes and uniform handles
-	    	final Matcher attributeMatcher = ATTRIBUTE_PATTERN.matcher(shaderCode);
-	    	while(attributeMatcher.find()){
-	    		final String attributeName = attributeMatcher.group(1);
-	    		if(!this.mAttributeHandles.containsKey(attributeName)){
-	    			this.mAttributeHandles.put(attributeName, UNBIND_HANDLE);
-	    		}
-	    	}
-	    	final Matcher uniformMatcher = UNIFORM_PATTERN.matcher(shaderCode);
-	    	while(uniformMatcher.find()){
-	    		final String uniformName = uniformMatcher.group(1);
-	    		if(!this.mUniformHandles.containsKey(uniformName)){
-	    			this.mUniformHandles.put(uniformName, UNBIND_HANDLE);
-	    		}
-	    	}
-	        
-	    }catch(IOException ioe){
-	    	throw new GLException(GLES20.GL_INVALID_OPERATION, "Failed to compile "+((type == GLES20.GL_VERTEX_SHADER)? "vertex":"fragment")+" mProgram");
-	    }	
+		final int shader = GlOperation.getBackend().glCreateShader(type);
+
+    	// add the source code to the mProgram and compile it
+    	GlOperation.getBackend().glShaderSource(shader, shaderCode);
+    	GlOperation.getBackend().glCompileShader(shader);
+    	
+    	// Get the compilation status.
+        final int[] compileStatus = new int[1];
+        GlOperation.getBackend().glGetShaderiv(shader, GLES20.GL_COMPILE_STATUS, compileStatus, 0);
+     
+        // If the compilation failed, delete the mProgram.
+        if (compileStatus[0] == GLES20.GL_FALSE) {
+            GlOperation.getBackend().glDeleteShader(shader);
+            throw new GLException(GLES20.GL_INVALID_OPERATION, "Failed to compile "+((type == GLES20.GL_VERTEX_SHADER)? "vertex":"fragment")+" mProgram");
+        }
 		
 		return shader;
 	}
@@ -231,64 +436,307 @@ public class GlProgram {
 	 * 
 	 * @param vertexShaderHandle An OpenGL handle to an already-compiled vertex mProgram.
 	 * @param fragmentShaderHandle An OpenGL handle to an already-compiled fragment mProgram.
+	 * @param attributeLocations The attributes locations to bind before link, null if none
+	 * @param cache The cache which will store the program binary, null if none
 	 * @return An OpenGL handle to the program.
 	 */
-	protected int createAndLinkProgram(final int vertexShaderHandle, final int fragmentShaderHandle){
+	protected int createAndLinkProgram(final int vertexShaderHandle, final int fragmentShaderHandle, final Map<String, Integer> attributeLocations, final GlProgramCache cache){
 		////Log.d(TAG,"createAndLinkProgram("+vertexShaderHandle+", "+fragmentShaderHandle+")");
-		final int programHandle = GLES20.glCreateProgram();
+		final int programHandle = GlOperation.getBackend().glCreateProgram();
 		
 		if (programHandle != UNBIND_HANDLE) {
 			// Bind the vertex mProgram to the program.
-			GLES20.glAttachShader(programHandle, vertexShaderHandle);			
+			GlOperation.getBackend().glAttachShader(programHandle, vertexShaderHandle);			
 
 			// Bind the fragment mProgram to the program.
-			GLES20.glAttachShader(programHandle, fragmentShaderHandle);
+			GlOperation.getBackend().glAttachShader(programHandle, fragmentShaderHandle);
+
+			// Fixed attributes locations (unused names are ignored by GL)
+			if(attributeLocations != null){
+				for(Map.Entry<String, Integer> attributeLocation : attributeLocations.entrySet()){
+					GlOperation.getBackend().glBindAttribLocation(programHandle, attributeLocation.getValue(), attributeLocation.getKey());
+				}
+			}
+
+			// Allow binary retrieval
+			if(cache != null){
+				cache.prepareLink(programHandle);
+			}
 			
 			// Link the two shaders together into a program.
-			GLES20.glLinkProgram(programHandle);
+			GlOperation.getBackend().glLinkProgram(programHandle);
 
 			// Get the link status.
 			final int[] linkStatus = new int[1];
-			GLES20.glGetProgramiv(programHandle, GLES20.GL_LINK_STATUS, linkStatus, 0);
+			GlOperation.getBackend().glGetProgramiv(programHandle, GLES20.GL_LINK_STATUS, linkStatus, 0);
 
 			// If the link failed, delete the program.
 			if (linkStatus[0] == GLES20.GL_FALSE) {				
-				final String error = GLES20.glGetProgramInfoLog(programHandle);
-				GLES20.glDeleteProgram(programHandle);
+				final String error = GlOperation.getBackend().glGetProgramInfoLog(programHandle);
+				GlOperation.getBackend().glDeleteProgram(programHandle);
 				throw new GLException(GLES20.GL_INVALID_OPERATION, "Failed to link program : "+error);
 			}
-			
-			//Update handles and fill the attributes cache
-			int index=0;
-			this.mAttributeHandlesArray = new int[this.mAttributeHandles.size()];
-			for(String attributeName : this.mAttributeHandles.keySet()){
-				final int attributeHandle = GLES20.glGetAttribLocation(programHandle, attributeName);
-				this.mAttributeHandles.put(attributeName, attributeHandle);
-				this.mAttributeHandlesArray[index++] = attributeHandle;
-			}
-			for(String uniformName : this.mUniformHandles.keySet()){
-				final int uniformHandle = GLES20.glGetUniformLocation(programHandle, uniformName);
-				this.mUniformHandles.put(uniformName, uniformHandle);
-			}
 		}
 		
 		return programHandle;
 	}
+
+	/*
+	 * Fills the attributes and uniforms tables from the linked program. Built-ins are skipped,
+	 * arrays are stored by their base name and uniforms in blocks (no location) are skipped.
+	 */
+	private void reflect(){
+		final int[] params = new int[2];
+		GlOperation.getBackend().glGetProgramiv(this.programHandle, GLES20.GL_ACTIVE_ATTRIBUTES, params, 0);
+		final int attributesCount = params[0];
+		this.mAttributeNames = new String[attributesCount];
+		this.mAttributeHandlesArray = new int[attributesCount];
+		this.mAttributeTypes = new int[attributesCount];
+		this.mAttributeSizes = new int[attributesCount];
+		int count = 0;
+		for(int index=0; index < attributesCount; index++){
+			final String name = GlOperation.getBackend().glGetActiveAttrib(this.programHandle, index, params, 0, params, 1);
+			if(name != null && !name.startsWith(BUILT_IN_PREFIX)){
+				final int handle = GlOperation.getBackend().glGetAttribLocation(this.programHandle, name);
+				if(handle != INVALID_HANDLE){
+					this.mAttributeNames[count] = getBaseName(name);
+					this.mAttributeHandlesArray[count] = handle;
+					this.mAttributeTypes[count] = params[1];
+					this.mAttributeSizes[count] = params[0];
+					count++;
+				}
+			}
+		}
+		if(count < attributesCount){
+			this.mAttributeNames = Arrays.copyOf(this.mAttributeNames, count);
+			this.mAttributeHandlesArray = Arrays.copyOf(this.mAttributeHandlesArray, count);
+			this.mAttributeTypes = Arrays.copyOf(this.mAttributeTypes, count);
+			this.mAttributeSizes = Arrays.copyOf(this.mAttributeSizes, count);
+		}
+
+		GlOperation.getBackend().glGetProgramiv(this.programHandle, GLES20.GL_ACTIVE_UNIFORMS, params, 0);
+		final int uniformsCount = params[0];
+		this.mUniformNames = new String[uniformsCount];
+		this.mUniformHandlesArray = new int[uniformsCount];
+		this.mUniformTypes = new int[uniformsCount];
+		this.mUniformSizes = new int[uniformsCount];
+		count = 0;
+		for(int index=0; index < uniformsCount; index++){
+			final String name = GlOperation.getBackend().glGetActiveUniform(this.programHandle, index, params, 0, params, 1);
+			if(name != null && !name.startsWith(BUILT_IN_PREFIX)){
+				final int handle = GlOperation.getBackend().glGetUniformLocation(this.programHandle, name);
+				if(handle != INVALID_HANDLE){
+					this.mUniformNames[count] = getBaseName(name);
+					this.mUniformHandlesArray[count] = handle;
+					this.mUniformTypes[count] = params[1];
+					this.mUniformSizes[count] = params[0];
+					count++;
+				}
+			}
+		}
+		if(count < uniformsCount){
+			this.mUniformNames = Arrays.copyOf(this.mUniformNames, count);
+			this.mUniformHandlesArray = Arrays.copyOf(this.mUniformHandlesArray, count);
+			this.mUniformTypes = Arrays.copyOf(this.mUniformTypes, count);
+			this.mUniformSizes = Arrays.copyOf(this.mUniformSizes, count);
+		}
+		GlOperation.checkGlError(TAG, "reflect");
+	}
+
+	private static String getBaseName(final String name){
+		return name.endsWith(ARRAY_SUFFIX) ? name.substring(0, name.length() - ARRAY_SUFFIX.length()) : name;
+	}
 	
 	
+	/**
+	 * Sets an int/sampler uniform of this program, the GL call is skipped if the value is unchanged.<br/>
+	 * <br/>
+	 * Caution : the program must be in use
+	 *
+	 * @param handle The uniform handle from getUniformHandle()
+	 * @param x The value
+	 */
+	public GlProgram setUniform1i(final int handle, final int x){
+		if(handle < 0){
+			return this;
+		}
+		if(handle >= this.mUniformInts.length){
+			final int length = this.mUniformInts.length;
+			this.mUniformInts = Arrays.copyOf(this.mUniformInts, handle + 1);
+			Arrays.fill(this.mUniformInts, length, handle + 1, UNSET_INT);
+		}
+		final boolean redundant = this.mUniformInts[handle] == x;
+		GlOperation.countStateCall(redundant);
+		if(!redundant){
+			this.mUniformInts[handle] = x;
+			GlOperation.getBackend().glUniform1i(handle, x);
+		}
+		return this;
+	}
+
+	/**
+	 * Sets a float uniform of this program, the GL call is skipped if the value is unchanged.<br/>
+	 * <br/>
+	 * Caution : the program must be in use
+	 *
+	 * @param handle The uniform handle from getUniformHandle()
+	 * @param x The value
+	 */
+	public GlProgram setUniform1f(final int handle, final float x){
+		final float[] values = this.getUniformFloats(handle, 1);
+		if(values != null){
+			final boolean redundant = values[0] == x;
+			GlOperation.countStateCall(redundant);
+			if(!redundant){
+				values[0] = x;
+				GlOperation.getBackend().glUniform1f(handle, x);
+			}
+		}
+		return this;
+	}
+
+	/**
+	 * Sets a vec2 uniform of this program, the GL call is skipped if the value is unchanged.<br/>
+	 * <br/>
+	 * Caution : the program must be in use
+	 *
+	 * @param handle The uniform handle from getUniformHandle()
+	 */
+	public GlProgram setUniform2f(final int handle, final float x, final float y){
+		final float[] values = this.getUniformFloats(handle, 2);
+		if(values != null){
+			final boolean redundant = values[0] == x && values[1] == y;
+			GlOperation.countStateCall(redundant);
+			if(!redundant){
+				values[0] = x;
+				values[1] = y;
+				GlOperation.getBackend().glUniform2f(handle, x, y);
+			}
+		}
+		return this;
+	}
+
+	/**
+	 * Sets a vec3 uniform of this program, the GL call is skipped if the value is unchanged.<br/>
+	 * <br/>
+	 * Caution : the program must be in use
+	 *
+	 * @param handle The uniform handle from getUniformHandle()
+	 */
+	public GlProgram setUniform3f(final int handle, final float x, final float y, final float z){
+		final float[] values = this.getUniformFloats(handle, 3);
+		if(values != null){
+			final boolean redundant = values[0] == x && values[1] == y && values[2] == z;
+			GlOperation.countStateCall(redundant);
+			if(!redundant){
+				values[0] = x;
+				values[1] = y;
+				values[2] = z;
+				GlOperation.getBackend().glUniform3f(handle, x, y, z);
+			}
+		}
+		return this;
+	}
+
+	/**
+	 * Sets a vec4 uniform of this program, the GL call is skipped if the value is unchanged.<br/>
+	 * <br/>
+	 * Caution : the program must be in use
+	 *
+	 * @param handle The uniform handle from getUniformHandle()
+	 */
+	public GlProgram setUniform4f(final int handle, final float x, final float y, final float z, final float w){
+		final float[] values = this.getUniformFloats(handle, 4);
+		if(values != null){
+			final boolean redundant = values[0] == x && values[1] == y && values[2] == z && values[3] == w;
+			GlOperation.countStateCall(redundant);
+			if(!redundant){
+				values[0] = x;
+				values[1] = y;
+				values[2] = z;
+				values[3] = w;
+				GlOperation.getBackend().glUniform4f(handle, x, y, z, w);
+			}
+		}
+		return this;
+	}
+
+	/**
+	 * Sets a mat4 uniform of this program (column major), the GL call is skipped if the matrix is unchanged.<br/>
+	 * <br/>
+	 * Caution : the program must be in use
+	 *
+	 * @param handle The uniform handle from getUniformHandle()
+	 * @param matrix The array containing the matrix
+	 * @param offset The offset of the matrix in array
+	 */
+	public GlProgram setUniformMatrix4fv(final int handle, final float[] matrix, final int offset){
+		final float[] values = this.getUniformFloats(handle, MAT4_SIZE);
+		if(values != null){
+			int index = 0;
+			while(index < MAT4_SIZE && values[index] == matrix[offset + index]){
+				index++;
+			}
+			final boolean redundant = index == MAT4_SIZE;
+			GlOperation.countStateCall(redundant);
+			if(!redundant){
+				System.arraycopy(matrix, offset, values, 0, MAT4_SIZE);
+				GlOperation.getBackend().glUniformMatrix4fv(handle, 1, false, matrix, offset);
+			}
+		}
+		return this;
+	}
+
+	/**
+	 * Forget the cached uniforms values, must be called if uniforms have been set
+	 * outside of the setUniform*() methods.
+	 */
+	public GlProgram invalidateUniforms(){
+		Arrays.fill(this.mUniformInts, UNSET_INT);
+		for(int handle=0; handle < this.mUniformFloats.length; handle++){
+			if(this.mUniformFloats[handle] != null){
+				Arrays.fill(this.mUniformFloats[handle], Float.NaN);
+			}
+		}
+		return this;
+	}
+
+	/*
+	 * Get the cached values of a float uniform, allocated filled with NaN (never equal)
+	 * on first call so the first set always reaches GL
+	 *
+	 * @return The cached values or null if handle is not valid
+	 */
+	private float[] getUniformFloats(final int handle, final int size){
+		if(handle < 0){
+			return null;
+		}
+		if(handle >= this.mUniformFloats.length){
+			this.mUniformFloats = Arrays.copyOf(this.mUniformFloats, handle + 1);
+		}
+		float[] values = this.mUniformFloats[handle];
+		if(values == null || values.length != size){
+			values = new float[size];
+			Arrays.fill(values, Float.NaN);
+			this.mUniformFloats[handle] = values;
+		}
+		return values;
+	}
+
 	/**
 	 * Free resources
 	 */
 	public GlProgram free(){
 		////Log.d(TAG,"free()");
 		if(this.programHandle != UNBIND_HANDLE) {
-			GLES20.glDeleteProgram(this.programHandle);
+			GlOperation.getBackend().glDeleteProgram(this.programHandle);
+			GlOperation.onProgramDeleted(this.programHandle);
 		}
 		if(this.vertexShaderHandle != UNBIND_HANDLE) {
-			GLES20.glDeleteShader(this.vertexShaderHandle);
+			GlOperation.getBackend().glDeleteShader(this.vertexShaderHandle);
 		}
 		if(this.fragmentShaderHandle != UNBIND_HANDLE) {
-			GLES20.glDeleteShader(this.fragmentShaderHandle);
+			GlOperation.getBackend().glDeleteShader(this.fragmentShaderHandle);
 		}
         GlOperation.checkGlError(TAG, "glDeleteTextures");
 		return this;
@@ -298,24 +746,122 @@ public class GlProgram {
 	 * Get the handle of a specified attribute
 	 * 
 	 * @param name The attribute name
-	 * @return The handle ID, 0 if not found
+	 * @return The handle ID, INVALID_HANDLE if not active
 	 */
 	public int getAttributeHandle(final String name){
 		////Log.d(TAG,"getAttributeHandle("+name+")");
-		Integer handle = this.mAttributeHandles.get(name);
-		return (handle == null) ? UNBIND_HANDLE : handle;
+		final int index = indexOf(this.mAttributeNames, name);
+		return (index < 0) ? INVALID_HANDLE : this.mAttributeHandlesArray[index];
 	}
 	
 	/**
 	 * Get the handle of a specified uniform
 	 * 
-	 * @param name The uniform name
-	 * @return The handle ID, 0 if not found
+	 * @param name The uniform name (base name for arrays)
+	 * @return The handle ID, INVALID_HANDLE if not active
 	 */
 	public int getUniformHandle(final String name){
 		////Log.d(TAG,"getUniformHandle("+name+")");
-		Integer handle = this.mUniformHandles.get(name);
-		return (handle == null) ? UNBIND_HANDLE : handle;
+		final int index = indexOf(this.mUniformNames, name);
+		return (index < 0) ? INVALID_HANDLE : this.mUniformHandlesArray[index];
+	}
+
+	/**
+	 * Indicates if a uniform is active (outside blocks) in the program
+	 *
+	 * @param name The uniform name
+	 */
+	public boolean hasUniform(final String name){
+		return indexOf(this.mUniformNames, name) >= 0;
+	}
+
+	/**
+	 * @return The number of active attributes
+	 */
+	public int getAttributeCount(){
+		return this.mAttributeNames.length;
+	}
+
+	/**
+	 * @param index The attribute index [0, getAttributeCount()[
+	 */
+	public String getAttributeName(final int index){
+		return this.mAttributeNames[index];
+	}
+
+	/**
+	 * @param index The attribute index [0, getAttributeCount()[
+	 * @return The GL type (ie GLES20.GL_FLOAT_VEC4)
+	 */
+	public int getAttributeType(final int index){
+		return this.mAttributeTypes[index];
+	}
+
+	/**
+	 * @param index The attribute index [0, getAttributeCount()[
+	 * @return The array size, 1 if not an array
+	 */
+	public int getAttributeSize(final int index){
+		return this.mAttributeSizes[index];
+	}
+
+	/**
+	 * @return The number of active uniforms (outside blocks)
+	 */
+	public int getUniformCount(){
+		return this.mUniformNames.length;
+	}
+
+	/**
+	 * @param index The uniform index [0, getUniformCount()[
+	 */
+	public String getUniformName(final int index){
+		return this.mUniformNames[index];
+	}
+
+	/**
+	 * @param index The uniform index [0, getUniformCount()[
+	 * @return The GL type (ie GLES20.GL_FLOAT_MAT4, GLES20.GL_SAMPLER_2D)
+	 */
+	public int getUniformType(final int index){
+		return this.mUniformTypes[index];
+	}
+
+	/**
+	 * @param index The uniform index [0, getUniformCount()[
+	 * @return The array size, 1 if not an array
+	 */
+	public int getUniformSize(final int index){
+		return this.mUniformSizes[index];
+	}
+
+	/*
+	 * Linear search, tables are a few entries long
+	 */
+	private static int indexOf(final String[] names, final String name){
+		for(int index=0; index < names.length; index++){
+			if(names[index].equals(name)){
+				return index;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Binds a uniform block of this program to a binding point (GLES3), to call after each creation
+	 * as bindings are not restored from program binaries
+	 *
+	 * @param blockName The uniform block name
+	 * @param bindingPoint The binding point of the GlUniformBuffer
+	 * @return true if the block is used by the program
+	 */
+	public boolean bindUniformBlock(final String blockName, final int bindingPoint){
+		final int blockIndex = GlOperation.getBackend().glGetUniformBlockIndex(this.programHandle, blockName);
+		if(blockIndex == GLES30.GL_INVALID_INDEX){
+			return false;
+		}
+		GlOperation.getBackend().glUniformBlockBinding(this.programHandle, blockIndex, bindingPoint);
+		return true;
 	}
 	
 }
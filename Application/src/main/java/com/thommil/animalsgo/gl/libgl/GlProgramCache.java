@@ -0,0 +1,292 @@
+package com.thommil.animalsgo.gl.libgl;
+
+import android.opengl.GLES20;
+import android.opengl.GLES30;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Persistent cache of linked programs (GLES3 program binaries) :
+ *	<ul>
+ * 	<li>entries are keyed by a hash of the shaders sources, the bound attributes locations and the GL renderer/version</li>
+ * 	<li>an entry stores the driver binary only, handles are reflected from the loaded program</li>
+ * 	<li>binaries rejected by the driver (ie after a driver update) are deleted, the program is then compiled</li>
+ *	</ul>
+ *
+ * The cache is disabled on GLES2 and on drivers exposing no binary format. It can be shared by
+ * threads owning shared GL contexts, loads and stores run concurrently (one file per entry, written
+ * through a temporary file then renamed).
+ *
+ * 	@author Thomas MILLET
+ *
+ */
+public class GlProgramCache {
+
+	/**
+	 * TAG log
+	 */
+	@SuppressWarnings("unused")
+	private static final String TAG = "A_GO/GlProgramCache";
+
+	/**
+	 * Entry file header, CACHE_VERSION must be increased if the entry layout changes
+	 */
+	private static final int CACHE_MAGIC = 0x474C5043;
+	private static final int CACHE_VERSION = 2;
+
+	/**
+	 * Entry file extension
+	 */
+	private static final String ENTRY_EXTENSION = ".bin";
+
+	/**
+	 * Directory of entries
+	 */
+	private final File mDirectory;
+
+	/**
+	 * Support of program binaries by current driver, null until first use
+	 */
+	private Boolean mSupported;
+
+	/**
+	 * Counters : programs loaded from cache, not found, rejected by driver
+	 */
+	private final AtomicInteger mHits = new AtomicInteger(), mMisses = new AtomicInteger(), mRejects = new AtomicInteger();
+
+	/**
+	 * Constructor
+	 *
+	 * @param directory The directory of entries (ie new File(context.getCacheDir(), "programs"))
+	 */
+	public GlProgramCache(final File directory){
+		mDirectory = directory;
+	}
+
+	/**
+	 * Indicates if the current GL context and the directory allow program binaries
+	 */
+	public synchronized boolean isSupported(){
+		if(mSupported == null){
+			boolean supported = false;
+			if(GlOperation.getVersion()[0] >= 3){
+				final int[] formats = new int[1];
+				GlOperation.getBackend().glGetIntegerv(GLES30.GL_NUM_PROGRAM_BINARY_FORMATS, formats, 0);
+				supported = formats[0] > 0 && (mDirectory.isDirectory() || mDirectory.mkdirs());
+			}
+			mSupported = supported;
+		}
+		return mSupported;
+	}
+
+	/**
+	 * Delete all entries
+	 */
+	public synchronized void clear(){
+		final File[] entries = mDirectory.listFiles();
+		if(entries != null){
+			for(File entry : entries){
+				if(entry.getName().endsWith(ENTRY_EXTENSION)){
+					entry.delete();
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return The number of programs loaded from cache
+	 */
+	public int getHits(){
+		return mHits.get();
+	}
+
+	/**
+	 * @return The number of programs not found in cache
+	 */
+	public int getMisses(){
+		return mMisses.get();
+	}
+
+	/**
+	 * @return The number of cached programs rejected by the driver
+	 */
+	public int getRejects(){
+		return mRejects.get();
+	}
+
+	/**
+	 * Get the key of a program
+	 *
+	 * @param vertexSource The vertex shader source
+	 * @param fragmentSource The fragment shader source
+	 * @param attributeLocations The attributes locations bound before link, null if none
+	 * @return The key as an hexadecimal hash
+	 */
+	String getKey(final String vertexSource, final String fragmentSource, final Map<String, Integer> attributeLocations){
+		try {
+			final MessageDigest digest = MessageDigest.getInstance("SHA-1");
+			digest.update((CACHE_VERSION + "\n" + GlOperation.getRenderer() + "\n"
+					+ GlOperation.getBackend().glGetString(GLES20.GL_VERSION) + "\n").getBytes("UTF-8"));
+			digest.update(vertexSource.getBytes("UTF-8"));
+			digest.update((byte)0);
+			digest.update(fragmentSource.getBytes("UTF-8"));
+			if(attributeLocations != null){
+				for(Map.Entry<String, Integer> attributeLocation : new TreeMap<>(attributeLocations).entrySet()){
+					digest.update((byte)0);
+					digest.update((attributeLocation.getKey() + "=" + attributeLocation.getValue()).getBytes("UTF-8"));
+				}
+			}
+			final StringBuilder key = new StringBuilder();
+			for(byte value : digest.digest()){
+				key.append(Character.forDigit((value >> 4) & 0xF, 16)).append(Character.forDigit(value & 0xF, 16));
+			}
+			return key.toString();
+		}catch(NoSuchAlgorithmException nsae){
+			throw new RuntimeException("Missing SHA-1 : " + nsae);
+		}catch(IOException ioe){
+			throw new RuntimeException("Missing UTF-8 : " + ioe);
+		}
+	}
+
+	/**
+	 * Prepare a program before its link to allow binary retrieval
+	 *
+	 * @param programHandle The handle of the created program
+	 */
+	void prepareLink(final int programHandle){
+		GlOperation.getBackend().glProgramParameteri(programHandle, GLES30.GL_PROGRAM_BINARY_RETRIEVABLE_HINT, GLES20.GL_TRUE);
+	}
+
+	/**
+	 * Create a program from a cached entry
+	 *
+	 * @param key The program key
+	 * @return The linked program handle or GlProgram.UNBIND_HANDLE if not found or rejected
+	 */
+	int loadProgram(final String key){
+		////Log.d(TAG,"loadProgram("+key+")");
+		final File entry = new File(mDirectory, key + ENTRY_EXTENSION);
+		if(!entry.isFile()){
+			mMisses.incrementAndGet();
+			return GlProgram.UNBIND_HANDLE;
+		}
+
+		final int binaryFormat;
+		final byte[] binary;
+		DataInputStream in = null;
+		try{
+			in = new DataInputStream(new BufferedInputStream(new FileInputStream(entry)));
+			if(in.readInt() != CACHE_MAGIC || in.readInt() != CACHE_VERSION){
+				throw new IOException("bad header");
+			}
+			binaryFormat = in.readInt();
+			binary = new byte[in.readInt()];
+			in.readFully(binary);
+		}catch(IOException | RuntimeException e){
+			//android.util.//Log.w(TAG, "Corrupted entry "+key+" : "+e);
+			entry.delete();
+			mRejects.incrementAndGet();
+			return GlProgram.UNBIND_HANDLE;
+		}finally{
+			close(in);
+		}
+
+		final ByteBuffer binaryBuffer = ByteBuffer.allocateDirect(binary.length).order(ByteOrder.nativeOrder());
+		binaryBuffer.put(binary).position(0);
+		//Report errors of previous calls before clearing binary ones
+		GlOperation.checkGlError(TAG, "before glProgramBinary");
+		final int programHandle = GlOperation.getBackend().glCreateProgram();
+		GlOperation.getBackend().glProgramBinary(programHandle, binaryFormat, binaryBuffer, binary.length);
+		final int[] linkStatus = new int[1];
+		GlOperation.getBackend().glGetProgramiv(programHandle, GLES20.GL_LINK_STATUS, linkStatus, 0);
+		//Binary errors are expected (driver updates), clear them
+		while(GlOperation.getBackend().glGetError() != GLES20.GL_NO_ERROR){
+			//android.util.//Log.w(TAG, "Binary error "+key);
+		}
+		if(linkStatus[0] == GLES20.GL_FALSE){
+			//android.util.//Log.w(TAG, "Binary rejected "+key);
+			GlOperation.getBackend().glDeleteProgram(programHandle);
+			entry.delete();
+			mRejects.incrementAndGet();
+			return GlProgram.UNBIND_HANDLE;
+		}
+
+		mHits.incrementAndGet();
+		return programHandle;
+	}
+
+	/**
+	 * Store a linked program
+	 *
+	 * @param key The program key
+	 * @param programHandle The linked program handle
+	 */
+	void storeProgram(final String key, final int programHandle){
+		////Log.d(TAG,"storeProgram("+key+")");
+		final int[] params = new int[2];
+		GlOperation.getBackend().glGetProgramiv(programHandle, GLES30.GL_PROGRAM_BINARY_LENGTH, params, 0);
+		if(params[0] <= 0){
+			return;
+		}
+		final ByteBuffer binaryBuffer = ByteBuffer.allocateDirect(params[0]).order(ByteOrder.nativeOrder());
+		GlOperation.getBackend().glGetProgramBinary(programHandle, params[0], params, 0, params, 1, binaryBuffer);
+		if(GlOperation.getBackend().glGetError() != GLES20.GL_NO_ERROR){
+			return;
+		}
+		final byte[] binary = new byte[params[0]];
+		binaryBuffer.position(0);
+		binaryBuffer.get(binary);
+
+		//Write in a temporary file and rename, a killed process never leaves a partial entry
+		//and concurrent stores of the same key never share a temporary file
+		final File entry = new File(mDirectory, key + ENTRY_EXTENSION);
+		File tmpEntry = null;
+		DataOutputStream out = null;
+		try{
+			tmpEntry = File.createTempFile(key, ".tmp", mDirectory);
+			out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpEntry)));
+			out.writeInt(CACHE_MAGIC);
+			out.writeInt(CACHE_VERSION);
+			out.writeInt(params[1]);
+			out.writeInt(binary.length);
+			out.write(binary);
+			out.close();
+			out = null;
+			if(!tmpEntry.renameTo(entry)){
+				throw new IOException("rename failed");
+			}
+		}catch(IOException ioe){
+			//android.util.//Log.w(TAG, "Failed to store "+key+" : "+ioe);
+			if(tmpEntry != null){
+				tmpEntry.delete();
+			}
+		}finally{
+			close(out);
+		}
+	}
+
+	private static void close(final Closeable stream){
+		if(stream != null){
+			try{
+				stream.close();
+			}catch(IOException ioe){
+				//android.util.//Log.w(TAG, "Failed to close entry : "+ioe);
+			}
+		}
+	}
+}
@@ -71,16 +71,16 @@ public class GlRenderBufferObject implements GlFrameBufferObject.Attachment{
 	 */
 	public GlRenderBufferObject(final int format, final int width, final int height){
 		final int[]handles = new int[1];
-		GLES20.glGenRenderbuffers(1, handles, 0);
+		GlOperation.getBackend().glGenRenderbuffers(1, handles, 0);
 		this.handle = handles[0];
 		this.format = format;
 		this.width = width;
 		this.height = height;
 		
 		//Create buffer
-		GLES20.glBindRenderbuffer(GLES20.GL_RENDERBUFFER, this.handle);
-		GLES20.glRenderbufferStorage(GLES20.GL_RENDERBUFFER, this.format, this.width, this.height);
-		GLES20.glBindRenderbuffer(GLES20.GL_RENDERBUFFER, UNBIND_HANDLE);
+		GlOperation.getBackend().glBindRenderbuffer(GLES20.GL_RENDERBUFFER, this.handle);
+		GlOperation.getBackend().glRenderbufferStorage(GLES20.GL_RENDERBUFFER, this.format, this.width, this.height);
+		GlOperation.getBackend().glBindRenderbuffer(GLES20.GL_RENDERBUFFER, UNBIND_HANDLE);
 		GlOperation.checkGlError(TAG, "glRenderbufferStorage");
 	}
 	
@@ -89,7 +89,7 @@ public class GlRenderBufferObject implements GlFrameBufferObject.Attachment{
 	 */
 	public GlRenderBufferObject bind(){
 		//android.util.//Log.d(TAG,"bind()");
-		GLES20.glBindRenderbuffer(GLES20.GL_RENDERBUFFER, this.handle);
+		GlOperation.getBackend().glBindRenderbuffer(GLES20.GL_RENDERBUFFER, this.handle);
 		return this;
 	}
 	
@@ -98,7 +98,7 @@ public class GlRenderBufferObject implements GlFrameBufferObject.Attachment{
 	 */
 	public GlRenderBufferObject unbind(){
 		//android.util.//Log.d(TAG,"unbind()");
-		GLES20.glBindRenderbuffer(GLES20.GL_RENDERBUFFER, UNBIND_HANDLE);
+		GlOperation.getBackend().glBindRenderbuffer(GLES20.GL_RENDERBUFFER, UNBIND_HANDLE);
 		return this;
 	}
 	/**
@@ -106,7 +106,7 @@ public class GlRenderBufferObject implements GlFrameBufferObject.Attachment{
 	 */
 	public GlRenderBufferObject free(){
 		//android.util.//Log.d(TAG,"free()");
-		GLES20.glDeleteRenderbuffers(1, new int[]{this.handle}, 0);
+		GlOperation.getBackend().glDeleteRenderbuffers(1, new int[]{this.handle}, 0);
         GlOperation.checkGlError(TAG, "glDeleteTextures");
 		return this;
 	}
@@ -277,6 +277,17 @@ public class GlSprite extends GlDrawableBuffer<float[]> {
         mMustUpdateSubTexture = false;
     }
 
+    @Override
+    public synchronized GlBuffer invalidate() {
+        mMustUpdate = true;
+        return this;
+    }
+
+    @Override
+    public synchronized boolean mustCommit() {
+        return mMustUpdate;
+    }
+
     @Override
     public synchronized GlBuffer commit(boolean push) {
         //Log.d(TAG,"commit("+push+")");
@@ -321,6 +332,8 @@ public class GlSprite extends GlDrawableBuffer<float[]> {
             if (push) {
                 push();
             }
+
+            mMustUpdate = false;
         }
 
         return this;
@@ -332,22 +345,23 @@ public class GlSprite extends GlDrawableBuffer<float[]> {
             case GlBuffer.MODE_VAO: {
                 bind();
 
-                GLES20.glDrawArrays(GLES20.GL_TRIANGLE_STRIP, 0, 4);
+                GlOperation.getBackend().glDrawArrays(GLES20.GL_TRIANGLE_STRIP, 0, 4);
 
                 unbind();
                 break;
             }
+            case GlBuffer.MODE_STREAM:
             case GlBuffer.MODE_VBO: {
                 program.enableAttributes();
 
                 this.bind();
 
                 if(this.vertexAttribHandles != null) {
-                    GLES20.glVertexAttribPointer(this.vertexAttribHandles[CHUNK_VERTEX_INDEX], 2, GlBuffer.TYPE_FLOAT, false, 16, 0);
-                    GLES20.glVertexAttribPointer(this.vertexAttribHandles[CHUNK_TEXTURE_INDEX], 2, GlBuffer.TYPE_FLOAT, false, 16, 8);
+                    GlOperation.getBackend().glVertexAttribPointer(this.vertexAttribHandles[CHUNK_VERTEX_INDEX], 2, GlBuffer.TYPE_FLOAT, false, 16, mDrawOffset);
+                    GlOperation.getBackend().glVertexAttribPointer(this.vertexAttribHandles[CHUNK_TEXTURE_INDEX], 2, GlBuffer.TYPE_FLOAT, false, 16, mDrawOffset + 8);
                 }
 
-                GLES20.glDrawArrays(GLES20.GL_TRIANGLE_STRIP, 0, 4);
+                GlOperation.getBackend().glDrawArrays(GLES20.GL_TRIANGLE_STRIP, 0, 4);
 
                 unbind();
                 program.disableAttributes();
@@ -358,13 +372,13 @@ public class GlSprite extends GlDrawableBuffer<float[]> {
 
                 if(this.vertexAttribHandles != null) {
                     this.buffer.position(0);
-                    GLES20.glVertexAttribPointer(this.vertexAttribHandles[CHUNK_VERTEX_INDEX], 2, GlBuffer.TYPE_FLOAT, false, 16, this.buffer);
+                    GlOperation.getBackend().glVertexAttribPointer(this.vertexAttribHandles[CHUNK_VERTEX_INDEX], 2, GlBuffer.TYPE_FLOAT, false, 16, this.buffer);
                     this.buffer.position(2);
-                    GLES20.glVertexAttribPointer(this.vertexAttribHandles[CHUNK_TEXTURE_INDEX], 2, GlBuffer.TYPE_FLOAT, false, 16, this.buffer);
+                    GlOperation.getBackend().glVertexAttribPointer(this.vertexAttribHandles[CHUNK_TEXTURE_INDEX], 2, GlBuffer.TYPE_FLOAT, false, 16, this.buffer);
                 }
 
                 this.buffer.position(0);
-                GLES20.glDrawArrays(GLES20.GL_TRIANGLE_STRIP, 0, 4);
+                GlOperation.getBackend().glDrawArrays(GLES20.GL_TRIANGLE_STRIP, 0, 4);
 
                 program.disableAttributes();
             }
@@ -0,0 +1,910 @@
+package com.thommil.animalsgo.gl.libgl;
+
+import android.opengl.GLES20;
+
+import com.thommil.animalsgo.utils.ByteBufferPool;
+import com.thommil.animalsgo.utils.MathUtils;
+
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Structure of arrays store of colored sprites sharing a texture (particles, stickers...) :
+ *  <ul>
+ *      <li>sprites are ids in primitive arrays (position, size, pivot, rotation, UV rect, packed color)</li>
+ *      <li>vertices are generated in bulk, without allocation, straight in the local FloatBuffer</li>
+ *      <li>only modified sprites are generated and uploaded (merged dirty ranges)</li>
+ *      <li>large generations are split in fixed ranges of ids processed by a shared fork-join pool</li>
+ *      <li>removed sprites become degenerate in place, their ids are reused</li>
+ *      <li>same vertex layout as GlColoredSprite, drawn in one call</li>
+ *      <li>GLES3 instanced mode : one instance record per sprite over a static unit quad, the vertex
+ *      shader expands and rotates the quad (see the INSTANCED variant of ui_default.vert.glsl)</li>
+ *      <li>not thread safe !</li>
+ *  </ul>
+ */
+public class GlSpriteStore extends GlDrawableBuffer<float[]> {
+
+    private static final String TAG = "A_GO/GlSpriteStore";
+
+    public static final int CHUNK_VERTEX_INDEX = 0;
+    public static final int CHUNK_TEXTURE_INDEX = 1;
+    public static final int CHUNK_COLOR_INDEX = 2;
+
+    // Instanced layout : x, y, pivotX, pivotY | width, height, rotation | u1, v1, u2, v2 | color
+    public static final int CHUNK_INSTANCE_POSITION_INDEX = 0;
+    public static final int CHUNK_INSTANCE_SIZE_INDEX = 1;
+    public static final int CHUNK_INSTANCE_TEXTURE_INDEX = 2;
+    public static final int CHUNK_INSTANCE_COLOR_INDEX = 3;
+
+    /**
+     * Default number of reserved sprites
+     */
+    public static final int DEFAULT_CAPACITY = 256;
+
+    private static final int VERTICES_PER_SPRITE = 4;
+    private static final int FLOATS_PER_VERTEX = 5;
+    private static final int FLOATS_PER_SPRITE = VERTICES_PER_SPRITE * FLOATS_PER_VERTEX;
+    private static final int SPRITE_SIZE = FLOATS_PER_SPRITE * (Float.SIZE / Byte.SIZE);
+    private static final int FLOATS_PER_INSTANCE = 12;
+    private static final int INSTANCE_SIZE = FLOATS_PER_INSTANCE * (Float.SIZE / Byte.SIZE);
+
+    /**
+     * Unit quad of the instanced mode (corners LT, LB, RT, RB as strip)
+     */
+    private static final float[] QUAD_CORNERS = new float[]{0, 0, 0, 1, 1, 0, 1, 1};
+
+    /**
+     * Maximum number of sprites addressed by short indices
+     */
+    public static final int MAX_CAPACITY = (1 << 16) / VERTICES_PER_SPRITE;
+
+    /**
+     * Sprites generated in the scratch block before a bulk put
+     */
+    private static final int BLOCK_SPRITES = 64;
+
+    /**
+     * Sprites per range of a parallel generation
+     */
+    public static final int PARALLEL_RANGE = 1024;
+
+    /**
+     * Minimum number of sprites to generate in parallel, below the render thread works alone
+     */
+    public static final int PARALLEL_THRESHOLD = 2 * PARALLEL_RANGE;
+
+    /**
+     * Default maximum number of threads generating vertices (render thread included)
+     */
+    public static final int DEFAULT_MAX_PARALLELISM = 4;
+
+    /**
+     * Opaque white, packed as GlColoredSprite
+     */
+    private static final float WHITE = Float.intBitsToFloat(0xFFFFFFFF & 0xfeffffff);
+
+    protected final GlTexture mTexture;
+
+    // Instanced mode (GLES3)
+    private final boolean mInstanced;
+    private final int mFloatsPerSprite;
+    private final int mSpriteSize;
+
+    // Static unit quad (instanced mode)
+    private GlBuffer<float[]> mQuadBuffer;
+
+    // Sprites attributes indexed by id
+    private float[] mX;
+    private float[] mY;
+    private float[] mWidth;
+    private float[] mHeight;
+    private float[] mPivotX;
+    private float[] mPivotY;
+    private float[] mRotation;
+    private float[] mU1;
+    private float[] mV1;
+    private float[] mU2;
+    private float[] mV2;
+    private float[] mColor;
+
+    // Sprites modified since last commit
+    private boolean[] mModified;
+    private int mModifiedCount;
+
+    // Stack of removed ids below mCount, mRemoved flags them by id
+    private int[] mFreeIds;
+    private boolean[] mRemoved;
+    private int mFreeCount;
+
+    // Number of ids used once (generated and drawn)
+    private int mCount;
+
+    private int mCapacity;
+
+    // Scratch block of vertices
+    private final float[] mBlock = new float[BLOCK_SPRITES * FLOATS_PER_SPRITE];
+
+    // All sprites must be generated on next commit (new local buffer, pooled ones keep the data of their previous holder)
+    private boolean mGenerateAll = true;
+
+    private GlBufferIndex mIndicesBuffer;
+
+    // Reusable ranges tasks, task 0 is run by the render thread
+    private RangeTask[] mRangeTasks = new RangeTask[0];
+
+    // Shared workers, null if parallelism is 1
+    private static ForkJoinPool sPool;
+    private static int sParallelism = 0;
+
+    public GlSpriteStore(final GlTexture texture){
+        this(texture, DEFAULT_CAPACITY);
+    }
+
+    public GlSpriteStore(final GlTexture texture, final int capacity){
+        this(texture, capacity, false);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param texture The texture (or atlas) of all sprites
+     * @param capacity The number of reserved sprites (grows if needed)
+     * @param instanced True to draw instances of a unit quad (GLES3 only, see isInstancingSupported()),
+     *                  attributes handles are then the quad corner followed by the CHUNK_INSTANCE_* ones
+     */
+    public GlSpriteStore(final GlTexture texture, final int capacity, final boolean instanced){
+        //Layout of one vertex or one instance, data is generated
+        super(layout(instanced));
+        if(instanced && !isInstancingSupported()){
+            throw new IllegalStateException("Instanced sprites need GLES3");
+        }
+        mTexture = texture;
+        mInstanced = instanced;
+        mFloatsPerSprite = instanced ? FLOATS_PER_INSTANCE : FLOATS_PER_SPRITE;
+        mSpriteSize = instanced ? INSTANCE_SIZE : SPRITE_SIZE;
+
+        //Hack to hide float behind vec4 bytes (see GlColoredSprite)
+        final Chunk<float[]> colorChunk = chunks[instanced ? CHUNK_INSTANCE_COLOR_INDEX : CHUNK_COLOR_INDEX];
+        colorChunk.datatype = TYPE_BYTE;
+        colorChunk.normalized = true;
+        colorChunk.components = 4;
+        colorChunk.offset = instanced ? 44 : 16;
+
+        mCapacity = Math.max(1, Math.min(capacity, MAX_CAPACITY));
+        mX = new float[mCapacity];
+        mY = new float[mCapacity];
+        mWidth = new float[mCapacity];
+        mHeight = new float[mCapacity];
+        mPivotX = new float[mCapacity];
+        mPivotY = new float[mCapacity];
+        mRotation = new float[mCapacity];
+        mU1 = new float[mCapacity];
+        mV1 = new float[mCapacity];
+        mU2 = new float[mCapacity];
+        mV2 = new float[mCapacity];
+        mColor = new float[mCapacity];
+        mModified = new boolean[mCapacity];
+        mFreeIds = new int[mCapacity];
+        mRemoved = new boolean[mCapacity];
+        this.count = mInstanced ? mCapacity : mCapacity * VERTICES_PER_SPRITE;
+        this.size = mCapacity * mSpriteSize;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Chunk<float[]>[] layout(final boolean instanced){
+        if(instanced){
+            return new Chunk[]{new Chunk<>(new float[4], 4), new Chunk<>(new float[3], 3),
+                    new Chunk<>(new float[4], 4), new Chunk<>(new float[1], 1)};
+        }
+        return new Chunk[]{new Chunk<>(new float[2], 2), new Chunk<>(new float[2], 2), new Chunk<>(new float[1], 1)};
+    }
+
+    /**
+     * @return True if the current context can draw instanced stores
+     */
+    public static boolean isInstancingSupported(){
+        return GlOperation.getVersion()[0] >= 3;
+    }
+
+    /**
+     * @return True if sprites are drawn as instances of a unit quad
+     */
+    public boolean isInstanced(){
+        return mInstanced;
+    }
+
+    /**
+     * Adds a sprite showing the whole texture, white, size 0
+     *
+     * @return The sprite id
+     */
+    public int add(){
+        final int id;
+        if(mFreeCount > 0){
+            id = mFreeIds[--mFreeCount];
+            mRemoved[id] = false;
+        }
+        else{
+            if(mCount == mCapacity){
+                grow(mCapacity << 1);
+            }
+            id = mCount++;
+        }
+        mX[id] = mY[id] = mWidth[id] = mHeight[id] = mPivotX[id] = mPivotY[id] = mRotation[id] = 0;
+        mU1[id] = mV1[id] = 0;
+        mU2[id] = mV2[id] = 1;
+        mColor[id] = WHITE;
+        modified(id);
+        return id;
+    }
+
+    /**
+     * Removes a sprite, it becomes degenerate until its id is reused
+     *
+     * @throws IllegalArgumentException if the id is not a sprite of the store (unknown or already removed)
+     */
+    public GlSpriteStore remove(final int id){
+        if(id < 0 || id >= mCount || mRemoved[id]){
+            throw new IllegalArgumentException("Unknown sprite id " + id);
+        }
+        mRemoved[id] = true;
+        mX[id] = mY[id] = mWidth[id] = mHeight[id] = mPivotX[id] = mPivotY[id] = mRotation[id] = 0;
+        mColor[id] = 0;
+        mFreeIds[mFreeCount++] = id;
+        modified(id);
+        return this;
+    }
+
+    /**
+     * Removes all sprites
+     */
+    public GlSpriteStore clear(){
+        mFreeCount = 0;
+        mCount = 0;
+        mModifiedCount = 0;
+        Arrays.fill(mModified, false);
+        Arrays.fill(mRemoved, false);
+        return this;
+    }
+
+    /**
+     * @return The number of sprites
+     */
+    public int getSpritesCount(){
+        return mCount - mFreeCount;
+    }
+
+    /**
+     * @return The number of reserved sprites
+     */
+    public int getCapacity(){
+        return mCapacity;
+    }
+
+    public GlSpriteStore position(final int id, final float x, final float y){
+        mX[id] = x;
+        mY[id] = y;
+        modified(id);
+        return this;
+    }
+
+    public GlSpriteStore translate(final int id, final float dx, final float dy){
+        mX[id] += dx;
+        mY[id] += dy;
+        modified(id);
+        return this;
+    }
+
+    /**
+     * Sets the size of a sprite, the pivot is centered
+     */
+    public GlSpriteStore size(final int id, final float width, final float height){
+        mWidth[id] = width;
+        mHeight[id] = height;
+        mPivotX[id] = width / 2;
+        mPivotY[id] = height / 2;
+        modified(id);
+        return this;
+    }
+
+    /**
+     * Sets the pivot of a sprite (from its left top corner)
+     */
+    public GlSpriteStore pivot(final int id, final float pivotX, final float pivotY){
+        mPivotX[id] = pivotX;
+        mPivotY[id] = pivotY;
+        modified(id);
+        return this;
+    }
+
+    public GlSpriteStore rotation(final int id, final float deg){
+        mRotation[id] = deg % 360f;
+        modified(id);
+        return this;
+    }
+
+    public GlSpriteStore rotate(final int id, final float deg){
+        mRotation[id] = (mRotation[id] + deg) % 360f;
+        modified(id);
+        return this;
+    }
+
+    /**
+     * Sets the texture region of a sprite (pixels)
+     */
+    public GlSpriteStore clip(final int id, final int srcX, final int srcY, final int srcWidth, final int srcHeight){
+        mU1[id] = (float) srcX / mTexture.getWidth();
+        mV1[id] = (float) srcY / mTexture.getHeight();
+        mU2[id] = (float) (srcX + srcWidth) / mTexture.getWidth();
+        mV2[id] = (float) (srcY + srcHeight) / mTexture.getHeight();
+        modified(id);
+        return this;
+    }
+
+    public GlSpriteStore color(final int id, final float r, final float g, final float b, final float a){
+        final int intColor = ((int)(255 * a) << 24) | ((int)(255 * b) << 16) | ((int)(255 * g) << 8) | ((int)(255 * r));
+        mColor[id] = Float.intBitsToFloat(intColor & 0xfeffffff);
+        modified(id);
+        return this;
+    }
+
+    public GlSpriteStore alpha(final int id, final float a){
+        final int intBits = (Float.floatToRawIntBits(mColor[id]) & 0x00FFFFFF) | ((int)(255 * a) << 24);
+        mColor[id] = Float.intBitsToFloat(intBits & 0xfeffffff);
+        modified(id);
+        return this;
+    }
+
+    public float getX(final int id){
+        return mX[id];
+    }
+
+    public float getY(final int id){
+        return mY[id];
+    }
+
+    public float getRotation(final int id){
+        return mRotation[id];
+    }
+
+    private void modified(final int id){
+        if(!mModified[id]){
+            mModified[id] = true;
+            mModifiedCount++;
+        }
+    }
+
+    /*
+     * Reallocates arrays, VBO and indices with a new capacity, vertices are generated again on next commit
+     */
+    private void grow(final int capacity){
+        //Log.d(TAG, "grow("+capacity+")");
+        if(capacity > MAX_CAPACITY){
+            throw new IllegalStateException("Sprite store capacity exceeds "+MAX_CAPACITY+" sprites");
+        }
+        mCapacity = capacity;
+        mX = Arrays.copyOf(mX, capacity);
+        mY = Arrays.copyOf(mY, capacity);
+        mWidth = Arrays.copyOf(mWidth, capacity);
+        mHeight = Arrays.copyOf(mHeight, capacity);
+        mPivotX = Arrays.copyOf(mPivotX, capacity);
+        mPivotY = Arrays.copyOf(mPivotY, capacity);
+        mRotation = Arrays.copyOf(mRotation, capacity);
+        mU1 = Arrays.copyOf(mU1, capacity);
+        mV1 = Arrays.copyOf(mV1, capacity);
+        mU2 = Arrays.copyOf(mU2, capacity);
+        mV2 = Arrays.copyOf(mV2, capacity);
+        mColor = Arrays.copyOf(mColor, capacity);
+        mModified = Arrays.copyOf(mModified, capacity);
+        mFreeIds = Arrays.copyOf(mFreeIds, capacity);
+        mRemoved = Arrays.copyOf(mRemoved, capacity);
+        this.count = mInstanced ? capacity : capacity * VERTICES_PER_SPRITE;
+        this.size = capacity * mSpriteSize;
+
+        if(mManagedBuffer && this.buffer != null){
+            ByteBufferPool.getInstance().returnDirectBuffer((FloatBuffer) this.buffer);
+        }
+        this.buffer = null;
+
+        if(mIndicesBuffer != null){
+            mIndicesBuffer.free();
+            mIndicesBuffer = null;
+        }
+
+        //Single reallocation of the server buffer, same handle (VAO still valid)
+        if(this.handle != UNBIND_HANDLE){
+            GlOperation.bindBuffer(this.target, this.handle);
+            if(this.mode == MODE_STREAM){
+                mStreamSegmentSize = (this.size + STREAM_ALIGNMENT - 1) & ~(STREAM_ALIGNMENT - 1);
+                mStreamSegment = -1;
+                GlOperation.getBackend().glBufferData(this.target, mStreamSegmentSize * STREAM_SEGMENTS, null, USAGE_STREAM_DRAW);
+            }
+            else{
+                GlOperation.getBackend().glBufferData(this.target, this.size, null, this.usage);
+            }
+            GlOperation.bindBuffer(this.target, UNBIND_HANDLE);
+            GlOperation.checkGlError(TAG, "glBufferData");
+            for(int id=0; id < mCount; id++){
+                modified(id);
+            }
+        }
+    }
+
+    @Override
+    public GlBuffer allocate(final int usage, final int target, final boolean freeLocal){
+        this.usage = usage;
+        if(!mInstanced){
+            return super.allocate(usage, target, freeLocal);
+        }
+
+        //Handles do not map chunks 1:1 (quad first), VAO is set below
+        final int[] handles = this.vertexAttribHandles;
+        this.vertexAttribHandles = null;
+        super.allocate(usage, target, freeLocal);
+        this.vertexAttribHandles = handles;
+
+        prepareQuad();
+        if(handles != null && handles.length > 0 && mVaoHandle == UNBIND_HANDLE){
+            final int[] vaoHandles = new int[1];
+            GlOperation.getBackend().glGenVertexArrays(1, vaoHandles, 0);
+            mVaoHandle = vaoHandles[0];
+            GlOperation.checkGlError(TAG, "glGenVertexArrays");
+
+            GlOperation.bindVertexArray(mVaoHandle);
+            for(int index=0; index < handles.length; index++){
+                GlOperation.getBackend().glEnableVertexAttribArray(handles[index]);
+            }
+            setInstanceAttributes(0);
+            GlOperation.checkGlError(TAG, "glVertexAttribDivisor");
+            GlOperation.bindBuffer(this.target, UNBIND_HANDLE);
+            GlOperation.bindVertexArray(UNBIND_HANDLE);
+
+            this.mode = MODE_VAO;
+        }
+        return this;
+    }
+
+    @Override
+    public GlBuffer allocateStream(final int target){
+        this.usage = USAGE_STREAM_DRAW;
+        if(mInstanced){
+            prepareQuad();
+        }
+        return super.allocateStream(target);
+    }
+
+    /*
+     * Creates the static unit quad of the instanced mode
+     */
+    private void prepareQuad(){
+        if(mQuadBuffer == null){
+            mQuadBuffer = new GlBuffer<>(new Chunk<>(QUAD_CORNERS, 2));
+            mQuadBuffer.allocate(USAGE_STATIC_DRAW, TARGET_ARRAY_BUFFER, true);
+        }
+    }
+
+    /*
+     * Points the quad corner (divisor 0) and the instance chunks (divisor 1) from the current
+     * server offset (or the local buffer in MODE_LOCAL), arrays must be enabled
+     */
+    private void setInstanceAttributes(final int drawOffset){
+        final int[] handles = this.vertexAttribHandles;
+        if(handles == null || handles.length == 0){
+            return;
+        }
+        GlOperation.bindBuffer(TARGET_ARRAY_BUFFER, mQuadBuffer.handle);
+        GlOperation.getBackend().glVertexAttribPointer(handles[0], 2, TYPE_FLOAT, false, 0, 0);
+        GlOperation.getBackend().glVertexAttribDivisor(handles[0], 0);
+
+        if(this.handle != UNBIND_HANDLE){
+            GlOperation.bindBuffer(TARGET_ARRAY_BUFFER, this.handle);
+        }
+        else{
+            GlOperation.bindBuffer(TARGET_ARRAY_BUFFER, UNBIND_HANDLE);
+        }
+        for(int index=1; index < handles.length; index++){
+            final Chunk<float[]> chunk = this.chunks[index - 1];
+            if(this.handle != UNBIND_HANDLE){
+                GlOperation.getBackend().glVertexAttribPointer(handles[index], chunk.components,
+                        chunk.datatype, chunk.normalized, this.stride, drawOffset + chunk.offset);
+            }
+            else{
+                this.buffer.position(chunk.position);
+                GlOperation.getBackend().glVertexAttribPointer(handles[index], chunk.components,
+                        chunk.datatype, chunk.normalized, this.stride, this.buffer);
+            }
+            GlOperation.getBackend().glVertexAttribDivisor(handles[index], 1);
+        }
+    }
+
+    /**
+     * Generates the vertices of modified sprites, only their (merged) ranges are uploaded
+     */
+    @Override
+    public GlBuffer commit(final boolean push){
+        //Log.d(TAG,"commit("+push+")");
+        if(this.buffer == null){
+            this.buffer = ByteBufferPool.getInstance().getDirectFloatBuffer(this.size >> 2);
+            mManagedBuffer = true;
+            mGenerateAll = true;
+        }
+        final FloatBuffer floatBuffer = (FloatBuffer) this.buffer;
+
+        //New local buffer -> all sprites
+        final boolean generateAll = mGenerateAll;
+        final boolean generated = (generateAll ? mCount : mModifiedCount) >= PARALLEL_THRESHOLD
+                && generateParallel(floatBuffer, generateAll);
+        if(generateAll){
+            if(!generated){
+                generate(floatBuffer, mBlock, 0, mCount);
+            }
+            mGenerateAll = false;
+        }
+
+        //Modified sprites, by runs of consecutive ids
+        if(mModifiedCount > 0){
+            int id = 0;
+            while(id < mCount){
+                if(!mModified[id]){
+                    id++;
+                    continue;
+                }
+                int end = id + 1;
+                while(end < mCount && mModified[end]){
+                    end++;
+                }
+                if(!generateAll && !generated){
+                    generate(floatBuffer, mBlock, id, end);
+                }
+                markDirty(id * mSpriteSize, end * mSpriteSize);
+                Arrays.fill(mModified, id, end, false);
+                id = end;
+            }
+            mModifiedCount = 0;
+        }
+        floatBuffer.position(0);
+
+        //Update server if needed (nothing dirty -> no upload)
+        if(push && (mDirtyAll || mDirtyCount > 0)){
+            push();
+        }
+
+        return this;
+    }
+
+    /**
+     * Sets the number of threads generating vertices of large stores (render thread included),
+     * 1 to disable parallel generation. Shared by all stores, must be called on the render thread.
+     *
+     * @param parallelism The number of threads, 0 for min(cores, DEFAULT_MAX_PARALLELISM)
+     */
+    public static void setParallelism(final int parallelism){
+        final int threads = (parallelism > 0) ? parallelism
+                : Math.min(Runtime.getRuntime().availableProcessors(), DEFAULT_MAX_PARALLELISM);
+        if(threads != sParallelism){
+            if(sPool != null){
+                sPool.shutdown();
+            }
+            sPool = (threads > 1) ? new ForkJoinPool(threads - 1) : null;
+            sParallelism = threads;
+        }
+    }
+
+    /**
+     * @return The number of threads generating vertices (render thread included)
+     */
+    public static int getParallelism(){
+        if(sParallelism == 0){
+            setParallelism(0);
+        }
+        return sParallelism;
+    }
+
+    /*
+     * Generates sprites (all or modified ones) by fixed ranges of ids, ranges are written in disjoint
+     * slices of the buffer. The render thread runs the first range and joins the others.
+     *
+     * @return false if parallelism is disabled (nothing generated)
+     */
+    private boolean generateParallel(final FloatBuffer buffer, final boolean all){
+        if(getParallelism() < 2){
+            return false;
+        }
+        final int rangesCount = (mCount + PARALLEL_RANGE - 1) / PARALLEL_RANGE;
+        if(mRangeTasks.length < rangesCount){
+            final int previousCount = mRangeTasks.length;
+            mRangeTasks = Arrays.copyOf(mRangeTasks, rangesCount);
+            for(int index=previousCount; index < rangesCount; index++){
+                mRangeTasks[index] = new RangeTask();
+            }
+        }
+        for(int index=0; index < rangesCount; index++){
+            final RangeTask task = mRangeTasks[index];
+            task.reinitialize();
+            task.prepare(buffer, index * PARALLEL_RANGE, Math.min(mCount, (index + 1) * PARALLEL_RANGE), all);
+            if(index > 0){
+                sPool.execute(task);
+            }
+        }
+        mRangeTasks[0].compute();
+        for(int index=1; index < rangesCount; index++){
+            mRangeTasks[index].join();
+        }
+        return true;
+    }
+
+    /*
+     * Range of a parallel generation, owns a scratch block and a view on the buffer for one commit
+     */
+    private final class RangeTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final float[] mRangeBlock = new float[BLOCK_SPRITES * FLOATS_PER_SPRITE];
+        private FloatBuffer mView;
+        private int mFirst;
+        private int mLast;
+        private boolean mAll;
+
+        void prepare(final FloatBuffer buffer, final int first, final int last, final boolean all){
+            //Fresh view on each commit (own position), a pooled buffer may come back with another limit
+            mView = buffer.duplicate();
+            mFirst = first;
+            mLast = last;
+            mAll = all;
+        }
+
+        @Override
+        protected void compute(){
+            //The buffer is not retained between commits
+            final FloatBuffer view = mView;
+            mView = null;
+            if(mAll){
+                generate(view, mRangeBlock, mFirst, mLast);
+                return;
+            }
+            int id = mFirst;
+            while(id < mLast){
+                if(!mModified[id]){
+                    id++;
+                    continue;
+                }
+                int end = id + 1;
+                while(end < mLast && mModified[end]){
+                    end++;
+                }
+                generate(view, mRangeBlock, id, end);
+                id = end;
+            }
+        }
+    }
+
+    /*
+     * Generates sprites [first, last[ in buffer (vertices or instances)
+     */
+    private void generate(final FloatBuffer buffer, final float[] block, final int first, final int last){
+        if(mInstanced){
+            generateInstances(buffer, block, first, last);
+        }
+        else{
+            generateVertices(buffer, block, first, last);
+        }
+    }
+
+    /*
+     * Instance kernel : copies sprites [first, last[ attributes in a scratch block, then bulk puts it in buffer
+     */
+    private void generateInstances(final FloatBuffer buffer, final float[] block, final int first, final int last){
+        buffer.position(first * FLOATS_PER_INSTANCE);
+        int id = first;
+        while(id < last){
+            final int blockEnd = Math.min(last, id + BLOCK_SPRITES);
+            int offset = 0;
+            for(; id < blockEnd; id++, offset += FLOATS_PER_INSTANCE){
+                block[offset] = mX[id];
+                block[offset + 1] = mY[id];
+                block[offset + 2] = mPivotX[id];
+                block[offset + 3] = mPivotY[id];
+                block[offset + 4] = mWidth[id];
+                block[offset + 5] = mHeight[id];
+                block[offset + 6] = mRotation[id];
+                block[offset + 7] = mU1[id];
+                block[offset + 8] = mV1[id];
+                block[offset + 9] = mU2[id];
+                block[offset + 10] = mV2[id];
+                block[offset + 11] = mColor[id];
+            }
+            buffer.put(block, 0, offset);
+        }
+    }
+
+    /*
+     * Vertex kernel : generates sprites [first, last[ in a scratch block, then bulk puts it in buffer
+     */
+    private void generateVertices(final FloatBuffer buffer, final float[] block, final int first, final int last){
+        buffer.position(first * FLOATS_PER_SPRITE);
+        int id = first;
+        while(id < last){
+            final int blockEnd = Math.min(last, id + BLOCK_SPRITES);
+            int offset = 0;
+            for(; id < blockEnd; id++, offset += FLOATS_PER_SPRITE){
+                final float x = mX[id];
+                final float y = mY[id];
+                final float localX = -mPivotX[id];
+                final float localY = mPivotY[id];
+                final float localX2 = localX + mWidth[id];
+                final float localY2 = localY - mHeight[id];
+                final float rotation = mRotation[id];
+                final float color = mColor[id];
+
+                if(rotation != 0){
+                    final float cos = MathUtils.cosDeg(rotation);
+                    final float sin = MathUtils.sinDeg(rotation);
+                    // left top
+                    block[offset] = x + localX * cos - localY * sin;
+                    block[offset + 1] = y + localX * sin + localY * cos;
+                    // left bottom
+                    block[offset + 5] = x + localX * cos - localY2 * sin;
+                    block[offset + 6] = y + localX * sin + localY2 * cos;
+                    // right top
+                    block[offset + 10] = x + localX2 * cos - localY * sin;
+                    block[offset + 11] = y + localX2 * sin + localY * cos;
+                    // right bottom
+                    block[offset + 15] = x + localX2 * cos - localY2 * sin;
+                    block[offset + 16] = y + localX2 * sin + localY2 * cos;
+                }
+                else{
+                    block[offset] = block[offset + 5] = x + localX;
+                    block[offset + 1] = block[offset + 11] = y + localY;
+                    block[offset + 10] = block[offset + 15] = x + localX2;
+                    block[offset + 6] = block[offset + 16] = y + localY2;
+                }
+
+                block[offset + 2] = block[offset + 7] = mU1[id];
+                block[offset + 3] = block[offset + 13] = mV1[id];
+                block[offset + 12] = block[offset + 17] = mU2[id];
+                block[offset + 8] = block[offset + 18] = mV2[id];
+
+                block[offset + 4] = block[offset + 9] = block[offset + 14] = block[offset + 19] = color;
+            }
+            buffer.put(block, 0, offset);
+        }
+    }
+
+    @Override
+    public GlBuffer commit(final Chunk<float[]>[] chunks) {
+        return commit();
+    }
+
+    @Override
+    public GlBuffer commit(final Chunk<float[]>[] chunks, final boolean push) {
+        return commit(push);
+    }
+
+    @Override
+    public GlBuffer commit(final Chunk<float[]> chunk) {
+        return commit();
+    }
+
+    @Override
+    public GlBuffer commit(final Chunk<float[]> chunk, final boolean push) {
+        return commit(push);
+    }
+
+    private void prepareIndices(){
+        if (mIndicesBuffer == null) {
+            mIndicesBuffer = new GlBufferIndex(mCapacity, VERTICES_PER_SPRITE);
+            mIndicesBuffer.allocate(this.usage);
+        }
+    }
+
+    @Override
+    public void draw(final GlProgram program) {
+        if(mCount == 0){
+            return;
+        }
+        if(mInstanced){
+            drawInstances(program);
+            return;
+        }
+        prepareIndices();
+        //Indices of used ids only (prefix of the strip)
+        final int indicesCount = (VERTICES_PER_SPRITE + 2) * mCount - 2;
+        switch (this.mode){
+            case GlBuffer.MODE_VAO: {
+                bind();
+
+                mIndicesBuffer.bind();
+                GlOperation.getBackend().glDrawElements(GLES20.GL_TRIANGLE_STRIP, indicesCount, GLES20.GL_UNSIGNED_SHORT, 0);
+                mIndicesBuffer.unbind();
+
+                unbind();
+                break;
+            }
+            case GlBuffer.MODE_STREAM:
+            case GlBuffer.MODE_VBO: {
+                program.enableAttributes();
+
+                this.bind();
+
+                if(this.vertexAttribHandles != null) {
+                    for (int index = 0; index < this.vertexAttribHandles.length; index++) {
+                        GlOperation.getBackend().glVertexAttribPointer(this.vertexAttribHandles[index], this.chunks[index].components,
+                                this.chunks[index].datatype, this.chunks[index].normalized, this.stride, mDrawOffset + this.chunks[index].offset);
+                    }
+                }
+
+                mIndicesBuffer.bind();
+                GlOperation.getBackend().glDrawElements(GLES20.GL_TRIANGLE_STRIP, indicesCount, GLES20.GL_UNSIGNED_SHORT, 0);
+                mIndicesBuffer.unbind();
+
+                unbind();
+                program.disableAttributes();
+                break;
+            }
+            default: {
+                program.enableAttributes();
+
+                if(this.vertexAttribHandles != null) {
+                    for (int index = 0; index < this.vertexAttribHandles.length; index++) {
+                        this.buffer.position(this.chunks[index].position);
+                        GlOperation.getBackend().glVertexAttribPointer(this.vertexAttribHandles[index], this.chunks[index].components,
+                                this.chunks[index].datatype, this.chunks[index].normalized, this.stride, this.buffer);
+                    }
+                }
+
+                mIndicesBuffer.bind();
+                this.buffer.position(0);
+                GlOperation.getBackend().glDrawElements(GLES20.GL_TRIANGLE_STRIP, indicesCount, GLES20.GL_UNSIGNED_SHORT, 0);
+                mIndicesBuffer.unbind();
+
+                program.disableAttributes();
+            }
+        }
+    }
+
+    /*
+     * Draws all sprites in one instanced call of the unit quad
+     */
+    private void drawInstances(final GlProgram program){
+        prepareQuad();
+        if(this.mode == GlBuffer.MODE_VAO){
+            bind();
+            GlOperation.getBackend().glDrawArraysInstanced(GLES20.GL_TRIANGLE_STRIP, 0, VERTICES_PER_SPRITE, mCount);
+            unbind();
+            return;
+        }
+
+        program.enableAttributes();
+        setInstanceAttributes(mDrawOffset);
+        GlOperation.getBackend().glDrawArraysInstanced(GLES20.GL_TRIANGLE_STRIP, 0, VERTICES_PER_SPRITE, mCount);
+        //Divisors are global without VAO, restore per vertex attributes
+        if(this.vertexAttribHandles != null){
+            for(int index=1; index < this.vertexAttribHandles.length; index++){
+                GlOperation.getBackend().glVertexAttribDivisor(this.vertexAttribHandles[index], 0);
+            }
+        }
+        if(this.buffer != null){
+            this.buffer.position(0);
+        }
+        GlOperation.bindBuffer(TARGET_ARRAY_BUFFER, UNBIND_HANDLE);
+        program.disableAttributes();
+    }
+
+    @Override
+    public GlBuffer free() {
+        super.free();
+        mGenerateAll = true;
+        if(mQuadBuffer != null){
+            mQuadBuffer.free();
+            mQuadBuffer = null;
+        }
+        if(mIndicesBuffer != null){
+            mIndicesBuffer.free();
+            mIndicesBuffer = null;
+        }
+        return this;
+    }
+}
@@ -6,7 +6,6 @@ import java.util.Arrays;
 
 import android.graphics.Bitmap;
 import android.opengl.GLES20;
-import android.opengl.GLUtils;
 import android.util.Log;
 
 /**
@@ -292,13 +291,13 @@ public abstract class GlTexture implements GlFrameBufferObject.Attachment{
      * Set texture settings based on class getters
      */
     public GlTexture configure(){
-        GLES20.glTexParameteri(getTarget(), GLES20.GL_TEXTURE_WRAP_S, getWrapMode(WRAP_MODE_S));
-        GLES20.glTexParameteri(getTarget(), GLES20.GL_TEXTURE_WRAP_T, getWrapMode(WRAP_MODE_T));
-        GLES20.glTexParameteri(getTarget(), GLES20.GL_TEXTURE_MIN_FILTER, getMinificationFilter());
-        GLES20.glTexParameteri(getTarget(), GLES20.GL_TEXTURE_MAG_FILTER, getMagnificationFilter());
+        GlOperation.getBackend().glTexParameteri(getTarget(), GLES20.GL_TEXTURE_WRAP_S, getWrapMode(WRAP_MODE_S));
+        GlOperation.getBackend().glTexParameteri(getTarget(), GLES20.GL_TEXTURE_WRAP_T, getWrapMode(WRAP_MODE_T));
+        GlOperation.getBackend().glTexParameteri(getTarget(), GLES20.GL_TEXTURE_MIN_FILTER, getMinificationFilter());
+        GlOperation.getBackend().glTexParameteri(getTarget(), GLES20.GL_TEXTURE_MAG_FILTER, getMagnificationFilter());
 		GlOperation.checkGlError(TAG, "glTexParameteri");
         if(getMinificationFilter() >= MIN_FILTER_MIPMAP_LOW) {
-			GLES20.glGenerateMipmap(getTarget());
+			GlOperation.getBackend().glGenerateMipmap(getTarget());
 			GlOperation.checkGlError(TAG, "glGenerateMipmap");
 		}
         return this;
@@ -318,14 +317,14 @@ public abstract class GlTexture implements GlFrameBufferObject.Attachment{
 		GlOperation.checkGlError(TAG, "glGenTextures");
 		final Bitmap bitmap = getBitmap();
 		if(bitmap != null) {
-            GLUtils.texImage2D(getTarget(), getLevel(),getFormat(),bitmap,0);
+            GlOperation.getBackend().glTexImage2D(getTarget(), getLevel(), getFormat(), bitmap);
             GlOperation.checkGlError(TAG, "texImage2D");
             if(recycleBitmap) {
                 bitmap.recycle();
             }
 		}
         else{
-            GLES20.glTexImage2D(getTarget(), 0, getFormat(), getWidth(), getHeight(), 0, getFormat(), GLES20.GL_UNSIGNED_BYTE, null);
+            GlOperation.getBackend().glTexImage2D(getTarget(), 0, getFormat(), getWidth(), getHeight(), 0, getFormat(), GLES20.GL_UNSIGNED_BYTE, null);
             GlOperation.checkGlError(TAG, "glTexImage2D");
         }
 		return this;
@@ -337,7 +336,7 @@ public abstract class GlTexture implements GlFrameBufferObject.Attachment{
 	public GlTexture bind(){
         if(this.handle == UNBIND_HANDLE) {
             final int[] handles = new int[1];
-            GLES20.glGenTextures(1, handles, 0);
+            GlOperation.getBackend().glGenTextures(1, handles, 0);
             this.handle = handles[0];
         }
         if(this.index < 0) {
@@ -348,7 +347,7 @@ public abstract class GlTexture implements GlFrameBufferObject.Attachment{
                 }
                 index = sCurrentIndex++;
                 GlOperation.setActiveTexture(index);
-                GLES20.glBindTexture(getTarget(), this.handle);
+                GlOperation.bindTexture(getTarget(), this.handle);
             }
         }
         else{
@@ -361,7 +360,7 @@ public abstract class GlTexture implements GlFrameBufferObject.Attachment{
 	public synchronized GlTexture unbind(){
 	    if(index >= 0) {
             GlOperation.setActiveTexture(index);
-            GLES20.glBindTexture(getTarget(), UNBIND_HANDLE);
+            GlOperation.bindTexture(getTarget(), UNBIND_HANDLE);
             sCurrentIndex--;
         }
         return this;
@@ -499,7 +498,8 @@ public abstract class GlTexture implements GlFrameBufferObject.Attachment{
 	public GlTexture free(){
         //Log.d(TAG, "free()");
 	    unbind();
-		GLES20.glDeleteTextures(1, new int[]{this.handle}, 0);
+		GlOperation.getBackend().glDeleteTextures(1, new int[]{this.handle}, 0);
+		GlOperation.onTextureDeleted(this.handle);
 		GlOperation.checkGlError(TAG, "glDeleteTextures");
 		return this;
 	}
@@ -0,0 +1,149 @@
+package com.thommil.animalsgo.gl.libgl;
+
+import android.opengl.GLES20;
+import android.opengl.GLES30;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+/**
+ * Uniform buffer object (GLES3) holding a std140 block of floats :
+ *	<ul>
+ * 	<li>values are written in a local copy, offsets are in floats and follow std140 layout</li>
+ * 	<li>commit() uploads the whole block once if modified (buffer orphaning)</li>
+ * 	<li>the buffer is bound to a binding point shared by all programs, see GlProgram.bindUniformBlock()</li>
+ *	</ul>
+ *
+ * 	@author Thomas MILLET
+ *
+ */
+public class GlUniformBuffer {
+
+	/**
+	 * TAG log
+	 */
+	@SuppressWarnings("unused")
+	private static final String TAG = "A_GO/GlUniformBuffer";
+
+	/**
+	 * std140 blocks are rounded up to vec4
+	 */
+	private static final int VEC4_SIZE = 4;
+
+	/**
+	 * The associated handle
+	 */
+	public final int handle;
+
+	/**
+	 * The size of the block in floats (multiple of vec4)
+	 */
+	public final int size;
+
+	/**
+	 * Local copy of the block
+	 */
+	private final float[] mValues;
+
+	/**
+	 * Upload buffer
+	 */
+	private final FloatBuffer mBuffer;
+
+	/**
+	 * Local copy modified since last commit
+	 */
+	private boolean mDirty = true;
+
+	/**
+	 * Constructor
+	 *
+	 * @param size The block size in floats
+	 */
+	public GlUniformBuffer(final int size){
+		this.size = (size + VEC4_SIZE - 1) / VEC4_SIZE * VEC4_SIZE;
+		this.mValues = new float[this.size];
+		this.mBuffer = ByteBuffer.allocateDirect(this.size * Float.SIZE / Byte.SIZE).order(ByteOrder.nativeOrder()).asFloatBuffer();
+		final int[] handles = new int[1];
+		GlOperation.getBackend().glGenBuffers(1, handles, 0);
+		this.handle = handles[0];
+		GlOperation.getBackend().glBindBuffer(GLES30.GL_UNIFORM_BUFFER, this.handle);
+		GlOperation.getBackend().glBufferData(GLES30.GL_UNIFORM_BUFFER, this.size * Float.SIZE / Byte.SIZE, null, GLES20.GL_DYNAMIC_DRAW);
+		GlOperation.getBackend().glBindBuffer(GLES30.GL_UNIFORM_BUFFER, GLES20.GL_NONE);
+		GlOperation.checkGlError(TAG, "glBufferData");
+	}
+
+	/**
+	 * Sets a float member
+	 *
+	 * @param offset The member offset in floats
+	 */
+	public GlUniformBuffer set(final int offset, final float x){
+		if(this.mValues[offset] != x){
+			this.mValues[offset] = x;
+			this.mDirty = true;
+		}
+		return this;
+	}
+
+	/**
+	 * Sets a vec2 member
+	 *
+	 * @param offset The member offset in floats (multiple of 2)
+	 */
+	public GlUniformBuffer set(final int offset, final float x, final float y){
+		return this.set(offset, x).set(offset + 1, y);
+	}
+
+	/**
+	 * Sets a member from an array (ie mat4)
+	 *
+	 * @param offset The member offset in floats
+	 * @param values The source array
+	 * @param valuesOffset The offset in source array
+	 * @param count The number of floats
+	 */
+	public GlUniformBuffer set(final int offset, final float[] values, final int valuesOffset, final int count){
+		for(int index=0; index < count; index++){
+			this.set(offset + index, values[valuesOffset + index]);
+		}
+		return this;
+	}
+
+	/**
+	 * Uploads the block if modified since last commit
+	 */
+	public GlUniformBuffer commit(){
+		if(this.mDirty){
+			this.mBuffer.put(this.mValues).position(0);
+			final int bytes = this.size * Float.SIZE / Byte.SIZE;
+			GlOperation.getBackend().glBindBuffer(GLES30.GL_UNIFORM_BUFFER, this.handle);
+			//Orphan the storage, a block still read by previous frame does not stall
+			GlOperation.getBackend().glBufferData(GLES30.GL_UNIFORM_BUFFER, bytes, this.mBuffer, GLES20.GL_DYNAMIC_DRAW);
+			GlOperation.getBackend().glBindBuffer(GLES30.GL_UNIFORM_BUFFER, GLES20.GL_NONE);
+			GlBuffer.sUploadedBytes += bytes;
+			this.mDirty = false;
+		}
+		return this;
+	}
+
+	/**
+	 * Binds the buffer to a uniform binding point
+	 *
+	 * @param bindingPoint The binding point index
+	 */
+	public GlUniformBuffer bind(final int bindingPoint){
+		GlOperation.getBackend().glBindBufferBase(GLES30.GL_UNIFORM_BUFFER, bindingPoint, this.handle);
+		return this;
+	}
+
+	/**
+	 * Free resources associated with current buffer
+	 */
+	public GlUniformBuffer free(){
+		GlOperation.getBackend().glDeleteBuffers(1, new int[]{this.handle}, 0);
+		GlOperation.checkGlError(TAG, "glDeleteBuffers");
+		return this;
+	}
+}
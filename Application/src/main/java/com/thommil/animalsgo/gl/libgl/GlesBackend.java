@@ -0,0 +1,500 @@
+package com.thommil.animalsgo.gl.libgl;
+
+import android.graphics.Bitmap;
+import android.opengl.GLES20;
+import android.opengl.GLES30;
+import android.opengl.GLUtils;
+
+import java.nio.Buffer;
+
+/**
+ * Production {@link GlBackend} calling GLES20/GLES30 on the current EGL context
+ *
+ * 	@author Thomas MILLET
+ *
+ */
+public final class GlesBackend implements GlBackend {
+
+	/**
+	 * Unique instance (stateless)
+	 */
+	private static final GlesBackend instance = new GlesBackend();
+
+	private GlesBackend(){
+
+	}
+
+	public static GlesBackend getInstance(){
+		return instance;
+	}
+
+	@Override
+	public void glEnable(final int cap){
+		GLES20.glEnable(cap);
+	}
+
+	@Override
+	public void glDisable(final int cap){
+		GLES20.glDisable(cap);
+	}
+
+	@Override
+	public void glViewport(final int x, final int y, final int width, final int height){
+		GLES20.glViewport(x, y, width, height);
+	}
+
+	@Override
+	public void glScissor(final int x, final int y, final int width, final int height){
+		GLES20.glScissor(x, y, width, height);
+	}
+
+	@Override
+	public void glBlendColor(final float red, final float green, final float blue, final float alpha){
+		GLES20.glBlendColor(red, green, blue, alpha);
+	}
+
+	@Override
+	public void glBlendFunc(final int sfactor, final int dfactor){
+		GLES20.glBlendFunc(sfactor, dfactor);
+	}
+
+	@Override
+	public void glBlendEquation(final int mode){
+		GLES20.glBlendEquation(mode);
+	}
+
+	@Override
+	public void glStencilFunc(final int func, final int ref, final int mask){
+		GLES20.glStencilFunc(func, ref, mask);
+	}
+
+	@Override
+	public void glStencilOp(final int fail, final int zfail, final int zpass){
+		GLES20.glStencilOp(fail, zfail, zpass);
+	}
+
+	@Override
+	public void glStencilMask(final int mask){
+		GLES20.glStencilMask(mask);
+	}
+
+	@Override
+	public void glDepthFunc(final int func){
+		GLES20.glDepthFunc(func);
+	}
+
+	@Override
+	public void glDepthMask(final boolean flag){
+		GLES20.glDepthMask(flag);
+	}
+
+	@Override
+	public void glColorMask(final boolean red, final boolean green, final boolean blue, final boolean alpha){
+		GLES20.glColorMask(red, green, blue, alpha);
+	}
+
+	@Override
+	public void glFrontFace(final int mode){
+		GLES20.glFrontFace(mode);
+	}
+
+	@Override
+	public void glCullFace(final int mode){
+		GLES20.glCullFace(mode);
+	}
+
+	@Override
+	public void glClearColor(final float red, final float green, final float blue, final float alpha){
+		GLES20.glClearColor(red, green, blue, alpha);
+	}
+
+	@Override
+	public void glClearDepthf(final float depth){
+		GLES20.glClearDepthf(depth);
+	}
+
+	@Override
+	public void glClearStencil(final int s){
+		GLES20.glClearStencil(s);
+	}
+
+	@Override
+	public void glClear(final int mask){
+		GLES20.glClear(mask);
+	}
+
+	@Override
+	public void glFinish(){
+		GLES20.glFinish();
+	}
+
+	@Override
+	public int glGetError(){
+		return GLES20.glGetError();
+	}
+
+	@Override
+	public String glGetString(final int name){
+		return GLES20.glGetString(name);
+	}
+
+	@Override
+	public void glGetIntegerv(final int pname, final int[] params, final int offset){
+		GLES20.glGetIntegerv(pname, params, offset);
+	}
+
+	@Override
+	public void glGetFloatv(final int pname, final float[] params, final int offset){
+		GLES20.glGetFloatv(pname, params, offset);
+	}
+
+	@Override
+	public void glGenBuffers(final int n, final int[] buffers, final int offset){
+		GLES20.glGenBuffers(n, buffers, offset);
+	}
+
+	@Override
+	public void glDeleteBuffers(final int n, final int[] buffers, final int offset){
+		GLES20.glDeleteBuffers(n, buffers, offset);
+	}
+
+	@Override
+	public void glBindBuffer(final int target, final int buffer){
+		GLES20.glBindBuffer(target, buffer);
+	}
+
+	@Override
+	public void glBufferData(final int target, final int size, final Buffer data, final int usage){
+		GLES20.glBufferData(target, size, data, usage);
+	}
+
+	@Override
+	public void glBufferSubData(final int target, final int offset, final int size, final Buffer data){
+		GLES20.glBufferSubData(target, offset, size, data);
+	}
+
+	@Override
+	public void glBindBufferBase(final int target, final int index, final int buffer){
+		GLES30.glBindBufferBase(target, index, buffer);
+	}
+
+	@Override
+	public Buffer glMapBufferRange(final int target, final int offset, final int length, final int access){
+		return GLES30.glMapBufferRange(target, offset, length, access);
+	}
+
+	@Override
+	public boolean glUnmapBuffer(final int target){
+		return GLES30.glUnmapBuffer(target);
+	}
+
+	@Override
+	public void glGenVertexArrays(final int n, final int[] arrays, final int offset){
+		GLES30.glGenVertexArrays(n, arrays, offset);
+	}
+
+	@Override
+	public void glDeleteVertexArrays(final int n, final int[] arrays, final int offset){
+		GLES30.glDeleteVertexArrays(n, arrays, offset);
+	}
+
+	@Override
+	public void glBindVertexArray(final int array){
+		GLES30.glBindVertexArray(array);
+	}
+
+	@Override
+	public long glFenceSync(final int condition, final int flags){
+		return GLES30.glFenceSync(condition, flags);
+	}
+
+	@Override
+	public int glClientWaitSync(final long sync, final int flags, final long timeout){
+		return GLES30.glClientWaitSync(sync, flags, timeout);
+	}
+
+	@Override
+	public void glDeleteSync(final long sync){
+		GLES30.glDeleteSync(sync);
+	}
+
+	@Override
+	public void glEnableVertexAttribArray(final int index){
+		GLES20.glEnableVertexAttribArray(index);
+	}
+
+	@Override
+	public void glDisableVertexAttribArray(final int index){
+		GLES20.glDisableVertexAttribArray(index);
+	}
+
+	@Override
+	public void glVertexAttribPointer(final int index, final int size, final int type, final boolean normalized, final int stride, final int offset){
+		GLES20.glVertexAttribPointer(index, size, type, normalized, stride, offset);
+	}
+
+	@Override
+	public void glVertexAttribPointer(final int index, final int size, final int type, final boolean normalized, final int stride, final Buffer ptr){
+		GLES20.glVertexAttribPointer(index, size, type, normalized, stride, ptr);
+	}
+
+	@Override
+	public void glVertexAttribDivisor(final int index, final int divisor){
+		GLES30.glVertexAttribDivisor(index, divisor);
+	}
+
+	@Override
+	public void glDrawArrays(final int mode, final int first, final int count){
+		GLES20.glDrawArrays(mode, first, count);
+	}
+
+	@Override
+	public void glDrawElements(final int mode, final int count, final int type, final int offset){
+		GLES20.glDrawElements(mode, count, type, offset);
+	}
+
+	@Override
+	public void glDrawElements(final int mode, final int count, final int type, final Buffer indices){
+		GLES20.glDrawElements(mode, count, type, indices);
+	}
+
+	@Override
+	public void glDrawArraysInstanced(final int mode, final int first, final int count, final int instanceCount){
+		GLES30.glDrawArraysInstanced(mode, first, count, instanceCount);
+	}
+
+	@Override
+	public void glActiveTexture(final int texture){
+		GLES20.glActiveTexture(texture);
+	}
+
+	@Override
+	public void glGenTextures(final int n, final int[] textures, final int offset){
+		GLES20.glGenTextures(n, textures, offset);
+	}
+
+	@Override
+	public void glDeleteTextures(final int n, final int[] textures, final int offset){
+		GLES20.glDeleteTextures(n, textures, offset);
+	}
+
+	@Override
+	public void glBindTexture(final int target, final int texture){
+		GLES20.glBindTexture(target, texture);
+	}
+
+	@Override
+	public void glTexParameteri(final int target, final int pname, final int param){
+		GLES20.glTexParameteri(target, pname, param);
+	}
+
+	@Override
+	public void glTexImage2D(final int target, final int level, final int internalformat, final int width, final int height, final int border, final int format, final int type, final Buffer pixels){
+		GLES20.glTexImage2D(target, level, internalformat, width, height, border, format, type, pixels);
+	}
+
+	@Override
+	public void glTexImage2D(final int target, final int level, final int internalformat, final Bitmap bitmap){
+		GLUtils.texImage2D(target, level, internalformat, bitmap, 0);
+	}
+
+	@Override
+	public void glGenerateMipmap(final int target){
+		GLES20.glGenerateMipmap(target);
+	}
+
+	@Override
+	public int glCreateShader(final int type){
+		return GLES20.glCreateShader(type);
+	}
+
+	@Override
+	public void glShaderSource(final int shader, final String string){
+		GLES20.glShaderSource(shader, string);
+	}
+
+	@Override
+	public void glCompileShader(final int shader){
+		GLES20.glCompileShader(shader);
+	}
+
+	@Override
+	public void glGetShaderiv(final int shader, final int pname, final int[] params, final int offset){
+		GLES20.glGetShaderiv(shader, pname, params, offset);
+	}
+
+	@Override
+	public void glDeleteShader(final int shader){
+		GLES20.glDeleteShader(shader);
+	}
+
+	@Override
+	public int glCreateProgram(){
+		return GLES20.glCreateProgram();
+	}
+
+	@Override
+	public void glAttachShader(final int program, final int shader){
+		GLES20.glAttachShader(program, shader);
+	}
+
+	@Override
+	public void glBindAttribLocation(final int program, final int index, final String name){
+		GLES20.glBindAttribLocation(program, index, name);
+	}
+
+	@Override
+	public void glLinkProgram(final int program){
+		GLES20.glLinkProgram(program);
+	}
+
+	@Override
+	public void glGetProgramiv(final int program, final int pname, final int[] params, final int offset){
+		GLES20.glGetProgramiv(program, pname, params, offset);
+	}
+
+	@Override
+	public String glGetProgramInfoLog(final int program){
+		return GLES20.glGetProgramInfoLog(program);
+	}
+
+	@Override
+	public void glDeleteProgram(final int program){
+		GLES20.glDeleteProgram(program);
+	}
+
+	@Override
+	public void glProgramParameteri(final int program, final int pname, final int value){
+		GLES30.glProgramParameteri(program, pname, value);
+	}
+
+	@Override
+	public void glGetProgramBinary(final int program, final int bufSize, final int[] length, final int lengthOffset, final int[] binaryFormat, final int binaryFormatOffset, final Buffer binary){
+		GLES30.glGetProgramBinary(program, bufSize, length, lengthOffset, binaryFormat, binaryFormatOffset, binary);
+	}
+
+	@Override
+	public void glProgramBinary(final int program, final int binaryFormat, final Buffer binary, final int length){
+		GLES30.glProgramBinary(program, binaryFormat, binary, length);
+	}
+
+	@Override
+	public void glUseProgram(final int program){
+		GLES20.glUseProgram(program);
+	}
+
+	@Override
+	public int glGetAttribLocation(final int program, final String name){
+		return GLES20.glGetAttribLocation(program, name);
+	}
+
+	@Override
+	public String glGetActiveAttrib(final int program, final int index, final int[] size, final int sizeOffset, final int[] type, final int typeOffset){
+		return GLES20.glGetActiveAttrib(program, index, size, sizeOffset, type, typeOffset);
+	}
+
+	@Override
+	public String glGetActiveUniform(final int program, final int index, final int[] size, final int sizeOffset, final int[] type, final int typeOffset){
+		return GLES20.glGetActiveUniform(program, index, size, sizeOffset, type, typeOffset);
+	}
+
+	@Override
+	public int glGetUniformLocation(final int program, final String name){
+		return GLES20.glGetUniformLocation(program, name);
+	}
+
+	@Override
+	public int glGetUniformBlockIndex(final int program, final String uniformBlockName){
+		return GLES30.glGetUniformBlockIndex(program, uniformBlockName);
+	}
+
+	@Override
+	public void glUniformBlockBinding(final int program, final int uniformBlockIndex, final int uniformBlockBinding){
+		GLES30.glUniformBlockBinding(program, uniformBlockIndex, uniformBlockBinding);
+	}
+
+	@Override
+	public void glUniform1i(final int location, final int x){
+		GLES20.glUniform1i(location, x);
+	}
+
+	@Override
+	public void glUniform1f(final int location, final float x){
+		GLES20.glUniform1f(location, x);
+	}
+
+	@Override
+	public void glUniform2f(final int location, final float x, final float y){
+		GLES20.glUniform2f(location, x, y);
+	}
+
+	@Override
+	public void glUniform3f(final int location, final float x, final float y, final float z){
+		GLES20.glUniform3f(location, x, y, z);
+	}
+
+	@Override
+	public void glUniform4f(final int location, final float x, final float y, final float z, final float w){
+		GLES20.glUniform4f(location, x, y, z, w);
+	}
+
+	@Override
+	public void glUniformMatrix4fv(final int location, final int count, final boolean transpose, final float[] value, final int offset){
+		GLES20.glUniformMatrix4fv(location, count, transpose, value, offset);
+	}
+
+	@Override
+	public void glGenFramebuffers(final int n, final int[] framebuffers, final int offset){
+		GLES20.glGenFramebuffers(n, framebuffers, offset);
+	}
+
+	@Override
+	public void glDeleteFramebuffers(final int n, final int[] framebuffers, final int offset){
+		GLES20.glDeleteFramebuffers(n, framebuffers, offset);
+	}
+
+	@Override
+	public void glBindFramebuffer(final int target, final int framebuffer){
+		GLES20.glBindFramebuffer(target, framebuffer);
+	}
+
+	@Override
+	public void glFramebufferTexture2D(final int target, final int attachment, final int textarget, final int texture, final int level){
+		GLES20.glFramebufferTexture2D(target, attachment, textarget, texture, level);
+	}
+
+	@Override
+	public void glFramebufferRenderbuffer(final int target, final int attachment, final int renderbuffertarget, final int renderbuffer){
+		GLES20.glFramebufferRenderbuffer(target, attachment, renderbuffertarget, renderbuffer);
+	}
+
+	@Override
+	public int glCheckFramebufferStatus(final int target){
+		return GLES20.glCheckFramebufferStatus(target);
+	}
+
+	@Override
+	public void glGenRenderbuffers(final int n, final int[] renderbuffers, final int offset){
+		GLES20.glGenRenderbuffers(n, renderbuffers, offset);
+	}
+
+	@Override
+	public void glDeleteRenderbuffers(final int n, final int[] renderbuffers, final int offset){
+		GLES20.glDeleteRenderbuffers(n, renderbuffers, offset);
+	}
+
+	@Override
+	public void glBindRenderbuffer(final int target, final int renderbuffer){
+		GLES20.glBindRenderbuffer(target, renderbuffer);
+	}
+
+	@Override
+	public void glRenderbufferStorage(final int target, final int internalformat, final int width, final int height){
+		GLES20.glRenderbufferStorage(target, internalformat, width, height);
+	}
+
+	@Override
+	public void glReadPixels(final int x, final int y, final int width, final int height, final int format, final int type, final Buffer pixels){
+		GLES20.glReadPixels(x, y, width, height, format, type, pixels);
+	}
+}
@@ -1,7 +1,6 @@
 package com.thommil.animalsgo.gl.plugins;
 
 import android.opengl.GLES11Ext;
-import android.opengl.GLES20;
 
 import com.thommil.animalsgo.R;
 import com.thommil.animalsgo.gl.CameraPlugin;
@@ -12,11 +11,10 @@ public class CameraDefault extends CameraPlugin {
 
     private static final String TAG = "A_GO/plugin/CameraDefault";
 
-    private static final String ID = "camera/default";
-    private static final String PROGRAM_ID = "camera_default";
+    public static final String ID = "camera/default";
+    public static final String PROGRAM_ID = "camera_default";
 
     private int mTextureUniforHandle;
-    private int mMvpMatrixNuniformHandle;
 
     private GlTexture mCameraTexture;
 
@@ -72,7 +70,6 @@ public class CameraDefault extends CameraPlugin {
         mProgram.use();
         mCameraPreviewBuffer.setVertexAttribHandles(mProgram.getAttributeHandle(ATTRIBUTE_POSITION), mProgram.getAttributeHandle(ATTRIBUTE_TEXTCOORD));
         mTextureUniforHandle = mProgram.getUniformHandle(UNIFORM_TEXTURE);
-        mMvpMatrixNuniformHandle = mProgram.getUniformHandle(UNIFORM_MVP_MATRIX);
     }
 
     @Override
@@ -81,8 +78,8 @@ public class CameraDefault extends CameraPlugin {
 
         //Program
         mProgram.use();
-        GLES20.glUniform1i(mTextureUniforHandle, mCameraTexture.index);
-        GLES20.glUniformMatrix4fv(mMvpMatrixNuniformHandle, 1, false, mCameraTransformMatrix, 0);
+        mProgram.setUniform1i(mTextureUniforHandle, mCameraTexture.index);
+        applyFrameUniforms();
 
         //Texture
         mCameraTexture.bind();
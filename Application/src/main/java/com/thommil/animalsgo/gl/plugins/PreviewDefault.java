@@ -1,6 +1,5 @@
 package com.thommil.animalsgo.gl.plugins;
 
-import android.opengl.GLES20;
 
 import com.thommil.animalsgo.R;
 import com.thommil.animalsgo.gl.PreviewPlugin;
@@ -12,8 +11,8 @@ public class PreviewDefault extends PreviewPlugin {
 
     private static final String TAG = "A_GO/Plugin/PreviewDefault";
 
-    private static final String ID = "preview/default";
-    private static final String PROGRAM_ID = "default";
+    public static final String ID = "preview/default";
+    public static final String PROGRAM_ID = "default";
 
     protected final GlBuffer.Chunk<float[]> mVertChunk =
             new GlBuffer.Chunk<>(new float[]{
@@ -29,7 +28,7 @@ public class PreviewDefault extends PreviewPlugin {
                     0.0f,0.0f,
                     1.0f,1.0f,
                     1.0f,0.0f
-            },2);
+            },2, GlBuffer.FORMAT_NORMALIZED_SHORT);
 
     protected GlDrawableBuffer<float[]> mPreviewBuffer;
 
@@ -73,7 +72,8 @@ public class PreviewDefault extends PreviewPlugin {
     public void draw(final GlIntRect viewport, final int orientation) {
         //Program
         mProgram.use();
-        GLES20.glUniform1i(mTextureUniforHandle, mSourceTexture.index);
+        mProgram.setUniform1i(mTextureUniforHandle, mSourceTexture.index);
+        applyFrameUniforms();
 
         //Texture
         mSourceTexture.bind();
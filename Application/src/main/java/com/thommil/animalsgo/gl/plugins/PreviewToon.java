@@ -1,20 +1,31 @@
 package com.thommil.animalsgo.gl.plugins;
 
-import android.opengl.GLES20;
 
 import com.thommil.animalsgo.R;
 import com.thommil.animalsgo.gl.PreviewPlugin;
 import com.thommil.animalsgo.gl.libgl.GlBuffer;
 import com.thommil.animalsgo.gl.libgl.GlDrawableBuffer;
 import com.thommil.animalsgo.gl.libgl.GlIntRect;
+import com.thommil.animalsgo.gl.libgl.GlOperation;
+
+import java.util.HashMap;
+import java.util.Map;
 
 
 public class PreviewToon extends PreviewPlugin {
 
     private static final String TAG = "A_GO/Plugin/PreviewToon";
 
-    private static final String ID = "preview/toon";
-    private static final String PROGRAM_ID = "toon";
+    public static final String ID = "preview/toon";
+    public static final String PROGRAM_ID = "toon";
+
+    // Edge detection samples (toon.frag.glsl), cross only on GLES2 GPUs
+    private static final String DEFINE_EDGE_SAMPLES = "TOON_EDGE_SAMPLES";
+    private static final String EDGE_SAMPLES_HIGH = "8";
+    private static final String EDGE_SAMPLES_LOW = "4";
+
+    // Shared by all instances and the descriptor, see programDefines()
+    private static volatile Map<String, String> sProgramDefines;
 
     protected final GlBuffer.Chunk<float[]> mVertChunk =
             new GlBuffer.Chunk<>(new float[]{
@@ -30,12 +41,11 @@ public class PreviewToon extends PreviewPlugin {
                     0.0f,0.0f,
                     1.0f,1.0f,
                     1.0f,0.0f
-            },2);
+            },2, GlBuffer.FORMAT_NORMALIZED_SHORT);
 
     protected GlDrawableBuffer<float[]> mPreviewBuffer;
 
     private int mTextureUniforHandle;
-    private int mViewSizeUniformHandle;
 
     @Override
     public String getId() {
@@ -47,6 +57,23 @@ public class PreviewToon extends PreviewPlugin {
         return PROGRAM_ID;
     }
 
+    @Override
+    public Map<String, String> getProgramDefines() {
+        return programDefines();
+    }
+
+    /**
+     * Program defines without instance (PluginDescriptor), needs a current context, computed once
+     */
+    public static Map<String, String> programDefines() {
+        if(sProgramDefines == null) {
+            final Map<String, String> defines = new HashMap<>();
+            defines.put(DEFINE_EDGE_SAMPLES, (GlOperation.getVersion()[0] >= 3) ? EDGE_SAMPLES_HIGH : EDGE_SAMPLES_LOW);
+            sProgramDefines = defines;
+        }
+        return sProgramDefines;
+    }
+
     @Override
     public String getName() {
         return this.mContext.getString(R.string.plugins_preview_toon_name);
@@ -69,15 +96,14 @@ public class PreviewToon extends PreviewPlugin {
         mProgram.use();
         mPreviewBuffer.setVertexAttribHandles(mProgram.getAttributeHandle(ATTRIBUTE_POSITION), mProgram.getAttributeHandle(ATTRIBUTE_TEXTCOORD));
         mTextureUniforHandle = mProgram.getUniformHandle(UNIFORM_TEXTURE);
-        mViewSizeUniformHandle = mProgram.getUniformHandle(UNIFORM_VIEW_SIZE);
     }
 
     @Override
     public void draw(final GlIntRect viewport, final int orientation) {
         //Program
         mProgram.use();
-        GLES20.glUniform1i(mTextureUniforHandle, mSourceTexture.index);
-        GLES20.glUniform2f(mViewSizeUniformHandle, viewport.width(), viewport.height());
+        mProgram.setUniform1i(mTextureUniforHandle, mSourceTexture.index);
+        applyFrameUniforms();
 
         //Texture
         mSourceTexture.bind();
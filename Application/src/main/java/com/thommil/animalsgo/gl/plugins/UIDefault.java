@@ -1,13 +1,14 @@
 package com.thommil.animalsgo.gl.plugins;
 
-import android.opengl.GLES20;
 
 import com.thommil.animalsgo.R;
 import com.thommil.animalsgo.gl.UIPlugin;
+import com.thommil.animalsgo.gl.libgl.GlBuffer;
 import com.thommil.animalsgo.gl.libgl.GlColoredSprite;
 import com.thommil.animalsgo.gl.libgl.GlDrawableBufferBatch;
 import com.thommil.animalsgo.gl.libgl.GlIntRect;
 import com.thommil.animalsgo.gl.libgl.GlOperation;
+import com.thommil.animalsgo.gl.libgl.GlSpriteStore;
 import com.thommil.animalsgo.gl.libgl.GlTexture;
 import com.thommil.animalsgo.gl.libgl.GlTextureAtlas;
 import com.thommil.animalsgo.utils.ResourcesLoader;
@@ -15,18 +16,25 @@ import com.thommil.animalsgo.utils.ResourcesLoader;
 import org.json.JSONException;
 
 import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
 
 public class UIDefault extends UIPlugin {
 
     private static final String TAG = "A_GO/Plugin/UIDefault";
 
-    private static final String ID = "ui/default";
-    private static final String PROGRAM_ID = "ui_default";
+    public static final String ID = "ui/default";
+    public static final String PROGRAM_ID = "ui_default";
 
     private static final String ATLAS_FILE = "textures/ui_default.json";
 
+    // Instanced sprites (ui_default.vert.glsl), GLES3 GPUs only if enabled by Settings.UI_INSTANCED
+    private static final String DEFINE_INSTANCED = "UI_INSTANCED";
+
+    // Shared by all instances and the descriptor, see programDefines()
+    private static volatile Map<String, String> sProgramDefines;
+
     private int mTextureUniforHandle;
-    private int mScreenRatioUniformHandle;
 
     private GlTextureAtlas mTextureAtlas;
 
@@ -35,7 +43,8 @@ public class UIDefault extends UIPlugin {
     private GlColoredSprite mLogo;
     GlDrawableBufferBatch mBatch;
 
-    private final float[] mScreenRatio = new float[]{1f,1f};
+    // Sprites drawn as instances (GLES3), mBatch is the GLES2 fallback
+    private GlSpriteStore mSprites;
 
     @Override
     public String getId() {
@@ -47,6 +56,25 @@ public class UIDefault extends UIPlugin {
         return PROGRAM_ID;
     }
 
+    @Override
+    public Map<String, String> getProgramDefines() {
+        return programDefines();
+    }
+
+    /**
+     * Program defines without instance (PluginDescriptor), needs a current context, computed once
+     */
+    public static Map<String, String> programDefines() {
+        if(sProgramDefines == null) {
+            final Map<String, String> defines = new HashMap<>();
+            if(com.thommil.animalsgo.Settings.UI_INSTANCED && GlSpriteStore.isInstancingSupported()) {
+                defines.put(DEFINE_INSTANCED, "1");
+            }
+            sProgramDefines = defines;
+        }
+        return sProgramDefines;
+    }
+
     @Override
     public String getName() {
         return this.mContext.getString(R.string.plugins_ui_default_name);
@@ -61,17 +89,6 @@ public class UIDefault extends UIPlugin {
     public void allocate(final float surfaceRatio) {
         super.allocate(surfaceRatio);
 
-        //Screen
-        if(surfaceRatio < 1){
-            mScreenRatio[0] = 1f;
-            mScreenRatio[1] = surfaceRatio;
-        }
-        else if(surfaceRatio > 1){
-            mScreenRatio[0] = surfaceRatio;
-            mScreenRatio[1] = 1f;
-        }
-
-
         //Scene
         try {
             mTextureAtlas = new GlTextureAtlas(new GlTexture() {
@@ -104,14 +121,25 @@ public class UIDefault extends UIPlugin {
         //Program
         mProgram.use();
         mTextureUniforHandle = mProgram.getUniformHandle(UNIFORM_TEXTURE);
-        mScreenRatioUniformHandle = mProgram.getUniformHandle(UNIFORM_SCREEN_RATIO);
 
         //Buffer & Batch
-        mBatch = new GlDrawableBufferBatch(mLogo);
-        mBatch.setVertexAttribHandles(mProgram.getAttributeHandle(ATTRIBUTE_POSITION), mProgram.getAttributeHandle(ATTRIBUTE_TEXTCOORD),mProgram.getAttributeHandle(ATTRIBUTE_COLOR));
-        //mBatch.allocate(GlBuffer.USAGE_DYNAMIC_DRAW, GlBuffer.TARGET_ARRAY_BUFFER, false);
-        mLogo.size(0.5f,0.5f).position(0.0f, 0.0f);
-        mBatch.commit();
+        if(getProgramDefines().containsKey(DEFINE_INSTANCED)) {
+            final GlTextureAtlas.SubTexture subTexture = mTextureAtlas.getSubTexture("big");
+            mSprites = new GlSpriteStore(mTextureAtlas.getTexture(), GlSpriteStore.DEFAULT_CAPACITY, true);
+            final int logo = mSprites.add();
+            mSprites.clip(logo, subTexture.x, subTexture.y, subTexture.width, subTexture.height).size(logo, 0.5f, 0.5f).position(logo, 0.0f, 0.0f);
+            mSprites.setVertexAttribHandles(mProgram.getAttributeHandle(ATTRIBUTE_POSITION), mProgram.getAttributeHandle(ATTRIBUTE_INSTANCE_POSITION),
+                    mProgram.getAttributeHandle(ATTRIBUTE_INSTANCE_SIZE), mProgram.getAttributeHandle(ATTRIBUTE_INSTANCE_TEXTCOORD), mProgram.getAttributeHandle(ATTRIBUTE_COLOR));
+            mSprites.commit(false);
+            mSprites.allocate(GlBuffer.USAGE_DYNAMIC_DRAW, GlBuffer.TARGET_ARRAY_BUFFER, false);
+        }
+        else {
+            mBatch = new GlDrawableBufferBatch(mLogo);
+            mBatch.setVertexAttribHandles(mProgram.getAttributeHandle(ATTRIBUTE_POSITION), mProgram.getAttributeHandle(ATTRIBUTE_TEXTCOORD), mProgram.getAttributeHandle(ATTRIBUTE_COLOR));
+            //mBatch.allocate(GlBuffer.USAGE_DYNAMIC_DRAW, GlBuffer.TARGET_ARRAY_BUFFER, false);
+            mLogo.size(0.5f,0.5f).position(0.0f, 0.0f);
+            mBatch.commit();
+        }
         //Blend test (should be called each draw if another one is used)
         GlOperation.configureBlendTest(GlOperation.BLEND_FACTOR_SRC_ALPA, GlOperation.BLEND_FACTOR_ONE_MINUS_SRC_ALPA, GlOperation.BLEND_OPERATION_ADD, null);
 
@@ -130,20 +158,32 @@ public class UIDefault extends UIPlugin {
 
         //Program
         mProgram.use();
-        GLES20.glUniform1i(mTextureUniforHandle, mTextureAtlas.getTexture().index);
-        GLES20.glUniform2f(mScreenRatioUniformHandle, mScreenRatio[0], mScreenRatio[1]);
+        mProgram.setUniform1i(mTextureUniforHandle, mTextureAtlas.getTexture().index);
+        applyFrameUniforms();
 
         //Texture
         mTextureAtlas.getTexture().bind();
 
         //Draw
-        mBatch.draw(mProgram);
+        if(mSprites != null) {
+            mSprites.draw(mProgram);
+        }
+        else {
+            mBatch.draw(mProgram);
+        }
     }
 
     @Override
     public void free() {
         super.free();
-        mBatch.free();
+        if(mSprites != null) {
+            mSprites.free();
+            mSprites = null;
+        }
+        else if(mBatch != null) {
+            mBatch.free();
+            mBatch = null;
+        }
         mLogo.free();
 
         if(mTextureAtlas != null) {
@@ -1,273 +1,1288 @@
 package com.thommil.animalsgo.utils;
 
+import java.lang.ref.ReferenceQueue;
 import java.lang.ref.WeakReference;
+import java.nio.Buffer;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.FloatBuffer;
 import java.nio.IntBuffer;
 import java.nio.ShortBuffer;
-import java.util.Queue;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.concurrent.ConcurrentMap;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 
 /**
  * ByteBuffer buffer pool :
  *	<ul>
- * 	<li>try to avoid memory leaks</li> 
+ * 	<li>try to avoid memory leaks</li>
  * 	<li>reuse buffers when possible</li>
- * 	<li>use WeakReference to ease deallocation</li>
- *	</ul> 
- * 
+ * 	<li>sizes are rounded up to size classes (power of two split in 4 steps : 1, 1.25, 1.5, 1.75)</li>
+ * 	<li>each size class keeps at most MAX_BUFFERS_PER_CLASS strong references</li>
+ * 	<li>overall retained memory (thread magazines included) is bounded by a configurable bytes budget, least recently
+ * 	returned buffers are evicted first, thread magazines are drained last</li>
+ * 	<li>small size classes are cached per thread (magazines), exchanged with the pool in batches</li>
+ * 	<li>can be trimmed on memory pressure using Android onTrimMemory() levels</li>
+ * 	<li>opt-in instrumentation (hits, misses, buffers returned twice or never returned)</li>
+ * 	<li>opt-in native backing, memory is freed as soon as the pool drops a buffer</li>
+ *	</ul>
+ *
+ * Buffers are handed out with their limit set to the requested size, their capacity
+ * is the one of the size class and may be larger.
+ *
  * 	@author Thomas MILLET
- * 
+ *
  */
 public class ByteBufferPool {
 
 	private static final String TAG = "A_GO/ByteBufferPool";
 
 	/**
-	 * Multimap with weak values for ByteBuffers 
+	 * Smallest size class in bytes
 	 */
-	private final static ConcurrentMap<Integer, Queue<WeakReference<ByteBuffer>>> poolByte =
-		    new ConcurrentHashMap<Integer, Queue<WeakReference<ByteBuffer>>>();
-	
+	public static final int MIN_CLASS_SIZE = 64;
+
+	/**
+	 * Biggest size class in bytes, bigger buffers are not pooled
+	 */
+	public static final int MAX_CLASS_SIZE = 1 << 30;
+
+	/**
+	 * Maximum number of buffers retained in a size class
+	 */
+	public static final int MAX_BUFFERS_PER_CLASS = 8;
+
+	/**
+	 * Default maximum number of bytes retained by the pool
+	 */
+	public static final long DEFAULT_MAX_RETAINED_BYTES = 16 * 1024 * 1024;
+
+	/**
+	 * Number of buffers per thread in a magazine
+	 */
+	public static final int MAGAZINE_SIZE = 4;
+
+	/**
+	 * Biggest size class cached in thread magazines, bigger buffers always go to the pool
+	 */
+	public static final int MAX_MAGAZINE_CLASS_SIZE = 64 * 1024;
+
+	/**
+	 * Trim level, same value as ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE
+	 */
+	public static final int TRIM_MEMORY_RUNNING_MODERATE = 5;
+
+	/**
+	 * Trim level, same value as ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW
+	 */
+	public static final int TRIM_MEMORY_RUNNING_LOW = 10;
+
+	/**
+	 * Trim level, same value as ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL
+	 */
+	public static final int TRIM_MEMORY_RUNNING_CRITICAL = 15;
+
+	/**
+	 * Trim level, same value as ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN
+	 */
+	public static final int TRIM_MEMORY_UI_HIDDEN = 20;
+
+	/**
+	 * Trim level, same value as ComponentCallbacks2.TRIM_MEMORY_BACKGROUND
+	 */
+	public static final int TRIM_MEMORY_BACKGROUND = 40;
+
+	/**
+	 * Trim level, same value as ComponentCallbacks2.TRIM_MEMORY_COMPLETE
+	 */
+	public static final int TRIM_MEMORY_COMPLETE = 80;
+
+	/**
+	 * Log2 of MIN_CLASS_SIZE
+	 */
+	private static final int MIN_CLASS_SHIFT = 6;
+
+	/**
+	 * Number of size classes (4 per power of two from MIN_CLASS_SIZE to MAX_CLASS_SIZE)
+	 */
+	private static final int CLASSES_COUNT = ((30 - MIN_CLASS_SHIFT) << 2) + 1;
+
+	/**
+	 * Number of size classes cached in thread magazines
+	 */
+	private static final int MAGAZINE_CLASSES_COUNT = getClassIndex(MAX_MAGAZINE_CLASS_SIZE) + 1;
+
+	/**
+	 * Pool index for ByteBuffers
+	 */
+	private static final int POOL_BYTE = 0;
+
+	/**
+	 * Pool index for ShortBuffers
+	 */
+	private static final int POOL_SHORT = 1;
+
+	/**
+	 * Pool index for IntBuffers
+	 */
+	private static final int POOL_INT = 2;
+
+	/**
+	 * Pool index for FloatBuffers
+	 */
+	private static final int POOL_FLOAT = 3;
+
+	/**
+	 * Size classes for each buffer type (POOL_*)
+	 */
+	private final Bucket[][] mPools = new Bucket[][]{newBuckets(), newBuckets(), newBuckets(), newBuckets()};
+
+	/**
+	 * Cache of the current thread
+	 */
+	private final ThreadLocal<ThreadCache> mThreadCache = new ThreadLocal<ThreadCache>(){
+		@Override
+		protected ThreadCache initialValue() {
+			final ThreadCache threadCache = new ThreadCache(Thread.currentThread());
+			synchronized (mThreadCaches) {
+				mThreadCaches.add(threadCache);
+			}
+			return threadCache;
+		}
+	};
+
+	/**
+	 * All threads caches, used for counters and to drain magazines
+	 */
+	private final List<ThreadCache> mThreadCaches = new ArrayList<>();
+
 	/**
-	 * Multimap with weak values for ShortBuffers 
+	 * Outstanding bytes of terminated threads
 	 */
-	private final static ConcurrentMap<Integer, Queue<WeakReference<ShortBuffer>>> poolShort =
-		    new ConcurrentHashMap<Integer, Queue<WeakReference<ShortBuffer>>>();
-	
+	private long mRetiredOutstandingBytes = 0;
+
 	/**
-	 * Multimap with weak values for IntBuffers 
+	 * Bytes currently retained by the pool and the thread magazines
 	 */
-	private final static ConcurrentMap<Integer, Queue<WeakReference<IntBuffer>>> poolInt =
-		    new ConcurrentHashMap<Integer, Queue<WeakReference<IntBuffer>>>();
-	
+	private final AtomicLong mRetainedBytes = new AtomicLong();
+
 	/**
-	 * Multimap with weak values for FloatBuffers 
+	 * Clock used to date returned buffers for LRU eviction
 	 */
-	private final static ConcurrentMap<Integer, Queue<WeakReference<FloatBuffer>>> poolFloat =
-		    new ConcurrentHashMap<Integer, Queue<WeakReference<FloatBuffer>>>();
-  
+	private final AtomicLong mClock = new AtomicLong();
+
+	/**
+	 * Lock used for eviction
+	 */
+	private final Object mEvictionLock = new Object();
+
+	/**
+	 * Maximum bytes retained by the pool
+	 */
+	private volatile long mMaxRetainedBytes = DEFAULT_MAX_RETAINED_BYTES;
+
+	/**
+	 * Counters and buffers tracking, null if instrumentation is disabled
+	 */
+	private volatile Instrumentation mInstrumentation = null;
+
+	/**
+	 * New pooled buffers are allocated in native memory if true
+	 */
+	private volatile boolean mNativeBacking = false;
+
+	/**
+	 * Set once native backing has been enabled, dropped buffers must then be freed
+	 */
+	private static volatile boolean sNativeBacked = false;
+
 	/**
 	 * The Singleton
 	 */
 	private final static ByteBufferPool instance = new ByteBufferPool();
-	
+
 	/**
 	 * The private singleton constructor
 	 */
 	private ByteBufferPool(){
 
 	}
-	
+
 	/**
 	 * The singleton accessor
-	 * 
+	 *
 	 * @return The {@link ByteBufferPool} singleton
 	 */
 	public static ByteBufferPool getInstance(){
 		return instance;
 	}
-	
+
+	/**
+	 * Set the maximum number of bytes the pool can retain, least recently
+	 * returned buffers are evicted to fit in the new budget.
+	 *
+	 * @param maxRetainedBytes The budget in bytes
+	 */
+	public void setMaxRetainedBytes(final long maxRetainedBytes){
+		mMaxRetainedBytes = maxRetainedBytes;
+		evict(maxRetainedBytes);
+	}
+
+	/**
+	 * @return The maximum number of bytes the pool can retain
+	 */
+	public long getMaxRetainedBytes(){
+		return mMaxRetainedBytes;
+	}
+
+	/**
+	 * @return The number of bytes currently retained by the pool and the thread magazines
+	 */
+	public long getRetainedBytes(){
+		synchronized (mThreadCaches){
+			retireThreadCaches();
+		}
+		return mRetainedBytes.get();
+	}
+
+	/**
+	 * @return The number of bytes handed out and not returned yet
+	 */
+	public long getOutstandingBytes(){
+		synchronized (mThreadCaches){
+			retireThreadCaches();
+			long outstandingBytes = mRetiredOutstandingBytes;
+			for(final ThreadCache threadCache : mThreadCaches){
+				outstandingBytes += threadCache.mOutstandingBytes;
+			}
+			return outstandingBytes;
+		}
+	}
+
+	/**
+	 * Enable or disable native backing : new pooled buffers are allocated in 64 bytes
+	 * aligned native memory (see {@link NativeMemory}) which is freed as soon as the pool
+	 * drops them (eviction, trim, full size class) instead of waiting for the GC.
+	 *
+	 * Buffers handed out must then never be used after being returned, buffers never
+	 * returned are only released by the GC.
+	 *
+	 * @param enabled true to enable native backing
+	 *
+	 * @return true if native backing is enabled (native library available)
+	 */
+	public boolean setNativeBackingEnabled(final boolean enabled){
+		//android.util.//Log.d(TAG,"setNativeBackingEnabled("+enabled+")");
+		mNativeBacking = enabled && NativeMemory.isAvailable();
+		if(mNativeBacking){
+			sNativeBacked = true;
+		}
+		return mNativeBacking;
+	}
+
+	/**
+	 * @return true if new pooled buffers are allocated in native memory
+	 */
+	public boolean isNativeBackingEnabled(){
+		return mNativeBacking;
+	}
+
+	/**
+	 * Enable or disable instrumentation (debug only, each buffer handed out
+	 * records its acquisition stack trace). Counters are reset when enabled,
+	 * buffers handed out before are not tracked.
+	 *
+	 * @param enabled true to enable instrumentation
+	 */
+	public void setInstrumentationEnabled(final boolean enabled){
+		//android.util.//Log.d(TAG,"setInstrumentationEnabled("+enabled+")");
+		mInstrumentation = enabled ? new Instrumentation() : null;
+	}
+
+	/**
+	 * @return true if instrumentation is enabled
+	 */
+	public boolean isInstrumentationEnabled(){
+		return mInstrumentation != null;
+	}
+
+	/**
+	 * Get a snapshot of pool statistics
+	 *
+	 * @return The {@link Stats} snapshot, per size class counters and tracking are
+	 * 			empty if instrumentation is disabled
+	 */
+	public Stats getStats(){
+		final Stats stats = new Stats();
+		stats.retainedBytes = getRetainedBytes();
+		stats.outstandingBytes = getOutstandingBytes();
+		stats.maxRetainedBytes = mMaxRetainedBytes;
+		final Instrumentation instrumentation = mInstrumentation;
+		if(instrumentation != null){
+			instrumentation.fill(stats);
+		}
+		return stats;
+	}
+
+	/**
+	 * Release pooled memory according to a memory pressure level, should be
+	 * called from Android onTrimMemory() :
+	 * <ul>
+	 * 	<li>TRIM_MEMORY_RUNNING_MODERATE : keep half of the budget</li>
+	 * 	<li>TRIM_MEMORY_RUNNING_LOW, TRIM_MEMORY_UI_HIDDEN : keep a quarter of the budget</li>
+	 * 	<li>TRIM_MEMORY_RUNNING_CRITICAL, TRIM_MEMORY_BACKGROUND and above : release everything</li>
+	 * </ul>
+	 * The magazines of all threads (idle ones included) are drained, then least recently returned
+	 * buffers are released first, the budget itself is unchanged.
+	 *
+	 * @param level The trim level TRIM_MEMORY_*
+	 */
+	public void trim(final int level){
+		//android.util.//Log.d(TAG,"trim("+level+")");
+		final long targetBytes;
+		if(level >= TRIM_MEMORY_BACKGROUND || level == TRIM_MEMORY_RUNNING_CRITICAL){
+			targetBytes = 0;
+		}
+		else if(level >= TRIM_MEMORY_RUNNING_LOW){
+			targetBytes = mMaxRetainedBytes >> 2;
+		}
+		else if(level >= TRIM_MEMORY_RUNNING_MODERATE){
+			targetBytes = mMaxRetainedBytes >> 1;
+		}
+		else{
+			return;
+		}
+
+		drainMagazines();
+		evict(targetBytes);
+	}
+
+	/**
+	 * Release all pooled buffers
+	 */
+	public void clear(){
+		trim(TRIM_MEMORY_COMPLETE);
+	}
+
 	/**
    	 * Allocate a direct ByteBuffer of the specified size, in bytes.
    	 * If a pooled buffer is available, returns that. Otherwise
    	 * allocates a new one.
-   	 * 
+   	 *
    	 * @param size The size in elements (bytes) of the ByteBuffer to get
-   	 * 
+   	 *
    	 * @return A direct allocated ByteBuffer
    	 */
-	public ByteBuffer getDirectByteBuffer(int size) {
+	public ByteBuffer getDirectByteBuffer(final int size) {
 		//android.util.//Log.d(TAG,"getDirectByteBuffer("+size+")");
-		final Queue<WeakReference<ByteBuffer>> list = poolByte.get(size);
-		if (list == null) {
-			return (ByteBuffer)ByteBuffer.allocateDirect(size).order(ByteOrder.nativeOrder());
-		}
-    
-		WeakReference<ByteBuffer> ref;
-		while ((ref = list.poll()) != null) {
-			final ByteBuffer b = ref.get();
-			if (b != null) {
-				b.clear();
-				return b;
-			}
+		final ThreadCache threadCache = getThreadCache();
+		final int classIndex = getClassIndex(size);
+		ByteBuffer buffer = (ByteBuffer)poll(threadCache, POOL_BYTE, classIndex);
+		final boolean hit = (buffer != null);
+		if(buffer == null) {
+			buffer = allocate(classIndex, size);
 		}
-
-		return (ByteBuffer)ByteBuffer.allocateDirect(size).order(ByteOrder.nativeOrder());
+		lease(threadCache, buffer, classIndex, hit, buffer.capacity());
+		buffer.limit(size);
+		return buffer;
 	}
-	
+
 	/**
    	 * Allocate a direct ShortBuffer of the specified size, in bytes.
    	 * If a pooled buffer is available, returns that. Otherwise
    	 * allocates a new one.
-   	 * 
+   	 *
    	 * @param size The size in elements (shorts) of the ShortBuffer to get
-   	 * 
+   	 *
    	 * @return A direct allocated ShortBuffer
    	 */
 	public ShortBuffer getDirectShortBuffer(final int size) {
 		//android.util.//Log.d(TAG,"getDirectShortBuffer("+size+")");
+		final ThreadCache threadCache = getThreadCache();
 		final int trueSize = size * Short.BYTES;
-		final Queue<WeakReference<ShortBuffer>> list = poolShort.get(trueSize);
-		if (list == null) {
-			return (ShortBuffer)ByteBuffer.allocateDirect(trueSize).order(ByteOrder.nativeOrder()).asShortBuffer();
-		}
-    
-		WeakReference<ShortBuffer> ref;
-		while ((ref = list.poll()) != null) {
-			final ShortBuffer b = ref.get();
-			if (b != null) {
-				b.clear();
-				return b;
-			}
+		final int classIndex = getClassIndex(trueSize);
+		ShortBuffer buffer = (ShortBuffer)poll(threadCache, POOL_SHORT, classIndex);
+		final boolean hit = (buffer != null);
+		if(buffer == null) {
+			final ByteBuffer bytes = allocate(classIndex, trueSize);
+			buffer = share(bytes, bytes.asShortBuffer());
 		}
-
-		return (ShortBuffer)ByteBuffer.allocateDirect(trueSize).order(ByteOrder.nativeOrder()).asShortBuffer();
+		lease(threadCache, buffer, classIndex, hit, buffer.capacity() * Short.BYTES);
+		buffer.limit(size);
+		return buffer;
 	}
-	
+
 	/**
    	 * Allocate a direct IntBuffer of the specified size, in bytes.
    	 * If a pooled buffer is available, returns that. Otherwise
    	 * allocates a new one.
-   	 * 
+   	 *
    	 * @param size The size in elements (ints) of the IntBuffer to get
-   	 * 
+   	 *
    	 * @return A direct allocated IntBuffer
    	 */
 	public IntBuffer getDirectIntBuffer(final int size) {
 		//android.util.//Log.d(TAG,"getDirectIntBuffer("+size+")");
+		final ThreadCache threadCache = getThreadCache();
 		final int trueSize = size * Integer.BYTES;
-		final Queue<WeakReference<IntBuffer>> list = poolInt.get(trueSize);
-		if (list == null) {
-			return (IntBuffer)ByteBuffer.allocateDirect(trueSize).order(ByteOrder.nativeOrder()).asIntBuffer();
-		}
-    
-		WeakReference<IntBuffer> ref;
-		while ((ref = list.poll()) != null) {
-			final IntBuffer b = ref.get();
-			if (b != null) {
-				b.clear();
-				return b;
-			}
+		final int classIndex = getClassIndex(trueSize);
+		IntBuffer buffer = (IntBuffer)poll(threadCache, POOL_INT, classIndex);
+		final boolean hit = (buffer != null);
+		if(buffer == null) {
+			final ByteBuffer bytes = allocate(classIndex, trueSize);
+			buffer = share(bytes, bytes.asIntBuffer());
 		}
-
-		return (IntBuffer)ByteBuffer.allocateDirect(trueSize).order(ByteOrder.nativeOrder()).asIntBuffer();
+		lease(threadCache, buffer, classIndex, hit, buffer.capacity() * Integer.BYTES);
+		buffer.limit(size);
+		return buffer;
 	}
-	
+
 	/**
    	 * Allocate a direct FloatBuffer of the specified size, in bytes.
    	 * If a pooled buffer is available, returns that. Otherwise
    	 * allocates a new one.
-   	 * 
+   	 *
    	 * @param size The size in elements (floats) of the FloatBuffer to get
-   	 * 
+   	 *
    	 * @return A direct allocated FloatBuffer
    	 */
 	public FloatBuffer getDirectFloatBuffer(final int size) {
 		//android.util.//Log.d(TAG,"getDirectFloatBuffer("+size+")");
+		final ThreadCache threadCache = getThreadCache();
 		final int trueSize = size * Float.BYTES;
-		final Queue<WeakReference<FloatBuffer>> list = poolFloat.get(trueSize);
-		if (list == null) {
-			return (FloatBuffer)ByteBuffer.allocateDirect(trueSize).order(ByteOrder.nativeOrder()).asFloatBuffer();
-		}
-    
-		WeakReference<FloatBuffer> ref;
-		while ((ref = list.poll()) != null) {
-			final FloatBuffer b = ref.get();
-			if (b != null) {
-				b.clear();
-				return b;
-			}
+		final int classIndex = getClassIndex(trueSize);
+		FloatBuffer buffer = (FloatBuffer)poll(threadCache, POOL_FLOAT, classIndex);
+		final boolean hit = (buffer != null);
+		if(buffer == null) {
+			final ByteBuffer bytes = allocate(classIndex, trueSize);
+			buffer = share(bytes, bytes.asFloatBuffer());
 		}
-
-		return (FloatBuffer)ByteBuffer.allocateDirect(trueSize).order(ByteOrder.nativeOrder()).asFloatBuffer();
+		lease(threadCache, buffer, classIndex, hit, buffer.capacity() * Float.BYTES);
+		buffer.limit(size);
+		return buffer;
 	}
-  
+
 	/**
 	 * Return a ByteBuffer into the pool. After being returned,
 	 * the buffer may be recycled, so the user must not
 	 * continue to use it in any way.
-	 * 
+	 *
 	 * @param buf the ByteBuffer to return
 	 */
 	public void returnDirectBuffer(final ByteBuffer buf) {
 		//android.util.//Log.d(TAG,"returnDirectBuffer(ByteBuffer)");
-		final int size = buf.capacity();
-		Queue<WeakReference<ByteBuffer>> list = poolByte.get(size);
-		if (list == null) {
-			list = new ConcurrentLinkedQueue<WeakReference<ByteBuffer>>();
-			Queue<WeakReference<ByteBuffer>> prev = poolByte.putIfAbsent(size, list);
-			if (prev != null) {
-				list = prev;
-			}
-		}
-		list.add(new WeakReference<ByteBuffer>(buf));
+		offer(getThreadCache(), POOL_BYTE, buf, buf.capacity());
 	}
-	
+
 	/**
 	 * Return a ShortBuffer into the pool. After being returned,
 	 * the buffer may be recycled, so the user must not
 	 * continue to use it in any way.
-	 * 
+	 *
 	 * @param buf the ShortBuffer to return
 	 */
 	public void returnDirectBuffer(final ShortBuffer buf) {
 		//android.util.//Log.d(TAG,"returnDirectBuffer(ShortBuffer)");
-		final int size = buf.capacity();
-		Queue<WeakReference<ShortBuffer>> list = poolShort.get(size);
-		if (list == null) {
-			list = new ConcurrentLinkedQueue<WeakReference<ShortBuffer>>();
-			Queue<WeakReference<ShortBuffer>> prev = poolShort.putIfAbsent(size, list);
-			if (prev != null) {
-				list = prev;
-			}
-		}
-		list.add(new WeakReference<ShortBuffer>(buf));
+		offer(getThreadCache(), POOL_SHORT, buf, buf.capacity() * Short.BYTES);
 	}
-	
+
 	/**
 	 * Return a IntBuffer into the pool. After being returned,
 	 * the buffer may be recycled, so the user must not
 	 * continue to use it in any way.
-	 * 
+	 *
 	 * @param buf the IntBuffer to return
 	 */
 	public void returnDirectBuffer(final IntBuffer buf) {
 		//android.util.//Log.d(TAG,"returnDirectBuffer(IntBuffer)");
-		final int size = buf.capacity();
-		Queue<WeakReference<IntBuffer>> list = poolInt.get(size);
-		if (list == null) {
-			list = new ConcurrentLinkedQueue<WeakReference<IntBuffer>>();
-			Queue<WeakReference<IntBuffer>> prev = poolInt.putIfAbsent(size, list);
-			if (prev != null) {
-				list = prev;
-			}
-		}
-		list.add(new WeakReference<IntBuffer>(buf));
+		offer(getThreadCache(), POOL_INT, buf, buf.capacity() * Integer.BYTES);
 	}
-	
+
 	/**
 	 * Return a FloatBuffer into the pool. After being returned,
 	 * the buffer may be recycled, so the user must not
 	 * continue to use it in any way.
-	 * 
+	 *
 	 * @param buf the FloatBuffer to return
 	 */
 	public void returnDirectBuffer(final FloatBuffer buf) {
 		//android.util.//Log.d(TAG,"returnDirectBuffer(FloatBuffer)");
-		final int size = buf.capacity();
-		Queue<WeakReference<FloatBuffer>> list = poolFloat.get(size);
-		if (list == null) {
-			list = new ConcurrentLinkedQueue<WeakReference<FloatBuffer>>();
-			Queue<WeakReference<FloatBuffer>> prev = poolFloat.putIfAbsent(size, list);
-			if (prev != null) {
-				list = prev;
+		offer(getThreadCache(), POOL_FLOAT, buf, buf.capacity() * Float.BYTES);
+	}
+
+	/**
+	 * Get the cache of current thread
+	 *
+	 * @return The cache of current thread
+	 */
+	private ThreadCache getThreadCache(){
+		return mThreadCache.get();
+	}
+
+	/**
+	 * Get a pooled buffer from a size class, thread magazine first
+	 *
+	 * @param threadCache The cache of current thread
+	 * @param pool The pool index POOL_*
+	 * @param classIndex The size class index, -1 if not pooled
+	 *
+	 * @return A cleared buffer or null if none is available
+	 */
+	private Buffer poll(final ThreadCache threadCache, final int pool, final int classIndex){
+		if(classIndex < 0){
+			return null;
+		}
+		Buffer buffer;
+		if(classIndex < MAGAZINE_CLASSES_COUNT){
+			//Uncontended lock, magazines are only drained by others on eviction and trim
+			synchronized (threadCache){
+				final Magazine magazine = threadCache.getMagazine(pool, classIndex);
+				if(magazine.mCount == 0){
+					//Refill half magazine in one pass (bytes stay retained)
+					mPools[pool][classIndex].drainTo(magazine, MAGAZINE_SIZE >> 1);
+				}
+				buffer = magazine.pop();
 			}
 		}
-		list.add(new WeakReference<FloatBuffer>(buf));
+		else {
+			buffer = mPools[pool][classIndex].poll();
+		}
+		if(buffer != null){
+			mRetainedBytes.addAndGet(-getClassSize(classIndex));
+			buffer.clear();
+		}
+		return buffer;
+	}
+
+	/**
+	 * Account a buffer handed out
+	 *
+	 * @param threadCache The cache of current thread
+	 * @param buffer The buffer handed out
+	 * @param classIndex The requested size class index, -1 if not pooled
+	 * @param hit true if the buffer comes from the pool
+	 * @param capacity The buffer capacity in bytes
+	 */
+	private void lease(final ThreadCache threadCache, final Buffer buffer, final int classIndex, final boolean hit, final int capacity){
+		threadCache.mOutstandingBytes += capacity;
+		final Instrumentation instrumentation = mInstrumentation;
+		if(instrumentation != null){
+			instrumentation.onGet(buffer, classIndex, hit, capacity);
+		}
+	}
+
+	/**
+	 * Store a buffer in the biggest size class it can serve, thread magazine first
+	 *
+	 * @param threadCache The cache of current thread
+	 * @param pool The pool index POOL_*
+	 * @param buffer The buffer to store
+	 * @param capacity The buffer capacity in bytes
+	 */
+	private void offer(final ThreadCache threadCache, final int pool, final Buffer buffer, final int capacity){
+		final int classIndex = getFloorClassIndex(capacity);
+		final Instrumentation instrumentation = mInstrumentation;
+		if(instrumentation != null && !instrumentation.onReturn(buffer, classIndex)){
+			return;
+		}
+		threadCache.mOutstandingBytes -= capacity;
+		if(classIndex < 0 || !buffer.isDirect()){
+			return;
+		}
+		final int classSize = getClassSize(classIndex);
+		if(classSize > mMaxRetainedBytes){
+			release(buffer);
+		}
+		else if(classIndex < MAGAZINE_CLASSES_COUNT){
+			int dropped = 0;
+			synchronized (threadCache){
+				final Magazine magazine = threadCache.getMagazine(pool, classIndex);
+				if(magazine.mCount == MAGAZINE_SIZE){
+					//Spill half magazine in one pass
+					final int accepted = mPools[pool][classIndex].fillFrom(magazine, MAGAZINE_SIZE >> 1, mClock.incrementAndGet());
+					magazine.remove(accepted);
+					dropped = (MAGAZINE_SIZE >> 1) - accepted;
+					magazine.clear(dropped);
+				}
+				magazine.push(buffer);
+			}
+			//Out of the magazine lock, eviction may drain magazines
+			addRetainedBytes((long)(1 - dropped) * classSize);
+		}
+		else if(mPools[pool][classIndex].offer(buffer, mClock.incrementAndGet())){
+			addRetainedBytes(classSize);
+		}
+		else{
+			release(buffer);
+		}
+	}
+
+	/**
+	 * Account bytes added to the pool or to a thread magazine, least recently
+	 * returned buffers are evicted if the budget is exceeded.
+	 *
+	 * @param bytes The number of bytes added (or removed if negative)
+	 */
+	private void addRetainedBytes(final long bytes){
+		if(mRetainedBytes.addAndGet(bytes) > mMaxRetainedBytes && bytes > 0){
+			evict(mMaxRetainedBytes);
+		}
+	}
+
+	/**
+	 * Evict least recently returned buffers (all types) until retained bytes fit in target,
+	 * thread magazines are drained once the pool is empty
+	 *
+	 * @param targetBytes The maximum retained bytes after eviction
+	 */
+	private void evict(final long targetBytes){
+		synchronized (mEvictionLock){
+			while(mRetainedBytes.get() > targetBytes){
+				Bucket oldestBucket = null;
+				long oldestTick = Long.MAX_VALUE;
+				for(final Bucket[] buckets : mPools){
+					for(final Bucket bucket : buckets){
+						final long tick = bucket.getOldestTick();
+						if(tick < oldestTick){
+							oldestTick = tick;
+							oldestBucket = bucket;
+						}
+					}
+				}
+				if(oldestBucket == null){
+					if(drainMagazines() == 0){
+						break;
+					}
+					continue;
+				}
+				final Buffer evicted = oldestBucket.evictOldest(oldestTick);
+				if(evicted != null){
+					//android.util.//Log.d(TAG,"evict("+oldestBucket.mClassSize+")");
+					mRetainedBytes.addAndGet(-oldestBucket.mClassSize);
+					release(evicted);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Release the buffers held in all thread magazines
+	 *
+	 * @return The number of bytes released
+	 */
+	private long drainMagazines(){
+		long drainedBytes = 0;
+		synchronized (mThreadCaches){
+			retireThreadCaches();
+			for(final ThreadCache threadCache : mThreadCaches){
+				drainedBytes += threadCache.clear();
+			}
+		}
+		mRetainedBytes.addAndGet(-drainedBytes);
+		return drainedBytes;
+	}
+
+	/**
+	 * Remove caches of terminated threads, their outstanding bytes are kept
+	 * and their magazines released
+	 */
+	private void retireThreadCaches(){
+		final Iterator<ThreadCache> iterator = mThreadCaches.iterator();
+		while(iterator.hasNext()){
+			final ThreadCache threadCache = iterator.next();
+			final Thread owner = threadCache.mOwner.get();
+			if(owner == null || !owner.isAlive()){
+				mRetiredOutstandingBytes += threadCache.mOutstandingBytes;
+				mRetainedBytes.addAndGet(-threadCache.clear());
+				iterator.remove();
+			}
+		}
+	}
+
+	/**
+	 * Allocate a new buffer, in native memory if enabled and size is pooled
+	 *
+	 * @param classIndex The size class index, -1 if not pooled
+	 * @param size The requested size in bytes
+	 *
+	 * @return A native order direct ByteBuffer of size class capacity
+	 */
+	private ByteBuffer allocate(final int classIndex, final int size){
+		if(classIndex < 0){
+			return ByteBuffer.allocateDirect(size).order(ByteOrder.nativeOrder());
+		}
+		if(mNativeBacking){
+			return NativeMemory.allocate(getClassSize(classIndex));
+		}
+		return ByteBuffer.allocateDirect(getClassSize(classIndex)).order(ByteOrder.nativeOrder());
+	}
+
+	/**
+	 * Register a view on a newly allocated buffer, views on native memory must be known
+	 * by NativeMemory to be released
+	 *
+	 * @param buffer The allocated buffer
+	 * @param view The view on buffer
+	 *
+	 * @return The view
+	 */
+	private static <T extends Buffer> T share(final ByteBuffer buffer, final T view){
+		return sNativeBacked ? NativeMemory.share(buffer, view) : view;
+	}
+
+	/**
+	 * Release a buffer dropped by the pool, native memory is freed immediately,
+	 * other buffers are left to the GC.
+	 *
+	 * @param buffer The dropped buffer
+	 */
+	private static void release(final Buffer buffer){
+		if(sNativeBacked){
+			NativeMemory.free(buffer);
+		}
+	}
+
+	/**
+	 * Get the smallest size class able to hold size bytes
+	 *
+	 * @param size The size in bytes
+	 *
+	 * @return The size class index, -1 if size is not pooled
+	 */
+	static int getClassIndex(final int size){
+		if(size <= MIN_CLASS_SIZE){
+			return 0;
+		}
+		if(size > MAX_CLASS_SIZE){
+			return -1;
+		}
+		final int exponent = 31 - Integer.numberOfLeadingZeros(size - 1);
+		final int stepShift = exponent - 2;
+		return ((exponent - MIN_CLASS_SHIFT) << 2) + (((size + (1 << stepShift) - 1) >> stepShift) - 4);
+	}
+
+	/**
+	 * Get the biggest size class a buffer of capacity bytes can serve
+	 *
+	 * @param capacity The capacity in bytes
+	 *
+	 * @return The size class index, -1 if capacity is too small
+	 */
+	static int getFloorClassIndex(final int capacity){
+		if(capacity < MIN_CLASS_SIZE){
+			return -1;
+		}
+		if(capacity >= MAX_CLASS_SIZE){
+			return CLASSES_COUNT - 1;
+		}
+		final int exponent = 31 - Integer.numberOfLeadingZeros(capacity);
+		return ((exponent - MIN_CLASS_SHIFT) << 2) + ((capacity >> (exponent - 2)) - 4);
+	}
+
+	/**
+	 * Get the size of a size class
+	 *
+	 * @param classIndex The size class index
+	 *
+	 * @return The size in bytes
+	 */
+	static int getClassSize(final int classIndex){
+		return (4 + (classIndex & 3)) << ((classIndex >> 2) + MIN_CLASS_SHIFT - 2);
+	}
+
+	/**
+	 * Create an empty set of size classes
+	 */
+	private static Bucket[] newBuckets(){
+		final Bucket[] buckets = new Bucket[CLASSES_COUNT];
+		for(int index=0; index < CLASSES_COUNT; index++){
+			buckets[index] = new Bucket(getClassSize(index));
+		}
+		return buckets;
+	}
+
+	/**
+	 * Bounded stack of pooled buffers for a size class, each buffer is
+	 * dated with the clock tick of its return (least recent at bottom).
+	 */
+	private static final class Bucket {
+
+		/**
+		 * The size class in bytes
+		 */
+		final int mClassSize;
+
+		/**
+		 * The stored buffers, allocated on first return
+		 */
+		private Buffer[] mBuffers;
+
+		/**
+		 * The return ticks of stored buffers
+		 */
+		private long[] mTicks;
+
+		/**
+		 * Number of stored buffers
+		 */
+		private int mCount;
+
+		Bucket(final int classSize){
+			mClassSize = classSize;
+		}
+
+		synchronized Buffer poll(){
+			if(mCount == 0){
+				return null;
+			}
+			final Buffer buffer = mBuffers[--mCount];
+			mBuffers[mCount] = null;
+			return buffer;
+		}
+
+		synchronized boolean offer(final Buffer buffer, final long tick){
+			if(mBuffers == null){
+				mBuffers = new Buffer[MAX_BUFFERS_PER_CLASS];
+				mTicks = new long[MAX_BUFFERS_PER_CLASS];
+			}
+			if(mCount == MAX_BUFFERS_PER_CLASS){
+				return false;
+			}
+			mTicks[mCount] = tick;
+			mBuffers[mCount++] = buffer;
+			return true;
+		}
+
+		/**
+		 * @return The tick of the least recently returned buffer, Long.MAX_VALUE if empty
+		 */
+		synchronized long getOldestTick(){
+			return (mCount == 0) ? Long.MAX_VALUE : mTicks[0];
+		}
+
+		/**
+		 * Drop the least recently returned buffer if it is still the one dated with tick
+		 *
+		 * @return The dropped buffer, null if none
+		 */
+		synchronized Buffer evictOldest(final long tick){
+			if(mCount == 0 || mTicks[0] != tick){
+				return null;
+			}
+			final Buffer buffer = mBuffers[0];
+			mCount--;
+			System.arraycopy(mBuffers, 1, mBuffers, 0, mCount);
+			System.arraycopy(mTicks, 1, mTicks, 0, mCount);
+			mBuffers[mCount] = null;
+			return buffer;
+		}
+
+		/**
+		 * Move up to count buffers into a magazine
+		 *
+		 * @return The number of buffers moved
+		 */
+		synchronized int drainTo(final Magazine magazine, final int count){
+			int moved = 0;
+			while(moved < count && mCount > 0){
+				magazine.push(mBuffers[--mCount]);
+				mBuffers[mCount] = null;
+				moved++;
+			}
+			return moved;
+		}
+
+		/**
+		 * Take up to count buffers from the top of a magazine (magazine is not modified)
+		 *
+		 * @return The number of buffers accepted
+		 */
+		synchronized int fillFrom(final Magazine magazine, final int count, final long tick){
+			if(mBuffers == null){
+				mBuffers = new Buffer[MAX_BUFFERS_PER_CLASS];
+				mTicks = new long[MAX_BUFFERS_PER_CLASS];
+			}
+			int accepted = 0;
+			while(accepted < count && mCount < MAX_BUFFERS_PER_CLASS){
+				mTicks[mCount] = tick;
+				mBuffers[mCount++] = magazine.mBuffers[magazine.mCount - 1 - accepted];
+				accepted++;
+			}
+			return accepted;
+		}
+	}
+
+	/**
+	 * Per thread stack of buffers for a size class, no synchronization
+	 */
+	private static final class Magazine {
+
+		/**
+		 * The stored buffers
+		 */
+		final Buffer[] mBuffers = new Buffer[MAGAZINE_SIZE];
+
+		/**
+		 * Number of stored buffers
+		 */
+		int mCount;
+
+		Buffer pop(){
+			if(mCount == 0){
+				return null;
+			}
+			final Buffer buffer = mBuffers[--mCount];
+			mBuffers[mCount] = null;
+			return buffer;
+		}
+
+		void push(final Buffer buffer){
+			mBuffers[mCount++] = buffer;
+		}
+
+		/**
+		 * Drop count buffers from the top, buffers are released
+		 */
+		void clear(final int count){
+			for(int index=0; index < count && mCount > 0; index++){
+				release(mBuffers[--mCount]);
+				mBuffers[mCount] = null;
+			}
+		}
+
+		/**
+		 * Remove count buffers from the top, buffers have been moved elsewhere
+		 */
+		void remove(final int count){
+			for(int index=0; index < count && mCount > 0; index++){
+				mBuffers[--mCount] = null;
+			}
+		}
+	}
+
+	/**
+	 * Per thread state : magazines and counters, written by the owner thread only
+	 * except magazines drained under the cache lock
+	 */
+	private static final class ThreadCache {
+
+		/**
+		 * The owner thread
+		 */
+		final WeakReference<Thread> mOwner;
+
+		/**
+		 * Magazines by pool and size class, created on first use
+		 */
+		final Magazine[][] mMagazines = new Magazine[4][MAGAZINE_CLASSES_COUNT];
+
+		/**
+		 * Bytes handed out minus bytes returned by this thread
+		 */
+		volatile long mOutstandingBytes;
+
+		ThreadCache(final Thread owner){
+			mOwner = new WeakReference<>(owner);
+		}
+
+		Magazine getMagazine(final int pool, final int classIndex){
+			Magazine magazine = mMagazines[pool][classIndex];
+			if(magazine == null){
+				magazine = new Magazine();
+				mMagazines[pool][classIndex] = magazine;
+			}
+			return magazine;
+		}
+
+		/**
+		 * Drop all buffers held in magazines
+		 *
+		 * @return The number of bytes dropped
+		 */
+		synchronized long clear(){
+			long bytes = 0;
+			for(final Magazine[] magazines : mMagazines){
+				for(int classIndex=0; classIndex < MAGAZINE_CLASSES_COUNT; classIndex++){
+					final Magazine magazine = magazines[classIndex];
+					if(magazine != null){
+						bytes += (long)magazine.mCount * getClassSize(classIndex);
+						magazine.clear(MAGAZINE_SIZE);
+					}
+				}
+			}
+			return bytes;
+		}
+	}
+
+	/**
+	 * Snapshot of pool statistics, per size class arrays are indexed by size class
+	 * index, last index (NOT_POOLED) is used for buffers too big or too small for the pool.
+	 */
+	public static final class Stats {
+
+		/**
+		 * Index of not pooled sizes in per size class arrays
+		 */
+		public static final int NOT_POOLED = CLASSES_COUNT;
+
+		/**
+		 * Maximum number of sites kept in each report list
+		 */
+		public static final int MAX_REPORTED_SITES = 16;
+
+		//Pool
+		public long retainedBytes;
+		public long outstandingBytes;
+		public long maxRetainedBytes;
+
+		//Per size class
+		public final long[] hits = new long[CLASSES_COUNT + 1];
+		public final long[] misses = new long[CLASSES_COUNT + 1];
+		public final long[] allocatedBytes = new long[CLASSES_COUNT + 1];
+		public final long[] returns = new long[CLASSES_COUNT + 1];
+
+		//Tracking
+		public int outstandingCount;
+		public long doubleReturns;
+		public long leaks;
+		public final List<Throwable> outstandingSites = new ArrayList<>();
+		public final List<Throwable> doubleReturnSites = new ArrayList<>();
+		public final List<Throwable> leakSites = new ArrayList<>();
+
+		/**
+		 * Get the size of a size class
+		 *
+		 * @param classIndex The size class index
+		 *
+		 * @return The size in bytes, -1 for NOT_POOLED
+		 */
+		public static int getClassSize(final int classIndex){
+			return (classIndex == NOT_POOLED) ? -1 : ByteBufferPool.getClassSize(classIndex);
+		}
+
+		/**
+		 * @return The number of requests served by the pool
+		 */
+		public long getTotalHits(){
+			return sum(hits);
+		}
+
+		/**
+		 * @return The number of requests which needed an allocation
+		 */
+		public long getTotalMisses(){
+			return sum(misses);
+		}
+
+		/**
+		 * @return The number of bytes allocated
+		 */
+		public long getTotalAllocatedBytes(){
+			return sum(allocatedBytes);
+		}
+
+		/**
+		 * @return The ratio of requests served by the pool, 0 if no request
+		 */
+		public float getHitRate(){
+			final long hits = getTotalHits();
+			final long requests = hits + getTotalMisses();
+			return (requests == 0) ? 0f : (float)hits / requests;
+		}
+
+		private static long sum(final long[] values){
+			long sum = 0;
+			for(final long value : values){
+				sum += value;
+			}
+			return sum;
+		}
+
+		public String toString(){
+			return "[Pool - RET: "+retainedBytes+"/"+maxRetainedBytes+", OUT: "+outstandingBytes+"]"
+					+ "[Usage - HIT: "+getTotalHits()+", MISS: "+getTotalMisses()+", ALLOC: "+getTotalAllocatedBytes()+"]"
+					+ "[Tracking - OUT: "+outstandingCount+", DBL: "+doubleReturns+", LEAK: "+leaks+"]";
+		}
+	}
+
+	/**
+	 * Instrumentation state : per size class counters and tracking of buffers handed out
+	 * (identity based, buffers are weakly referenced to detect buffers never returned).
+	 */
+	private static final class Instrumentation {
+
+		final long[] mHits = new long[CLASSES_COUNT + 1];
+		final long[] mMisses = new long[CLASSES_COUNT + 1];
+		final long[] mAllocatedBytes = new long[CLASSES_COUNT + 1];
+		final long[] mReturns = new long[CLASSES_COUNT + 1];
+
+		/**
+		 * Trackers by identity hash code, collisions are chained
+		 */
+		final Map<Integer, Tracker> mTrackers = new HashMap<>();
+
+		/**
+		 * Trackers of garbage collected buffers
+		 */
+		final ReferenceQueue<Buffer> mCollected = new ReferenceQueue<>();
+
+		int mOutstandingCount;
+		long mDoubleReturns;
+		long mLeaks;
+		final LinkedList<Throwable> mDoubleReturnSites = new LinkedList<>();
+		final LinkedList<Throwable> mLeakSites = new LinkedList<>();
+
+		synchronized void onGet(final Buffer buffer, final int classIndex, final boolean hit, final int capacity){
+			expunge();
+			final int index = (classIndex < 0) ? Stats.NOT_POOLED : classIndex;
+			if(hit){
+				mHits[index]++;
+			}
+			else{
+				mMisses[index]++;
+				mAllocatedBytes[index] += capacity;
+			}
+			Tracker tracker = find(buffer);
+			if(tracker == null){
+				tracker = track(buffer);
+			}
+			tracker.mOutstanding = true;
+			tracker.mSite = new Throwable("Acquired "+capacity+" bytes in "+Thread.currentThread().getName());
+			mOutstandingCount++;
+		}
+
+		/**
+		 * @return false if the buffer has already been returned and must not be pooled again
+		 */
+		synchronized boolean onReturn(final Buffer buffer, final int classIndex){
+			expunge();
+			Tracker tracker = find(buffer);
+			if(tracker != null && !tracker.mOutstanding){
+				//android.util.//Log.w(TAG,"Buffer returned twice", tracker.mSite);
+				mDoubleReturns++;
+				report(mDoubleReturnSites, new Throwable("Returned twice in "+Thread.currentThread().getName(), tracker.mSite));
+				return false;
+			}
+			mReturns[(classIndex < 0) ? Stats.NOT_POOLED : classIndex]++;
+			if(tracker == null){
+				//Handed out before instrumentation
+				tracker = track(buffer);
+			}
+			else{
+				mOutstandingCount--;
+			}
+			tracker.mOutstanding = false;
+			tracker.mSite = new Throwable("First returned in "+Thread.currentThread().getName());
+			return true;
+		}
+
+		synchronized void fill(final Stats stats){
+			expunge();
+			System.arraycopy(mHits, 0, stats.hits, 0, mHits.length);
+			System.arraycopy(mMisses, 0, stats.misses, 0, mMisses.length);
+			System.arraycopy(mAllocatedBytes, 0, stats.allocatedBytes, 0, mAllocatedBytes.length);
+			System.arraycopy(mReturns, 0, stats.returns, 0, mReturns.length);
+			stats.outstandingCount = mOutstandingCount;
+			stats.doubleReturns = mDoubleReturns;
+			stats.leaks = mLeaks;
+			stats.doubleReturnSites.addAll(mDoubleReturnSites);
+			stats.leakSites.addAll(mLeakSites);
+			for(Tracker tracker : mTrackers.values()){
+				for(; tracker != null; tracker = tracker.mNext){
+					if(tracker.mOutstanding && tracker.get() != null){
+						stats.outstandingSites.add(tracker.mSite);
+					}
+				}
+			}
+		}
+
+		private Tracker find(final Buffer buffer){
+			Tracker tracker = mTrackers.get(System.identityHashCode(buffer));
+			while(tracker != null && tracker.get() != buffer){
+				tracker = tracker.mNext;
+			}
+			return tracker;
+		}
+
+		private Tracker track(final Buffer buffer){
+			final Tracker tracker = new Tracker(buffer, mCollected);
+			tracker.mNext = mTrackers.put(tracker.mHash, tracker);
+			return tracker;
+		}
+
+		/**
+		 * Remove trackers of garbage collected buffers, outstanding ones are leaks
+		 */
+		private void expunge(){
+			Tracker collected;
+			while((collected = (Tracker)mCollected.poll()) != null){
+				if(collected.mOutstanding){
+					//android.util.//Log.w(TAG,"Buffer never returned", collected.mSite);
+					mOutstandingCount--;
+					mLeaks++;
+					report(mLeakSites, collected.mSite);
+				}
+				Tracker tracker = mTrackers.get(collected.mHash);
+				if(tracker == collected){
+					if(collected.mNext == null){
+						mTrackers.remove(collected.mHash);
+					}
+					else{
+						mTrackers.put(collected.mHash, collected.mNext);
+					}
+				}
+				else{
+					while(tracker != null && tracker.mNext != collected){
+						tracker = tracker.mNext;
+					}
+					if(tracker != null){
+						tracker.mNext = collected.mNext;
+					}
+				}
+			}
+		}
+
+		private static void report(final LinkedList<Throwable> sites, final Throwable site){
+			if(sites.size() == Stats.MAX_REPORTED_SITES){
+				sites.removeFirst();
+			}
+			sites.addLast(site);
+		}
+	}
+
+	/**
+	 * Weak reference on a tracked buffer
+	 */
+	private static final class Tracker extends WeakReference<Buffer> {
+
+		/**
+		 * Identity hash code of the buffer
+		 */
+		final int mHash;
+
+		/**
+		 * Acquisition site if outstanding, first return site otherwise
+		 */
+		Throwable mSite;
+
+		/**
+		 * true if the buffer is handed out
+		 */
+		boolean mOutstanding;
+
+		/**
+		 * Next tracker with same hash
+		 */
+		Tracker mNext;
+
+		Tracker(final Buffer buffer, final ReferenceQueue<Buffer> queue){
+			super(buffer, queue);
+			mHash = System.identityHashCode(buffer);
+		}
 	}
-}
\ No newline at end of file
+}
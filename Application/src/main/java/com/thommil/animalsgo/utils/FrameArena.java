@@ -0,0 +1,158 @@
+package com.thommil.animalsgo.utils;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+
+/**
+ * Frame scoped allocator for transient direct buffers :
+ *	<ul>
+ * 	<li>one native order slab, buffers are slices of it</li>
+ * 	<li>no pool traffic, buffers are never returned</li>
+ * 	<li>everything is released at once by reset() at end of frame</li>
+ * 	<li>the slab grows for next frames if it was too small</li>
+ * 	<li>not thread safe, render thread only !</li>
+ *	</ul>
+ *
+ * Buffers obtained here must not be kept after reset().
+ *
+ * 	@author Thomas MILLET
+ *
+ */
+public class FrameArena {
+
+	private static final String TAG = "A_GO/FrameArena";
+
+	/**
+	 * Default slab size in bytes
+	 */
+	public static final int DEFAULT_CAPACITY = 64 * 1024;
+
+	/**
+	 * Alignment of each slice in bytes
+	 */
+	private static final int ALIGNMENT = 8;
+
+	/**
+	 * The current slab
+	 */
+	private ByteBuffer mSlab;
+
+	/**
+	 * Next free byte in slab
+	 */
+	private int mOffset = 0;
+
+	/**
+	 * The Singleton
+	 */
+	private final static FrameArena instance = new FrameArena(DEFAULT_CAPACITY);
+
+	/**
+	 * Constructor
+	 *
+	 * @param capacity The initial slab size in bytes
+	 */
+	public FrameArena(final int capacity){
+		mSlab = ByteBuffer.allocateDirect(capacity).order(ByteOrder.nativeOrder());
+	}
+
+	/**
+	 * The singleton accessor, reset by the renderer after each frame
+	 *
+	 * @return The {@link FrameArena} singleton
+	 */
+	public static FrameArena getInstance(){
+		return instance;
+	}
+
+	/**
+	 * Get a direct ByteBuffer valid until next reset()
+	 *
+	 * @param size The size in elements (bytes) of the ByteBuffer to get
+	 *
+	 * @return A native order ByteBuffer
+	 */
+	public ByteBuffer getByteBuffer(final int size){
+		return slice(size);
+	}
+
+	/**
+	 * Get a direct ShortBuffer valid until next reset()
+	 *
+	 * @param size The size in elements (shorts) of the ShortBuffer to get
+	 *
+	 * @return A native order ShortBuffer
+	 */
+	public ShortBuffer getShortBuffer(final int size){
+		return slice(size * Short.BYTES).asShortBuffer();
+	}
+
+	/**
+	 * Get a direct IntBuffer valid until next reset()
+	 *
+	 * @param size The size in elements (ints) of the IntBuffer to get
+	 *
+	 * @return A native order IntBuffer
+	 */
+	public IntBuffer getIntBuffer(final int size){
+		return slice(size * Integer.BYTES).asIntBuffer();
+	}
+
+	/**
+	 * Get a direct FloatBuffer valid until next reset()
+	 *
+	 * @param size The size in elements (floats) of the FloatBuffer to get
+	 *
+	 * @return A native order FloatBuffer
+	 */
+	public FloatBuffer getFloatBuffer(final int size){
+		return slice(size * Float.BYTES).asFloatBuffer();
+	}
+
+	/**
+	 * Release all buffers obtained since last reset
+	 */
+	public void reset(){
+		mOffset = 0;
+	}
+
+	/**
+	 * @return The number of bytes used since last reset
+	 */
+	public int getUsedBytes(){
+		return mOffset;
+	}
+
+	/**
+	 * @return The slab size in bytes
+	 */
+	public int getCapacity(){
+		return mSlab.capacity();
+	}
+
+	/**
+	 * Cut a slice in the slab, the slab is replaced by a bigger one
+	 * if full (slices of the previous one stay valid).
+	 *
+	 * @param size The size in bytes
+	 *
+	 * @return A native order ByteBuffer of size bytes
+	 */
+	private ByteBuffer slice(final int size){
+		int start = (mOffset + ALIGNMENT - 1) & ~(ALIGNMENT - 1);
+		if(start + size > mSlab.capacity()){
+			//android.util.//Log.d(TAG,"grow("+size+")");
+			mSlab = ByteBuffer.allocateDirect(Math.max(mSlab.capacity() << 1, size)).order(ByteOrder.nativeOrder());
+			start = 0;
+		}
+		mSlab.limit(start + size);
+		mSlab.position(start);
+		final ByteBuffer slice = mSlab.slice().order(ByteOrder.nativeOrder());
+		mSlab.clear();
+		mOffset = start + size;
+		return slice;
+	}
+}
@@ -0,0 +1,270 @@
+package com.thommil.animalsgo.utils;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Direct buffers backed by native memory (animals-go module) :
+ *	<ul>
+ * 	<li>memory is aligned on ALIGNMENT bytes (SIMD friendly)</li>
+ * 	<li>memory is released by free(), or by the GC as a fallback for buffers never freed</li>
+ * 	<li>free() ignores buffers not allocated here and buffers already freed</li>
+ *	</ul>
+ *
+ * Allocations are tracked by buffer identity and native handle, never by address, a stale
+ * buffer cannot free a newer allocation reusing the same address. Views must be registered
+ * with share() to be accepted by free().
+ *
+ * A buffer must not be used after free().
+ *
+ * 	@author Thomas MILLET
+ *
+ */
+public final class NativeMemory {
+
+	private static final String TAG = "A_GO/NativeMemory";
+
+	/**
+	 * Alignment of allocated memory in bytes
+	 */
+	public static final int ALIGNMENT = 64;
+
+	/**
+	 * Native library state
+	 */
+	private static final boolean sAvailable;
+
+	/**
+	 * Tracked buffers by identity hash code, collisions are chained
+	 */
+	private static final Map<Integer, Entry> sEntries = new HashMap<>();
+
+	/**
+	 * Entries of garbage collected buffers
+	 */
+	private static final ReferenceQueue<Buffer> sCollected = new ReferenceQueue<>();
+
+	/**
+	 * Bytes released by the GC fallback
+	 */
+	private static long sReclaimedBytes = 0;
+
+	static{
+		boolean available;
+		try {
+			System.loadLibrary("animals-go");
+			available = true;
+		}catch(UnsatisfiedLinkError ule){
+			//android.util.//Log.w(TAG,"animals-go not available : "+ule);
+			available = false;
+		}
+		sAvailable = available;
+	}
+
+	private NativeMemory(){
+
+	}
+
+	/**
+	 * @return true if the native library is loaded
+	 */
+	public static boolean isAvailable(){
+		return sAvailable;
+	}
+
+	/**
+	 * Allocate a native order direct ByteBuffer in native memory
+	 *
+	 * @param size The size in bytes
+	 *
+	 * @return A direct ByteBuffer, its address is aligned on ALIGNMENT bytes
+	 *
+	 * @throws OutOfMemoryError if native memory cannot be allocated
+	 */
+	public static ByteBuffer allocate(final int size){
+		//android.util.//Log.d(TAG,"allocate("+size+")");
+		synchronized (sEntries){
+			expunge();
+			final long handle = nativeAllocate(size);
+			if(handle == 0){
+				throw new OutOfMemoryError("Failed to allocate "+size+" bytes of native memory");
+			}
+			final ByteBuffer buffer = nativeGetBuffer(handle);
+			if(buffer == null){
+				nativeFree(handle);
+				throw new OutOfMemoryError("Failed to wrap "+size+" bytes of native memory");
+			}
+			track(buffer, new Allocation(handle, size), true);
+			return buffer.order(ByteOrder.nativeOrder());
+		}
+	}
+
+	/**
+	 * Register a view on a buffer allocated by allocate() (asShortBuffer(), asFloatBuffer() ...)
+	 * so that free() accepts it. The view must keep a reference on the buffer (true for views
+	 * created by ByteBuffer methods).
+	 *
+	 * @param buffer The buffer allocated by allocate()
+	 * @param view The view on buffer
+	 *
+	 * @return The view
+	 */
+	public static <T extends Buffer> T share(final ByteBuffer buffer, final T view){
+		synchronized (sEntries){
+			final Entry entry = find(buffer);
+			if(entry != null && !entry.mAllocation.mFreed){
+				track(view, entry.mAllocation, false);
+			}
+			return view;
+		}
+	}
+
+	/**
+	 * Release the native memory of a buffer allocated by allocate(), or of a view registered
+	 * with share()
+	 *
+	 * @param buffer The buffer to release
+	 *
+	 * @return true if memory has been released, false if the buffer was not allocated here
+	 * 			or has already been freed
+	 */
+	public static boolean free(final Buffer buffer){
+		//android.util.//Log.d(TAG,"free("+buffer+")");
+		synchronized (sEntries){
+			expunge();
+			final Entry entry = find(buffer);
+			if(entry == null || entry.mAllocation.mFreed){
+				return false;
+			}
+			entry.mAllocation.mFreed = true;
+			return nativeFree(entry.mAllocation.mHandle);
+		}
+	}
+
+	/**
+	 * @return The number of bytes currently allocated in native memory
+	 */
+	public static long getAllocatedBytes(){
+		synchronized (sEntries){
+			expunge();
+		}
+		return nativeGetAllocatedBytes();
+	}
+
+	/**
+	 * @return The number of bytes released by the GC because their buffers were never freed (leaks)
+	 */
+	public static long getReclaimedBytes(){
+		synchronized (sEntries){
+			expunge();
+			return sReclaimedBytes;
+		}
+	}
+
+	private static Entry find(final Buffer buffer){
+		Entry entry = sEntries.get(System.identityHashCode(buffer));
+		while(entry != null && entry.get() != buffer){
+			entry = entry.mNext;
+		}
+		return entry;
+	}
+
+	private static void track(final Buffer buffer, final Allocation allocation, final boolean owner){
+		final Entry entry = new Entry(buffer, allocation, owner);
+		entry.mNext = sEntries.put(entry.mHash, entry);
+	}
+
+	/**
+	 * Remove entries of garbage collected buffers, memory of owners never freed is released
+	 */
+	private static void expunge(){
+		Entry collected;
+		while((collected = (Entry)sCollected.poll()) != null){
+			if(collected.mOwner && !collected.mAllocation.mFreed){
+				//android.util.//Log.w(TAG,"Buffer never freed : "+collected.mAllocation.mSize+" bytes");
+				collected.mAllocation.mFreed = true;
+				if(nativeFree(collected.mAllocation.mHandle)){
+					sReclaimedBytes += collected.mAllocation.mSize;
+				}
+			}
+			Entry entry = sEntries.get(collected.mHash);
+			if(entry == collected){
+				if(collected.mNext == null){
+					sEntries.remove(collected.mHash);
+				}
+				else{
+					sEntries.put(collected.mHash, collected.mNext);
+				}
+			}
+			else{
+				while(entry != null && entry.mNext != collected){
+					entry = entry.mNext;
+				}
+				if(entry != null){
+					entry.mNext = collected.mNext;
+				}
+			}
+		}
+	}
+
+	private static native long nativeGetAllocatedBytes();
+
+	private static native long nativeAllocate(final int size);
+
+	private static native ByteBuffer nativeGetBuffer(final long handle);
+
+	private static native boolean nativeFree(final long handle);
+
+	/**
+	 * Native allocation shared by a buffer and its views
+	 */
+	private static final class Allocation {
+
+		/**
+		 * Native handle (never reused)
+		 */
+		final long mHandle;
+
+		/**
+		 * Size in bytes
+		 */
+		final int mSize;
+
+		/**
+		 * true once released
+		 */
+		boolean mFreed;
+
+		Allocation(final long handle, final int size){
+			mHandle = handle;
+			mSize = size;
+		}
+	}
+
+	/**
+	 * Weak reference on a tracked buffer, the owner entry releases the allocation
+	 * when its buffer is collected (views keep a reference on their buffer)
+	 */
+	private static final class Entry extends WeakReference<Buffer> {
+
+		final int mHash;
+
+		final Allocation mAllocation;
+
+		final boolean mOwner;
+
+		Entry mNext;
+
+		Entry(final Buffer buffer, final Allocation allocation, final boolean owner){
+			super(buffer, sCollected);
+			mHash = System.identityHashCode(buffer);
+			mAllocation = allocation;
+			mOwner = owner;
+		}
+	}
+}
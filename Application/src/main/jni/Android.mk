@@ -8,7 +8,7 @@ OPENCV_INSTALL_MODULES:=on
 include $(LOCAL_PATH)/../../../../lib/OpenCV-android-sdk/sdk/native/jni/OpenCV.mk
 
 LOCAL_MODULE := animals-go
-LOCAL_SRC_FILES := cv-opencv.cpp
+LOCAL_SRC_FILES := cv-opencv.cpp native-memory.cpp
 LOCAL_LDLIBS    := -llog
 
 include $(BUILD_SHARED_LIBRARY)
\ No newline at end of file
@@ -0,0 +1,47 @@
+/* DO NOT EDIT THIS FILE - it is machine generated */
+#include <jni.h>
+/* Header for class com_thommil_animalsgo_utils_NativeMemory */
+
+#ifndef _Included_com_thommil_animalsgo_utils_NativeMemory
+#define _Included_com_thommil_animalsgo_utils_NativeMemory
+#ifdef __cplusplus
+extern "C" {
+#endif
+#undef com_thommil_animalsgo_utils_NativeMemory_ALIGNMENT
+#define com_thommil_animalsgo_utils_NativeMemory_ALIGNMENT 64L
+/*
+ * Class:     com_thommil_animalsgo_utils_NativeMemory
+ * Method:    nativeGetAllocatedBytes
+ * Signature: ()J
+ */
+JNIEXPORT jlong JNICALL Java_com_thommil_animalsgo_utils_NativeMemory_nativeGetAllocatedBytes
+  (JNIEnv *, jclass);
+
+/*
+ * Class:     com_thommil_animalsgo_utils_NativeMemory
+ * Method:    nativeAllocate
+ * Signature: (I)J
+ */
+JNIEXPORT jlong JNICALL Java_com_thommil_animalsgo_utils_NativeMemory_nativeAllocate
+  (JNIEnv *, jclass, jint);
+
+/*
+ * Class:     com_thommil_animalsgo_utils_NativeMemory
+ * Method:    nativeGetBuffer
+ * Signature: (J)Ljava/nio/ByteBuffer;
+ */
+JNIEXPORT jobject JNICALL Java_com_thommil_animalsgo_utils_NativeMemory_nativeGetBuffer
+  (JNIEnv *, jclass, jlong);
+
+/*
+ * Class:     com_thommil_animalsgo_utils_NativeMemory
+ * Method:    nativeFree
+ * Signature: (J)Z
+ */
+JNIEXPORT jboolean JNICALL Java_com_thommil_animalsgo_utils_NativeMemory_nativeFree
+  (JNIEnv *, jclass, jlong);
+
+#ifdef __cplusplus
+}
+#endif
+#endif
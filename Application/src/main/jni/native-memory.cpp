@@ -0,0 +1,80 @@
+#include "com_thommil_animalsgo_utils_NativeMemory.h"
+
+#include <stdlib.h>
+#include <pthread.h>
+#include <map>
+
+struct Allocation
+{
+    void *address;
+    jlong size;
+};
+
+// Live allocations by handle, handles are never reused so a stale handle cannot free
+// a newer allocation at the same address
+static std::map<jlong, Allocation> sAllocations;
+static jlong sNextHandle = 1;
+static jlong sAllocatedBytes = 0;
+static pthread_mutex_t sMutex = PTHREAD_MUTEX_INITIALIZER;
+
+extern "C"
+{
+    JNIEXPORT jlong JNICALL Java_com_thommil_animalsgo_utils_NativeMemory_nativeGetAllocatedBytes(JNIEnv *env, jclass cls)
+    {
+        pthread_mutex_lock(&sMutex);
+        const jlong allocatedBytes = sAllocatedBytes;
+        pthread_mutex_unlock(&sMutex);
+        return allocatedBytes;
+    }
+
+    JNIEXPORT jlong JNICALL Java_com_thommil_animalsgo_utils_NativeMemory_nativeAllocate(JNIEnv *env, jclass cls, jint size)
+    {
+        void *address = NULL;
+        if (size < 0 || posix_memalign(&address, com_thommil_animalsgo_utils_NativeMemory_ALIGNMENT, (size > 0) ? size : 1) != 0) {
+            return 0;
+        }
+
+        Allocation allocation;
+        allocation.address = address;
+        allocation.size = size;
+
+        pthread_mutex_lock(&sMutex);
+        const jlong handle = sNextHandle++;
+        sAllocations[handle] = allocation;
+        sAllocatedBytes += size;
+        pthread_mutex_unlock(&sMutex);
+        return handle;
+    }
+
+    JNIEXPORT jobject JNICALL Java_com_thommil_animalsgo_utils_NativeMemory_nativeGetBuffer(JNIEnv *env, jclass cls, jlong handle)
+    {
+        pthread_mutex_lock(&sMutex);
+        std::map<jlong, Allocation>::iterator allocation = sAllocations.find(handle);
+        if (allocation == sAllocations.end()) {
+            pthread_mutex_unlock(&sMutex);
+            return NULL;
+        }
+        void *address = allocation->second.address;
+        const jlong size = allocation->second.size;
+        pthread_mutex_unlock(&sMutex);
+
+        return env->NewDirectByteBuffer(address, size);
+    }
+
+    JNIEXPORT jboolean JNICALL Java_com_thommil_animalsgo_utils_NativeMemory_nativeFree(JNIEnv *env, jclass cls, jlong handle)
+    {
+        pthread_mutex_lock(&sMutex);
+        std::map<jlong, Allocation>::iterator allocation = sAllocations.find(handle);
+        if (allocation == sAllocations.end()) {
+            pthread_mutex_unlock(&sMutex);
+            return JNI_FALSE;
+        }
+        void *address = allocation->second.address;
+        sAllocatedBytes -= allocation->second.size;
+        sAllocations.erase(allocation);
+        pthread_mutex_unlock(&sMutex);
+
+        free(address);
+        return JNI_TRUE;
+    }
+}
@@ -0,0 +1,27 @@
+package com.thommil.animalsgo;
+
+import org.junit.Assume;
+
+/**
+ * Helpers of benchmarks tests, benchmarks are skipped unless run with -Pbenchmarks=true
+ * (./gradlew testDebugUnitTest -Pbenchmarks=true), results are printed on standard output.
+ */
+public final class Benchmarks {
+
+    private Benchmarks(){
+    }
+
+    /**
+     * Skips the calling test if benchmarks are not enabled
+     */
+    public static void assumeEnabled(){
+        Assume.assumeTrue("Benchmarks disabled, run with -Pbenchmarks=true", Boolean.getBoolean("benchmarks"));
+    }
+
+    /**
+     * Prints a result line
+     */
+    public static void report(final String name, final String format, final Object... args){
+        System.out.println("[" + name + "] " + String.format(format, args));
+    }
+}
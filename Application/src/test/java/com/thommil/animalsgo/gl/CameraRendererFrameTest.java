@@ -0,0 +1,274 @@
+package com.thommil.animalsgo.gl;
+
+import android.content.ContextWrapper;
+import android.opengl.GLES20;
+
+import com.thommil.animalsgo.gl.libgl.GlBuffer;
+import com.thommil.animalsgo.gl.libgl.GlIntRect;
+import com.thommil.animalsgo.gl.libgl.GlOperation;
+import com.thommil.animalsgo.gl.libgl.GlProgram;
+import com.thommil.animalsgo.gl.libgl.GlSpriteStore;
+import com.thommil.animalsgo.gl.libgl.GlTexture;
+import com.thommil.animalsgo.gl.libgl.RecordingGlBackend;
+import com.thommil.animalsgo.gl.plugins.CameraDefault;
+import com.thommil.animalsgo.gl.plugins.PreviewDefault;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Call counts of CameraRenderer frames (camera, preview and UI plugins) on a RecordingGlBackend :
+ * after the first frame, frames are identical, error free and do not create or delete GL objects.
+ */
+public class CameraRendererFrameTest {
+
+    private static final File SHADERS_DIR = new File("src/main/assets/shaders");
+
+    private static final int SURFACE_WIDTH = 1080;
+    private static final int SURFACE_HEIGHT = 1920;
+    private static final int VIEWPORT_HEIGHT = 1440;
+
+    private static final int FRAMES = 5;
+
+    private static final int UI_SPRITES = 3;
+
+    private RecordingGlBackend mGl;
+
+    private Plugin[] mPlugins;
+
+    @After
+    public void tearDown(){
+        if(mPlugins != null){
+            for(final Plugin plugin : mPlugins){
+                plugin.free();
+            }
+        }
+        FrameUniforms.getInstance().free();
+    }
+
+    @Test
+    public void gles2Frames() throws Exception {
+        checkFrames(2, null, false);
+    }
+
+    @Test
+    public void gles3Frames() throws Exception {
+        checkFrames(3, null, true);
+    }
+
+    @Test
+    public void gles3WithoutEssl3ExternalImageFrames() throws Exception {
+        //Camera sampler not available in ESSL 3.00, GLES2 path (plain uniforms)
+        checkFrames(3, RecordingGlBackend.EXTERNAL_IMAGE_EXTENSION, false);
+    }
+
+    private void checkFrames(final int version, final String extensions, final boolean blockEnabled) throws Exception {
+        final CameraRenderer renderer = setUp(version, extensions);
+        final int setupErrors = mGl.getErrors();
+        assertEquals(0, setupErrors);
+        assertEquals(blockEnabled, FrameUniforms.getInstance().isBlockEnabled());
+
+        Map<String, Integer> previousCounts = null;
+        long previousUploaded = -1;
+        for(int frame=0; frame < FRAMES; frame++){
+            mGl.reset();
+            invoke(renderer, "draw");
+            final Map<String, Integer> counts = mGl.getCallCounts();
+
+            assertEquals("GLES" + version + " errors", 0, mGl.getErrors());
+            assertEquals("GLES" + version + " draw calls", 3, mGl.getDrawCalls());
+            assertEquals(1, count(counts, "glClear"));
+            assertEquals(2, count(counts, "glBindFramebuffer"));
+            assertEquals(3, count(counts, "glUseProgram"));
+            //First frame allocates transient buffers, then steady state : same calls and uploads, no object life cycle
+            if(frame > 1){
+                assertEquals("GLES" + version + " frame " + frame, previousCounts, counts);
+                assertEquals(previousUploaded, mGl.getUploadedBytes());
+            }
+            if(frame > 0){
+                for(final String name : counts.keySet()){
+                    assertTrue("GLES" + version + " " + name + " in frame", !name.startsWith("glGen") && !name.startsWith("glCreate")
+                            && !name.startsWith("glDelete"));
+                }
+            }
+            previousCounts = counts;
+            previousUploaded = mGl.getUploadedBytes();
+        }
+        //Quads of camera and preview, sprites of UI
+        assertTrue(mGl.getDrawnVertices() >= 8 + UI_SPRITES * 4);
+    }
+
+    private CameraRenderer setUp(final int version, final String extensions) throws Exception {
+        mGl = new RecordingGlBackend(version);
+        if(extensions != null){
+            mGl.setExtensions(extensions);
+        }
+        GlOperation.setBackend(mGl);
+        GlOperation.invalidate();
+
+        final FrameUniforms frameUniforms = FrameUniforms.getInstance();
+        frameUniforms.allocate();
+        frameUniforms.setScreenRatio((float) SURFACE_WIDTH / SURFACE_HEIGHT);
+
+        final CameraRenderer renderer = new CameraRenderer(new ContextWrapper(null), null, SURFACE_WIDTH, SURFACE_HEIGHT);
+
+        final CameraDefault camera = new CameraDefault();
+        camera.setProgram(createProgram(camera.getProgramId(), camera.getProgramDefines()));
+        camera.allocate(1f);
+        camera.setCameraTransformMatrix((float[]) get(renderer, "mCameraTransformMatrix"));
+
+        final PreviewDefault preview = new PreviewDefault();
+        preview.setProgram(createProgram(preview.getProgramId(), preview.getProgramDefines()));
+        preview.allocate(1f);
+
+        final SpritesUI ui = new SpritesUI();
+        ui.setProgram(createProgram(ui.getProgramId(), ui.getProgramDefines()));
+        ui.allocate(1f);
+
+        mPlugins = new Plugin[]{camera, preview, ui};
+        set(renderer, "mCameraPlugin", camera);
+        set(renderer, "mPreviewPlugin", preview);
+        set(renderer, "mUIPlugin", ui);
+
+        final GlIntRect viewport = (GlIntRect) get(renderer, "mViewport");
+        viewport.left = 0;
+        viewport.right = SURFACE_WIDTH;
+        viewport.bottom = (SURFACE_HEIGHT - VIEWPORT_HEIGHT) / 2;
+        viewport.top = viewport.bottom + VIEWPORT_HEIGHT;
+        invoke(renderer, "setupFBOs");
+        set(renderer, "mStartTime", System.nanoTime());
+        return renderer;
+    }
+
+    private static GlProgram createProgram(final String programId, final Map<String, String> defines) throws IOException {
+        final FrameUniforms frameUniforms = FrameUniforms.getInstance();
+        return new GlProgram(frameUniforms.prepareSource(GLES20.GL_VERTEX_SHADER, readSource(GLES20.GL_VERTEX_SHADER, programId + ".vert.glsl")),
+                frameUniforms.prepareSource(GLES20.GL_FRAGMENT_SHADER, readSource(GLES20.GL_FRAGMENT_SHADER, programId + ".frag.glsl")),
+                defines, Plugin.ATTRIBUTE_LOCATIONS, null);
+    }
+
+    private static String readSource(final int type, final String file) throws IOException {
+        try (final InputStream inputStream = new FileInputStream(new File(SHADERS_DIR, file))) {
+            return GlProgram.readSource(type, inputStream);
+        }
+    }
+
+    private static int count(final Map<String, Integer> counts, final String name){
+        final Integer count = counts.get(name);
+        return (count == null) ? 0 : count;
+    }
+
+    private static Object get(final Object target, final String name) throws ReflectiveOperationException {
+        final Field field = target.getClass().getDeclaredField(name);
+        field.setAccessible(true);
+        return field.get(target);
+    }
+
+    private static void set(final Object target, final String name, final Object value) throws ReflectiveOperationException {
+        final Field field = target.getClass().getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+
+    private static void invoke(final Object target, final String name) throws ReflectiveOperationException {
+        final Method method = target.getClass().getDeclaredMethod(name);
+        method.setAccessible(true);
+        method.invoke(target);
+    }
+
+    /**
+     * UI plugin drawing a few sprites with ui_default program (UIDefault without its texture atlas asset)
+     */
+    private static class SpritesUI extends UIPlugin {
+
+        private GlTexture mTexture;
+
+        private GlSpriteStore mSprites;
+
+        private int mTextureUniformHandle;
+
+        @Override
+        public String getId() {
+            return "ui/test";
+        }
+
+        @Override
+        public String getProgramId() {
+            return "ui_default";
+        }
+
+        @Override
+        public String getName() {
+            return getId();
+        }
+
+        @Override
+        public String getSummary() {
+            return getId();
+        }
+
+        @Override
+        public void allocate(final float surfaceRatio) {
+            super.allocate(surfaceRatio);
+            mTexture = new GlTexture(){
+                @Override
+                public int getWidth() {
+                    return 256;
+                }
+
+                @Override
+                public int getHeight() {
+                    return 256;
+                }
+            };
+            mTexture.bind().configure().allocate();
+
+            mProgram.use();
+            mTextureUniformHandle = mProgram.getUniformHandle(UNIFORM_TEXTURE);
+
+            mSprites = new GlSpriteStore(mTexture, GlSpriteStore.DEFAULT_CAPACITY, false);
+            for(int index=0; index < UI_SPRITES; index++){
+                final int sprite = mSprites.add();
+                mSprites.clip(sprite, 0, 0, 64, 64).size(sprite, 0.2f, 0.2f).position(sprite, index * 0.3f, 0f);
+            }
+            mSprites.setVertexAttribHandles(mProgram.getAttributeHandle(ATTRIBUTE_POSITION), mProgram.getAttributeHandle(ATTRIBUTE_TEXTCOORD),
+                    mProgram.getAttributeHandle(ATTRIBUTE_COLOR));
+            mSprites.commit(false);
+            mSprites.allocate(GlBuffer.USAGE_DYNAMIC_DRAW, GlBuffer.TARGET_ARRAY_BUFFER, false);
+        }
+
+        @Override
+        public void draw(final GlIntRect viewport, final int orientation) {
+            GlOperation.setTestState(GlOperation.TEST_BLEND, true);
+            mProgram.use();
+            mProgram.setUniform1i(mTextureUniformHandle, mTexture.index);
+            applyFrameUniforms();
+            mTexture.bind();
+            mSprites.draw(mProgram);
+        }
+
+        @Override
+        public void free() {
+            super.free();
+            if(mSprites != null){
+                mSprites.free();
+                mSprites = null;
+            }
+            if(mTexture != null){
+                mTexture.free();
+                mTexture = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.thommil.animalsgo.gl.libgl;
+
+import com.thommil.animalsgo.Benchmarks;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * GlBuffer.commit() through the interleave plan against the previous per element
+ * position()/put() loop, float/short/byte layouts from 4 to 10000 vertices.
+ */
+public class GlBufferCommitBenchmark {
+
+    private static final int[] VERTICES = new int[]{4, 64, 1000, 10000};
+
+    private static final int ROUNDS = 7;
+
+    private static final Random sRandom = new Random(1);
+
+    @Before
+    public void setUp(){
+        Benchmarks.assumeEnabled();
+    }
+
+    @Test
+    public void commit(){
+        for(final int vertices : VERTICES){
+            final int iterations = Math.max(200, 2000000 / vertices);
+
+            run("float pos2+uv2", vertices, iterations, new GlBuffer<>(
+                    new GlBuffer.Chunk<>(randomFloats(vertices * 2), 2),
+                    new GlBuffer.Chunk<>(randomFloats(vertices * 2), 2)));
+            run("float pos3", vertices, iterations, new GlBuffer<>(
+                    new GlBuffer.Chunk<>(randomFloats(vertices * 3), 3)));
+            run("short 3+2+1", vertices, iterations, new GlBuffer<>(
+                    new GlBuffer.Chunk<>(randomShorts(vertices * 3), 3),
+                    new GlBuffer.Chunk<>(randomShorts(vertices * 2), 2),
+                    new GlBuffer.Chunk<>(randomShorts(vertices), 1)));
+            run("byte rgba4+4", vertices, iterations, new GlBuffer<>(
+                    new GlBuffer.Chunk<>(randomBytes(vertices * 4), 4),
+                    new GlBuffer.Chunk<>(randomBytes(vertices * 4), 4)));
+        }
+    }
+
+    private static <E> void run(final String layout, final int vertices, final int iterations, final GlBuffer<E> glBuffer){
+        final Buffer reference = allocate(glBuffer);
+
+        //Same content
+        glBuffer.commit(false);
+        perElementCommit(glBuffer, reference);
+        for(int index=0; index < glBuffer.size / glBuffer.datasize; index++){
+            assertEquals(layout, get(reference, index), get(glBuffer.buffer, index), 0);
+        }
+
+        double plan = Double.MAX_VALUE;
+        double perElement = Double.MAX_VALUE;
+        for(int round=0; round < ROUNDS; round++){
+            long start = System.nanoTime();
+            for(int iteration=0; iteration < iterations; iteration++){
+                glBuffer.commit(false);
+            }
+            plan = Math.min(plan, (System.nanoTime() - start) / (double) iterations);
+
+            start = System.nanoTime();
+            for(int iteration=0; iteration < iterations; iteration++){
+                perElementCommit(glBuffer, reference);
+            }
+            perElement = Math.min(perElement, (System.nanoTime() - start) / (double) iterations);
+        }
+        Benchmarks.report("GlBuffer.commit", "%-16s %6d vertices : per element %10.0f ns, plan %10.0f ns (x%.1f)",
+                layout, vertices, perElement, plan, perElement / plan);
+        glBuffer.free();
+    }
+
+    /*
+     * Previous commit loop : one position() and one put() per element and chunk
+     */
+    @SuppressWarnings("unchecked")
+    private static <E> void perElementCommit(final GlBuffer<E> glBuffer, final Buffer target){
+        final int offset = glBuffer.stride / glBuffer.datasize;
+        for(final GlBuffer.Chunk<E> chunk : glBuffer.chunks){
+            for(int elementIndex=0, compIndex=0; elementIndex < glBuffer.count ; elementIndex++, compIndex+=chunk.components){
+                target.position(chunk.position + (elementIndex * offset));
+                switch(glBuffer.datatype){
+                    case GlBuffer.TYPE_FLOAT :
+                        ((FloatBuffer)target).put((float[])chunk.data, compIndex, chunk.components);
+                        break;
+                    case GlBuffer.TYPE_SHORT :
+                        ((ShortBuffer)target).put((short[])chunk.data, compIndex, chunk.components);
+                        break;
+                    default :
+                        ((ByteBuffer)target).put((byte[])chunk.data, compIndex, chunk.components);
+                }
+            }
+        }
+    }
+
+    private static Buffer allocate(final GlBuffer<?> glBuffer){
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(glBuffer.size).order(ByteOrder.nativeOrder());
+        switch(glBuffer.datatype){
+            case GlBuffer.TYPE_FLOAT :
+                return buffer.asFloatBuffer();
+            case GlBuffer.TYPE_SHORT :
+                return buffer.asShortBuffer();
+            default :
+                return buffer;
+        }
+    }
+
+    private static float get(final Buffer buffer, final int index){
+        if(buffer instanceof FloatBuffer){
+            return ((FloatBuffer)buffer).get(index);
+        }
+        else if(buffer instanceof ShortBuffer){
+            return ((ShortBuffer)buffer).get(index);
+        }
+        return ((ByteBuffer)buffer).get(index);
+    }
+
+    private static float[] randomFloats(final int size){
+        final float[] values = new float[size];
+        for(int index=0; index < size; index++){
+            values[index] = sRandom.nextFloat();
+        }
+        return values;
+    }
+
+    private static short[] randomShorts(final int size){
+        final short[] values = new short[size];
+        for(int index=0; index < size; index++){
+            values[index] = (short)sRandom.nextInt();
+        }
+        return values;
+    }
+
+    private static byte[] randomBytes(final int size){
+        final byte[] values = new byte[size];
+        sRandom.nextBytes(values);
+        return values;
+    }
+}
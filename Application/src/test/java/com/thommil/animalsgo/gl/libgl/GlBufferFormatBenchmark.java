@@ -0,0 +1,96 @@
+package com.thommil.animalsgo.gl.libgl;
+
+import com.thommil.animalsgo.Benchmarks;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Conversion cost of compact vertex formats in GlBuffer.commit() (half float, normalized
+ * short/byte) against native floats, and size of a quad per layout.
+ */
+public class GlBufferFormatBenchmark {
+
+    private static final int[] VERTICES = new int[]{4, 1024, 16384};
+
+    private static final int ROUNDS = 7;
+
+    private static final int NATIVE = GlBuffer.FORMAT_NATIVE;
+    private static final int HALF = GlBuffer.FORMAT_HALF_FLOAT;
+    private static final int SHORT = GlBuffer.FORMAT_NORMALIZED_SHORT;
+    private static final int BYTE = GlBuffer.FORMAT_NORMALIZED_BYTE;
+
+    @Before
+    public void setUp(){
+        Benchmarks.assumeEnabled();
+    }
+
+    @Test
+    public void quadSizes(){
+        //Camera/preview quad : pos2 + tex2
+        report("pos2+tex2 float", 16, new GlBuffer<>(chunk(4, 2, NATIVE), chunk(4, 2, NATIVE)));
+        report("pos2 float+tex2 nshort", 12, new GlBuffer<>(chunk(4, 2, NATIVE), chunk(4, 2, SHORT)));
+        report("pos2 half+tex2 nshort", 8, new GlBuffer<>(chunk(4, 2, HALF), chunk(4, 2, SHORT)));
+        //Colored sprite : pos2 + tex2 + color4
+        report("pos2+tex2+color4 float", 32, new GlBuffer<>(chunk(4, 2, NATIVE), chunk(4, 2, NATIVE), chunk(4, 4, NATIVE)));
+        report("float+nshort+nbyte", 16, new GlBuffer<>(chunk(4, 2, NATIVE), chunk(4, 2, SHORT), chunk(4, 4, BYTE)));
+        report("half+nshort+nbyte", 12, new GlBuffer<>(chunk(4, 2, HALF), chunk(4, 2, SHORT), chunk(4, 4, BYTE)));
+    }
+
+    @Test
+    public void commit(){
+        for(final int vertices : VERTICES){
+            final GlBuffer<float[]> floats = new GlBuffer<>(chunk(vertices, 2, NATIVE), chunk(vertices, 2, NATIVE), chunk(vertices, 4, NATIVE));
+            final GlBuffer<float[]> packed = new GlBuffer<>(chunk(vertices, 2, NATIVE), chunk(vertices, 2, SHORT), chunk(vertices, 4, BYTE));
+            final GlBuffer<float[]> half = new GlBuffer<>(chunk(vertices, 2, HALF), chunk(vertices, 2, SHORT), chunk(vertices, 4, BYTE));
+            //Warm up
+            for(int round=0; round < 3; round++){
+                time(floats, vertices);
+                time(packed, vertices);
+                time(half, vertices);
+            }
+            Benchmarks.report("GlBuffer formats", "%5d vertices : float (%dB/v) %.2f ns/v, float+nshort+nbyte (%dB/v) %.2f ns/v, half+nshort+nbyte (%dB/v) %.2f ns/v",
+                    vertices, floats.stride, time(floats, vertices), packed.stride, time(packed, vertices), half.stride, time(half, vertices));
+            floats.free();
+            packed.free();
+            half.free();
+        }
+    }
+
+    private static void report(final String layout, final int expectedStride, final GlBuffer<float[]> quad){
+        quad.commit(false);
+        assertEquals(layout, expectedStride, quad.stride);
+        Benchmarks.report("GlBuffer formats", "quad %-24s %3d B/vertex, %3d B/quad, %6.1f KB/1000 quads",
+                layout, quad.stride, quad.size, quad.size * 1000 / 1024f);
+        quad.free();
+    }
+
+    /*
+     * @return The best commit duration per vertex in ns
+     */
+    private static double time(final GlBuffer<float[]> buffer, final int vertices){
+        final int iterations = Math.max(2000, 4000000 / vertices);
+        long best = Long.MAX_VALUE;
+        for(int round=0; round < ROUNDS; round++){
+            final long start = System.nanoTime();
+            for(int iteration=0; iteration < iterations; iteration++){
+                buffer.commit(false);
+            }
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best / (double) iterations / vertices;
+    }
+
+    private static GlBuffer.Chunk<float[]> chunk(final int vertices, final int components, final int format){
+        final Random random = new Random(components);
+        final float[] data = new float[vertices * components];
+        for(int index=0; index < data.length; index++){
+            data[index] = random.nextFloat();
+        }
+        return new GlBuffer.Chunk<>(data, components, format);
+    }
+}
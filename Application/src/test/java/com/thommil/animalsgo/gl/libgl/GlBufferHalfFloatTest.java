@@ -0,0 +1,67 @@
+package com.thommil.animalsgo.gl.libgl;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * GlBuffer.toHalfFloat() against an exact half float decoder : every half float round trips,
+ * ties between two half floats go to the even one, other values to the nearest one.
+ */
+public class GlBufferHalfFloatTest {
+
+    @Test
+    public void roundTrip(){
+        for(int half=0; half < 0x7c00; half++){
+            assertEquals(half, toHalf(toFloat(half)));
+            assertEquals(half | 0x8000, toHalf(-toFloat(half)));
+        }
+    }
+
+    @Test
+    public void tiesToEven(){
+        //Subnormals and normals, last tie is between 65504 and Infinity
+        for(int half=0; half < 0x7c00; half++){
+            final float low = toFloat(half);
+            final float high = (half == 0x7bff) ? 65536f : toFloat(half + 1);
+            final float tie = (low + high) / 2;
+            final int even = ((half & 1) == 0) ? half : half + 1;
+            assertEquals("tie after 0x" + Integer.toHexString(half), even, toHalf(tie));
+            assertEquals(half, toHalf(Math.nextDown(tie)));
+            assertEquals(half + 1, toHalf(Math.nextUp(tie)));
+        }
+    }
+
+    @Test
+    public void specialValues(){
+        assertEquals(0x0000, toHalf(0f));
+        assertEquals(0x8000, toHalf(-0f));
+        assertEquals(0x3c00, toHalf(1f));
+        assertEquals(0x7c00, toHalf(Float.POSITIVE_INFINITY));
+        assertEquals(0xfc00, toHalf(Float.NEGATIVE_INFINITY));
+        assertEquals(0x7c00, toHalf(1e6f));
+        assertEquals(0x0000, toHalf(Float.MIN_VALUE));
+        //Half of the smallest subnormal is a tie with 0
+        assertEquals(0x0000, toHalf(0x1p-25f));
+        assertEquals(0x0001, toHalf(Math.nextUp(0x1p-25f)));
+        final int nan = toHalf(Float.NaN);
+        assertEquals(0x7c00, nan & 0x7c00);
+        assertTrue((nan & 0x3ff) != 0);
+    }
+
+    private static int toHalf(final float value){
+        return GlBuffer.toHalfFloat(value) & 0xffff;
+    }
+
+    /*
+     * Exact decoder (half floats are all representable as floats)
+     */
+    private static float toFloat(final int half){
+        final int exponent = (half >> 10) & 0x1f;
+        final int mantissa = half & 0x3ff;
+        final float magnitude = (exponent == 0) ? mantissa * 0x1p-24f
+                : (1 + mantissa / 1024f) * (float)Math.pow(2, exponent - 15);
+        return ((half & 0x8000) != 0) ? -magnitude : magnitude;
+    }
+}
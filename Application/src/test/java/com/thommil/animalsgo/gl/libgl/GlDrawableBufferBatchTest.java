@@ -0,0 +1,107 @@
+package com.thommil.animalsgo.gl.libgl;
+
+import org.junit.Test;
+
+import java.nio.FloatBuffer;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Slots uploads of GlDrawableBufferBatch on a RecordingGlBackend
+ */
+public class GlDrawableBufferBatchTest {
+
+    private static final String VERTEX_SOURCE = "attribute vec2 positionAttr;\nvoid main(){\n  gl_Position = vec4(positionAttr, 0.0, 1.0);\n}\n";
+    private static final String FRAGMENT_SOURCE = "precision mediump float;\nvoid main(){\n  gl_FragColor = vec4(1.0);\n}\n";
+
+    // Quad of 4 vertices, 2 floats each
+    private static final int ELEMENT_SIZE = 4 * 2 * 4;
+
+    private RecordingGlBackend mGl;
+
+    private GlProgram mProgram;
+
+    @Test
+    public void addAfterLocalBufferFreed(){
+        setUp(2);
+        final GlDrawableBufferBatch<float[]> batch = newBatch(quad(0), quad(1));
+        batch.allocate(GlBuffer.USAGE_DYNAMIC_DRAW, GlBuffer.TARGET_ARRAY_BUFFER, true);
+
+        mGl.reset();
+        batch.addElement(quad(2));
+        //Written in the rebuilt local buffer, uploaded by next draw
+        assertEquals(2f, ((FloatBuffer) batch.buffer).get(2 * ELEMENT_SIZE / 4), 0f);
+        assertEquals(0, mGl.getCallCount("glBufferSubData"));
+        batch.draw(mProgram);
+        assertEquals(1, mGl.getCallCount("glBufferSubData"));
+        assertEquals(ELEMENT_SIZE, mGl.getUploadedBytes());
+        assertEquals(0, mGl.getErrors());
+
+        batch.free();
+    }
+
+    @Test
+    public void vboModificationsCoalesced(){
+        setUp(2);
+        final GlDrawableBufferBatch<float[]> batch = newBatch(quad(0), quad(1));
+        batch.allocate(GlBuffer.USAGE_DYNAMIC_DRAW, GlBuffer.TARGET_ARRAY_BUFFER, false);
+
+        mGl.reset();
+        final GlDrawableBuffer<float[]> added = quad(2);
+        batch.addElement(added);
+        batch.addElement(quad(3));
+        batch.removeElement(added);
+        batch.draw(mProgram);
+        batch.draw(mProgram);
+        //Adjacent slots merged in one range, nothing left for the second frame
+        assertEquals(1, mGl.getCallCount("glBufferSubData"));
+        assertEquals(2 * ELEMENT_SIZE, mGl.getUploadedBytes());
+        assertEquals(0, mGl.getErrors());
+
+        batch.free();
+    }
+
+    @Test
+    public void streamModificationsUseOneSegment(){
+        setUp(3);
+        final GlDrawableBufferBatch<float[]> batch = newBatch(quad(0), quad(1));
+        batch.allocateStream(GlBuffer.TARGET_ARRAY_BUFFER);
+
+        mGl.reset();
+        final GlDrawableBuffer<float[]> added = quad(2);
+        batch.addElement(added);
+        batch.addElement(quad(3));
+        batch.removeElement(added);
+        batch.removeElement(added);
+        assertEquals(0, mGl.getCallCount("glMapBufferRange"));
+        batch.draw(mProgram);
+        assertEquals(1, mGl.getCallCount("glMapBufferRange"));
+        assertEquals(1, mGl.getDrawCalls());
+        assertEquals(0, mGl.getErrors());
+
+        batch.free();
+    }
+
+    private void setUp(final int version){
+        mGl = new RecordingGlBackend(version);
+        GlOperation.setBackend(mGl);
+        GlOperation.invalidate();
+        mProgram = new GlProgram(VERTEX_SOURCE, FRAGMENT_SOURCE, null, null);
+    }
+
+    @SuppressWarnings("unchecked")
+    private GlDrawableBufferBatch<float[]> newBatch(final GlDrawableBuffer<float[]> ...elements){
+        final GlDrawableBufferBatch<float[]> batch = new GlDrawableBufferBatch<>(elements);
+        batch.setVertexAttribHandles(mProgram.getAttributeHandle("positionAttr"));
+        return batch;
+    }
+
+    private static GlDrawableBuffer<float[]> quad(final float value){
+        return new GlDrawableBuffer<>(new GlBuffer.Chunk<>(new float[]{
+                value, value,
+                value, value,
+                value, value,
+                value, value
+        }, 2));
+    }
+}
@@ -0,0 +1,92 @@
+package com.thommil.animalsgo.gl.libgl;
+
+import android.opengl.GLES20;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Program binaries stored and loaded by GlProgramCache on a RecordingGlBackend
+ */
+public class GlProgramCacheTest {
+
+    private static final String VERTEX_SOURCE = "attribute vec2 positionAttr;\nuniform vec2 viewSize2f;\nvoid main(){\n  gl_Position = vec4(positionAttr * viewSize2f, 0.0, 1.0);\n}\n";
+    private static final String FRAGMENT_SOURCE = "precision mediump float;\nuniform sampler2D texture1i;\nvoid main(){\n  gl_FragColor = texture2D(texture1i, vec2(0.0));\n}\n";
+
+    // Offset of the binary format in an entry (magic, version)
+    private static final int FORMAT_OFFSET = 8;
+
+    private RecordingGlBackend mGl;
+
+    private File mDirectory;
+
+    @Before
+    public void setUp() throws IOException {
+        mGl = new RecordingGlBackend(3);
+        GlOperation.setBackend(mGl);
+        GlOperation.invalidate();
+        mDirectory = Files.createTempDirectory("programs").toFile();
+    }
+
+    @After
+    public void tearDown(){
+        new GlProgramCache(mDirectory).clear();
+        mDirectory.delete();
+    }
+
+    @Test
+    public void storeAndLoad(){
+        final GlProgram compiled = new GlProgram(VERTEX_SOURCE, FRAGMENT_SOURCE, null, new GlProgramCache(mDirectory));
+        assertEquals(1, mDirectory.listFiles().length);
+
+        mGl.reset();
+        final GlProgramCache cache = new GlProgramCache(mDirectory);
+        final GlProgram loaded = new GlProgram(VERTEX_SOURCE, FRAGMENT_SOURCE, null, cache);
+        assertEquals(1, cache.getHits());
+        assertEquals(0, mGl.getCallCount("glCompileShader"));
+        assertEquals(0, mGl.getErrors());
+        assertEquals(compiled.getAttributeHandle("positionAttr"), loaded.getAttributeHandle("positionAttr"));
+        assertEquals(compiled.getUniformHandle("texture1i"), loaded.getUniformHandle("texture1i"));
+    }
+
+    @Test
+    public void rejectedBinaryFallsBackToSources() throws IOException {
+        new GlProgram(VERTEX_SOURCE, FRAGMENT_SOURCE, null, new GlProgramCache(mDirectory));
+        final File entry = mDirectory.listFiles()[0];
+        try (final RandomAccessFile file = new RandomAccessFile(entry, "rw")) {
+            file.seek(FORMAT_OFFSET);
+            file.writeInt(RecordingGlBackend.PROGRAM_BINARY_FORMAT + 1);
+        }
+
+        mGl.reset();
+        final GlProgramCache cache = new GlProgramCache(mDirectory);
+        final GlProgram program = new GlProgram(VERTEX_SOURCE, FRAGMENT_SOURCE, null, cache);
+        assertEquals(1, cache.getRejects());
+        assertEquals(2, mGl.getCallCount("glCompileShader"));
+        assertTrue(program.getAttributeHandle("positionAttr") >= 0);
+        //Binary error cleared, nothing left for next calls
+        assertEquals(GLES20.GL_NO_ERROR, mGl.glGetError());
+    }
+
+    @Test
+    public void corruptedEntryIsDeleted() throws IOException {
+        new GlProgram(VERTEX_SOURCE, FRAGMENT_SOURCE, null, new GlProgramCache(mDirectory));
+        final File entry = mDirectory.listFiles()[0];
+        Files.write(entry.toPath(), "garbage".getBytes("UTF-8"));
+
+        final GlProgramCache cache = new GlProgramCache(mDirectory);
+        new GlProgram(VERTEX_SOURCE, FRAGMENT_SOURCE, null, cache);
+        assertEquals(1, cache.getRejects());
+        //Stored again from sources
+        assertTrue(entry.length() > "garbage".length());
+    }
+}
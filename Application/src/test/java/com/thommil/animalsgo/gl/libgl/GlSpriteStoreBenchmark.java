@@ -0,0 +1,115 @@
+package com.thommil.animalsgo.gl.libgl;
+
+import com.thommil.animalsgo.Benchmarks;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * 10k sprites animated per frame : GlSpriteStore (structure of arrays) against the object per
+ * sprite path (GlColoredSprite in a GlDrawableBufferBatch), on a RecordingGlBackend. Same vertices
+ * are checked by GlSpriteStoreTest.
+ */
+public class GlSpriteStoreBenchmark {
+
+    private static final int SPRITES = 10000;
+
+    private static final int FRAMES = 200;
+
+    private static final int ROUNDS = 3;
+
+    // Animated sprites per frame : all, 1 out of 10
+    private static final int[] ANIMATED_STEPS = new int[]{1, 10};
+
+    private static final GlTexture TEXTURE = new GlTexture(){
+        @Override
+        public int getWidth(){
+            return 256;
+        }
+
+        @Override
+        public int getHeight(){
+            return 256;
+        }
+    };
+
+    private RecordingGlBackend mGl;
+
+    @Before
+    public void setUp(){
+        Benchmarks.assumeEnabled();
+        mGl = new RecordingGlBackend(3);
+        GlOperation.setBackend(mGl);
+        GlOperation.invalidate();
+    }
+
+    @After
+    public void tearDown(){
+        if(mGl != null){
+            assertEquals(0, mGl.getErrors());
+        }
+    }
+
+    @Test
+    public void animate(){
+        final List<GlColoredSprite> sprites = new ArrayList<>(SPRITES);
+        final GlDrawableBufferBatch<float[]> batch = new GlDrawableBufferBatch<>(SPRITES);
+        for(int index=0; index < SPRITES; index++){
+            final GlColoredSprite sprite = new GlColoredSprite(TEXTURE, 0, 0, 16, 16);
+            sprite.size(0.01f, 0.01f).position(index * 1e-4f, 0);
+            sprites.add(sprite);
+            batch.addElement(sprite);
+        }
+        batch.setVertexAttribHandles(0, 1, 2);
+        batch.allocate(GlBuffer.USAGE_DYNAMIC_DRAW, GlBuffer.TARGET_ARRAY_BUFFER, false);
+
+        final GlSpriteStore store = new GlSpriteStore(TEXTURE, SPRITES);
+        for(int index=0; index < SPRITES; index++){
+            final int id = store.add();
+            store.clip(id, 0, 0, 16, 16).size(id, 0.01f, 0.01f).position(id, index * 1e-4f, 0);
+        }
+        store.setVertexAttribHandles(0, 1, 2);
+        store.allocate(GlBuffer.USAGE_DYNAMIC_DRAW, GlBuffer.TARGET_ARRAY_BUFFER, false);
+
+        for(final int step : ANIMATED_STEPS){
+            double objects = Double.MAX_VALUE;
+            double soa = Double.MAX_VALUE;
+            long objectsUploaded = 0, soaUploaded = 0;
+            for(int round=0; round < ROUNDS; round++){
+                long start = System.nanoTime();
+                for(int frame=0; frame < FRAMES; frame++){
+                    for(int index=frame % step; index < SPRITES; index+=step){
+                        final GlColoredSprite sprite = sprites.get(index);
+                        sprite.translate(1e-5f, 0);
+                        sprite.rotate(1f);
+                    }
+                    batch.commit();
+                    GlBuffer.endFrame();
+                }
+                objects = Math.min(objects, (System.nanoTime() - start) / (double) FRAMES);
+                objectsUploaded = GlBuffer.getFrameUploadedBytes();
+
+                start = System.nanoTime();
+                for(int frame=0; frame < FRAMES; frame++){
+                    for(int index=frame % step; index < SPRITES; index+=step){
+                        store.translate(index, 1e-5f, 0).rotate(index, 1f);
+                    }
+                    store.commit();
+                    GlBuffer.endFrame();
+                }
+                soa = Math.min(soa, (System.nanoTime() - start) / (double) FRAMES);
+                soaUploaded = GlBuffer.getFrameUploadedBytes();
+            }
+            Benchmarks.report("GlSpriteStore", "%d sprites, %3d%% animated : objects %.3f ms/frame (%d B), store %.3f ms/frame (%d B) (x%.1f)",
+                    SPRITES, 100 / step, objects / 1e6, objectsUploaded, soa / 1e6, soaUploaded, objects / soa);
+        }
+        batch.free();
+        store.free();
+    }
+}
@@ -0,0 +1,94 @@
+package com.thommil.animalsgo.gl.libgl;
+
+import com.thommil.animalsgo.Benchmarks;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * GlSpriteStore vertices generation of 16k sprites from 1 to max(cores, 4) threads : frame time per
+ * parallelism, same vertices are checked by GlSpriteStoreTest. Speedups are only meaningful on multi-core hosts.
+ */
+public class GlSpriteStoreParallelBenchmark {
+
+    private static final int SPRITES = 16000;
+
+    private static final int FRAMES = 300;
+
+    private static final int ROUNDS = 2;
+
+    private static final GlTexture TEXTURE = new GlTexture(){
+        @Override
+        public int getWidth(){
+            return 256;
+        }
+
+        @Override
+        public int getHeight(){
+            return 256;
+        }
+    };
+
+    private RecordingGlBackend mGl;
+
+    private int mMaxParallelism;
+
+    @Before
+    public void setUp(){
+        Benchmarks.assumeEnabled();
+        mGl = new RecordingGlBackend(3);
+        GlOperation.setBackend(mGl);
+        GlOperation.invalidate();
+        mMaxParallelism = Math.max(4, Runtime.getRuntime().availableProcessors());
+    }
+
+    @After
+    public void tearDown(){
+        GlSpriteStore.setParallelism(1);
+        if(mGl != null){
+            assertEquals(0, mGl.getErrors());
+        }
+    }
+
+    @Test
+    public void scaling(){
+        double single = 0;
+        for(int parallelism=1; parallelism <= mMaxParallelism; parallelism++){
+            GlSpriteStore.setParallelism(parallelism);
+            final GlSpriteStore store = newStore();
+            double frame = Double.MAX_VALUE;
+            for(int round=0; round < ROUNDS; round++){
+                final long start = System.nanoTime();
+                for(int index=0; index < FRAMES; index++){
+                    for(int id=0; id < SPRITES; id++){
+                        store.rotate(id, 1f);
+                    }
+                    store.commit();
+                    GlBuffer.endFrame();
+                }
+                frame = Math.min(frame, (System.nanoTime() - start) / (double) FRAMES);
+            }
+            if(parallelism == 1){
+                single = frame;
+            }
+            Benchmarks.report("GlSpriteStore.parallel", "%d sprites, %d threads (%d cores) : %.3f ms/frame (x%.2f)",
+                    SPRITES, parallelism, Runtime.getRuntime().availableProcessors(), frame / 1e6, single / frame);
+            store.free();
+        }
+    }
+
+    private static GlSpriteStore newStore(){
+        final GlSpriteStore store = new GlSpriteStore(TEXTURE, SPRITES);
+        for(int index=0; index < SPRITES; index++){
+            final int id = store.add();
+            store.clip(id, 0, 0, 16, 16).size(id, 0.01f, 0.02f).position(id, index * 1e-4f, 0)
+                    .rotation(id, index % 360).color(id, 1f, 0.5f, 0.25f, 1f);
+        }
+        store.setVertexAttribHandles(0, 1, 2);
+        store.allocate(GlBuffer.USAGE_DYNAMIC_DRAW, GlBuffer.TARGET_ARRAY_BUFFER, false);
+        return store;
+    }
+}
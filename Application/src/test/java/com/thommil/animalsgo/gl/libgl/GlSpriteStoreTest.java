@@ -0,0 +1,219 @@
+package com.thommil.animalsgo.gl.libgl;
+
+import com.thommil.animalsgo.utils.ByteBufferPool;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.FloatBuffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+/**
+ * Sprites ids and generated vertices of GlSpriteStore
+ */
+public class GlSpriteStoreTest {
+
+    private static final GlTexture TEXTURE = new GlTexture(){
+        @Override
+        public int getWidth(){
+            return 256;
+        }
+
+        @Override
+        public int getHeight(){
+            return 256;
+        }
+    };
+
+    private RecordingGlBackend mGl;
+
+    private GlSpriteStore mStore;
+
+    @Before
+    public void setUp(){
+        mGl = new RecordingGlBackend();
+        GlOperation.setBackend(mGl);
+        GlOperation.invalidate();
+        mStore = new GlSpriteStore(TEXTURE, 4);
+    }
+
+    @After
+    public void tearDown(){
+        GlSpriteStore.setParallelism(1);
+        mStore.free();
+        assertEquals(0, mGl.getErrors());
+    }
+
+    @Test
+    public void removedIdIsReused(){
+        final int first = mStore.add();
+        final int second = mStore.add();
+        mStore.remove(first);
+        assertEquals(1, mStore.getSpritesCount());
+        assertEquals(first, mStore.add());
+        mStore.remove(first);
+        mStore.remove(second);
+        assertEquals(0, mStore.getSpritesCount());
+    }
+
+    @Test
+    public void removeTwiceIsRejected(){
+        final int id = mStore.add();
+        mStore.add();
+        mStore.remove(id);
+        assertRemoveRejected(id);
+        //Not pushed twice on the free stack
+        assertEquals(1, mStore.getSpritesCount());
+        final int reused = mStore.add();
+        assertEquals(id, reused);
+        assertEquals(2, mStore.add());
+    }
+
+    @Test
+    public void unknownIdIsRejected(){
+        mStore.add();
+        assertRemoveRejected(-1);
+        assertRemoveRejected(1);
+        assertRemoveRejected(mStore.getCapacity());
+        assertEquals(1, mStore.getSpritesCount());
+    }
+
+    @Test
+    public void clearForgetsRemovedIds(){
+        final int id = mStore.add();
+        mStore.remove(id);
+        mStore.clear();
+        assertEquals(0, mStore.add());
+        mStore.remove(0);
+        assertEquals(0, mStore.getSpritesCount());
+    }
+
+    @Test
+    public void sameVerticesAsColoredSprite(){
+        final GlColoredSprite sprite = new GlColoredSprite(TEXTURE, 16, 32, 64, 32);
+        final int id = mStore.add();
+        mStore.clip(id, 16, 32, 64, 32).size(id, 0.3f, 0.2f).position(id, 0.1f, -0.2f).color(id, 1f, 0.5f, 0.25f, 0.75f);
+        sprite.size(0.3f, 0.2f).position(0.1f, -0.2f);
+        sprite.setColor(1f, 0.5f, 0.25f, 0.75f);
+
+        for(final float rotation : new float[]{0f, 30f}){
+            mStore.rotation(id, rotation);
+            sprite.rotation(rotation);
+            sprite.mMustUpdate = true;
+            mStore.commit(false);
+            sprite.commit(false);
+            final FloatBuffer storeBuffer = (FloatBuffer) mStore.buffer;
+            final FloatBuffer spriteBuffer = (FloatBuffer) sprite.buffer;
+            for(int index=0; index < sprite.size / sprite.datasize; index++){
+                //Packed colors compared as bits
+                if(Float.floatToRawIntBits(storeBuffer.get(index)) != Float.floatToRawIntBits(spriteBuffer.get(index))){
+                    assertEquals("rotation " + rotation + " float " + index, spriteBuffer.get(index), storeBuffer.get(index), 1e-6f);
+                }
+            }
+        }
+        sprite.free();
+    }
+
+    @Test
+    public void releasedLocalBufferIsGeneratedAgain(){
+        fill(mStore, 8);
+        mStore.commit(false);
+        mStore.allocate(GlBuffer.USAGE_DYNAMIC_DRAW, GlBuffer.TARGET_ARRAY_BUFFER, true);
+
+        //Another holder of the pooled buffer overwrites it
+        final FloatBuffer pooled = ByteBufferPool.getInstance().getDirectFloatBuffer(mStore.size >> 2);
+        for(int index=0; index < pooled.limit(); index++){
+            pooled.put(index, 999f);
+        }
+        ByteBufferPool.getInstance().returnDirectBuffer(pooled);
+
+        //Sprite 3 unmodified
+        for(int id=0; id < 8; id++){
+            if(id != 3){
+                mStore.translate(id, 0.5f, 0f);
+            }
+        }
+        mStore.commit(true);
+        assertSame("Pool did not hand back the same buffer", pooled, mStore.buffer);
+
+        final GlSpriteStore reference = new GlSpriteStore(TEXTURE, 4);
+        fill(reference, 8);
+        for(int id=0; id < 8; id++){
+            if(id != 3){
+                reference.translate(id, 0.5f, 0f);
+            }
+        }
+        reference.commit(false);
+        assertSameVertices(reference, mStore);
+        reference.free();
+    }
+
+    @Test
+    public void parallelSameVerticesAsSingleThread(){
+        final int sprites = GlSpriteStore.PARALLEL_THRESHOLD + GlSpriteStore.PARALLEL_RANGE;
+        GlSpriteStore.setParallelism(1);
+        final GlSpriteStore reference = new GlSpriteStore(TEXTURE, sprites);
+        fill(reference, sprites);
+        reference.commit(false);
+
+        GlSpriteStore.setParallelism(2);
+        fill(mStore, sprites);
+        //All sprites
+        mStore.commit(false);
+        assertSameVertices(reference, mStore);
+
+        //3 out of 4 sprites modified (above threshold), local buffer taken again from the pool
+        mStore.allocate(GlBuffer.USAGE_DYNAMIC_DRAW, GlBuffer.TARGET_ARRAY_BUFFER, true);
+        rotateThreeOutOfFour(mStore, reference, 0);
+        mStore.commit(false);
+        GlSpriteStore.setParallelism(1);
+        reference.commit(false);
+        assertSameVertices(reference, mStore);
+
+        //Other sprites modified, same local buffer
+        GlSpriteStore.setParallelism(2);
+        rotateThreeOutOfFour(mStore, reference, 1);
+        mStore.commit(false);
+        GlSpriteStore.setParallelism(1);
+        reference.commit(false);
+        assertSameVertices(reference, mStore);
+        reference.free();
+    }
+
+    private static void fill(final GlSpriteStore store, final int sprites){
+        for(int index=0; index < sprites; index++){
+            final int id = store.add();
+            store.clip(id, 0, 0, 16, 16).size(id, 0.1f, 0.2f).position(id, index * 0.5f, 0f).color(id, 1f, 0.5f, 0.25f, 1f);
+        }
+    }
+
+    private static void rotateThreeOutOfFour(final GlSpriteStore store, final GlSpriteStore reference, final int skipped){
+        for(int id=0; id < store.getSpritesCount(); id++){
+            if(id % 4 != skipped){
+                store.rotate(id, 7f);
+                reference.rotate(id, 7f);
+            }
+        }
+    }
+
+    private static void assertSameVertices(final GlSpriteStore expected, final GlSpriteStore actual){
+        final FloatBuffer expectedBuffer = (FloatBuffer) expected.buffer;
+        final FloatBuffer actualBuffer = (FloatBuffer) actual.buffer;
+        for(int index=0; index < expected.getSpritesCount() * expected.size / expected.getCapacity() / expected.datasize; index++){
+            assertEquals("float " + index, Float.floatToRawIntBits(expectedBuffer.get(index)), Float.floatToRawIntBits(actualBuffer.get(index)));
+        }
+    }
+
+    private void assertRemoveRejected(final int id){
+        try {
+            mStore.remove(id);
+            fail("Sprite " + id + " removed");
+        } catch (IllegalArgumentException iae) {
+            //Expected
+        }
+    }
+}
@@ -0,0 +1,1494 @@
+package com.thommil.animalsgo.gl.libgl;
+
+import android.graphics.Bitmap;
+import android.opengl.GLES11Ext;
+import android.opengl.GLES20;
+import android.opengl.GLES30;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * In memory {@link GlBackend} for headless runs and call count benchmarks :
+ *	<ul>
+ * 	<li>emulates object names (buffers, textures, programs, shaders, FBOs, RBOs, VAOs, fences)</li>
+ * 	<li>tracks bindings, enabled caps, viewport and buffer sizes</li>
+ * 	<li>counts calls per entry point, draw calls, drawn vertices and uploaded bytes</li>
+ * 	<li>raises GL errors on obvious misuses (upload without buffer, out of range update ...)</li>
+ *	</ul>
+ *
+ * Nothing is rendered, shaders always compile and link, read pixels are left untouched. Active attributes
+ * and uniforms are reported from a minimal parsing of shaders sources (declarations used in source).
+ * Counters are cleared by reset(), objects and bindings are kept. Not thread safe (GL thread).
+ *
+ * 	@author Thomas MILLET
+ *
+ */
+public class RecordingGlBackend implements GlBackend {
+
+	private static final String TAG = "A_GO/RecordingGlBackend";
+
+	/**
+	 * Emulated GLES major version (2 or 3)
+	 */
+	private final int mVersion;
+
+	// GL_EXTENSIONS string, camera external image (ESSL 3.00 too on GLES3) by default
+	private String mExtensions;
+
+	/**
+	 * Next object name (0 is reserved)
+	 */
+	private int mNextName = 1;
+
+	/**
+	 * Live objects, buffers are mapped to their size in bytes
+	 */
+	private final Map<Integer, Integer> mBuffers = new HashMap<>();
+	private final Set<Integer> mTextures = new HashSet<>();
+	private final Map<Integer, Integer> mShaders = new HashMap<>();
+	private final Map<Integer, Map<String, int[]>> mPrograms = new HashMap<>();
+	private final Set<Integer> mUnlinkedPrograms = new HashSet<>();
+	private final Set<Integer> mFramebuffers = new HashSet<>();
+	private final Set<Integer> mRenderbuffers = new HashSet<>();
+	private final Set<Integer> mVertexArrays = new HashSet<>();
+	private final Set<Long> mSyncs = new HashSet<>();
+
+	/**
+	 * Shaders sources and programs link inputs (attached shaders, bound attributes locations).
+	 * Program variables are keyed by "attribute:", "uniform:" or "block:" + name, values are {location, type, size}.
+	 */
+	private final Map<Integer, String> mShaderSources = new HashMap<>();
+	private final Map<Integer, Set<Integer>> mAttachedShaders = new HashMap<>();
+	private final Map<Integer, Map<String, Integer>> mBoundAttributes = new HashMap<>();
+
+	/**
+	 * Bindings
+	 */
+	private int mArrayBuffer, mElementBuffer, mUniformBuffer, mVertexArray, mProgram, mFramebuffer, mRenderbuffer;
+	private final Map<Integer, Integer> mUniformBufferBindings = new HashMap<>();
+	private int mActiveTexture = 0;
+	private final Map<Long, Integer> mBoundTextures = new HashMap<>();
+
+	/**
+	 * Mapped range (target, offset, length), length < 0 if not mapped
+	 */
+	private int mMappedTarget, mMappedOffset, mMappedLength = -1;
+
+	/**
+	 * States
+	 */
+	private final Set<Integer> mEnabledCaps = new HashSet<>();
+	private final int[] mViewport = new int[4];
+
+	/**
+	 * First error since last glGetError()
+	 */
+	private int mError = GLES20.GL_NO_ERROR;
+
+	/**
+	 * Counters
+	 */
+	private final Map<String, int[]> mCallCounts = new HashMap<>();
+	private int mCalls, mDrawCalls, mErrors;
+	private long mDrawnVertices, mUploadedBytes;
+
+	/**
+	 * Binary format returned by glGetProgramBinary(), binaries encode the program locations
+	 */
+	public static final int PROGRAM_BINARY_FORMAT = 0x7E57;
+
+	/**
+	 * Header of emulated program binaries
+	 */
+	private static final String BINARY_HEADER = "RECORDING\n";
+
+	/**
+	 * Uniform buffer binding points (GLES 3.0 minimum)
+	 */
+	private static final int MAX_UNIFORM_BUFFER_BINDINGS = 24;
+
+	/**
+	 * Vertex attributes locations (as reported by glGetIntegerv)
+	 */
+	private static final int MAX_VERTEX_ATTRIBS = 16;
+
+	/**
+	 * Camera external image extensions (ESSL 1.00 and ESSL 3.00)
+	 */
+	public static final String EXTERNAL_IMAGE_EXTENSION = "GL_OES_EGL_image_external";
+	public static final String EXTERNAL_IMAGE_ESSL3_EXTENSION = "GL_OES_EGL_image_external_essl3";
+
+	/**
+	 * Shaders parsing
+	 */
+	private static final Pattern COMMENT_PATTERN = Pattern.compile("//[^\\n]*|/\\*.*?\\*/", Pattern.DOTALL);
+	private static final String PRECISION = "(?:(?:lowp|mediump|highp)\\s+)?";
+	private static final Pattern DECLARATION_PATTERN = Pattern.compile(PRECISION + "(\\w+)\\s+(\\w+)\\s*(?:\\[\\s*(\\d+)\\s*\\])?\\s*;");
+	private static final Pattern UNIFORM_DECLARATION_PATTERN = Pattern.compile("\\buniform\\s+" + DECLARATION_PATTERN.pattern());
+	private static final Pattern ATTRIBUTE_DECLARATION_PATTERN = Pattern.compile("^\\s*(?:attribute|in)\\s+" + DECLARATION_PATTERN.pattern(), Pattern.MULTILINE);
+	private static final Pattern BLOCK_PATTERN = Pattern.compile("\\buniform\\s+(\\w+)\\s*\\{([^}]*)\\}\\s*;");
+	private static final Map<String, Integer> GLSL_TYPES = new HashMap<>();
+	static{
+		GLSL_TYPES.put("float", GLES20.GL_FLOAT);
+		GLSL_TYPES.put("vec2", GLES20.GL_FLOAT_VEC2);
+		GLSL_TYPES.put("vec3", GLES20.GL_FLOAT_VEC3);
+		GLSL_TYPES.put("vec4", GLES20.GL_FLOAT_VEC4);
+		GLSL_TYPES.put("mat2", GLES20.GL_FLOAT_MAT2);
+		GLSL_TYPES.put("mat3", GLES20.GL_FLOAT_MAT3);
+		GLSL_TYPES.put("mat4", GLES20.GL_FLOAT_MAT4);
+		GLSL_TYPES.put("int", GLES20.GL_INT);
+		GLSL_TYPES.put("ivec2", GLES20.GL_INT_VEC2);
+		GLSL_TYPES.put("ivec3", GLES20.GL_INT_VEC3);
+		GLSL_TYPES.put("ivec4", GLES20.GL_INT_VEC4);
+		GLSL_TYPES.put("bool", GLES20.GL_BOOL);
+		GLSL_TYPES.put("sampler2D", GLES20.GL_SAMPLER_2D);
+		GLSL_TYPES.put("samplerCube", GLES20.GL_SAMPLER_CUBE);
+		GLSL_TYPES.put("samplerExternalOES", GLES11Ext.GL_SAMPLER_EXTERNAL_OES);
+	}
+
+	/**
+	 * Constructor emulating GLES 2.0
+	 */
+	public RecordingGlBackend(){
+		this(2);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param version The GLES major version to emulate (2 or 3), drives GL_SHADING_LANGUAGE_VERSION
+	 */
+	public RecordingGlBackend(final int version){
+		mVersion = version;
+		mExtensions = (version >= 3) ? EXTERNAL_IMAGE_EXTENSION + " " + EXTERNAL_IMAGE_ESSL3_EXTENSION : EXTERNAL_IMAGE_EXTENSION;
+	}
+
+	/**
+	 * Sets the extensions string returned for GL_EXTENSIONS (space separated)
+	 */
+	public void setExtensions(final String extensions){
+		mExtensions = extensions;
+	}
+
+	/**
+	 * Clear counters, objects, bindings and states are kept
+	 */
+	public void reset(){
+		mCallCounts.clear();
+		mCalls = mDrawCalls = mErrors = 0;
+		mDrawnVertices = mUploadedBytes = 0;
+	}
+
+	/**
+	 * @return The number of GL calls since last reset()
+	 */
+	public int getCalls(){
+		return mCalls;
+	}
+
+	/**
+	 * @param name The GL entry point name (ie "glBindBuffer")
+	 *
+	 * @return The number of calls to this entry point since last reset()
+	 */
+	public int getCallCount(final String name){
+		final int[] count = mCallCounts.get(name);
+		return (count != null) ? count[0] : 0;
+	}
+
+	/**
+	 * @return A copy of call counts per entry point since last reset()
+	 */
+	public Map<String, Integer> getCallCounts(){
+		final Map<String, Integer> callCounts = new HashMap<>();
+		for(Map.Entry<String, int[]> entry : mCallCounts.entrySet()){
+			callCounts.put(entry.getKey(), entry.getValue()[0]);
+		}
+		return callCounts;
+	}
+
+	/**
+	 * @return The number of glDrawArrays/glDrawElements/glDrawArraysInstanced since last reset()
+	 */
+	public int getDrawCalls(){
+		return mDrawCalls;
+	}
+
+	/**
+	 * @return The number of vertices (or indices) drawn since last reset()
+	 */
+	public long getDrawnVertices(){
+		return mDrawnVertices;
+	}
+
+	/**
+	 * @return The number of bytes uploaded to buffers and textures since last reset() (bitmaps excluded)
+	 */
+	public long getUploadedBytes(){
+		return mUploadedBytes;
+	}
+
+	/**
+	 * @return The number of GL errors raised since last reset()
+	 */
+	public int getErrors(){
+		return mErrors;
+	}
+
+	/**
+	 * @return The number of live GL objects
+	 */
+	public int getLiveObjects(){
+		return mBuffers.size() + mTextures.size() + mShaders.size() + mPrograms.size() + mFramebuffers.size()
+				+ mRenderbuffers.size() + mVertexArrays.size() + mSyncs.size();
+	}
+
+	/**
+	 * @param target GL_ARRAY_BUFFER, GL_ELEMENT_ARRAY_BUFFER or GL_UNIFORM_BUFFER
+	 *
+	 * @return The buffer bound to target
+	 */
+	public int getBoundBuffer(final int target){
+		switch(target){
+			case GLES20.GL_ELEMENT_ARRAY_BUFFER :
+				return mElementBuffer;
+			case GLES30.GL_UNIFORM_BUFFER :
+				return mUniformBuffer;
+			default :
+				return mArrayBuffer;
+		}
+	}
+
+	/**
+	 * @param index The uniform buffer binding point
+	 *
+	 * @return The buffer bound to binding point by glBindBufferBase()
+	 */
+	public int getUniformBufferBinding(final int index){
+		final Integer buffer = mUniformBufferBindings.get(index);
+		return (buffer != null) ? buffer : 0;
+	}
+
+	/**
+	 * @param unit The texture unit index
+	 * @param target The texture target
+	 *
+	 * @return The texture bound to target on unit
+	 */
+	public int getBoundTexture(final int unit, final int target){
+		final Integer texture = mBoundTextures.get(textureKey(unit, target));
+		return (texture != null) ? texture : 0;
+	}
+
+	/**
+	 * @return The program in use
+	 */
+	public int getCurrentProgram(){
+		return mProgram;
+	}
+
+	/**
+	 * @return The bound VAO
+	 */
+	public int getBoundVertexArray(){
+		return mVertexArray;
+	}
+
+	/**
+	 * @return The bound FBO
+	 */
+	public int getBoundFramebuffer(){
+		return mFramebuffer;
+	}
+
+	/**
+	 * @param cap The capability (GL_BLEND ...)
+	 *
+	 * @return true if the capability is enabled
+	 */
+	public boolean isEnabled(final int cap){
+		return mEnabledCaps.contains(cap);
+	}
+
+	/**
+	 * @return A copy of the viewport (x, y, width, height)
+	 */
+	public int[] getViewport(){
+		return mViewport.clone();
+	}
+
+	private void record(final String name){
+		mCalls++;
+		final int[] count = mCallCounts.get(name);
+		if(count == null){
+			mCallCounts.put(name, new int[]{1});
+		}
+		else{
+			count[0]++;
+		}
+	}
+
+	private void error(final int error, final String name){
+		//android.util.//Log.w(TAG, name+" : error "+error);
+		mErrors++;
+		if(mError == GLES20.GL_NO_ERROR){
+			mError = error;
+		}
+	}
+
+	private int newName(){
+		return mNextName++;
+	}
+
+	private void gen(final Set<Integer> objects, final int n, final int[] names, final int offset){
+		for(int index=0; index < n; index++){
+			names[offset + index] = newName();
+			objects.add(names[offset + index]);
+		}
+	}
+
+	private static long textureKey(final int unit, final int target){
+		return ((long) unit << 32) | (target & 0xffffffffL);
+	}
+
+	private int getBoundBufferSize(final int target, final String name){
+		final int buffer = getBoundBuffer(target);
+		final Integer size = mBuffers.get(buffer);
+		if(buffer == 0 || size == null){
+			error(GLES20.GL_INVALID_OPERATION, name);
+			return -1;
+		}
+		return size;
+	}
+
+	private static int getPixelSize(final int format, final int type){
+		if(type != GLES20.GL_UNSIGNED_BYTE){
+			return 2;
+		}
+		switch(format){
+			case GLES20.GL_ALPHA :
+			case GLES20.GL_LUMINANCE :
+				return 1;
+			case GLES20.GL_LUMINANCE_ALPHA :
+				return 2;
+			case GLES20.GL_RGB :
+				return 3;
+			default :
+				return 4;
+		}
+	}
+
+	//States
+
+	@Override
+	public void glEnable(final int cap){
+		record("glEnable");
+		mEnabledCaps.add(cap);
+	}
+
+	@Override
+	public void glDisable(final int cap){
+		record("glDisable");
+		mEnabledCaps.remove(cap);
+	}
+
+	@Override
+	public void glViewport(final int x, final int y, final int width, final int height){
+		record("glViewport");
+		if(width < 0 || height < 0){
+			error(GLES20.GL_INVALID_VALUE, "glViewport");
+			return;
+		}
+		mViewport[0] = x;
+		mViewport[1] = y;
+		mViewport[2] = width;
+		mViewport[3] = height;
+	}
+
+	@Override
+	public void glScissor(final int x, final int y, final int width, final int height){
+		record("glScissor");
+	}
+
+	@Override
+	public void glBlendColor(final float red, final float green, final float blue, final float alpha){
+		record("glBlendColor");
+	}
+
+	@Override
+	public void glBlendFunc(final int sfactor, final int dfactor){
+		record("glBlendFunc");
+	}
+
+	@Override
+	public void glBlendEquation(final int mode){
+		record("glBlendEquation");
+	}
+
+	@Override
+	public void glStencilFunc(final int func, final int ref, final int mask){
+		record("glStencilFunc");
+	}
+
+	@Override
+	public void glStencilOp(final int fail, final int zfail, final int zpass){
+		record("glStencilOp");
+	}
+
+	@Override
+	public void glStencilMask(final int mask){
+		record("glStencilMask");
+	}
+
+	@Override
+	public void glDepthFunc(final int func){
+		record("glDepthFunc");
+	}
+
+	@Override
+	public void glDepthMask(final boolean flag){
+		record("glDepthMask");
+	}
+
+	@Override
+	public void glColorMask(final boolean red, final boolean green, final boolean blue, final boolean alpha){
+		record("glColorMask");
+	}
+
+	@Override
+	public void glFrontFace(final int mode){
+		record("glFrontFace");
+	}
+
+	@Override
+	public void glCullFace(final int mode){
+		record("glCullFace");
+	}
+
+	@Override
+	public void glClearColor(final float red, final float green, final float blue, final float alpha){
+		record("glClearColor");
+	}
+
+	@Override
+	public void glClearDepthf(final float depth){
+		record("glClearDepthf");
+	}
+
+	@Override
+	public void glClearStencil(final int s){
+		record("glClearStencil");
+	}
+
+	@Override
+	public void glClear(final int mask){
+		record("glClear");
+	}
+
+	@Override
+	public void glFinish(){
+		record("glFinish");
+	}
+
+	//Queries
+
+	@Override
+	public int glGetError(){
+		record("glGetError");
+		final int error = mError;
+		mError = GLES20.GL_NO_ERROR;
+		return error;
+	}
+
+	@Override
+	public String glGetString(final int name){
+		record("glGetString");
+		switch(name){
+			case GLES20.GL_SHADING_LANGUAGE_VERSION :
+				return "OpenGL ES GLSL ES " + mVersion + ".00";
+			case GLES20.GL_VERSION :
+				return "OpenGL ES " + mVersion + ".0";
+			case GLES20.GL_RENDERER :
+				return "Recording";
+			case GLES20.GL_EXTENSIONS :
+				return mExtensions;
+			default :
+				return "";
+		}
+	}
+
+	@Override
+	public void glGetIntegerv(final int pname, final int[] params, final int offset){
+		record("glGetIntegerv");
+		switch(pname){
+			case GLES20.GL_VIEWPORT :
+				System.arraycopy(mViewport, 0, params, offset, 4);
+				break;
+			case GLES20.GL_CURRENT_PROGRAM :
+				params[offset] = mProgram;
+				break;
+			case GLES20.GL_ARRAY_BUFFER_BINDING :
+				params[offset] = mArrayBuffer;
+				break;
+			case GLES20.GL_ELEMENT_ARRAY_BUFFER_BINDING :
+				params[offset] = mElementBuffer;
+				break;
+			case GLES20.GL_FRAMEBUFFER_BINDING :
+				params[offset] = mFramebuffer;
+				break;
+			case GLES20.GL_MAX_TEXTURE_IMAGE_UNITS :
+			case GLES20.GL_MAX_COMBINED_TEXTURE_IMAGE_UNITS :
+			case GLES20.GL_MAX_VERTEX_ATTRIBS :
+				params[offset] = 16;
+				break;
+			case GLES20.GL_MAX_TEXTURE_SIZE :
+			case GLES20.GL_MAX_RENDERBUFFER_SIZE :
+				params[offset] = 4096;
+				break;
+			case GLES30.GL_NUM_PROGRAM_BINARY_FORMATS :
+				params[offset] = (mVersion >= 3) ? 1 : 0;
+				break;
+			default :
+				params[offset] = 0;
+		}
+	}
+
+	@Override
+	public void glGetFloatv(final int pname, final float[] params, final int offset){
+		record("glGetFloatv");
+		if(pname == GLES20.GL_VIEWPORT){
+			for(int index=0; index < 4; index++){
+				params[offset + index] = mViewport[index];
+			}
+		}
+		else{
+			params[offset] = 0;
+		}
+	}
+
+	//Buffers & VAOs
+
+	@Override
+	public void glGenBuffers(final int n, final int[] buffers, final int offset){
+		record("glGenBuffers");
+		for(int index=0; index < n; index++){
+			buffers[offset + index] = newName();
+			mBuffers.put(buffers[offset + index], 0);
+		}
+	}
+
+	@Override
+	public void glDeleteBuffers(final int n, final int[] buffers, final int offset){
+		record("glDeleteBuffers");
+		for(int index=0; index < n; index++){
+			final int buffer = buffers[offset + index];
+			if(mBuffers.remove(buffer) != null){
+				if(mArrayBuffer == buffer){
+					mArrayBuffer = 0;
+				}
+				if(mElementBuffer == buffer){
+					mElementBuffer = 0;
+				}
+				if(mUniformBuffer == buffer){
+					mUniformBuffer = 0;
+				}
+				mUniformBufferBindings.values().removeAll(Collections.singleton(buffer));
+			}
+		}
+	}
+
+	@Override
+	public void glBindBuffer(final int target, final int buffer){
+		record("glBindBuffer");
+		//GLES creates unknown names on bind
+		if(buffer != 0 && !mBuffers.containsKey(buffer)){
+			mBuffers.put(buffer, 0);
+		}
+		switch(target){
+			case GLES20.GL_ARRAY_BUFFER :
+				mArrayBuffer = buffer;
+				break;
+			case GLES20.GL_ELEMENT_ARRAY_BUFFER :
+				mElementBuffer = buffer;
+				break;
+			case GLES30.GL_UNIFORM_BUFFER :
+				if(mVersion < 3){
+					error(GLES20.GL_INVALID_ENUM, "glBindBuffer");
+					return;
+				}
+				mUniformBuffer = buffer;
+				break;
+			default :
+				error(GLES20.GL_INVALID_ENUM, "glBindBuffer");
+		}
+	}
+
+	@Override
+	public void glBindBufferBase(final int target, final int index, final int buffer){
+		record("glBindBufferBase");
+		if(mVersion < 3 || target != GLES30.GL_UNIFORM_BUFFER){
+			error(GLES20.GL_INVALID_ENUM, "glBindBufferBase");
+			return;
+		}
+		if(index < 0 || index >= MAX_UNIFORM_BUFFER_BINDINGS || (buffer != 0 && !mBuffers.containsKey(buffer))){
+			error(GLES20.GL_INVALID_VALUE, "glBindBufferBase");
+			return;
+		}
+		//Also binds the generic binding point
+		mUniformBuffer = buffer;
+		mUniformBufferBindings.put(index, buffer);
+	}
+
+	@Override
+	public void glBufferData(final int target, final int size, final Buffer data, final int usage){
+		record("glBufferData");
+		final int buffer = getBoundBuffer(target);
+		if(buffer == 0){
+			error(GLES20.GL_INVALID_OPERATION, "glBufferData");
+			return;
+		}
+		if(size < 0){
+			error(GLES20.GL_INVALID_VALUE, "glBufferData");
+			return;
+		}
+		mBuffers.put(buffer, size);
+		if(data != null){
+			mUploadedBytes += size;
+		}
+	}
+
+	@Override
+	public void glBufferSubData(final int target, final int offset, final int size, final Buffer data){
+		record("glBufferSubData");
+		final int bufferSize = getBoundBufferSize(target, "glBufferSubData");
+		if(bufferSize < 0){
+			return;
+		}
+		if(offset < 0 || size < 0 || offset + size > bufferSize){
+			error(GLES20.GL_INVALID_VALUE, "glBufferSubData");
+			return;
+		}
+		mUploadedBytes += size;
+	}
+
+	@Override
+	public Buffer glMapBufferRange(final int target, final int offset, final int length, final int access){
+		record("glMapBufferRange");
+		final int bufferSize = getBoundBufferSize(target, "glMapBufferRange");
+		if(bufferSize < 0){
+			return null;
+		}
+		if(mVersion < 3 || mMappedLength >= 0){
+			error(GLES20.GL_INVALID_OPERATION, "glMapBufferRange");
+			return null;
+		}
+		if(offset < 0 || length <= 0 || offset + length > bufferSize){
+			error(GLES20.GL_INVALID_VALUE, "glMapBufferRange");
+			return null;
+		}
+		mMappedTarget = target;
+		mMappedOffset = offset;
+		mMappedLength = length;
+		return ByteBuffer.allocateDirect(length).order(ByteOrder.nativeOrder());
+	}
+
+	@Override
+	public boolean glUnmapBuffer(final int target){
+		record("glUnmapBuffer");
+		if(mMappedLength < 0 || mMappedTarget != target){
+			error(GLES20.GL_INVALID_OPERATION, "glUnmapBuffer");
+			return false;
+		}
+		mUploadedBytes += mMappedLength;
+		mMappedLength = -1;
+		return true;
+	}
+
+	@Override
+	public void glGenVertexArrays(final int n, final int[] arrays, final int offset){
+		record("glGenVertexArrays");
+		gen(mVertexArrays, n, arrays, offset);
+	}
+
+	@Override
+	public void glDeleteVertexArrays(final int n, final int[] arrays, final int offset){
+		record("glDeleteVertexArrays");
+		for(int index=0; index < n; index++){
+			if(mVertexArrays.remove(arrays[offset + index]) && mVertexArray == arrays[offset + index]){
+				mVertexArray = 0;
+			}
+		}
+	}
+
+	@Override
+	public void glBindVertexArray(final int array){
+		record("glBindVertexArray");
+		if(array != 0 && !mVertexArrays.contains(array)){
+			error(GLES20.GL_INVALID_OPERATION, "glBindVertexArray");
+			return;
+		}
+		mVertexArray = array;
+	}
+
+	@Override
+	public long glFenceSync(final int condition, final int flags){
+		record("glFenceSync");
+		final long sync = newName();
+		mSyncs.add(sync);
+		return sync;
+	}
+
+	@Override
+	public int glClientWaitSync(final long sync, final int flags, final long timeout){
+		record("glClientWaitSync");
+		if(!mSyncs.contains(sync)){
+			error(GLES20.GL_INVALID_VALUE, "glClientWaitSync");
+			return GLES30.GL_WAIT_FAILED;
+		}
+		return GLES30.GL_ALREADY_SIGNALED;
+	}
+
+	@Override
+	public void glDeleteSync(final long sync){
+		record("glDeleteSync");
+		mSyncs.remove(sync);
+	}
+
+	//Attributes & draws
+
+	@Override
+	public void glEnableVertexAttribArray(final int index){
+		record("glEnableVertexAttribArray");
+	}
+
+	@Override
+	public void glDisableVertexAttribArray(final int index){
+		record("glDisableVertexAttribArray");
+	}
+
+	@Override
+	public void glVertexAttribPointer(final int index, final int size, final int type, final boolean normalized, final int stride, final int offset){
+		record("glVertexAttribPointer");
+		if(mArrayBuffer == 0){
+			error(GLES20.GL_INVALID_OPERATION, "glVertexAttribPointer");
+		}
+	}
+
+	@Override
+	public void glVertexAttribPointer(final int index, final int size, final int type, final boolean normalized, final int stride, final Buffer ptr){
+		record("glVertexAttribPointer");
+	}
+
+	@Override
+	public void glVertexAttribDivisor(final int index, final int divisor){
+		record("glVertexAttribDivisor");
+		if(mVersion < 3){
+			error(GLES20.GL_INVALID_OPERATION, "glVertexAttribDivisor");
+		}
+	}
+
+	@Override
+	public void glDrawArrays(final int mode, final int first, final int count){
+		record("glDrawArrays");
+		mDrawCalls++;
+		mDrawnVertices += count;
+	}
+
+	@Override
+	public void glDrawElements(final int mode, final int count, final int type, final int offset){
+		record("glDrawElements");
+		if(mElementBuffer == 0){
+			error(GLES20.GL_INVALID_OPERATION, "glDrawElements");
+			return;
+		}
+		mDrawCalls++;
+		mDrawnVertices += count;
+	}
+
+	@Override
+	public void glDrawElements(final int mode, final int count, final int type, final Buffer indices){
+		record("glDrawElements");
+		mDrawCalls++;
+		mDrawnVertices += count;
+	}
+
+	@Override
+	public void glDrawArraysInstanced(final int mode, final int first, final int count, final int instanceCount){
+		record("glDrawArraysInstanced");
+		if(mVersion < 3){
+			error(GLES20.GL_INVALID_OPERATION, "glDrawArraysInstanced");
+			return;
+		}
+		mDrawCalls++;
+		mDrawnVertices += (long) count * instanceCount;
+	}
+
+	//Textures
+
+	@Override
+	public void glActiveTexture(final int texture){
+		record("glActiveTexture");
+		mActiveTexture = texture - GLES20.GL_TEXTURE0;
+	}
+
+	@Override
+	public void glGenTextures(final int n, final int[] textures, final int offset){
+		record("glGenTextures");
+		gen(mTextures, n, textures, offset);
+	}
+
+	@Override
+	public void glDeleteTextures(final int n, final int[] textures, final int offset){
+		record("glDeleteTextures");
+		for(int index=0; index < n; index++){
+			if(mTextures.remove(textures[offset + index])){
+				mBoundTextures.values().removeAll(Collections.singleton(textures[offset + index]));
+			}
+		}
+	}
+
+	@Override
+	public void glBindTexture(final int target, final int texture){
+		record("glBindTexture");
+		if(texture != 0){
+			mTextures.add(texture);
+		}
+		mBoundTextures.put(textureKey(mActiveTexture, target), texture);
+	}
+
+	@Override
+	public void glTexParameteri(final int target, final int pname, final int param){
+		record("glTexParameteri");
+	}
+
+	@Override
+	public void glTexImage2D(final int target, final int level, final int internalformat, final int width, final int height, final int border, final int format, final int type, final Buffer pixels){
+		record("glTexImage2D");
+		if(getBoundTexture(mActiveTexture, target) == 0){
+			error(GLES20.GL_INVALID_OPERATION, "glTexImage2D");
+			return;
+		}
+		if(pixels != null){
+			mUploadedBytes += (long) width * height * getPixelSize(format, type);
+		}
+	}
+
+	@Override
+	public void glTexImage2D(final int target, final int level, final int internalformat, final Bitmap bitmap){
+		record("glTexImage2D");
+		if(getBoundTexture(mActiveTexture, target) == 0){
+			error(GLES20.GL_INVALID_OPERATION, "glTexImage2D");
+		}
+	}
+
+	@Override
+	public void glGenerateMipmap(final int target){
+		record("glGenerateMipmap");
+	}
+
+	//Programs
+
+	@Override
+	public int glCreateShader(final int type){
+		record("glCreateShader");
+		final int shader = newName();
+		mShaders.put(shader, type);
+		return shader;
+	}
+
+	@Override
+	public void glShaderSource(final int shader, final String string){
+		record("glShaderSource");
+		if(!mShaders.containsKey(shader)){
+			error(GLES20.GL_INVALID_VALUE, "glShaderSource");
+			return;
+		}
+		mShaderSources.put(shader, string);
+	}
+
+	@Override
+	public void glCompileShader(final int shader){
+		record("glCompileShader");
+	}
+
+	@Override
+	public void glGetShaderiv(final int shader, final int pname, final int[] params, final int offset){
+		record("glGetShaderiv");
+		params[offset] = (pname == GLES20.GL_COMPILE_STATUS) ? GLES20.GL_TRUE : 0;
+	}
+
+	@Override
+	public void glDeleteShader(final int shader){
+		record("glDeleteShader");
+		mShaders.remove(shader);
+		mShaderSources.remove(shader);
+	}
+
+	@Override
+	public int glCreateProgram(){
+		record("glCreateProgram");
+		final int program = newName();
+		mPrograms.put(program, new LinkedHashMap<String, int[]>());
+		mAttachedShaders.put(program, new HashSet<Integer>());
+		mBoundAttributes.put(program, new HashMap<String, Integer>());
+		mUnlinkedPrograms.add(program);
+		return program;
+	}
+
+	@Override
+	public void glAttachShader(final int program, final int shader){
+		record("glAttachShader");
+		if(!mPrograms.containsKey(program) || !mShaders.containsKey(shader)){
+			error(GLES20.GL_INVALID_VALUE, "glAttachShader");
+			return;
+		}
+		mAttachedShaders.get(program).add(shader);
+	}
+
+	@Override
+	public void glBindAttribLocation(final int program, final int index, final String name){
+		record("glBindAttribLocation");
+		if(!mPrograms.containsKey(program) || index < 0 || index >= MAX_VERTEX_ATTRIBS){
+			error(GLES20.GL_INVALID_VALUE, "glBindAttribLocation");
+			return;
+		}
+		if(name.startsWith("gl_")){
+			error(GLES20.GL_INVALID_OPERATION, "glBindAttribLocation");
+			return;
+		}
+		//Applied at next link
+		mBoundAttributes.get(program).put(name, index);
+	}
+
+	@Override
+	public void glLinkProgram(final int program){
+		record("glLinkProgram");
+		final Map<String, int[]> variables = mPrograms.get(program);
+		if(variables == null){
+			error(GLES20.GL_INVALID_VALUE, "glLinkProgram");
+			return;
+		}
+		variables.clear();
+		final List<String> attributes = new ArrayList<>();
+		final List<String> uniforms = new ArrayList<>();
+		final List<String> blocks = new ArrayList<>();
+		for(int shader : mAttachedShaders.get(program)){
+			final String source = mShaderSources.get(shader);
+			if(source != null){
+				parseShader(mShaders.get(shader), source, attributes, uniforms, blocks);
+			}
+		}
+
+		//Bound attributes first, others on lowest free locations
+		final Map<String, Integer> boundAttributes = mBoundAttributes.get(program);
+		final Set<Integer> usedLocations = new HashSet<>();
+		for(String attribute : attributes){
+			final Integer location = boundAttributes.get(attribute.substring(0, attribute.indexOf(':')));
+			if(location != null){
+				usedLocations.add(location);
+			}
+		}
+		int nextLocation = 0;
+		for(String attribute : attributes){
+			final String[] declaration = attribute.split(":");
+			Integer location = boundAttributes.get(declaration[0]);
+			if(location == null){
+				while(usedLocations.contains(nextLocation)){
+					nextLocation++;
+				}
+				location = nextLocation++;
+			}
+			variables.put("attribute:" + declaration[0], new int[]{location, Integer.parseInt(declaration[1]), 1});
+		}
+		//Plain uniforms get locations, block members -1
+		int uniformLocation = 0;
+		for(String uniform : uniforms){
+			final String[] declaration = uniform.split(":");
+			final int size = Integer.parseInt(declaration[2]);
+			final boolean inBlock = declaration.length > 3;
+			final String name = (size > 1) ? declaration[0] + "[0]" : declaration[0];
+			if(!variables.containsKey("uniform:" + name)){
+				variables.put("uniform:" + name, new int[]{inBlock ? -1 : uniformLocation, Integer.parseInt(declaration[1]), size});
+				if(!inBlock){
+					uniformLocation += size;
+				}
+			}
+		}
+		for(String block : blocks){
+			if(!variables.containsKey("block:" + block)){
+				variables.put("block:" + block, new int[]{countVariables(variables, "block:"), 0, 0});
+			}
+		}
+		mUnlinkedPrograms.remove(program);
+	}
+
+	@Override
+	public void glGetProgramiv(final int program, final int pname, final int[] params, final int offset){
+		record("glGetProgramiv");
+		switch(pname){
+			case GLES20.GL_LINK_STATUS :
+				params[offset] = (mPrograms.containsKey(program) && !mUnlinkedPrograms.contains(program)) ? GLES20.GL_TRUE : GLES20.GL_FALSE;
+				break;
+			case GLES20.GL_ACTIVE_ATTRIBUTES :
+				params[offset] = mPrograms.containsKey(program) ? countVariables(mPrograms.get(program), "attribute:") : 0;
+				break;
+			case GLES20.GL_ACTIVE_UNIFORMS :
+				params[offset] = mPrograms.containsKey(program) ? countVariables(mPrograms.get(program), "uniform:") : 0;
+				break;
+			case GLES30.GL_PROGRAM_BINARY_LENGTH :
+				params[offset] = (mVersion >= 3 && mPrograms.containsKey(program)) ? encodeProgram(program).length : 0;
+				break;
+			default :
+				params[offset] = 0;
+		}
+	}
+
+	@Override
+	public String glGetActiveAttrib(final int program, final int index, final int[] size, final int sizeOffset, final int[] type, final int typeOffset){
+		record("glGetActiveAttrib");
+		return getActiveVariable(program, "attribute:", index, size, sizeOffset, type, typeOffset);
+	}
+
+	@Override
+	public String glGetActiveUniform(final int program, final int index, final int[] size, final int sizeOffset, final int[] type, final int typeOffset){
+		record("glGetActiveUniform");
+		return getActiveVariable(program, "uniform:", index, size, sizeOffset, type, typeOffset);
+	}
+
+	private String getActiveVariable(final int program, final String prefix, final int index, final int[] size, final int sizeOffset, final int[] type, final int typeOffset){
+		final Map<String, int[]> variables = mPrograms.get(program);
+		if(variables != null){
+			int variableIndex = 0;
+			for(Map.Entry<String, int[]> variable : variables.entrySet()){
+				if(variable.getKey().startsWith(prefix) && variableIndex++ == index){
+					size[sizeOffset] = variable.getValue()[2];
+					type[typeOffset] = variable.getValue()[1];
+					return variable.getKey().substring(prefix.length());
+				}
+			}
+		}
+		error(GLES20.GL_INVALID_VALUE, "glGetActive" + prefix);
+		return "";
+	}
+
+	private static int countVariables(final Map<String, int[]> variables, final String prefix){
+		int count = 0;
+		for(String key : variables.keySet()){
+			if(key.startsWith(prefix)){
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/*
+	 * Minimal GLSL front end : comments and inactive preprocessor branches are removed, then declarations
+	 * referenced elsewhere in the source are reported as "name:type[:size[:block]]" (unused ones are optimized out).
+	 */
+	private static void parseShader(final int shaderType, final String source, final List<String> attributes, final List<String> uniforms, final List<String> blocks){
+		final String code = preprocess(COMMENT_PATTERN.matcher(source).replaceAll(" "));
+		final Matcher blockMatcher = BLOCK_PATTERN.matcher(code);
+		while(blockMatcher.find()){
+			blocks.add(blockMatcher.group(1));
+			final Matcher memberMatcher = DECLARATION_PATTERN.matcher(blockMatcher.group(2));
+			while(memberMatcher.find()){
+				if(isReferenced(code, memberMatcher.group(2))){
+					uniforms.add(memberMatcher.group(2) + ":" + getType(memberMatcher.group(1)) + ":" + getSize(memberMatcher.group(3)) + ":" + blockMatcher.group(1));
+				}
+			}
+		}
+		final Matcher uniformMatcher = UNIFORM_DECLARATION_PATTERN.matcher(code);
+		while(uniformMatcher.find()){
+			if(isReferenced(code, uniformMatcher.group(2))){
+				uniforms.add(uniformMatcher.group(2) + ":" + getType(uniformMatcher.group(1)) + ":" + getSize(uniformMatcher.group(3)));
+			}
+		}
+		if(shaderType == GLES20.GL_VERTEX_SHADER){
+			final Matcher attributeMatcher = ATTRIBUTE_DECLARATION_PATTERN.matcher(code);
+			while(attributeMatcher.find()){
+				if(isReferenced(code, attributeMatcher.group(2))){
+					attributes.add(attributeMatcher.group(2) + ":" + getType(attributeMatcher.group(1)));
+				}
+			}
+		}
+	}
+
+	private static boolean isReferenced(final String code, final String name){
+		final Matcher matcher = Pattern.compile("\\b" + Pattern.quote(name) + "\\b").matcher(code);
+		int count = 0;
+		while(matcher.find()){
+			if(++count > 1){
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static int getSize(final String size){
+		return (size != null) ? Integer.parseInt(size) : 1;
+	}
+
+	private static int getType(final String type){
+		final Integer glType = GLSL_TYPES.get(type);
+		return (glType != null) ? glType : GLES20.GL_NONE;
+	}
+
+	/*
+	 * Keeps lines of active branches (#define, #ifdef, #ifndef, #if NAME [==|!=] value, #else, #endif)
+	 */
+	private static String preprocess(final String source){
+		final Map<String, String> defines = new HashMap<>();
+		final List<boolean[]> branches = new ArrayList<>();
+		final StringBuilder code = new StringBuilder(source.length());
+		for(String line : source.split("\n")){
+			final String trimmed = line.trim();
+			final boolean active = branches.isEmpty() || branches.get(branches.size() - 1)[0];
+			if(!trimmed.startsWith("#")){
+				if(active){
+					code.append(line).append('\n');
+				}
+				continue;
+			}
+			final String[] directive = trimmed.substring(1).trim().split("\\s+", 2);
+			final String argument = (directive.length > 1) ? directive[1].trim() : "";
+			switch(directive[0]){
+				case "define" :
+					if(active){
+						final String[] define = argument.split("\\s+", 2);
+						defines.put(define[0], (define.length > 1) ? define[1].trim() : "");
+					}
+					break;
+				case "ifdef" :
+				case "ifndef" :
+				case "if" :
+					final boolean condition = directive[0].equals("if") ? evaluate(argument, defines)
+							: (defines.containsKey(argument) == directive[0].equals("ifdef"));
+					//{active, parent active}
+					branches.add(new boolean[]{active && condition, active});
+					break;
+				case "else" :
+					if(!branches.isEmpty()){
+						final boolean[] branch = branches.get(branches.size() - 1);
+						branch[0] = branch[1] && !branch[0];
+					}
+					break;
+				case "endif" :
+					if(!branches.isEmpty()){
+						branches.remove(branches.size() - 1);
+					}
+					break;
+				default :
+					//#version, #extension, #pragma
+			}
+		}
+		return code.toString();
+	}
+
+	private static boolean evaluate(final String expression, final Map<String, String> defines){
+		final String[] operands = expression.split("\\s*(==|!=)\\s*");
+		final String left = resolve(operands[0].trim(), defines);
+		if(operands.length == 1){
+			return !left.isEmpty() && !left.equals("0");
+		}
+		final boolean equals = left.equals(resolve(operands[1].trim(), defines));
+		return expression.contains("==") ? equals : !equals;
+	}
+
+	private static String resolve(final String token, final Map<String, String> defines){
+		final String value = defines.get(token);
+		return (value != null) ? value : (token.matches("[A-Za-z_]\\w*") ? "0" : token);
+	}
+
+	@Override
+	public String glGetProgramInfoLog(final int program){
+		record("glGetProgramInfoLog");
+		return "";
+	}
+
+	@Override
+	public void glDeleteProgram(final int program){
+		record("glDeleteProgram");
+		mPrograms.remove(program);
+		mAttachedShaders.remove(program);
+		mBoundAttributes.remove(program);
+		mUnlinkedPrograms.remove(program);
+	}
+
+	@Override
+	public void glProgramParameteri(final int program, final int pname, final int value){
+		record("glProgramParameteri");
+		if(mVersion < 3 || !mPrograms.containsKey(program)){
+			error(GLES20.GL_INVALID_OPERATION, "glProgramParameteri");
+		}
+	}
+
+	@Override
+	public void glGetProgramBinary(final int program, final int bufSize, final int[] length, final int lengthOffset, final int[] binaryFormat, final int binaryFormatOffset, final Buffer binary){
+		record("glGetProgramBinary");
+		if(mVersion < 3 || !mPrograms.containsKey(program)){
+			error(GLES20.GL_INVALID_OPERATION, "glGetProgramBinary");
+			return;
+		}
+		final byte[] encoded = encodeProgram(program);
+		if(encoded.length > bufSize || encoded.length > binary.remaining()){
+			error(GLES20.GL_INVALID_OPERATION, "glGetProgramBinary");
+			return;
+		}
+		final ByteBuffer destination = (ByteBuffer)binary;
+		for(int index=0; index < encoded.length; index++){
+			destination.put(destination.position() + index, encoded[index]);
+		}
+		if(length != null){
+			length[lengthOffset] = encoded.length;
+		}
+		binaryFormat[binaryFormatOffset] = PROGRAM_BINARY_FORMAT;
+	}
+
+	@Override
+	public void glProgramBinary(final int program, final int binaryFormat, final Buffer binary, final int length){
+		record("glProgramBinary");
+		final Map<String, int[]> variables = mPrograms.get(program);
+		if(mVersion < 3 || variables == null){
+			error(GLES20.GL_INVALID_OPERATION, "glProgramBinary");
+			return;
+		}
+		variables.clear();
+		mUnlinkedPrograms.add(program);
+		if(binaryFormat != PROGRAM_BINARY_FORMAT){
+			error(GLES20.GL_INVALID_ENUM, "glProgramBinary");
+			return;
+		}
+		//Rejected binaries only leave the program unlinked, as drivers do
+		final ByteBuffer source = (ByteBuffer)binary;
+		final byte[] encoded = new byte[length];
+		for(int index=0; index < length; index++){
+			encoded[index] = source.get(source.position() + index);
+		}
+		final String content = new String(encoded);
+		if(!content.startsWith(BINARY_HEADER)){
+			return;
+		}
+		try{
+			for(String entry : content.substring(BINARY_HEADER.length()).split("\n")){
+				if(!entry.isEmpty()){
+					final int separator = entry.lastIndexOf('=');
+					final String[] values = entry.substring(separator + 1).split(",");
+					variables.put(entry.substring(0, separator), new int[]{Integer.parseInt(values[0]), Integer.parseInt(values[1]), Integer.parseInt(values[2])});
+				}
+			}
+		}catch(RuntimeException re){
+			variables.clear();
+			return;
+		}
+		mUnlinkedPrograms.remove(program);
+	}
+
+	private byte[] encodeProgram(final int program){
+		final StringBuilder content = new StringBuilder(BINARY_HEADER);
+		for(Map.Entry<String, int[]> variable : mPrograms.get(program).entrySet()){
+			final int[] values = variable.getValue();
+			content.append(variable.getKey()).append('=').append(values[0]).append(',').append(values[1]).append(',').append(values[2]).append('\n');
+		}
+		return content.toString().getBytes();
+	}
+
+	@Override
+	public void glUseProgram(final int program){
+		record("glUseProgram");
+		if(program != 0 && !mPrograms.containsKey(program)){
+			error(GLES20.GL_INVALID_VALUE, "glUseProgram");
+			return;
+		}
+		mProgram = program;
+	}
+
+	@Override
+	public int glGetAttribLocation(final int program, final String name){
+		record("glGetAttribLocation");
+		return getLocation(program, "attribute:" + name);
+	}
+
+	@Override
+	public int glGetUniformLocation(final int program, final String name){
+		record("glGetUniformLocation");
+		//Arrays are reported as name[0]
+		final int location = getLocation(program, "uniform:" + name);
+		return (location < 0 && !name.endsWith("]")) ? getLocation(program, "uniform:" + name + "[0]") : location;
+	}
+
+	@Override
+	public int glGetUniformBlockIndex(final int program, final String uniformBlockName){
+		record("glGetUniformBlockIndex");
+		if(mVersion < 3){
+			error(GLES20.GL_INVALID_OPERATION, "glGetUniformBlockIndex");
+			return GLES30.GL_INVALID_INDEX;
+		}
+		final int index = getLocation(program, "block:" + uniformBlockName);
+		return (index < 0) ? GLES30.GL_INVALID_INDEX : index;
+	}
+
+	@Override
+	public void glUniformBlockBinding(final int program, final int uniformBlockIndex, final int uniformBlockBinding){
+		record("glUniformBlockBinding");
+		if(mVersion < 3 || !mPrograms.containsKey(program)){
+			error(GLES20.GL_INVALID_OPERATION, "glUniformBlockBinding");
+			return;
+		}
+		if(uniformBlockBinding < 0 || uniformBlockBinding >= MAX_UNIFORM_BUFFER_BINDINGS){
+			error(GLES20.GL_INVALID_VALUE, "glUniformBlockBinding");
+		}
+	}
+
+	/*
+	 * Location of an active variable, -1 if unknown or optimized out (as drivers do)
+	 */
+	private int getLocation(final int program, final String key){
+		final Map<String, int[]> variables = mPrograms.get(program);
+		if(variables == null){
+			error(GLES20.GL_INVALID_VALUE, key);
+			return -1;
+		}
+		if(mUnlinkedPrograms.contains(program)){
+			error(GLES20.GL_INVALID_OPERATION, key);
+			return -1;
+		}
+		final int[] variable = variables.get(key);
+		return (variable != null) ? variable[0] : -1;
+	}
+
+	@Override
+	public void glUniform1i(final int location, final int x){
+		recordUniform("glUniform1i");
+	}
+
+	@Override
+	public void glUniform1f(final int location, final float x){
+		recordUniform("glUniform1f");
+	}
+
+	@Override
+	public void glUniform2f(final int location, final float x, final float y){
+		recordUniform("glUniform2f");
+	}
+
+	@Override
+	public void glUniform3f(final int location, final float x, final float y, final float z){
+		recordUniform("glUniform3f");
+	}
+
+	@Override
+	public void glUniform4f(final int location, final float x, final float y, final float z, final float w){
+		recordUniform("glUniform4f");
+	}
+
+	@Override
+	public void glUniformMatrix4fv(final int location, final int count, final boolean transpose, final float[] value, final int offset){
+		recordUniform("glUniformMatrix4fv");
+	}
+
+	private void recordUniform(final String name){
+		record(name);
+		if(mProgram == 0){
+			error(GLES20.GL_INVALID_OPERATION, name);
+		}
+	}
+
+	//Framebuffers & renderbuffers
+
+	@Override
+	public void glGenFramebuffers(final int n, final int[] framebuffers, final int offset){
+		record("glGenFramebuffers");
+		gen(mFramebuffers, n, framebuffers, offset);
+	}
+
+	@Override
+	public void glDeleteFramebuffers(final int n, final int[] framebuffers, final int offset){
+		record("glDeleteFramebuffers");
+		for(int index=0; index < n; index++){
+			if(mFramebuffers.remove(framebuffers[offset + index]) && mFramebuffer == framebuffers[offset + index]){
+				mFramebuffer = 0;
+			}
+		}
+	}
+
+	@Override
+	public void glBindFramebuffer(final int target, final int framebuffer){
+		record("glBindFramebuffer");
+		if(framebuffer != 0){
+			mFramebuffers.add(framebuffer);
+		}
+		mFramebuffer = framebuffer;
+	}
+
+	@Override
+	public void glFramebufferTexture2D(final int target, final int attachment, final int textarget, final int texture, final int level){
+		record("glFramebufferTexture2D");
+		if(mFramebuffer == 0){
+			error(GLES20.GL_INVALID_OPERATION, "glFramebufferTexture2D");
+		}
+	}
+
+	@Override
+	public void glFramebufferRenderbuffer(final int target, final int attachment, final int renderbuffertarget, final int renderbuffer){
+		record("glFramebufferRenderbuffer");
+		if(mFramebuffer == 0){
+			error(GLES20.GL_INVALID_OPERATION, "glFramebufferRenderbuffer");
+		}
+	}
+
+	@Override
+	public int glCheckFramebufferStatus(final int target){
+		record("glCheckFramebufferStatus");
+		return GLES20.GL_FRAMEBUFFER_COMPLETE;
+	}
+
+	@Override
+	public void glGenRenderbuffers(final int n, final int[] renderbuffers, final int offset){
+		record("glGenRenderbuffers");
+		gen(mRenderbuffers, n, renderbuffers, offset);
+	}
+
+	@Override
+	public void glDeleteRenderbuffers(final int n, final int[] renderbuffers, final int offset){
+		record("glDeleteRenderbuffers");
+		for(int index=0; index < n; index++){
+			if(mRenderbuffers.remove(renderbuffers[offset + index]) && mRenderbuffer == renderbuffers[offset + index]){
+				mRenderbuffer = 0;
+			}
+		}
+	}
+
+	@Override
+	public void glBindRenderbuffer(final int target, final int renderbuffer){
+		record("glBindRenderbuffer");
+		if(renderbuffer != 0){
+			mRenderbuffers.add(renderbuffer);
+		}
+		mRenderbuffer = renderbuffer;
+	}
+
+	@Override
+	public void glRenderbufferStorage(final int target, final int internalformat, final int width, final int height){
+		record("glRenderbufferStorage");
+		if(mRenderbuffer == 0){
+			error(GLES20.GL_INVALID_OPERATION, "glRenderbufferStorage");
+		}
+	}
+
+	@Override
+	public void glReadPixels(final int x, final int y, final int width, final int height, final int format, final int type, final Buffer pixels){
+		record("glReadPixels");
+	}
+}
@@ -0,0 +1,80 @@
+package com.thommil.animalsgo.utils;
+
+import com.thommil.animalsgo.Benchmarks;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.FloatBuffer;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Get/return throughput of ByteBufferPool from 1 to 6 threads : small size classes (thread
+ * magazines) against classes above MAX_MAGAZINE_CLASS_SIZE (shared buckets only).
+ */
+public class ByteBufferPoolContentionBenchmark {
+
+    private static final int OPERATIONS = 1000000;
+
+    private static final int[] THREADS = new int[]{1, 3, 6};
+
+    // Floats above the biggest magazine class
+    private static final int SHARED_FLOATS = ByteBufferPool.MAX_MAGAZINE_CLASS_SIZE / 4 + 16;
+
+    @Before
+    public void setUp(){
+        Benchmarks.assumeEnabled();
+        ByteBufferPool.getInstance().clear();
+    }
+
+    @Test
+    public void getAndReturn() throws InterruptedException {
+        //Warm up
+        for(final int threads : THREADS){
+            run(threads, 16);
+            run(threads, SHARED_FLOATS);
+        }
+        for(final int threads : THREADS){
+            final double magazines = run(threads, 16);
+            final double shared = run(threads, SHARED_FLOATS);
+            Benchmarks.report("ByteBufferPool", "%d threads : magazines %.1f ns/op, shared buckets %.1f ns/op (get+return, per thread)",
+                    threads, magazines, shared);
+        }
+        assertTrue(ByteBufferPool.getInstance().getRetainedBytes() <= ByteBufferPool.getInstance().getMaxRetainedBytes());
+    }
+
+    /*
+     * @return The mean duration of a get+return in ns, for each thread
+     */
+    private static double run(final int threadsCount, final int baseSize) throws InterruptedException {
+        final CountDownLatch start = new CountDownLatch(1);
+        final Thread[] threads = new Thread[threadsCount];
+        for(int index=0; index < threadsCount; index++){
+            threads[index] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException ie) {
+                        return;
+                    }
+                    final ByteBufferPool pool = ByteBufferPool.getInstance();
+                    for(int operation=0; operation < OPERATIONS; operation++){
+                        final FloatBuffer buffer = pool.getDirectFloatBuffer(baseSize + ((operation & 7) << 4));
+                        buffer.put(0, 1f);
+                        pool.returnDirectBuffer(buffer);
+                    }
+                }
+            });
+            threads[index].start();
+        }
+        final long startTime = System.nanoTime();
+        start.countDown();
+        for(final Thread thread : threads){
+            thread.join();
+        }
+        return (System.nanoTime() - startTime) / (double) OPERATIONS;
+    }
+}
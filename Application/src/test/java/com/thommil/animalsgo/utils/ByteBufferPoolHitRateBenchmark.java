@@ -0,0 +1,183 @@
+package com.thommil.animalsgo.utils;
+
+import com.thommil.animalsgo.Benchmarks;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.ref.WeakReference;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Hit rate of ByteBufferPool on a mixed workload (jittering capture buffers, vertices floats,
+ * indices shorts) against the previous exact size pool of weak references.
+ */
+public class ByteBufferPoolHitRateBenchmark {
+
+    private static final int REQUESTS = 20000;
+
+    // Buffers held by the workload before being returned
+    private static final int LIVE_BUFFERS = 4;
+
+    @Before
+    public void setUp(){
+        Benchmarks.assumeEnabled();
+        ByteBufferPool.getInstance().clear();
+    }
+
+    @Test
+    public void mixedWorkload(){
+        final long[] exact = run(new ExactSizePool());
+        final long[] classes = run(new SizeClassPool());
+        Benchmarks.report("ByteBufferPool", "exact size pool : hit rate %.1f%%, %d allocations", 100.0 * exact[0] / REQUESTS, exact[1]);
+        Benchmarks.report("ByteBufferPool", "size class pool : hit rate %.1f%%, %d allocations", 100.0 * classes[0] / REQUESTS, classes[1]);
+        assertTrue(classes[0] > exact[0]);
+    }
+
+    /*
+     * @return {hits, allocations}
+     */
+    private static long[] run(final Pool pool){
+        final Random random = new Random(42);
+        final Deque<Buffer> live = new ArrayDeque<>();
+        final Set<Buffer> seen = Collections.newSetFromMap(new IdentityHashMap<Buffer, Boolean>());
+        long hits = 0, allocations = 0;
+        for(int request=0; request < REQUESTS; request++){
+            final Buffer buffer;
+            switch(random.nextInt(3)){
+                case 0 :
+                    buffer = pool.getBytes((300 + random.nextInt(8)) * (200 + random.nextInt(8)) * 4);
+                    break;
+                case 1 :
+                    buffer = pool.getFloats(16 + random.nextInt(200) * 20);
+                    break;
+                default :
+                    buffer = pool.getShorts(4 + random.nextInt(100) * 6);
+            }
+            if(seen.add(buffer)){
+                allocations++;
+            }
+            else{
+                hits++;
+            }
+            live.add(buffer);
+            if(live.size() > LIVE_BUFFERS){
+                pool.release(live.poll());
+            }
+        }
+        while(!live.isEmpty()){
+            pool.release(live.poll());
+        }
+        return new long[]{hits, allocations};
+    }
+
+    private interface Pool {
+        ByteBuffer getBytes(int size);
+        FloatBuffer getFloats(int size);
+        ShortBuffer getShorts(int size);
+        void release(Buffer buffer);
+    }
+
+    private static final class SizeClassPool implements Pool {
+
+        @Override
+        public ByteBuffer getBytes(final int size){
+            return ByteBufferPool.getInstance().getDirectByteBuffer(size);
+        }
+
+        @Override
+        public FloatBuffer getFloats(final int size){
+            return ByteBufferPool.getInstance().getDirectFloatBuffer(size);
+        }
+
+        @Override
+        public ShortBuffer getShorts(final int size){
+            return ByteBufferPool.getInstance().getDirectShortBuffer(size);
+        }
+
+        @Override
+        public void release(final Buffer buffer){
+            if(buffer instanceof ByteBuffer){
+                ByteBufferPool.getInstance().returnDirectBuffer((ByteBuffer) buffer);
+            }
+            else if(buffer instanceof FloatBuffer){
+                ByteBufferPool.getInstance().returnDirectBuffer((FloatBuffer) buffer);
+            }
+            else{
+                ByteBufferPool.getInstance().returnDirectBuffer((ShortBuffer) buffer);
+            }
+        }
+    }
+
+    /*
+     * Previous policy : queues of weak references keyed by exact size, one map per type
+     */
+    private static final class ExactSizePool implements Pool {
+
+        private final Map<Integer, Queue<WeakReference<Buffer>>> mBytes = new ConcurrentHashMap<>();
+        private final Map<Integer, Queue<WeakReference<Buffer>>> mFloats = new ConcurrentHashMap<>();
+        private final Map<Integer, Queue<WeakReference<Buffer>>> mShorts = new ConcurrentHashMap<>();
+
+        private static Buffer poll(final Map<Integer, Queue<WeakReference<Buffer>>> pool, final int size){
+            final Queue<WeakReference<Buffer>> queue = pool.get(size);
+            if(queue != null){
+                WeakReference<Buffer> reference;
+                while((reference = queue.poll()) != null){
+                    final Buffer buffer = reference.get();
+                    if(buffer != null){
+                        buffer.clear();
+                        return buffer;
+                    }
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public ByteBuffer getBytes(final int size){
+            final Buffer buffer = poll(mBytes, size);
+            return (buffer != null) ? (ByteBuffer) buffer : ByteBuffer.allocateDirect(size).order(ByteOrder.nativeOrder());
+        }
+
+        @Override
+        public FloatBuffer getFloats(final int size){
+            final Buffer buffer = poll(mFloats, size * 4);
+            return (buffer != null) ? (FloatBuffer) buffer : ByteBuffer.allocateDirect(size * 4).order(ByteOrder.nativeOrder()).asFloatBuffer();
+        }
+
+        @Override
+        public ShortBuffer getShorts(final int size){
+            final Buffer buffer = poll(mShorts, size * 2);
+            return (buffer != null) ? (ShortBuffer) buffer : ByteBuffer.allocateDirect(size * 2).order(ByteOrder.nativeOrder()).asShortBuffer();
+        }
+
+        @Override
+        public void release(final Buffer buffer){
+            final Map<Integer, Queue<WeakReference<Buffer>>> pool = (buffer instanceof ByteBuffer) ? mBytes
+                    : (buffer instanceof FloatBuffer) ? mFloats : mShorts;
+            //Returned under capacity in elements, typed buffers are looked up in bytes (as before)
+            Queue<WeakReference<Buffer>> queue = pool.get(buffer.capacity());
+            if(queue == null){
+                queue = new ConcurrentLinkedQueue<>();
+                pool.put(buffer.capacity(), queue);
+            }
+            queue.add(new WeakReference<>(buffer));
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.thommil.animalsgo.utils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Instrumentation counters, double returns and leaks reported by ByteBufferPool.getStats()
+ */
+public class ByteBufferPoolStatsTest {
+
+    private final ByteBufferPool mPool = ByteBufferPool.getInstance();
+
+    @Before
+    public void setUp(){
+        mPool.clear();
+        mPool.setInstrumentationEnabled(true);
+    }
+
+    @After
+    public void tearDown(){
+        mPool.setInstrumentationEnabled(false);
+        mPool.clear();
+    }
+
+    @Test
+    public void disabledStatsAreEmpty(){
+        mPool.setInstrumentationEnabled(false);
+        mPool.returnDirectBuffer(mPool.getDirectFloatBuffer(64));
+        final ByteBufferPool.Stats stats = mPool.getStats();
+        assertEquals(0, stats.getTotalHits());
+        assertEquals(0, stats.getTotalMisses());
+        assertEquals(0f, stats.getHitRate(), 0f);
+        assertEquals(mPool.getMaxRetainedBytes(), stats.maxRetainedBytes);
+    }
+
+    @Test
+    public void hitsAndMissesPerSizeClass(){
+        final FloatBuffer buffer = mPool.getDirectFloatBuffer(100);
+        final int classIndex = ByteBufferPool.getClassIndex(100 * 4);
+        mPool.returnDirectBuffer(buffer);
+        mPool.returnDirectBuffer(mPool.getDirectFloatBuffer(100));
+
+        final ByteBufferPool.Stats stats = mPool.getStats();
+        assertEquals(1, stats.misses[classIndex]);
+        assertEquals(1, stats.hits[classIndex]);
+        assertEquals(2, stats.returns[classIndex]);
+        assertEquals(buffer.capacity() * 4, stats.allocatedBytes[classIndex]);
+        assertEquals(0.5f, stats.getHitRate(), 0f);
+        assertEquals(0, stats.outstandingCount);
+        assertEquals(ByteBufferPool.getClassSize(classIndex), ByteBufferPool.Stats.getClassSize(classIndex));
+    }
+
+    @Test
+    public void notPooledSizes(){
+        final ByteBuffer buffer = mPool.getDirectByteBuffer(ByteBufferPool.MAX_CLASS_SIZE + 1);
+        mPool.returnDirectBuffer(buffer);
+        final ByteBufferPool.Stats stats = mPool.getStats();
+        assertEquals(1, stats.misses[ByteBufferPool.Stats.NOT_POOLED]);
+        //Returned buffer serves the biggest size class
+        assertEquals(1, stats.returns[ByteBufferPool.getFloorClassIndex(buffer.capacity())]);
+        assertEquals(-1, ByteBufferPool.Stats.getClassSize(ByteBufferPool.Stats.NOT_POOLED));
+    }
+
+    @Test
+    public void outstandingSites(){
+        final ByteBuffer buffer = mPool.getDirectByteBuffer(1000);
+        ByteBufferPool.Stats stats = mPool.getStats();
+        assertEquals(1, stats.outstandingCount);
+        assertEquals(1, stats.outstandingSites.size());
+        assertTrue(stats.outstandingSites.get(0).getMessage().startsWith("Acquired"));
+
+        mPool.returnDirectBuffer(buffer);
+        stats = mPool.getStats();
+        assertEquals(0, stats.outstandingCount);
+        assertTrue(stats.outstandingSites.isEmpty());
+    }
+
+    @Test
+    public void doubleReturnIsReportedAndNotPooledTwice(){
+        final ByteBuffer buffer = mPool.getDirectByteBuffer(1000);
+        mPool.returnDirectBuffer(buffer);
+        mPool.returnDirectBuffer(buffer);
+
+        final ByteBufferPool.Stats stats = mPool.getStats();
+        assertEquals(1, stats.doubleReturns);
+        assertEquals(1, stats.doubleReturnSites.size());
+        assertEquals(1, stats.returns[ByteBufferPool.getFloorClassIndex(buffer.capacity())]);
+
+        //Only one pooled copy
+        final ByteBuffer first = mPool.getDirectByteBuffer(1000);
+        final ByteBuffer second = mPool.getDirectByteBuffer(1000);
+        assertSame(buffer, first);
+        assertNotSame(first, second);
+    }
+
+    @Test
+    public void neverReturnedIsReportedAsLeak() throws InterruptedException {
+        acquireAndDrop();
+        ByteBufferPool.Stats stats = mPool.getStats();
+        for(int attempt=0; attempt < 50 && stats.leaks == 0; attempt++){
+            System.gc();
+            Thread.sleep(20);
+            stats = mPool.getStats();
+        }
+        assertEquals(1, stats.leaks);
+        assertEquals(1, stats.leakSites.size());
+        assertEquals(0, stats.outstandingCount);
+    }
+
+    private void acquireAndDrop(){
+        mPool.getDirectByteBuffer(1000);
+    }
+}
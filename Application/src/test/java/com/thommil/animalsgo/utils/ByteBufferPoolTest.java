@@ -0,0 +1,161 @@
+package com.thommil.animalsgo.utils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Size classes, byte budget, LRU eviction and trimming of ByteBufferPool on a plain JVM
+ */
+public class ByteBufferPoolTest {
+
+    private static final int KB = 1024;
+
+    private final ByteBufferPool mPool = ByteBufferPool.getInstance();
+
+    @Before
+    public void setUp(){
+        mPool.setMaxRetainedBytes(ByteBufferPool.DEFAULT_MAX_RETAINED_BYTES);
+        mPool.clear();
+    }
+
+    @After
+    public void tearDown(){
+        mPool.setMaxRetainedBytes(ByteBufferPool.DEFAULT_MAX_RETAINED_BYTES);
+        mPool.clear();
+    }
+
+    @Test
+    public void sizeClasses(){
+        for(int size=1; size < 4 * KB * KB; size += (size < 4 * KB) ? 1 : size / 97){
+            final int classIndex = ByteBufferPool.getClassIndex(size);
+            final int classSize = ByteBufferPool.getClassSize(classIndex);
+            assertTrue("class of " + size + " too small", classSize >= size);
+            assertTrue("class of " + size + " not the smallest", classIndex == 0 || ByteBufferPool.getClassSize(classIndex - 1) < size);
+            assertEquals(classIndex, ByteBufferPool.getFloorClassIndex(classSize));
+            //Steps of 1.25 at most
+            assertTrue(size <= ByteBufferPool.MIN_CLASS_SIZE || classSize <= size * 1.25f);
+        }
+    }
+
+    @Test
+    public void limitIsRequestedSize(){
+        final FloatBuffer buffer = mPool.getDirectFloatBuffer(100);
+        assertEquals(100, buffer.limit());
+        assertTrue(buffer.capacity() >= 100);
+        mPool.returnDirectBuffer(buffer);
+    }
+
+    @Test
+    public void leastRecentlyReturnedIsEvicted(){
+        //Above magazine classes, buffers go straight to the shared buckets
+        final ByteBuffer small = mPool.getDirectByteBuffer(256 * KB);
+        final ByteBuffer medium = mPool.getDirectByteBuffer(512 * KB);
+        final ByteBuffer big = mPool.getDirectByteBuffer(KB * KB);
+        mPool.setMaxRetainedBytes(1600 * KB);
+
+        mPool.returnDirectBuffer(small);
+        mPool.returnDirectBuffer(medium);
+        assertEquals(768 * KB, mPool.getRetainedBytes());
+        mPool.returnDirectBuffer(big);
+        assertEquals(1536 * KB, mPool.getRetainedBytes());
+
+        assertNotSame(small, mPool.getDirectByteBuffer(256 * KB));
+        assertSame(medium, mPool.getDirectByteBuffer(512 * KB));
+        assertSame(big, mPool.getDirectByteBuffer(KB * KB));
+    }
+
+    @Test
+    public void budgetChangeEvicts(){
+        returnBuffers(8, 128 * KB);
+        assertEquals(KB * KB, mPool.getRetainedBytes());
+        mPool.setMaxRetainedBytes(300 * KB);
+        assertTrue(mPool.getRetainedBytes() <= 300 * KB);
+    }
+
+    @Test
+    public void trimLevels(){
+        mPool.setMaxRetainedBytes(KB * KB);
+        returnBuffers(8, 128 * KB);
+        assertEquals(KB * KB, mPool.getRetainedBytes());
+
+        mPool.trim(ByteBufferPool.TRIM_MEMORY_RUNNING_MODERATE);
+        assertTrue(mPool.getRetainedBytes() <= 512 * KB);
+        mPool.trim(ByteBufferPool.TRIM_MEMORY_RUNNING_LOW);
+        assertTrue(mPool.getRetainedBytes() <= 256 * KB);
+        mPool.trim(ByteBufferPool.TRIM_MEMORY_COMPLETE);
+        assertEquals(0, mPool.getRetainedBytes());
+        assertEquals(KB * KB, mPool.getMaxRetainedBytes());
+    }
+
+    @Test
+    public void magazinesOfIdleThreadsAreBoundedAndTrimmed() throws InterruptedException {
+        mPool.setMaxRetainedBytes(256 * KB);
+        final CountDownLatch filled = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(1);
+        final Thread worker = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                //Many small buffers of magazine classes, then idle
+                final List<FloatBuffer> buffers = new ArrayList<>();
+                for(int size=16; size <= ByteBufferPool.MAX_MAGAZINE_CLASS_SIZE / 4; size += 256){
+                    for(int count=0; count < ByteBufferPool.MAGAZINE_SIZE; count++){
+                        buffers.add(mPool.getDirectFloatBuffer(size));
+                    }
+                }
+                for(final FloatBuffer buffer : buffers){
+                    mPool.returnDirectBuffer(buffer);
+                }
+                filled.countDown();
+                try {
+                    done.await();
+                } catch (InterruptedException ie) {
+                    //Ends
+                }
+            }
+        });
+        worker.start();
+        try {
+            filled.await();
+            assertTrue("retained " + mPool.getRetainedBytes(), mPool.getRetainedBytes() <= 256 * KB);
+            assertTrue(mPool.getRetainedBytes() > 0);
+
+            mPool.trim(ByteBufferPool.TRIM_MEMORY_COMPLETE);
+            assertEquals(0, mPool.getRetainedBytes());
+        }
+        finally {
+            done.countDown();
+            worker.join();
+        }
+    }
+
+    @Test
+    public void outstandingBytes(){
+        final long outstanding = mPool.getOutstandingBytes();
+        final ByteBuffer buffer = mPool.getDirectByteBuffer(1000);
+        assertEquals(outstanding + buffer.capacity(), mPool.getOutstandingBytes());
+        mPool.returnDirectBuffer(buffer);
+        assertEquals(outstanding, mPool.getOutstandingBytes());
+    }
+
+    private void returnBuffers(final int count, final int size){
+        final List<ByteBuffer> buffers = new ArrayList<>();
+        for(int index=0; index < count; index++){
+            buffers.add(mPool.getDirectByteBuffer(size));
+        }
+        for(final ByteBuffer buffer : buffers){
+            mPool.returnDirectBuffer(buffer);
+        }
+    }
+}
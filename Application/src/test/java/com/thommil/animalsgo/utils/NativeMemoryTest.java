@@ -0,0 +1,115 @@
+package com.thommil.animalsgo.utils;
+
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * NativeMemory and native backed ByteBufferPool, needs animals-go built for the host
+ * (buildHostNativeMemory), skipped otherwise
+ */
+public class NativeMemoryTest {
+
+    @Before
+    public void setUp(){
+        Assume.assumeTrue(NativeMemory.isAvailable());
+    }
+
+    @Test
+    public void allocateAndFree(){
+        final long allocated = NativeMemory.getAllocatedBytes();
+        final ByteBuffer buffer = NativeMemory.allocate(1000);
+        assertEquals(1000, buffer.capacity());
+        assertTrue(buffer.isDirect());
+        assertEquals(allocated + 1000, NativeMemory.getAllocatedBytes());
+
+        buffer.putFloat(0, 1f);
+        assertTrue(NativeMemory.free(buffer));
+        assertEquals(allocated, NativeMemory.getAllocatedBytes());
+    }
+
+    @Test
+    public void freeSharedView(){
+        final long allocated = NativeMemory.getAllocatedBytes();
+        final ByteBuffer buffer = NativeMemory.allocate(256);
+        final FloatBuffer view = NativeMemory.share(buffer, buffer.asFloatBuffer());
+        assertTrue(NativeMemory.free(view));
+        assertFalse(NativeMemory.free(buffer));
+        assertEquals(allocated, NativeMemory.getAllocatedBytes());
+    }
+
+    @Test
+    public void doubleFreeAndForeignBuffers(){
+        final ByteBuffer buffer = NativeMemory.allocate(64);
+        assertTrue(NativeMemory.free(buffer));
+        assertFalse(NativeMemory.free(buffer));
+        assertFalse(NativeMemory.free(ByteBuffer.allocateDirect(64)));
+        //Views not registered by share()
+        final ByteBuffer other = NativeMemory.allocate(64);
+        assertFalse(NativeMemory.free(other.asFloatBuffer()));
+        assertTrue(NativeMemory.free(other));
+    }
+
+    @Test
+    public void staleBufferCannotFreeReusedMemory(){
+        final long allocated = NativeMemory.getAllocatedBytes();
+        for(int attempt=0; attempt < 100; attempt++){
+            final ByteBuffer stale = NativeMemory.allocate(4096);
+            assertTrue(NativeMemory.free(stale));
+            //Same size, the allocator usually hands the same address back
+            final ByteBuffer fresh = NativeMemory.allocate(4096);
+            assertFalse(NativeMemory.free(stale));
+            assertEquals(allocated + 4096, NativeMemory.getAllocatedBytes());
+            fresh.putInt(4092, attempt);
+            assertTrue(NativeMemory.free(fresh));
+        }
+        assertEquals(allocated, NativeMemory.getAllocatedBytes());
+    }
+
+    @Test
+    public void neverFreedIsReclaimedByGc() throws InterruptedException {
+        final long allocated = NativeMemory.getAllocatedBytes();
+        final long reclaimed = NativeMemory.getReclaimedBytes();
+        allocateAndDrop(512);
+        for(int attempt=0; attempt < 50 && NativeMemory.getReclaimedBytes() == reclaimed; attempt++){
+            System.gc();
+            Thread.sleep(20);
+        }
+        assertEquals(reclaimed + 512, NativeMemory.getReclaimedBytes());
+        assertEquals(allocated, NativeMemory.getAllocatedBytes());
+    }
+
+    @Test
+    public void nativeBackedPool(){
+        final ByteBufferPool pool = ByteBufferPool.getInstance();
+        pool.clear();
+        final long allocated = NativeMemory.getAllocatedBytes();
+        assertTrue(pool.setNativeBackingEnabled(true));
+        try {
+            final FloatBuffer floats = pool.getDirectFloatBuffer(1000);
+            final ByteBuffer bytes = pool.getDirectByteBuffer(300 * 1024);
+            assertTrue(NativeMemory.getAllocatedBytes() >= allocated + 4000 + 300 * 1024);
+            pool.returnDirectBuffer(floats);
+            pool.returnDirectBuffer(bytes);
+
+            pool.trim(ByteBufferPool.TRIM_MEMORY_COMPLETE);
+            assertEquals(0, pool.getRetainedBytes());
+            assertEquals(allocated, NativeMemory.getAllocatedBytes());
+        }
+        finally {
+            pool.setNativeBackingEnabled(false);
+            pool.clear();
+        }
+    }
+
+    private void allocateAndDrop(final int size){
+        NativeMemory.allocate(size);
+    }
+}